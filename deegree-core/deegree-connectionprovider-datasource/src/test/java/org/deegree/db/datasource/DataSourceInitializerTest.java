@@ -1,5 +1,6 @@
 package org.deegree.db.datasource;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -7,6 +8,7 @@ import java.lang.reflect.InvocationTargetException;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.dbcp.BasicDataSource;
 import org.deegree.db.datasource.jaxb.DataSourceConnectionProvider;
 import org.deegree.db.datasource.jaxb.DataSourceConnectionProvider.Property;
 import org.junit.Assert;
@@ -102,4 +104,32 @@ public class DataSourceInitializerTest {
         Assert.assertEquals( 4711, ds.getIntProperty() );
     }
 
+    @Test
+    public void testStatementPoolingDisabledByDefault()
+                            throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException,
+                            InvocationTargetException, InstantiationException {
+        final DataSourceConnectionProvider config = new DataSourceConnectionProvider();
+        final DataSourceConnectionProvider.DataSource dsConfig = new DataSourceConnectionProvider.DataSource();
+        dsConfig.setJavaClass( BasicDataSource.class.getCanonicalName() );
+        config.setDataSource( dsConfig );
+        final BasicDataSource ds = (BasicDataSource) initializer.getConfiguredDataSource( config );
+        assertFalse( ds.isPoolPreparedStatements() );
+    }
+
+    @Test
+    public void testStatementPoolingEnabledByProperty()
+                            throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException,
+                            InvocationTargetException, InstantiationException {
+        final DataSourceConnectionProvider config = new DataSourceConnectionProvider();
+        final DataSourceConnectionProvider.DataSource dsConfig = new DataSourceConnectionProvider.DataSource();
+        dsConfig.setJavaClass( BasicDataSource.class.getCanonicalName() );
+        config.setDataSource( dsConfig );
+        final Property property = new Property();
+        property.setName( "poolPreparedStatements" );
+        property.setValue( "true" );
+        config.getProperty().add( property );
+        final BasicDataSource ds = (BasicDataSource) initializer.getConfiguredDataSource( config );
+        assertTrue( ds.isPoolPreparedStatements() );
+    }
+
 }
@@ -317,6 +317,20 @@ public class Filters {
         return propNames.toArray( new ValueReference[propNames.size()] );
     }
 
+    /**
+     * Returns all {@link ValueReference}s contained in the given {@link Expression} (taking nesting into account).
+     * 
+     * @param expr
+     *            expression to be traversed, must not be <code>null</code>
+     * @return {@link ValueReference}s found on any nodes of the {@link Expression}, can be empty, but never
+     *         <code>null</code>
+     */
+    public static ValueReference[] getPropertyNames( Expression expr ) {
+        List<ValueReference> propNames = new LinkedList<ValueReference>();
+        addPropertyNames( expr, propNames );
+        return propNames.toArray( new ValueReference[propNames.size()] );
+    }
+
     private static void addPropertyNames( Operator operator, List<ValueReference> propNames ) {
         Operator.Type type = operator.getType();
         switch ( type ) {
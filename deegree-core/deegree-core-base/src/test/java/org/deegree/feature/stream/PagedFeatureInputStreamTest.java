@@ -0,0 +1,86 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.deegree.feature.Feature;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PagedFeatureInputStream}.
+ * 
+ * @since 3.4
+ */
+public class PagedFeatureInputStreamTest {
+
+    private final Feature[] features = new Feature[] { mock( Feature.class ), mock( Feature.class ),
+                                                      mock( Feature.class ), mock( Feature.class ) };
+
+    private FeatureInputStream createStream() {
+        FeatureInputStream rs = mock( FeatureInputStream.class );
+        when( rs.iterator() ).thenReturn( Arrays.asList( features ).iterator() );
+        return rs;
+    }
+
+    @Test
+    public void testOffsetAndLimit() {
+        Iterator<Feature> iter = new PagedFeatureInputStream( createStream(), 1, 2 ).iterator();
+        assertTrue( iter.hasNext() );
+        assertEquals( features[1], iter.next() );
+        assertEquals( features[2], iter.next() );
+        assertFalse( iter.hasNext() );
+    }
+
+    @Test
+    public void testOffsetWithoutLimit() {
+        Iterator<Feature> iter = new PagedFeatureInputStream( createStream(), 3, -1 ).iterator();
+        assertEquals( features[3], iter.next() );
+        assertFalse( iter.hasNext() );
+    }
+
+    @Test
+    public void testOffsetBeyondEnd() {
+        FeatureInputStream rs = createStream();
+        assertEquals( 0, new PagedFeatureInputStream( rs, 10, -1 ).count() );
+        verify( rs ).close();
+    }
+
+    @Test
+    public void testCount() {
+        assertEquals( 2, new PagedFeatureInputStream( createStream(), 2, 5 ).count() );
+    }
+}
@@ -35,10 +35,14 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.wkbadapter;
 
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamWriter;
@@ -47,8 +51,14 @@ import org.apache.commons.io.IOUtils;
 import org.deegree.commons.xml.CommonNamespaces;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
+import org.deegree.geometry.Geometry;
 import org.deegree.geometry.Geometry.GeometryType;
 import org.deegree.geometry.io.WKBReader;
+import org.deegree.geometry.io.WKBWriter;
+import org.deegree.geometry.io.WKTReader;
+import org.deegree.geometry.multi.MultiPolygon;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
 import org.deegree.geometry.primitive.Polygon;
 import org.deegree.gml.GMLOutputFactory;
 import org.deegree.gml.GMLStreamWriter;
@@ -91,4 +101,68 @@ public class WKBReaderTest {
         String s = "<gml:posList>5.148530 59.951879 5.134692 59.736522 5.561175 59.728897 5.577771 59.944188 5.148530 59.951879</gml:posList>";
         assertTrue( sw.toString().contains( s ) );
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReadMultiPolygonWrittenByWKBWriter()
+                            throws Exception {
+        String wkt = "MULTIPOLYGON(((0 0,10 0,10 10,0 10,0 0),(2 2,2 4,4 4,4 2,2 2)),((20 20,30 20,30 30,20 20)))";
+        Geometry geom = new WKTReader( null ).read( wkt );
+
+        MultiPolygon read = (MultiPolygon) WKBReader.read( WKBWriter.write( geom ), null );
+        assertEquals( 2, read.size() );
+        assertEquals( 1, read.get( 0 ).getInteriorRingsCoordinates().size() );
+        assertEquals( 5, read.get( 0 ).getExteriorRingCoordinates().size() );
+        assertTrue( read.equals( geom ) );
+    }
+
+    @Test
+    public void testReadEWKBWithSridAndZ()
+                            throws Exception {
+        // LINESTRING Z with SRID 4326, little endian
+        ByteBuffer bb = allocate( ByteOrder.LITTLE_ENDIAN, 1 + 4 + 4 + 4 + 2 * 3 * 8 );
+        bb.put( (byte) 1 ).putInt( 2 | 0x80000000 | 0x20000000 ).putInt( 4326 ).putInt( 2 );
+        bb.putDouble( 1 ).putDouble( 2 ).putDouble( 3 ).putDouble( 4 ).putDouble( 5 ).putDouble( 6 );
+
+        LineString ls = (LineString) WKBReader.read( bb.array(), null );
+        assertEquals( 3, ls.getCoordinateDimension() );
+        double[] coords = ls.getControlPoints().getAsArray();
+        assertEquals( 6, coords.length );
+        assertEquals( 6.0, coords[5] );
+    }
+
+    @Test
+    public void testReadISOPointZM()
+                            throws Exception {
+        // POINT ZM, big endian, m value is skipped
+        ByteBuffer bb = allocate( ByteOrder.BIG_ENDIAN, 1 + 4 + 4 * 8 );
+        bb.put( (byte) 0 ).putInt( 3001 ).putDouble( 1 ).putDouble( 2 ).putDouble( 3 ).putDouble( 4 );
+
+        Point p = (Point) WKBReader.read( bb.array(), null );
+        assertEquals( 3, p.getCoordinateDimension() );
+        assertEquals( 1.0, p.get0() );
+        assertEquals( 2.0, p.get1() );
+        assertEquals( 3.0, p.get2() );
+    }
+
+    @Test
+    public void testReadEmptyPoint()
+                            throws Exception {
+        ByteBuffer bb = allocate( ByteOrder.LITTLE_ENDIAN, 1 + 4 + 2 * 8 );
+        bb.put( (byte) 1 ).putInt( 1 ).putDouble( Double.NaN ).putDouble( Double.NaN );
+        assertNull( WKBReader.read( bb.array(), null ) );
+    }
+
+    @Test(expected = com.vividsolutions.jts.io.ParseException.class)
+    public void testReadTruncated()
+                            throws Exception {
+        ByteBuffer bb = allocate( ByteOrder.LITTLE_ENDIAN, 1 + 4 + 4 + 8 );
+        bb.put( (byte) 1 ).putInt( 2 ).putInt( 1000 ).putDouble( 1 );
+        WKBReader.read( bb.array(), null );
+    }
+
+    private static ByteBuffer allocate( ByteOrder order, int size ) {
+        ByteBuffer bb = ByteBuffer.allocate( size );
+        bb.order( order );
+        return bb;
+    }
+}
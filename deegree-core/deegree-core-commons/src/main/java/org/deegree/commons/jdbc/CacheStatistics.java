@@ -0,0 +1,148 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.commons.jdbc;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+
+/**
+ * Hit/miss counters of a cache (e.g. pooled prepared statements), published as a JMX bean with the object name
+ * <code>org.deegree:type=&lt;type&gt;,name=&lt;name&gt;</code> while registered.
+ * 
+ * @since 3.4
+ */
+public class CacheStatistics implements CacheStatisticsMXBean {
+
+    private static final Logger LOG = getLogger( CacheStatistics.class );
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final String type;
+
+    private final String name;
+
+    private ObjectName objectName;
+
+    /**
+     * Creates a new {@link CacheStatistics} instance.
+     * 
+     * @param type
+     *            type of the cache (used in the JMX object name), must not be <code>null</code>
+     * @param name
+     *            name of the cache, e.g. the resource id (used in the JMX object name), must not be <code>null</code>
+     */
+    public CacheStatistics( String type, String name ) {
+        this.type = type;
+        this.name = name;
+    }
+
+    /**
+     * Counts a lookup that could be served from the cache.
+     */
+    public void hit() {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * Counts a lookup that could not be served from the cache.
+     */
+    public void miss() {
+        misses.incrementAndGet();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public void reset() {
+        hits.set( 0 );
+        misses.set( 0 );
+    }
+
+    /**
+     * Publishes the counters via the platform MBean server. Failures (e.g. a bean with the same name already being
+     * registered) are logged, but don't affect the cache.
+     */
+    public synchronized void register() {
+        if ( objectName != null ) {
+            return;
+        }
+        try {
+            ObjectName on = new ObjectName( "org.deegree:type=" + type + ",name=" + ObjectName.quote( name ) );
+            ManagementFactory.getPlatformMBeanServer().registerMBean( this, on );
+            objectName = on;
+        } catch ( Exception e ) {
+            LOG.warn( "Unable to register cache statistics for '{}' via JMX: {}", name, e.getLocalizedMessage() );
+        }
+    }
+
+    /**
+     * Removes the counters from the platform MBean server, if they have been registered.
+     */
+    public synchronized void unregister() {
+        if ( objectName == null ) {
+            return;
+        }
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            mbs.unregisterMBean( objectName );
+        } catch ( Exception e ) {
+            LOG.debug( "Unable to unregister cache statistics for '{}': {}", name, e.getLocalizedMessage() );
+        }
+        objectName = null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format( "%d hits, %d misses (hit rate %.2f)", getHits(), getMisses(), getHitRate() );
+    }
+
+}
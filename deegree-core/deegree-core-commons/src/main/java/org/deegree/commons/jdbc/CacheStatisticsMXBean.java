@@ -0,0 +1,57 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.commons.jdbc;
+
+/**
+ * Management interface of {@link CacheStatistics}, so hit rates of statement/SQL caches can be monitored via JMX.
+ * 
+ * @since 3.4
+ */
+public interface CacheStatisticsMXBean {
+
+    /**
+     * @return the number of lookups that could be served from the cache
+     */
+    long getHits();
+
+    /**
+     * @return the number of lookups that could not be served from the cache
+     */
+    long getMisses();
+
+    /**
+     * @return the fraction of lookups that could be served from the cache (0 if there has been no lookup yet)
+     */
+    double getHitRate();
+
+    /**
+     * Resets the hit and miss counters.
+     */
+    void reset();
+
+}
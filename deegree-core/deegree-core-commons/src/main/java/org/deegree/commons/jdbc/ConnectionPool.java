@@ -46,12 +46,22 @@ import org.apache.commons.dbcp.DelegatingConnection;
 import org.apache.commons.dbcp.DriverManagerConnectionFactory;
 import org.apache.commons.dbcp.PoolableConnectionFactory;
 import org.apache.commons.dbcp.PoolingDataSource;
+import org.apache.commons.pool.KeyedObjectPool;
+import org.apache.commons.pool.KeyedObjectPoolFactory;
+import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.deegree.commons.annotations.LoggingNotes;
 import org.slf4j.Logger;
 
 /**
  * Simple implementation of a JDBC connection pool based on the Apache Commons Pool and DBCP projects.
+ * <p>
+ * Prepared statements are pooled per connection (keyed by their SQL), so statements with the same SQL (e.g. from
+ * queries that only differ in their parameter values) are prepared only once per connection. The maximum number of
+ * pooled statements per connection can be set with the system property <code>deegree.jdbc.statementcache.size</code>
+ * (default is 100, 0 disables the pooling). The hits and misses of the statement pool are published via JMX as
+ * <code>org.deegree:type=StatementPool,name=&lt;id&gt;</code>.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author: schneider $
@@ -63,12 +73,16 @@ public class ConnectionPool {
 
     private static final Logger LOG = getLogger( ConnectionPool.class );
 
+    private static final int STATEMENT_CACHE_SIZE = getStatementCacheSize();
+
     private final String id;
 
     private final PoolingDataSource ds;
 
     private final GenericObjectPool<Connection> pool;
 
+    private final CacheStatistics statementStats;
+
     /**
      * Creates a new {@link ConnectionPool} instance.
      * 
@@ -82,15 +96,39 @@ public class ConnectionPool {
      */
     public ConnectionPool( String id, String connectURI, String user, String password, boolean readOnly, int minIdle,
                     int maxActive ) {
+        this( id, connectURI, user, password, readOnly, minIdle, maxActive, STATEMENT_CACHE_SIZE );
+    }
+
+    /**
+     * Creates a new {@link ConnectionPool} instance.
+     * 
+     * @param id
+     * @param connectURI
+     * @param user
+     * @param password
+     * @param readOnly
+     * @param minIdle
+     * @param maxActive
+     * @param maxStatements
+     *            maximum number of prepared statements pooled per connection, 0 disables statement pooling
+     */
+    public ConnectionPool( String id, String connectURI, String user, String password, boolean readOnly, int minIdle,
+                    int maxActive, int maxStatements ) {
 
         this.id = id;
+        statementStats = new CacheStatistics( "StatementPool", id );
         pool = new GenericObjectPool<Connection>( null );
         pool.setMinIdle( minIdle );
         pool.setMaxActive( maxActive );
 
         ConnectionFactory connectionFactory = new DriverManagerConnectionFactory( connectURI, user, password );
+        KeyedObjectPoolFactory<Object, Object> statementPoolFactory = null;
+        if ( maxStatements > 0 ) {
+            statementPoolFactory = new StatementPoolFactory( maxStatements );
+            statementStats.register();
+        }
         // TODO make this configurable
-        new PoolableConnectionFactory( connectionFactory, pool, null, null, readOnly, true );
+        new PoolableConnectionFactory( connectionFactory, pool, statementPoolFactory, null, readOnly, true );
         ds = new PoolingDataSource( pool );
         // needed, so users can retrieve the underlying connection from pooled
         // connections, e.g. to access the
@@ -106,8 +144,10 @@ public class ConnectionPool {
      */
     public Connection getConnection()
                             throws SQLException {
-        LOG.debug( "For connection id '{}': active connections: {}, idle connections: {}",
-                   new Object[] { id, pool.getNumActive(), pool.getNumIdle() } );
+        if ( LOG.isDebugEnabled() ) {
+            LOG.debug( "For connection id '{}': active connections: {}, idle connections: {}, statement cache hit rate: {}",
+                       new Object[] { id, pool.getNumActive(), pool.getNumIdle(), statementStats.getHitRate() } );
+        }
         return ds.getConnection();
     }
 
@@ -116,6 +156,7 @@ public class ConnectionPool {
      */
     public void destroy()
                             throws Exception {
+        statementStats.unregister();
         pool.close();
     }
 
@@ -124,4 +165,78 @@ public class ConnectionPool {
         conn.getDelegate().close();
         pool.invalidateObject( conn );
     }
+
+    /**
+     * @return the number of prepared statements that have been taken from the statement pool
+     */
+    public long getStatementCacheHits() {
+        return statementStats.getHits();
+    }
+
+    /**
+     * @return the number of prepared statements that had to be prepared, because none was pooled
+     */
+    public long getStatementCacheMisses() {
+        return statementStats.getMisses();
+    }
+
+    /**
+     * @return the fraction of prepared statements that have been taken from the statement pool (0 if none has been
+     *         requested yet)
+     */
+    public double getStatementCacheHitRate() {
+        return statementStats.getHitRate();
+    }
+
+    /**
+     * Returns the maximum number of prepared statements to pool per connection, as configured by the system property
+     * <code>deegree.jdbc.statementcache.size</code>.
+     * 
+     * @return maximum number of pooled statements per connection, 0 if statement pooling is disabled
+     */
+    public static int getStatementCacheSize() {
+        String size = System.getProperty( "deegree.jdbc.statementcache.size" );
+        if ( size != null ) {
+            try {
+                return Integer.parseInt( size );
+            } catch ( NumberFormatException e ) {
+                LOG.warn( "Ignoring invalid statement cache size '{}'.", size );
+            }
+        }
+        return 100;
+    }
+
+    /**
+     * Creates the statement pools of the connections, the pools count whether a statement could be reused.
+     */
+    private class StatementPoolFactory implements KeyedObjectPoolFactory<Object, Object> {
+
+        private final int maxStatements;
+
+        StatementPoolFactory( int maxStatements ) {
+            this.maxStatements = maxStatements;
+        }
+
+        @Override
+        public KeyedObjectPool<Object, Object> createPool() {
+            // the factory is set by the pooling connection, the least recently used statements are closed when the
+            // maximum number is reached
+            GenericKeyedObjectPool<Object, Object> statements = new GenericKeyedObjectPool<Object, Object>( null ) {
+                @Override
+                public Object borrowObject( Object key )
+                                        throws Exception {
+                    if ( getNumIdle( key ) > 0 ) {
+                        statementStats.hit();
+                    } else {
+                        statementStats.miss();
+                    }
+                    return super.borrowObject( key );
+                }
+            };
+            statements.setMaxActive( -1 );
+            statements.setMaxTotal( maxStatements );
+            statements.setWhenExhaustedAction( GenericKeyedObjectPool.WHEN_EXHAUSTED_GROW );
+            return statements;
+        }
+    }
 }
@@ -35,21 +35,44 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.geometry.Geometry;
-import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.standard.multi.DefaultMultiGeometry;
+import org.deegree.geometry.standard.multi.DefaultMultiLineString;
+import org.deegree.geometry.standard.multi.DefaultMultiPoint;
+import org.deegree.geometry.standard.multi.DefaultMultiPolygon;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.geometry.standard.primitive.DefaultLineString;
+import org.deegree.geometry.standard.primitive.DefaultLinearRing;
 import org.deegree.geometry.standard.primitive.DefaultPoint;
+import org.deegree.geometry.standard.primitive.DefaultPolygon;
 
-import com.vividsolutions.jts.io.InputStreamInStream;
 import com.vividsolutions.jts.io.ParseException;
 
 /**
  * Reads {@link Geometry} objects encoded as Well-Known Binary (WKB).
+ * <p>
+ * Besides plain (OGC SFS) WKB, the PostGIS EWKB variant (optional SRID, Z and M flags in the type code) and the ISO
+ * SQL/MM type codes for Z and M geometries are understood. The coordinates are decoded directly into
+ * {@link PackedPoints}. M values are skipped, the SRID is ignored (the geometries use the given CRS). Empty geometries
+ * are returned as <code>null</code>, empty members of multi geometries are omitted.
+ * </p>
  * 
- * TODO re-implement without delegating to JTS TODO add support for non-SFS geometries (e.g. non-linear curves)
+ * TODO add support for non-SFS geometries (e.g. non-linear curves)
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -58,20 +81,230 @@ import com.vividsolutions.jts.io.ParseException;
  */
 public class WKBReader {
 
-    // TODO remove the need for this object
-    private static AbstractDefaultGeometry defaultGeom = new DefaultPoint( null, null, null, new double[] { 0.0, 0.0 } );
+    private static final int WKB_POINT = 1;
 
+    private static final int WKB_LINESTRING = 2;
+
+    private static final int WKB_POLYGON = 3;
+
+    private static final int WKB_MULTIPOINT = 4;
+
+    private static final int WKB_MULTILINESTRING = 5;
+
+    private static final int WKB_MULTIPOLYGON = 6;
+
+    private static final int WKB_GEOMETRYCOLLECTION = 7;
+
+    private static final int EWKB_Z = 0x80000000;
+
+    private static final int EWKB_M = 0x40000000;
+
+    private static final int EWKB_SRID = 0x20000000;
+
+    private static final int EWKB_FLAGS = EWKB_Z | EWKB_M | EWKB_SRID;
+
+    /**
+     * Decodes the given WKB/EWKB.
+     * 
+     * @param wkb
+     *            encoded geometry, must not be <code>null</code>
+     * @param crs
+     *            crs of the geometry, may be <code>null</code>
+     * @return decoded geometry, <code>null</code> for empty geometries
+     * @throws ParseException
+     *             if the WKB is invalid or contains unsupported geometry types
+     */
     public static Geometry read( byte[] wkb, ICRS crs )
                             throws ParseException {
-        // com.vividsolutions.jts.io.WKBReader() is not thread safe        
-        return defaultGeom.createFromJTS( new com.vividsolutions.jts.io.WKBReader().read( wkb ), crs );
+        try {
+            return new Decoder( ByteBuffer.wrap( wkb ), crs ).readGeometry();
+        } catch ( BufferUnderflowException e ) {
+            throw new ParseException( "Unexpected end of WKB data." );
+        }
     }
 
+    /**
+     * Decodes the WKB/EWKB from the given stream.
+     * 
+     * @param is
+     *            stream to read from, must not be <code>null</code>
+     * @param crs
+     *            crs of the geometry, may be <code>null</code>
+     * @return decoded geometry, <code>null</code> for empty geometries
+     * @throws IOException
+     *             if reading from the stream fails
+     * @throws ParseException
+     *             if the WKB is invalid or contains unsupported geometry types
+     */
     public static Geometry read( InputStream is, ICRS crs )
                             throws IOException, ParseException {
-        // com.vividsolutions.jts.io.WKBReader() is not thread safe
-        return defaultGeom.createFromJTS(
-                                          new com.vividsolutions.jts.io.WKBReader().read( new InputStreamInStream( is ) ),
-                                          crs );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int read;
+        while ( ( read = is.read( buf ) ) != -1 ) {
+            bos.write( buf, 0, read );
+        }
+        return read( bos.toByteArray(), crs );
+    }
+
+    private static class Decoder {
+
+        private final ByteBuffer buffer;
+
+        private final ICRS crs;
+
+        private Decoder( ByteBuffer buffer, ICRS crs ) {
+            this.buffer = buffer;
+            this.crs = crs;
+        }
+
+        private Geometry readGeometry()
+                                throws ParseException {
+            // byte order may differ for every (nested) geometry
+            byte byteOrder = buffer.get();
+            if ( byteOrder == 0 ) {
+                buffer.order( ByteOrder.BIG_ENDIAN );
+            } else if ( byteOrder == 1 ) {
+                buffer.order( ByteOrder.LITTLE_ENDIAN );
+            } else {
+                throw new ParseException( "Invalid WKB byte order: " + byteOrder + "." );
+            }
+
+            int typeCode = buffer.getInt();
+            boolean hasZ = ( typeCode & EWKB_Z ) != 0;
+            boolean hasM = ( typeCode & EWKB_M ) != 0;
+            if ( ( typeCode & EWKB_SRID ) != 0 ) {
+                // the crs is provided by the caller
+                buffer.getInt();
+            }
+            int type = typeCode & ~EWKB_FLAGS;
+            // ISO SQL/MM: 1000 (Z), 2000 (M), 3000 (ZM)
+            int isoDims = type / 1000;
+            type = type % 1000;
+            hasZ |= isoDims == 1 || isoDims == 3;
+            hasM |= isoDims == 2 || isoDims == 3;
+
+            switch ( type ) {
+            case WKB_POINT:
+                return readPoint( hasZ, hasM );
+            case WKB_LINESTRING:
+                return readLineString( hasZ, hasM );
+            case WKB_POLYGON:
+                return readPolygon( hasZ, hasM );
+            case WKB_MULTIPOINT: {
+                List<Point> members = readMembers( Point.class );
+                return members.isEmpty() ? null : new DefaultMultiPoint( null, crs, null, members );
+            }
+            case WKB_MULTILINESTRING: {
+                List<LineString> members = readMembers( LineString.class );
+                return members.isEmpty() ? null : new DefaultMultiLineString( null, crs, null, members );
+            }
+            case WKB_MULTIPOLYGON: {
+                List<Polygon> members = readMembers( Polygon.class );
+                return members.isEmpty() ? null : new DefaultMultiPolygon( null, crs, null, members );
+            }
+            case WKB_GEOMETRYCOLLECTION: {
+                List<Geometry> members = readMembers( Geometry.class );
+                return members.isEmpty() ? null : new DefaultMultiGeometry<Geometry>( null, crs, null, members );
+            }
+            default:
+                throw new ParseException( "Unsupported WKB geometry type: " + type + "." );
+            }
+        }
+
+        private Point readPoint( boolean hasZ, boolean hasM ) {
+            double x = buffer.getDouble();
+            double y = buffer.getDouble();
+            double[] coords;
+            if ( hasZ ) {
+                coords = new double[] { x, y, buffer.getDouble() };
+            } else {
+                coords = new double[] { x, y };
+            }
+            if ( hasM ) {
+                buffer.getDouble();
+            }
+            if ( Double.isNaN( x ) && Double.isNaN( y ) ) {
+                // empty point
+                return null;
+            }
+            return new DefaultPoint( null, crs, null, coords );
+        }
+
+        private LineString readLineString( boolean hasZ, boolean hasM )
+                                throws ParseException {
+            Points points = readPoints( hasZ, hasM );
+            if ( points.size() == 0 ) {
+                return null;
+            }
+            return new DefaultLineString( null, crs, null, points );
+        }
+
+        private Polygon readPolygon( boolean hasZ, boolean hasM )
+                                throws ParseException {
+            int numRings = readCount( 4 );
+            if ( numRings == 0 ) {
+                return null;
+            }
+            Ring exterior = new DefaultLinearRing( null, crs, null, readPoints( hasZ, hasM ) );
+            List<Ring> interiors = new ArrayList<Ring>( numRings - 1 );
+            for ( int i = 1; i < numRings; i++ ) {
+                interiors.add( new DefaultLinearRing( null, crs, null, readPoints( hasZ, hasM ) ) );
+            }
+            return new DefaultPolygon( null, crs, null, exterior, interiors );
+        }
+
+        private Points readPoints( boolean hasZ, boolean hasM )
+                                throws ParseException {
+            int dim = hasZ ? 3 : 2;
+            int stride = hasM ? dim + 1 : dim;
+            int numPoints = readCount( stride * 8 );
+            double[] coords = new double[numPoints * dim];
+            if ( stride == dim ) {
+                buffer.asDoubleBuffer().get( coords );
+                buffer.position( buffer.position() + coords.length * 8 );
+            } else {
+                int idx = 0;
+                for ( int i = 0; i < numPoints; i++ ) {
+                    for ( int d = 0; d < dim; d++ ) {
+                        coords[idx++] = buffer.getDouble();
+                    }
+                    // skip m
+                    buffer.getDouble();
+                }
+            }
+            return new PackedPoints( crs, coords, dim );
+        }
+
+        private <T extends Geometry> List<T> readMembers( Class<T> memberType )
+                                throws ParseException {
+            int numMembers = readCount( 9 );
+            List<T> members = new ArrayList<T>( numMembers );
+            for ( int i = 0; i < numMembers; i++ ) {
+                Geometry member = readGeometry();
+                if ( member == null ) {
+                    continue;
+                }
+                if ( !memberType.isInstance( member ) ) {
+                    throw new ParseException( "Invalid WKB member geometry type: " + member.getClass().getSimpleName()
+                                              + "." );
+                }
+                members.add( memberType.cast( member ) );
+            }
+            return members;
+        }
+
+        /**
+         * Reads an element count and checks it against the remaining bytes, so invalid data can't cause huge
+         * allocations.
+         */
+        private int readCount( int minBytesPerElement )
+                                throws ParseException {
+            int count = buffer.getInt();
+            if ( count < 0 || (long) count * minBytesPerElement > buffer.remaining() ) {
+                throw new ParseException( "Invalid WKB element count: " + count + "." );
+            }
+            return count;
+        }
     }
-}
\ No newline at end of file
+}
@@ -50,6 +50,19 @@ import org.deegree.geometry.Geometry;
  */
 public interface GeometryParticleConverter extends ParticleConverter<Geometry> {
 
+    /**
+     * Returns the select snippet for geometries that are only needed up to the given precision (e.g. for rendering at
+     * a small scale). Implementations may simplify the geometries in the database to reduce the amount of data that
+     * needs to be transferred and decoded.
+     * 
+     * @param tableAlias
+     *            alias of the table that contains the geometry column, may be <code>null</code>
+     * @param tolerance
+     *            maximum distance (in units of the storage CRS) by which the geometries may be simplified
+     * @return the select snippet, may be the same as {@link #getSelectSnippet(String)}
+     */
+    public String getSelectSnippet( String tableAlias, double tolerance );
+
     public String getSrid();
 
     public ICRS getCrs();
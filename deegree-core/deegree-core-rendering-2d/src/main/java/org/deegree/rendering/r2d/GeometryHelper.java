@@ -41,12 +41,14 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.rendering.r2d;
 
+import static java.awt.geom.Path2D.WIND_NON_ZERO;
 import static org.deegree.commons.utils.math.MathUtils.isZero;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D.Double;
-import java.util.Iterator;
+import java.awt.geom.Rectangle2D;
 
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.exceptions.TransformationException;
@@ -58,7 +60,6 @@ import org.deegree.geometry.linearization.GeometryLinearizer;
 import org.deegree.geometry.linearization.NumPointsCriterion;
 import org.deegree.geometry.points.Points;
 import org.deegree.geometry.primitive.Curve;
-import org.deegree.geometry.primitive.Point;
 import org.deegree.geometry.primitive.Surface;
 import org.slf4j.Logger;
 
@@ -76,10 +77,18 @@ class GeometryHelper {
 
     private static final GeometryLinearizer linearizer = new GeometryLinearizer();
 
+    /**
+     * Default distance in pixels below which consecutive vertices are merged, can be overridden using the system
+     * property <code>deegree.rendering.generalization.tolerance</code>.
+     */
+    static final double DEFAULT_GENERALIZATION_TOLERANCE = getDefaultTolerance();
+
     private GeometryTransformer transformer;
 
     private AffineTransform worldToScreen;
 
+    private double tolerance = DEFAULT_GENERALIZATION_TOLERANCE;
+
     GeometryHelper( Envelope bbox, int width, AffineTransform worldToScreen ) {
         this.worldToScreen = worldToScreen;
         try {
@@ -92,36 +101,91 @@ class GeometryHelper {
         }
     }
 
-    Double fromCurve( Curve curve, boolean close ) {
-        Double line = new Double();
+    /**
+     * Sets the tolerance for the generalization done in {@link #fromCurve(Curve, boolean)}.
+     * 
+     * @param tolerance
+     *            the distance in pixels below which consecutive vertices are merged, a value <= 0 disables the
+     *            generalization
+     */
+    void setGeneralizationTolerance( double tolerance ) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @return the distance in pixels below which consecutive vertices are merged
+     */
+    double getGeneralizationTolerance() {
+        return tolerance;
+    }
 
+    /**
+     * Creates a path in screen coordinates from the curve. Vertices that are closer than the generalization tolerance
+     * to the previously emitted vertex are dropped while transforming, the first and last vertex are always kept.
+     * 
+     * @param curve
+     * @param close
+     *            whether to close the path if the curve is closed
+     * @return the path in screen coordinates
+     */
+    Double fromCurve( Curve curve, boolean close ) {
         // TODO use error criterion
         ICRS crs = curve.getCoordinateSystem();
         curve = linearizer.linearize( curve, new NumPointsCriterion( 100 ) );
         curve.setCoordinateSystem( crs );
         Points points = curve.getControlPoints();
-        Iterator<Point> iter = points.iterator();
-        Point p = iter.next();
-        double x = p.get0(), y = p.get1();
-        line.moveTo( x, y );
-        while ( iter.hasNext() ) {
-            p = iter.next();
-            if ( iter.hasNext() ) {
-                line.lineTo( p.get0(), p.get1() );
+        int size = points.size();
+        Double line = new Double( WIND_NON_ZERO, Math.max( size, 2 ) );
+        if ( size == 0 ) {
+            return line;
+        }
+
+        double m00 = worldToScreen.getScaleX(), m01 = worldToScreen.getShearX(), m02 = worldToScreen.getTranslateX();
+        double m10 = worldToScreen.getShearY(), m11 = worldToScreen.getScaleY(), m12 = worldToScreen.getTranslateY();
+        double sqTolerance = tolerance > 0 ? tolerance * tolerance : 0;
+
+        double x = points.getX( 0 ), y = points.getY( 0 );
+        double lastX = m00 * x + m01 * y + m02;
+        double lastY = m10 * x + m11 * y + m12;
+        line.moveTo( lastX, lastY );
+        for ( int i = 1; i < size - 1; ++i ) {
+            double wx = points.getX( i ), wy = points.getY( i );
+            double sx = m00 * wx + m01 * wy + m02;
+            double sy = m10 * wx + m11 * wy + m12;
+            double dx = sx - lastX, dy = sy - lastY;
+            if ( dx * dx + dy * dy < sqTolerance ) {
+                continue;
+            }
+            line.lineTo( sx, sy );
+            lastX = sx;
+            lastY = sy;
+        }
+        if ( size > 1 ) {
+            double wx = points.getX( size - 1 ), wy = points.getY( size - 1 );
+            if ( close && isZero( x - wx ) && isZero( y - wy ) ) {
+                line.closePath();
             } else {
-                if ( close && isZero( x - p.get0() ) && isZero( y - p.get1() ) ) {
-                    line.closePath();
-                } else {
-                    line.lineTo( p.get0(), p.get1() );
-                }
+                line.lineTo( m00 * wx + m01 * wy + m02, m10 * wx + m11 * wy + m12 );
             }
         }
 
-        line.transform( worldToScreen );
-
         return line;
     }
 
+    /**
+     * @param path
+     *            a path in screen coordinates
+     * @return true, if the generalization is enabled and the path's extent is smaller than the tolerance in both
+     *         directions
+     */
+    boolean isBelowTolerance( Shape path ) {
+        if ( tolerance <= 0 ) {
+            return false;
+        }
+        Rectangle2D bounds = path.getBounds2D();
+        return bounds.getWidth() < tolerance && bounds.getHeight() < tolerance;
+    }
+
     <T extends Geometry> T transform( T g ) {
         if ( g == null ) {
             LOG.warn( "Trying to transform null geometry." );
@@ -168,6 +232,18 @@ class GeometryHelper {
         return g;
     }
 
+    private static double getDefaultTolerance() {
+        String tolerance = System.getProperty( "deegree.rendering.generalization.tolerance" );
+        if ( tolerance != null ) {
+            try {
+                return java.lang.Double.parseDouble( tolerance );
+            } catch ( NumberFormatException e ) {
+                LOG.warn( "Ignoring invalid generalization tolerance '{}'.", tolerance );
+            }
+        }
+        return 0.5;
+    }
+
     private <T extends Geometry> T transformLinearized( T g ) {
         if ( g instanceof Surface ) {
             @SuppressWarnings("unchecked")
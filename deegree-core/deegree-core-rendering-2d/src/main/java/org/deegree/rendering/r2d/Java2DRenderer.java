@@ -138,6 +138,20 @@ public class Java2DRenderer implements Renderer {
         rendererContext = new RendererContext( pixelSize, res, graphics, this, bbox, width, worldToScreen );
     }
 
+    /**
+     * Sets the distance in screen pixels below which consecutive vertices of lines and polygon rings are merged during
+     * the world to screen transformation. Polygons with an exterior ring smaller than the tolerance are rendered as a
+     * single pixel. Defaults to 0.5.
+     * 
+     * @param tolerance
+     *            the tolerance in pixels, a value <= 0 disables the generalization
+     */
+    public void setGeneralizationTolerance( double tolerance ) {
+        if ( rendererContext.geomHelper != null ) {
+            rendererContext.geomHelper.setGeneralizationTolerance( tolerance );
+        }
+    }
+
     @Override
     public void render( final PointStyling styling, final Geometry geom ) {
         if ( geom == null ) {
@@ -46,6 +46,7 @@ import static java.awt.geom.Path2D.WIND_EVEN_ODD;
 import java.awt.Graphics2D;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Path2D.Double;
+import java.awt.geom.Rectangle2D;
 import java.util.LinkedList;
 
 import org.deegree.geometry.primitive.Curve;
@@ -96,9 +97,18 @@ class PolygonRenderer {
                 GeneralPath polygon = new GeneralPath( WIND_EVEN_ODD );
                 for ( Curve curve : polygonPatch.getBoundaryRings() ) {
                     Double d = geomHelper.fromCurve( curve, true );
+                    if ( lines.isEmpty() && canCollapse( styling ) && geomHelper.isBelowTolerance( d ) ) {
+                        // the exterior ring fits into a single pixel, so the holes are invisible and the outline
+                        // degenerates to the stroke around that pixel
+                        renderCollapsed( styling, d.getBounds2D() );
+                        break;
+                    }
                     lines.add( d );
                     polygon.append( d, false );
                 }
+                if ( lines.isEmpty() ) {
+                    continue;
+                }
 
                 fillRenderer.applyFill( styling.fill, styling.uom );
                 graphics.fill( polygon );
@@ -112,6 +122,23 @@ class PolygonRenderer {
         }
     }
 
+    // graphic strokes need the real outline to place their graphics along it
+    private static boolean canCollapse( PolygonStyling styling ) {
+        return styling.stroke == null || styling.stroke.stroke == null;
+    }
+
+    private void renderCollapsed( PolygonStyling styling, Rectangle2D bounds ) {
+        Rectangle2D.Double pixel = new Rectangle2D.Double( Math.floor( bounds.getCenterX() ),
+                                                           Math.floor( bounds.getCenterY() ), 1, 1 );
+        if ( styling.fill != null ) {
+            fillRenderer.applyFill( styling.fill, styling.uom );
+            graphics.fill( pixel );
+        }
+        if ( styling.stroke != null ) {
+            strokeRenderer.applyStroke( styling.stroke, styling.uom, pixel, 0, null );
+        }
+    }
+
     void render( PointStyling styling, Surface surface ) {
         for ( SurfacePatch patch : surface.getPatches() ) {
             if ( patch instanceof PolygonPatch ) {
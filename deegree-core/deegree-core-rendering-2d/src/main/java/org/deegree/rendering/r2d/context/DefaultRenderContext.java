@@ -63,6 +63,7 @@ import org.deegree.rendering.r2d.Java2DTextRenderer;
 import org.deegree.rendering.r2d.Java2DLabelRenderer;
 import org.deegree.rendering.r2d.Java2DTileRenderer;
 import org.deegree.rendering.r2d.labelplacement.AutoLabelPlacement;
+import org.deegree.rendering.r2d.png.PngEncoder;
 import org.deegree.style.utils.ImageUtils;
 
 /**
@@ -92,7 +93,10 @@ public class DefaultRenderContext implements RenderContext {
 
     private String format;
 
+    private final RenderingInfo info;
+
     public DefaultRenderContext( RenderingInfo info ) {
+        this.info = info;
         format = info.getFormat();
         image = ImageUtils.prepareImage( format, info.getWidth(), info.getHeight(), info.getTransparent(),
                                          info.getBgColor() );
@@ -155,13 +159,15 @@ public class DefaultRenderContext implements RenderContext {
         try {
             graphics.dispose();
             if ( out != null ) {
+                PngEncoder encoder = PngEncoder.forFormat( this.format );
+                if ( encoder != null ) {
+                    encoder.encode( image, out );
+                    return true;
+                }
                 String format = this.format.substring( this.format.indexOf( "/" ) + 1 );
                 if ( format.equals( "x-ms-bmp" ) ) {
                     format = "bmp";
                 }
-                if ( format.equals( "png; subtype=8bit" ) || format.equals( "png; mode=8bit" ) ) {
-                    format = "png";
-                }
                 return write( image, format, out );
             }
         } finally {
@@ -170,6 +176,33 @@ public class DefaultRenderContext implements RenderContext {
         return false;
     }
 
+    /**
+     * Creates a context that renders into a separate transparent image of the same size and extent. Layers can be
+     * rendered into such contexts concurrently, and then be painted into this context with
+     * {@link #paintLayer(DefaultRenderContext)}.
+     * 
+     * @return a new context, never <code>null</code>
+     */
+    public DefaultRenderContext createLayerContext() {
+        return new DefaultRenderContext( new RenderingInfo( "image/png", info.getWidth(), info.getHeight(), true,
+                                                            null, info.getEnvelope(), info.getPixelSize(),
+                                                            info.getParameterMap() ) );
+    }
+
+    /**
+     * Paints the image of a context created with {@link #createLayerContext()} into this context, and takes over its
+     * labels, so they are placed along with the labels of all other layers by {@link #optimizeAndDrawLabels()}. The
+     * layer context must not be used afterwards.
+     * 
+     * @param layer
+     *            the layer context, must not be <code>null</code>
+     */
+    public void paintLayer( DefaultRenderContext layer ) {
+        layer.graphics.dispose();
+        graphics.drawImage( layer.image, 0, 0, null );
+        labelRenderer.getLabels().addAll( layer.labelRenderer.getLabels() );
+    }
+
     @Override
     public void paintImage( BufferedImage img ) {
         graphics.drawImage( img, 0, 0, null );
@@ -39,6 +39,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.deegree.rendering.r2d.Label;
@@ -47,6 +48,8 @@ import org.deegree.rendering.r2d.RendererContext;
 import org.deegree.rendering.r2d.Java2DRenderer;
 import org.deegree.style.utils.UomCalculator;
 
+import com.vividsolutions.jts.geom.Envelope;
+
 /**
  * <code>Automatic Label Placement, based on org.deegree.graphics.optimizers.LabelOptimizer from deegree2 </code>
  * 
@@ -68,8 +71,11 @@ public class AutoLabelPlacement {
 
     private ArrayList<PointLabelPositionOptions> labelPositionsList;
     
-    // collision matrix of PointLabelPositionOptions that may overlap
-    private boolean[][] collisionMatrix;
+    // indices of the PointLabelPositionOptions that may overlap, the neighbours of label i are stored in
+    // neighbours[neighbourOffsets[i]] to neighbours[neighbourOffsets[i + 1] - 1] in ascending order
+    private int[] neighbourOffsets;
+
+    private int[] neighbours;
     
     float placementQuality = 0.0f;
     int intersectionQuality = 0;
@@ -94,7 +100,7 @@ public class AutoLabelPlacement {
         LOG.debug( "Added "+labelPositionsList.size() + " Labels of " + labelList.size() + " to auto placement" );
     
         if( labelPositionsList.size() > 1 ){
-            buildCollisionMatrix();
+            buildNeighbours();
     
             // do the magic
             try {
@@ -178,26 +184,158 @@ public class AutoLabelPlacement {
     }
 
     /**
-     * Builds the collision matrix for all <code>PointLabelPositionOptions</code>.
+     * Finds all pairs of <code>PointLabelPositionOptions</code> that may overlap. The bounding boxes of all possible
+     * positions are put into a uniform grid, so only labels sharing a grid cell need to be compared.
      */
-    private void buildCollisionMatrix() {
-        
+    private void buildNeighbours() {
+
         long now = System.currentTimeMillis();
-        collisionMatrix = new boolean[labelPositionsList.size()][labelPositionsList.size()];
-        
-        for ( int i = 0; i < labelPositionsList.size(); i++ ) {
+        int n = labelPositionsList.size();
+
+        double[] boxes = new double[n * 4];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        double sumWidth = 0, sumHeight = 0;
+        for ( int i = 0; i < n; i++ ) {
+            PointLabelPositionOptions choice = labelPositionsList.get( i );
+            if ( choice.label.getStyling().rotation != 0 ) {
+                // rotated labels are tested against their rotated polygon, so the grid needs its envelope
+                Envelope env = choice.totalPolygon.getEnvelopeInternal();
+                boxes[i * 4] = env.getMinX();
+                boxes[i * 4 + 1] = env.getMinY();
+                boxes[i * 4 + 2] = env.getMaxX();
+                boxes[i * 4 + 3] = env.getMaxY();
+            } else {
+                boxes[i * 4] = choice.getMinX();
+                boxes[i * 4 + 1] = choice.getMinY();
+                boxes[i * 4 + 2] = choice.getMaxX();
+                boxes[i * 4 + 3] = choice.getMaxY();
+            }
+            minX = Math.min( minX, boxes[i * 4] );
+            minY = Math.min( minY, boxes[i * 4 + 1] );
+            maxX = Math.max( maxX, boxes[i * 4 + 2] );
+            maxY = Math.max( maxY, boxes[i * 4 + 3] );
+            sumWidth += boxes[i * 4 + 2] - boxes[i * 4];
+            sumHeight += boxes[i * 4 + 3] - boxes[i * 4 + 1];
+        }
+
+        // cells about the size of an average label, but no more than 2 * sqrt(n) cells per axis
+        int maxCells = (int) Math.ceil( 2 * Math.sqrt( n ) );
+        int cols = getNumberOfCells( maxX - minX, sumWidth / n, maxCells );
+        int rows = getNumberOfCells( maxY - minY, sumHeight / n, maxCells );
+        double cellWidth = ( maxX - minX ) / cols;
+        double cellHeight = ( maxY - minY ) / rows;
+
+        // the cell ranges of each label
+        int[] cells = new int[n * 4];
+        int[] cellOffsets = new int[cols * rows + 1];
+        for ( int i = 0; i < n; i++ ) {
+            cells[i * 4] = getCell( boxes[i * 4], minX, cellWidth, cols );
+            cells[i * 4 + 1] = getCell( boxes[i * 4 + 1], minY, cellHeight, rows );
+            cells[i * 4 + 2] = getCell( boxes[i * 4 + 2], minX, cellWidth, cols );
+            cells[i * 4 + 3] = getCell( boxes[i * 4 + 3], minY, cellHeight, rows );
+            for ( int y = cells[i * 4 + 1]; y <= cells[i * 4 + 3]; y++ ) {
+                for ( int x = cells[i * 4]; x <= cells[i * 4 + 2]; x++ ) {
+                    cellOffsets[y * cols + x + 1]++;
+                }
+            }
+        }
+        for ( int c = 0; c < cols * rows; c++ ) {
+            cellOffsets[c + 1] += cellOffsets[c];
+        }
+        int[] cellContents = new int[cellOffsets[cols * rows]];
+        int[] fill = new int[cols * rows];
+        for ( int i = 0; i < n; i++ ) {
+            for ( int y = cells[i * 4 + 1]; y <= cells[i * 4 + 3]; y++ ) {
+                for ( int x = cells[i * 4]; x <= cells[i * 4 + 2]; x++ ) {
+                    int c = y * cols + x;
+                    cellContents[cellOffsets[c] + fill[c]++] = i;
+                }
+            }
+        }
+
+        // collect the overlapping pairs, each pair is compared once even if the labels share several cells
+        int[] lastCompared = new int[n];
+        Arrays.fill( lastCompared, -1 );
+        int[] pairs = new int[Math.max( 16, n * 2 )];
+        int numPairs = 0;
+        int[] degrees = new int[n];
+        for ( int i = 0; i < n; i++ ) {
             PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            
-            for ( int j = i + 1; j < labelPositionsList.size(); j++ ) {
-                PointLabelPositionOptions choice2 = labelPositionsList.get( j );
-                collisionMatrix[i][j] = choice1.intersectsAny( choice2 );
+            for ( int y = cells[i * 4 + 1]; y <= cells[i * 4 + 3]; y++ ) {
+                for ( int x = cells[i * 4]; x <= cells[i * 4 + 2]; x++ ) {
+                    int c = y * cols + x;
+                    for ( int k = cellOffsets[c]; k < cellOffsets[c + 1]; k++ ) {
+                        int j = cellContents[k];
+                        if ( j <= i || lastCompared[j] == i ) {
+                            continue;
+                        }
+                        lastCompared[j] = i;
+                        if ( choice1.intersectsAny( labelPositionsList.get( j ) ) ) {
+                            if ( numPairs * 2 == pairs.length ) {
+                                pairs = Arrays.copyOf( pairs, pairs.length * 2 );
+                            }
+                            pairs[numPairs * 2] = i;
+                            pairs[numPairs * 2 + 1] = j;
+                            numPairs++;
+                            degrees[i]++;
+                            degrees[j]++;
+                        }
+                    }
+                }
             }
-            
         }
-        
-        LOG.debug( "Building of collision matrix took: " + ( System.currentTimeMillis() - now ) + " millis." );
+
+        neighbourOffsets = new int[n + 1];
+        for ( int i = 0; i < n; i++ ) {
+            neighbourOffsets[i + 1] = neighbourOffsets[i] + degrees[i];
+        }
+        neighbours = new int[numPairs * 2];
+        Arrays.fill( degrees, 0 );
+        for ( int p = 0; p < numPairs; p++ ) {
+            int i = pairs[p * 2], j = pairs[p * 2 + 1];
+            neighbours[neighbourOffsets[i] + degrees[i]++] = j;
+            neighbours[neighbourOffsets[j] + degrees[j]++] = i;
+        }
+        for ( int i = 0; i < n; i++ ) {
+            Arrays.sort( neighbours, neighbourOffsets[i], neighbourOffsets[i + 1] );
+        }
+
+        LOG.debug( "Finding " + numPairs + " possibly overlapping label pairs in a " + cols + "x" + rows
+                   + " grid took: " + ( System.currentTimeMillis() - now ) + " millis." );
     }
-    
+
+    /**
+     * @return the label positions taking part in the automatic placement
+     */
+    List<PointLabelPositionOptions> getLabelPositions() {
+        return labelPositionsList;
+    }
+
+    /**
+     * @return true, if the possible positions of the labels with the given indices overlap
+     */
+    boolean mayOverlap( int i, int j ) {
+        if ( neighbourOffsets == null ) {
+            return false;
+        }
+        return Arrays.binarySearch( neighbours, neighbourOffsets[i], neighbourOffsets[i + 1], j ) >= 0;
+    }
+
+    private static int getNumberOfCells( double extent, double averageSize, int maxCells ) {
+        if ( !( extent > 0 ) || !( averageSize > 0 ) ) {
+            return 1;
+        }
+        return (int) Math.max( 1, Math.min( maxCells, Math.ceil( extent / averageSize ) ) );
+    }
+
+    private static int getCell( double value, double min, double cellSize, int numCells ) {
+        if ( !( cellSize > 0 ) ) {
+            return 0;
+        }
+        return Math.max( 0, Math.min( numCells - 1, (int) ( ( value - min ) / cellSize ) ) );
+    }
+
     /**
      * Updates the quality value for the currently selected combination of {@link Label}s and lets the label select a new random position
      * 
@@ -208,54 +346,31 @@ public class AutoLabelPlacement {
      *          the index of the choice in the labelPositionsList
      */
     private void updateChoiceAndQuality(PointLabelPositionOptions changedLabel, int choice) {
-       
-        int changedLabelIntersectionQuality = 0;
-        
-        
-        //calculate, how much the (to bee) changedLabel does contribute to the intersectionQuality
-        for ( int i = 0; i < choice; i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[i][choice] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
-        for (int i = choice+1; i <  labelPositionsList.size(); i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[choice][i] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
+
         //subtract the qualities of the label which is going to be changed
-        intersectionQuality -= changedLabelIntersectionQuality;
+        intersectionQuality -= getIntersectionQuality( changedLabel, choice );
         placementQuality -= changedLabel.getQuality();
 
-
         //select a new position randomly
         changedLabel.selectLabelPositionRandomly();
 
-        
-        //calculate, how much the changedLabel does contribute to the intersectionQuality
-        changedLabelIntersectionQuality = 0;
-        for ( int i = 0; i < choice; i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[i][choice] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
-        for (int i = choice+1; i <  labelPositionsList.size(); i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[choice][i] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
         //add the new qualities
-        intersectionQuality += changedLabelIntersectionQuality;
+        intersectionQuality += getIntersectionQuality( changedLabel, choice );
         placementQuality += changedLabel.getQuality();
     }
+
+    /**
+     * Calculates how much the label does contribute to the intersectionQuality with its current selection.
+     */
+    private int getIntersectionQuality( PointLabelPositionOptions label, int index ) {
+        int quality = 0;
+        for ( int k = neighbourOffsets[index]; k < neighbourOffsets[index + 1]; k++ ) {
+            if ( label.intersectsSelection( labelPositionsList.get( neighbours[k] ) ) ) {
+                quality += 40;
+            }
+        }
+        return quality;
+    }
     
     /**
      * Calculates the initial quality values for the currently selected combination of {@link Label}s.
@@ -271,12 +386,10 @@ public class AutoLabelPlacement {
             //placementQuality += choice1.getQuality() + 1.0f;
             placementQuality += choice1.getQuality();
             
-            for ( int j = i + 1; j < labelPositionsList.size(); j++ ) {
-                if ( collisionMatrix[i][j] ) {
-                    PointLabelPositionOptions choice2 = labelPositionsList.get( j );
-                    if ( choice1.intersectsSelection( choice2 ) ) {
-                        intersectionQuality += 40;
-                    }
+            for ( int k = neighbourOffsets[i]; k < neighbourOffsets[i + 1]; k++ ) {
+                int j = neighbours[k];
+                if ( j > i && choice1.intersectsSelection( labelPositionsList.get( j ) ) ) {
+                    intersectionQuality += 40;
                 }
             }
         }
@@ -0,0 +1,303 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.mvt;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.Feature;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.slf4j.Logger;
+
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.util.AffineTransformation;
+
+/**
+ * Encodes features as a Mapbox vector tile (version 2.1 of the specification).
+ * <p>
+ * Geometries are transformed to the CRS of the tile, quantized to the tile extent and clipped to the tile enlarged by
+ * a buffer (so lines and polygons can be drawn seamlessly across tile borders). Simple property values are encoded as
+ * attributes, property names and values are stored only once per layer. Instances are not thread safe.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class MvtEncoder {
+
+    private static final Logger LOG = getLogger( MvtEncoder.class );
+
+    /**
+     * The mime type of vector tiles.
+     */
+    public static final String FORMAT = "application/vnd.mapbox-vector-tile";
+
+    /**
+     * Default number of integer coordinates across a tile.
+     */
+    public static final int DEFAULT_EXTENT = 4096;
+
+    /**
+     * Default size of the area around the tile that is included when clipping (in tile coordinates).
+     */
+    public static final int DEFAULT_BUFFER = 64;
+
+    private final Envelope bbox;
+
+    private final int extent;
+
+    private final AffineTransformation toTile;
+
+    private final com.vividsolutions.jts.geom.Geometry clip;
+
+    private final com.vividsolutions.jts.geom.Envelope clipEnvelope;
+
+    private final Map<String, MvtLayer> layers = new LinkedHashMap<String, MvtLayer>();
+
+    private final TileGeometryEncoder geometryEncoder = new TileGeometryEncoder();
+
+    private GeometryTransformer transformer;
+
+    /**
+     * Creates an encoder with the default extent and buffer.
+     * 
+     * @param bbox
+     *            the area covered by the tile, must not be <code>null</code>
+     */
+    public MvtEncoder( Envelope bbox ) {
+        this( bbox, DEFAULT_EXTENT, DEFAULT_BUFFER );
+    }
+
+    /**
+     * @param bbox
+     *            the area covered by the tile, must not be <code>null</code>
+     * @param extent
+     *            number of integer coordinates across the tile
+     * @param buffer
+     *            size of the area around the tile that is included when clipping (in tile coordinates)
+     */
+    public MvtEncoder( Envelope bbox, int extent, int buffer ) {
+        this.bbox = bbox;
+        this.extent = extent;
+        double sx = extent / bbox.getSpan0();
+        double sy = extent / bbox.getSpan1();
+        double minx = bbox.getMin().get0();
+        double maxy = bbox.getMax().get1();
+        // the y axis of the tile points down
+        toTile = new AffineTransformation( sx, 0, -minx * sx, 0, -sy, maxy * sy );
+        clipEnvelope = new com.vividsolutions.jts.geom.Envelope( -buffer, extent + buffer, -buffer, extent + buffer );
+        clip = new GeometryFactory().toGeometry( clipEnvelope );
+    }
+
+    /**
+     * @param format
+     *            the requested format, may be <code>null</code>
+     * @return true, if the format denotes vector tiles
+     */
+    public static boolean isMvtFormat( String format ) {
+        return FORMAT.equals( format ) || "application/x-protobuf".equals( format );
+    }
+
+    /**
+     * Adds a feature to a layer of the tile. The first geometry property of the feature is used as geometry, features
+     * without geometry or outside of the tile are skipped.
+     * 
+     * @param layer
+     *            name of the layer, must not be <code>null</code>
+     * @param feature
+     *            the feature, must not be <code>null</code>
+     * @return true, if the feature has been added
+     */
+    public boolean addFeature( String layer, Feature feature ) {
+        Geometry geom = null;
+        for ( Property p : feature.getGeometryProperties() ) {
+            if ( p.getValue() instanceof Geometry ) {
+                geom = (Geometry) p.getValue();
+                break;
+            }
+        }
+        if ( geom == null ) {
+            return false;
+        }
+        com.vividsolutions.jts.geom.Geometry tileGeom = toTileGeometry( geom );
+        if ( tileGeom == null ) {
+            return false;
+        }
+        int type = geometryEncoder.encode( tileGeom );
+        if ( type == TileGeometryEncoder.UNKNOWN ) {
+            return false;
+        }
+
+        MvtLayer l = layers.get( layer );
+        if ( l == null ) {
+            l = new MvtLayer( layer, extent );
+            layers.put( layer, l );
+        }
+        l.startFeature();
+        Set<String> names = new HashSet<String>();
+        for ( Property p : feature.getProperties() ) {
+            String name = p.getName().getLocalPart();
+            Object value = toAttributeValue( p.getValue() );
+            if ( value != null && names.add( name ) ) {
+                l.addAttribute( name, value );
+            }
+        }
+        l.endFeature( getId( feature.getId() ), type, geometryEncoder.getCommands(), geometryEncoder.getLength() );
+        return true;
+    }
+
+    /**
+     * @return the number of features added to the tile
+     */
+    public int getNumberOfFeatures() {
+        int num = 0;
+        for ( MvtLayer l : layers.values() ) {
+            num += l.getNumberOfFeatures();
+        }
+        return num;
+    }
+
+    /**
+     * Writes the tile.
+     * 
+     * @param out
+     *            the stream to write to, must not be <code>null</code>, is not closed
+     * @throws IOException
+     */
+    public void write( OutputStream out )
+                            throws IOException {
+        ProtobufWriter tile = new ProtobufWriter();
+        for ( MvtLayer l : layers.values() ) {
+            l.write( tile );
+        }
+        tile.writeTo( out );
+    }
+
+    /**
+     * @return the geometry transformed to tile coordinates and clipped, or <code>null</code>, if it is outside of the
+     *         tile or cannot be converted
+     */
+    private com.vividsolutions.jts.geom.Geometry toTileGeometry( Geometry geom ) {
+        try {
+            ICRS crs = bbox.getCoordinateSystem();
+            if ( crs != null && geom.getCoordinateSystem() != null && !crs.equals( geom.getCoordinateSystem() ) ) {
+                if ( transformer == null ) {
+                    transformer = new GeometryTransformer( crs );
+                }
+                geom = transformer.transform( geom );
+            }
+            if ( !( geom instanceof AbstractDefaultGeometry ) ) {
+                return null;
+            }
+            com.vividsolutions.jts.geom.Geometry g = toTile.transform( ( (AbstractDefaultGeometry) geom ).getJTSGeometry() );
+            com.vividsolutions.jts.geom.Envelope env = g.getEnvelopeInternal();
+            if ( !clipEnvelope.intersects( env ) ) {
+                return null;
+            }
+            if ( clipEnvelope.contains( env ) ) {
+                return g;
+            }
+            try {
+                return clip.intersection( g );
+            } catch ( RuntimeException e ) {
+                // invalid geometries may make the intersection fail
+                return clip.intersection( g.buffer( 0 ) );
+            }
+        } catch ( Exception e ) {
+            LOG.debug( "Skipping geometry that could not be converted for a vector tile: {}", e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+            return null;
+        }
+    }
+
+    /**
+     * @return a String, Long, Double or Boolean, or <code>null</code>, if the value cannot be encoded
+     */
+    static Object toAttributeValue( TypedObjectNode node ) {
+        if ( !( node instanceof PrimitiveValue ) ) {
+            return null;
+        }
+        Object value = ( (PrimitiveValue) node ).getValue();
+        if ( value == null ) {
+            return null;
+        }
+        if ( value instanceof Boolean || value instanceof String ) {
+            return value;
+        }
+        if ( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ) {
+            return ( (Number) value ).longValue();
+        }
+        if ( value instanceof BigInteger ) {
+            BigInteger i = (BigInteger) value;
+            return i.bitLength() < 64 ? (Object) i.longValue() : (Object) i.doubleValue();
+        }
+        if ( value instanceof BigDecimal ) {
+            try {
+                return ( (BigDecimal) value ).longValueExact();
+            } catch ( ArithmeticException e ) {
+                return ( (BigDecimal) value ).doubleValue();
+            }
+        }
+        if ( value instanceof Number ) {
+            return ( (Number) value ).doubleValue();
+        }
+        return value.toString();
+    }
+
+    /**
+     * @return the number at the end of the id (feature ids of vector tiles are numeric), or -1, if there is none
+     */
+    static long getId( String id ) {
+        if ( id == null ) {
+            return -1;
+        }
+        int i = id.length();
+        while ( i > 0 && Character.isDigit( id.charAt( i - 1 ) ) ) {
+            --i;
+        }
+        if ( i == id.length() || id.length() - i > 18 ) {
+            return -1;
+        }
+        return Long.parseLong( id.substring( i ) );
+    }
+
+}
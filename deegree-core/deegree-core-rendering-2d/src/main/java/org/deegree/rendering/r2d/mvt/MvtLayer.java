@@ -0,0 +1,157 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.mvt;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the features of a vector tile layer, with the attribute keys and values encoded as dictionaries.
+ * 
+ * @since 3.4
+ */
+class MvtLayer {
+
+    private final String name;
+
+    private final int extent;
+
+    private final Map<String, Integer> keys = new LinkedHashMap<String, Integer>();
+
+    // values are String, Long, Double or Boolean
+    private final Map<Object, Integer> values = new LinkedHashMap<Object, Integer>();
+
+    private final ProtobufWriter features = new ProtobufWriter();
+
+    private final ProtobufWriter feature = new ProtobufWriter();
+
+    private int[] tags = new int[16];
+
+    private int numTags;
+
+    private int numFeatures;
+
+    MvtLayer( String name, int extent ) {
+        this.name = name;
+        this.extent = extent;
+    }
+
+    /**
+     * Starts a new feature, attributes are added with {@link #addAttribute(String, Object)}, and the feature is
+     * completed by {@link #endFeature(long, int, int[], int)}.
+     */
+    void startFeature() {
+        numTags = 0;
+    }
+
+    /**
+     * @param key
+     *            must not be <code>null</code>
+     * @param value
+     *            a String, Long, Double or Boolean, must not be <code>null</code>
+     */
+    void addAttribute( String key, Object value ) {
+        if ( numTags + 2 > tags.length ) {
+            int[] ts = new int[tags.length * 2];
+            System.arraycopy( tags, 0, ts, 0, numTags );
+            tags = ts;
+        }
+        tags[numTags++] = index( keys, key );
+        tags[numTags++] = index( values, value );
+    }
+
+    /**
+     * @param id
+     *            id of the feature, negative if none
+     * @param type
+     *            geometry type
+     * @param geometry
+     *            the geometry commands
+     * @param length
+     *            the number of geometry commands
+     */
+    void endFeature( long id, int type, int[] geometry, int length ) {
+        feature.reset();
+        if ( id >= 0 ) {
+            feature.writeUInt( 1, id );
+        }
+        if ( numTags > 0 ) {
+            feature.writePacked( 2, tags, numTags );
+        }
+        feature.writeUInt( 3, type );
+        feature.writePacked( 4, geometry, length );
+        features.writeMessage( 2, feature );
+        ++numFeatures;
+    }
+
+    int getNumberOfFeatures() {
+        return numFeatures;
+    }
+
+    void write( ProtobufWriter tile ) {
+        ProtobufWriter layer = new ProtobufWriter();
+        layer.writeUInt( 15, 2 );
+        layer.writeString( 1, name );
+        // the features have already been encoded as layer fields
+        layer.writeRaw( features );
+        for ( String key : keys.keySet() ) {
+            layer.writeString( 3, key );
+        }
+        ProtobufWriter value = new ProtobufWriter();
+        for ( Object v : values.keySet() ) {
+            value.reset();
+            if ( v instanceof String ) {
+                value.writeString( 1, (String) v );
+            } else if ( v instanceof Double ) {
+                value.writeDouble( 3, (Double) v );
+            } else if ( v instanceof Long ) {
+                long l = (Long) v;
+                if ( l >= 0 ) {
+                    value.writeUInt( 5, l );
+                } else {
+                    value.writeSInt( 6, l );
+                }
+            } else {
+                value.writeBool( 7, (Boolean) v );
+            }
+            layer.writeMessage( 4, value );
+        }
+        layer.writeUInt( 5, extent );
+        tile.writeMessage( 3, layer );
+    }
+
+    private static <T> int index( Map<T, Integer> dictionary, T value ) {
+        Integer idx = dictionary.get( value );
+        if ( idx == null ) {
+            idx = dictionary.size();
+            dictionary.put( value, idx );
+        }
+        return idx;
+    }
+
+}
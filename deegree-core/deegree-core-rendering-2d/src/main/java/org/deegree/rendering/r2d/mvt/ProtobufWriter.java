@@ -0,0 +1,171 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.mvt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Minimal writer for the protocol buffers wire format, supporting just what is needed to encode vector tiles.
+ * 
+ * @since 3.4
+ */
+class ProtobufWriter {
+
+    private static final int VARINT = 0;
+
+    private static final int FIXED64 = 1;
+
+    private static final int LENGTH_DELIMITED = 2;
+
+    private byte[] buf = new byte[256];
+
+    private int len;
+
+    void writeUInt( int field, long value ) {
+        writeTag( field, VARINT );
+        writeVarint( value );
+    }
+
+    void writeSInt( int field, long value ) {
+        writeTag( field, VARINT );
+        writeVarint( ( value << 1 ) ^ ( value >> 63 ) );
+    }
+
+    void writeBool( int field, boolean value ) {
+        writeTag( field, VARINT );
+        writeVarint( value ? 1 : 0 );
+    }
+
+    void writeDouble( int field, double value ) {
+        writeTag( field, FIXED64 );
+        long bits = Double.doubleToLongBits( value );
+        ensureCapacity( 8 );
+        for ( int i = 0; i < 8; ++i ) {
+            buf[len++] = (byte) ( bits >>> ( 8 * i ) );
+        }
+    }
+
+    void writeString( int field, String value ) {
+        byte[] bs;
+        try {
+            bs = value.getBytes( "UTF-8" );
+        } catch ( UnsupportedEncodingException e ) {
+            // UTF-8 is always supported
+            throw new IllegalStateException( e );
+        }
+        writeBytes( field, bs, 0, bs.length );
+    }
+
+    void writeMessage( int field, ProtobufWriter message ) {
+        writeBytes( field, message.buf, 0, message.len );
+    }
+
+    /**
+     * Appends the already encoded fields of the other writer.
+     */
+    void writeRaw( ProtobufWriter fields ) {
+        ensureCapacity( fields.len );
+        System.arraycopy( fields.buf, 0, buf, len, fields.len );
+        len += fields.len;
+    }
+
+    /**
+     * Writes unsigned 32 bit integers as a packed repeated field.
+     */
+    void writePacked( int field, int[] values, int count ) {
+        int size = 0;
+        for ( int i = 0; i < count; ++i ) {
+            size += varintSize( values[i] & 0xffffffffL );
+        }
+        writeTag( field, LENGTH_DELIMITED );
+        writeVarint( size );
+        for ( int i = 0; i < count; ++i ) {
+            writeVarint( values[i] & 0xffffffffL );
+        }
+    }
+
+    int size() {
+        return len;
+    }
+
+    void reset() {
+        len = 0;
+    }
+
+    void writeTo( OutputStream out )
+                            throws IOException {
+        out.write( buf, 0, len );
+    }
+
+    byte[] toByteArray() {
+        byte[] bs = new byte[len];
+        System.arraycopy( buf, 0, bs, 0, len );
+        return bs;
+    }
+
+    private void writeBytes( int field, byte[] bs, int off, int length ) {
+        writeTag( field, LENGTH_DELIMITED );
+        writeVarint( length );
+        ensureCapacity( length );
+        System.arraycopy( bs, off, buf, len, length );
+        len += length;
+    }
+
+    private void writeTag( int field, int wireType ) {
+        writeVarint( ( field << 3 ) | wireType );
+    }
+
+    private void writeVarint( long value ) {
+        ensureCapacity( 10 );
+        while ( ( value & ~0x7fL ) != 0 ) {
+            buf[len++] = (byte) ( ( value & 0x7f ) | 0x80 );
+            value >>>= 7;
+        }
+        buf[len++] = (byte) value;
+    }
+
+    private static int varintSize( long value ) {
+        int size = 1;
+        while ( ( value & ~0x7fL ) != 0 ) {
+            value >>>= 7;
+            ++size;
+        }
+        return size;
+    }
+
+    private void ensureCapacity( int extra ) {
+        if ( len + extra > buf.length ) {
+            byte[] bs = new byte[Math.max( buf.length * 2, len + extra )];
+            System.arraycopy( buf, 0, bs, 0, len );
+            buf = bs;
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.mvt;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Encodes JTS geometries in tile coordinates as vector tile geometry commands.
+ * <p>
+ * Coordinates are rounded to integers, repeated vertices are dropped, as are lines and rings that collapse. Exterior
+ * rings are written clockwise and interior rings counter clockwise (with the y axis pointing down), as required by
+ * the vector tile specification. Instances are not thread safe and are meant to be reused.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class TileGeometryEncoder {
+
+    static final int UNKNOWN = 0;
+
+    static final int POINT = 1;
+
+    static final int LINESTRING = 2;
+
+    static final int POLYGON = 3;
+
+    private static final int MOVE_TO = 1;
+
+    private static final int LINE_TO = 2;
+
+    private static final int CLOSE_PATH = 7;
+
+    private int[] commands = new int[64];
+
+    private int length;
+
+    // quantized vertices of the current line or ring
+    private int[] xs = new int[64], ys = new int[64];
+
+    private int numVertices;
+
+    // position of the cursor
+    private int cx, cy;
+
+    /**
+     * Encodes the geometry. Only the parts with the highest dimension are encoded, eg. points resulting from clipping
+     * a polygon are dropped.
+     * 
+     * @param geom
+     *            geometry in tile coordinates, must not be <code>null</code>
+     * @return the geometry type, {@link #UNKNOWN} if nothing remains to be encoded
+     */
+    int encode( Geometry geom ) {
+        length = 0;
+        cx = 0;
+        cy = 0;
+        // points are collected, as all points of a feature must be encoded with a single MoveTo command
+        numVertices = 0;
+        int dim = geom.getDimension();
+        encodeParts( geom, dim );
+        if ( dim == 0 && numVertices > 0 ) {
+            append( command( MOVE_TO, numVertices ) );
+            for ( int i = 0; i < numVertices; ++i ) {
+                appendVertex( xs[i], ys[i] );
+            }
+        }
+        if ( length == 0 ) {
+            return UNKNOWN;
+        }
+        switch ( dim ) {
+        case 0:
+            return POINT;
+        case 1:
+            return LINESTRING;
+        default:
+            return POLYGON;
+        }
+    }
+
+    /**
+     * @return the commands of the last encoded geometry, only the first {@link #getLength()} values are valid
+     */
+    int[] getCommands() {
+        return commands;
+    }
+
+    /**
+     * @return the number of commands of the last encoded geometry
+     */
+    int getLength() {
+        return length;
+    }
+
+    private void encodeParts( Geometry geom, int dim ) {
+        if ( geom instanceof GeometryCollection ) {
+            for ( int i = 0; i < geom.getNumGeometries(); ++i ) {
+                encodeParts( geom.getGeometryN( i ), dim );
+            }
+        } else if ( geom.getDimension() == dim ) {
+            encodePart( geom, dim );
+        }
+    }
+
+    private void encodePart( Geometry part, int dim ) {
+        if ( part.isEmpty() ) {
+            return;
+        }
+        if ( dim == 0 && part instanceof Point ) {
+            addPoint( part.getCoordinate() );
+        } else if ( dim == 1 && part instanceof LineString ) {
+            encodeLine( (LineString) part );
+        } else if ( dim == 2 && part instanceof Polygon ) {
+            encodePolygon( (Polygon) part );
+        }
+    }
+
+    private void addPoint( Coordinate c ) {
+        if ( numVertices == xs.length ) {
+            int[] nxs = new int[numVertices * 2], nys = new int[numVertices * 2];
+            System.arraycopy( xs, 0, nxs, 0, numVertices );
+            System.arraycopy( ys, 0, nys, 0, numVertices );
+            xs = nxs;
+            ys = nys;
+        }
+        xs[numVertices] = (int) Math.round( c.x );
+        ys[numVertices++] = (int) Math.round( c.y );
+    }
+
+    private void encodeLine( LineString line ) {
+        quantize( line.getCoordinates(), false );
+        if ( numVertices < 2 ) {
+            return;
+        }
+        appendPath( false );
+    }
+
+    private void encodePolygon( Polygon polygon ) {
+        quantize( polygon.getExteriorRing().getCoordinates(), true );
+        long area = area();
+        if ( numVertices < 3 || area == 0 ) {
+            return;
+        }
+        if ( area < 0 ) {
+            reverse();
+        }
+        appendPath( true );
+        for ( int i = 0; i < polygon.getNumInteriorRing(); ++i ) {
+            quantize( polygon.getInteriorRingN( i ).getCoordinates(), true );
+            area = area();
+            if ( numVertices < 3 || area == 0 ) {
+                continue;
+            }
+            if ( area > 0 ) {
+                reverse();
+            }
+            appendPath( true );
+        }
+    }
+
+    private void quantize( Coordinate[] coords, boolean ring ) {
+        numVertices = 0;
+        if ( xs.length < coords.length ) {
+            xs = new int[coords.length];
+            ys = new int[coords.length];
+        }
+        for ( Coordinate c : coords ) {
+            int x = (int) Math.round( c.x );
+            int y = (int) Math.round( c.y );
+            if ( numVertices > 0 && xs[numVertices - 1] == x && ys[numVertices - 1] == y ) {
+                continue;
+            }
+            xs[numVertices] = x;
+            ys[numVertices++] = y;
+        }
+        // the closing vertex is implied by the ClosePath command
+        if ( ring && numVertices > 1 && xs[0] == xs[numVertices - 1] && ys[0] == ys[numVertices - 1] ) {
+            --numVertices;
+        }
+    }
+
+    /**
+     * @return twice the signed area of the current ring, positive if clockwise with the y axis pointing down
+     */
+    private long area() {
+        long area = 0;
+        for ( int i = 0; i < numVertices; ++i ) {
+            int j = i + 1 == numVertices ? 0 : i + 1;
+            area += (long) xs[i] * ys[j] - (long) xs[j] * ys[i];
+        }
+        return area;
+    }
+
+    private void reverse() {
+        for ( int i = 0, j = numVertices - 1; i < j; ++i, --j ) {
+            int t = xs[i];
+            xs[i] = xs[j];
+            xs[j] = t;
+            t = ys[i];
+            ys[i] = ys[j];
+            ys[j] = t;
+        }
+    }
+
+    private void appendPath( boolean close ) {
+        append( command( MOVE_TO, 1 ) );
+        appendVertex( xs[0], ys[0] );
+        append( command( LINE_TO, numVertices - 1 ) );
+        for ( int i = 1; i < numVertices; ++i ) {
+            appendVertex( xs[i], ys[i] );
+        }
+        if ( close ) {
+            append( command( CLOSE_PATH, 1 ) );
+        }
+    }
+
+    private void appendVertex( int x, int y ) {
+        append( zigZag( x - cx ) );
+        append( zigZag( y - cy ) );
+        cx = x;
+        cy = y;
+    }
+
+    private void append( int value ) {
+        if ( length == commands.length ) {
+            int[] cs = new int[length * 2];
+            System.arraycopy( commands, 0, cs, 0, length );
+            commands = cs;
+        }
+        commands[length++] = value;
+    }
+
+    private static int command( int id, int count ) {
+        return ( id & 7 ) | ( count << 3 );
+    }
+
+    private static int zigZag( int n ) {
+        return ( n << 1 ) ^ ( n >> 31 );
+    }
+
+}
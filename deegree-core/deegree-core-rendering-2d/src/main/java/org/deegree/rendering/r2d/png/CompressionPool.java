@@ -0,0 +1,73 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.png;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.workspace.Destroyable;
+import org.deegree.workspace.Workspace;
+
+/**
+ * Holds the threads used by the {@link PngEncoder} for parallel compression. The pool is created on first use and shut
+ * down when the workspace is destroyed.
+ * 
+ * @since 3.4
+ */
+public class CompressionPool implements Destroyable {
+
+    private static ExecutorService pool;
+
+    static synchronized ExecutorService getPool( int threads ) {
+        if ( pool == null ) {
+            final AtomicInteger count = new AtomicInteger();
+            pool = Executors.newFixedThreadPool( Math.max( threads, PngEncoder.DEFAULT_THREADS ), new ThreadFactory() {
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread t = new Thread( r, "png-encoder-" + count.incrementAndGet() );
+                    t.setDaemon( true );
+                    return t;
+                }
+            } );
+        }
+        return pool;
+    }
+
+    @Override
+    public void destroy( Workspace workspace ) {
+        synchronized ( CompressionPool.class ) {
+            if ( pool != null ) {
+                pool.shutdownNow();
+                pool = null;
+            }
+        }
+    }
+
+}
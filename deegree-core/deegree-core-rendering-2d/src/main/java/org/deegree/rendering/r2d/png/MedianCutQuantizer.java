@@ -0,0 +1,336 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.png;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reduces ARGB pixels to a palette of at most 256 colours, including translucent ones.
+ * <p>
+ * If the image contains few enough colours, the palette is exact. Otherwise the colours are reduced to 5 bits per
+ * colour channel and 3 bits of alpha, and the resulting colour space is split using the median cut algorithm. The
+ * reduced colours are only used for splitting, the palette entries are the averages of the original colours. Fully
+ * transparent pixels always share one palette entry.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class MedianCutQuantizer {
+
+    private static final int[] SHIFTS = { 15, 10, 5, 0 };
+
+    private static final int[] MASKS = { 0x7, 0x1f, 0x1f, 0x1f };
+
+    private MedianCutQuantizer() {
+        // static methods only
+    }
+
+    /**
+     * @param argb
+     *            the pixels, must not be <code>null</code>
+     * @param indices
+     *            receives the palette index of each pixel, must be as long as argb
+     * @param maxColors
+     *            the maximum number of palette entries, between 2 and 256
+     * @param hasAlpha
+     *            whether to respect the alpha values of the pixels
+     * @return the palette as ARGB values, translucent entries come first
+     */
+    static int[] quantize( int[] argb, byte[] indices, int maxColors, boolean hasAlpha ) {
+        int[] palette = quantizeExact( argb, indices, maxColors, hasAlpha );
+        if ( palette == null ) {
+            palette = quantizeMedianCut( argb, indices, maxColors, hasAlpha );
+        }
+        return sortTranslucentFirst( palette, indices );
+    }
+
+    private static int normalize( int pixel, boolean hasAlpha ) {
+        if ( !hasAlpha ) {
+            return pixel | 0xff000000;
+        }
+        return ( pixel >>> 24 ) == 0 ? 0 : pixel;
+    }
+
+    // returns null if there are more than maxColors colours
+    private static int[] quantizeExact( int[] argb, byte[] indices, int maxColors, boolean hasAlpha ) {
+        // open addressing hash table from colour to palette index, twice the size needed
+        int size = Integer.highestOneBit( maxColors ) * 4;
+        int[] colors = new int[size];
+        int[] slots = new int[size];
+        int numColors = 0;
+        int[] palette = new int[maxColors];
+        int lastColor = 0, lastIndex = -1;
+        for ( int i = 0; i < argb.length; ++i ) {
+            int color = normalize( argb[i], hasAlpha );
+            if ( color == lastColor && lastIndex >= 0 ) {
+                indices[i] = (byte) lastIndex;
+                continue;
+            }
+            int slot = ( color * 0x9e3779b1 ) >>> 1 & ( size - 1 );
+            while ( slots[slot] != 0 && colors[slot] != color ) {
+                slot = ( slot + 1 ) & ( size - 1 );
+            }
+            if ( slots[slot] == 0 ) {
+                if ( numColors == maxColors ) {
+                    return null;
+                }
+                palette[numColors] = color;
+                colors[slot] = color;
+                slots[slot] = ++numColors;
+            }
+            lastColor = color;
+            lastIndex = slots[slot] - 1;
+            indices[i] = (byte) lastIndex;
+        }
+        int[] result = new int[Math.max( 1, numColors )];
+        System.arraycopy( palette, 0, result, 0, numColors );
+        return result;
+    }
+
+    private static int[] quantizeMedianCut( int[] argb, byte[] indices, int maxColors, boolean hasAlpha ) {
+        // histogram of the reduced colours, fully transparent pixels are not counted
+        int[] histogram = new int[1 << 18];
+        boolean transparent = false;
+        for ( int pixel : argb ) {
+            int color = normalize( pixel, hasAlpha );
+            if ( color == 0 ) {
+                transparent = true;
+            } else {
+                ++histogram[reduce( color )];
+            }
+        }
+
+        int numKeys = 0;
+        for ( int count : histogram ) {
+            if ( count > 0 ) {
+                ++numKeys;
+            }
+        }
+        int[] keys = new int[numKeys];
+        int[] counts = new int[numKeys];
+        numKeys = 0;
+        for ( int key = 0; key < histogram.length; ++key ) {
+            if ( histogram[key] > 0 ) {
+                keys[numKeys] = key;
+                counts[numKeys++] = histogram[key];
+            }
+        }
+
+        // sums of the original channel values per reduced colour, four entries (ARGB) per key
+        long[] sums = new long[numKeys * 4];
+        for ( int i = 0; i < numKeys; ++i ) {
+            histogram[keys[i]] = i;
+        }
+        for ( int pixel : argb ) {
+            int color = normalize( pixel, hasAlpha );
+            if ( color != 0 ) {
+                int off = histogram[reduce( color )] * 4;
+                sums[off] += color >>> 24;
+                sums[off + 1] += ( color >> 16 ) & 0xff;
+                sums[off + 2] += ( color >> 8 ) & 0xff;
+                sums[off + 3] += color & 0xff;
+            }
+        }
+
+        int maxBoxes = transparent ? maxColors - 1 : maxColors;
+        List<Box> boxes = new ArrayList<Box>( maxBoxes );
+        if ( numKeys > 0 ) {
+            boxes.add( new Box( keys, counts, 0, numKeys ) );
+        }
+        while ( boxes.size() < maxBoxes ) {
+            Box best = null;
+            for ( Box box : boxes ) {
+                if ( box.end - box.start > 1 && ( best == null || box.score > best.score ) ) {
+                    best = box;
+                }
+            }
+            if ( best == null ) {
+                break;
+            }
+            boxes.add( best.split( keys, counts, sums ) );
+        }
+
+        int[] palette = new int[boxes.size() + ( transparent ? 1 : 0 )];
+        int index = 0;
+        if ( transparent ) {
+            palette[index++] = 0;
+        }
+        for ( Box box : boxes ) {
+            palette[index] = box.getAverage( counts, sums );
+            for ( int i = box.start; i < box.end; ++i ) {
+                histogram[keys[i]] = index;
+            }
+            ++index;
+        }
+
+        for ( int i = 0; i < argb.length; ++i ) {
+            int color = normalize( argb[i], hasAlpha );
+            indices[i] = (byte) ( color == 0 ? 0 : histogram[reduce( color )] );
+        }
+        return palette;
+    }
+
+    private static int reduce( int color ) {
+        return ( color >>> 29 ) << 15 | ( ( color >> 19 ) & 0x1f ) << 10 | ( ( color >> 11 ) & 0x1f ) << 5
+               | ( ( color >> 3 ) & 0x1f );
+    }
+
+    private static int getChannel( int key, int channel ) {
+        return ( key >> SHIFTS[channel] ) & MASKS[channel];
+    }
+
+    private static int[] sortTranslucentFirst( int[] palette, byte[] indices ) {
+        int[] order = new int[palette.length];
+        int[] sorted = new int[palette.length];
+        int next = 0;
+        for ( int pass = 0; pass < 2; ++pass ) {
+            for ( int i = 0; i < palette.length; ++i ) {
+                boolean opaque = ( palette[i] >>> 24 ) == 0xff;
+                if ( opaque == ( pass == 1 ) ) {
+                    order[i] = next;
+                    sorted[next++] = palette[i];
+                }
+            }
+        }
+        boolean identity = true;
+        for ( int i = 0; i < order.length; ++i ) {
+            identity &= order[i] == i;
+        }
+        if ( !identity ) {
+            for ( int i = 0; i < indices.length; ++i ) {
+                indices[i] = (byte) order[indices[i] & 0xff];
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * A range of the keys array, sorted along the channel used for the last split.
+     */
+    private static class Box {
+
+        final int start;
+
+        int end;
+
+        private int splitChannel;
+
+        private long score;
+
+        private int population;
+
+        Box( int[] keys, int[] counts, int start, int end ) {
+            this.start = start;
+            this.end = end;
+            update( keys, counts );
+        }
+
+        private void update( int[] keys, int[] counts ) {
+            int[] min = { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE };
+            int[] max = new int[4];
+            population = 0;
+            for ( int i = start; i < end; ++i ) {
+                population += counts[i];
+                for ( int c = 0; c < 4; ++c ) {
+                    int v = getChannel( keys[i], c );
+                    min[c] = Math.min( min[c], v );
+                    max[c] = Math.max( max[c], v );
+                }
+            }
+            int range = -1;
+            for ( int c = 0; c < 4; ++c ) {
+                // scale alpha to the colour channel range, and count it twice as visible
+                int r = c == 0 ? ( max[c] - min[c] ) * 8 : max[c] - min[c];
+                if ( r > range ) {
+                    range = r;
+                    splitChannel = c;
+                }
+            }
+            score = (long) range * population;
+        }
+
+        Box split( int[] keys, int[] counts, long[] sums ) {
+            sort( keys, counts, sums, start, end, splitChannel );
+            int half = population / 2;
+            int sum = 0;
+            int mid = start + 1;
+            for ( int i = start; i < end - 1; ++i ) {
+                sum += counts[i];
+                mid = i + 1;
+                if ( sum >= half ) {
+                    break;
+                }
+            }
+            Box other = new Box( keys, counts, mid, end );
+            end = mid;
+            update( keys, counts );
+            return other;
+        }
+
+        int getAverage( int[] counts, long[] sums ) {
+            long[] boxSums = new long[4];
+            long total = 0;
+            for ( int i = start; i < end; ++i ) {
+                total += counts[i];
+                for ( int c = 0; c < 4; ++c ) {
+                    boxSums[c] += sums[i * 4 + c];
+                }
+            }
+            int color = 0;
+            for ( int c = 0; c < 4; ++c ) {
+                color = color << 8 | (int) ( ( boxSums[c] + total / 2 ) / total );
+            }
+            return color;
+        }
+
+        // counting sort, the channel values are small
+        private static void sort( int[] keys, int[] counts, long[] sums, int start, int end, int channel ) {
+            int[] offsets = new int[MASKS[channel] + 2];
+            for ( int i = start; i < end; ++i ) {
+                ++offsets[getChannel( keys[i], channel ) + 1];
+            }
+            for ( int i = 1; i < offsets.length; ++i ) {
+                offsets[i] += offsets[i - 1];
+            }
+            int[] sortedKeys = new int[end - start];
+            int[] sortedCounts = new int[end - start];
+            long[] sortedSums = new long[( end - start ) * 4];
+            for ( int i = start; i < end; ++i ) {
+                int pos = offsets[getChannel( keys[i], channel )]++;
+                sortedKeys[pos] = keys[i];
+                sortedCounts[pos] = counts[i];
+                System.arraycopy( sums, i * 4, sortedSums, pos * 4, 4 );
+            }
+            System.arraycopy( sortedKeys, 0, keys, start, end - start );
+            System.arraycopy( sortedCounts, 0, counts, start, end - start );
+            System.arraycopy( sortedSums, 0, sums, start * 4, ( end - start ) * 4 );
+        }
+    }
+
+}
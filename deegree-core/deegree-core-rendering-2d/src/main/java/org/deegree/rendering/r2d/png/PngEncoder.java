@@ -0,0 +1,677 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.png;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.slf4j.Logger;
+
+/**
+ * Encodes images as PNG, either as true colour images or as 8 bit palette images (<code>image/png; mode=8bit</code>).
+ * <p>
+ * Compared to the ImageIO writer, the encoder reads the pixels directly from integer images, uses a fast compression
+ * level by default and chooses a filter for each row. Optionally, images can be split into horizontal strips that are
+ * filtered and compressed in parallel. Each strip ends with a flushed deflate block, so the result is an ordinary
+ * single zlib stream. Parallel compression needs a Java 7 runtime, on older runtimes the image is compressed
+ * sequentially.
+ * </p>
+ * <p>
+ * The defaults can be set with the system properties <code>deegree.rendering.png.compression</code> (deflate level,
+ * default is 1) and <code>deegree.rendering.png.threads</code> (default is 1, ie. no parallel compression). The
+ * compression threads are shared by all encoders, see {@link CompressionPool}.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class PngEncoder {
+
+    private static final Logger LOG = getLogger( PngEncoder.class );
+
+    /**
+     * The default deflate level.
+     */
+    public static final int DEFAULT_COMPRESSION = Integer.getInteger( "deegree.rendering.png.compression",
+                                                                      Deflater.BEST_SPEED );
+
+    /**
+     * The default number of strips that are compressed in parallel.
+     */
+    public static final int DEFAULT_THREADS = Integer.getInteger( "deegree.rendering.png.threads", 1 );
+
+    private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    // strips smaller than this are not worth the overhead
+    private static final int MIN_STRIP_ROWS = 32;
+
+    private static final int SYNC_FLUSH = 2;
+
+    private static final int FILTER_NONE = 0;
+
+    private static final int FILTER_SUB = 1;
+
+    private static final int FILTER_UP = 2;
+
+    private static final int FILTER_PAETH = 4;
+
+    // Deflater.deflate( byte[], int, int, int ), only available since Java 7
+    private static final Method DEFLATE_WITH_FLUSH;
+
+    static {
+        Method m = null;
+        try {
+            m = Deflater.class.getMethod( "deflate", byte[].class, int.class, int.class, int.class );
+        } catch ( Exception e ) {
+            LOG.debug( "Deflater does not support flushing, PNG images will be compressed sequentially." );
+        }
+        DEFLATE_WITH_FLUSH = m;
+    }
+
+    private final int compression;
+
+    private final int threads;
+
+    private final boolean palette;
+
+    /**
+     * Creates an encoder with the default compression level and number of threads.
+     * 
+     * @param palette
+     *            true, if 8 bit palette images should be written
+     */
+    public PngEncoder( boolean palette ) {
+        this( DEFAULT_COMPRESSION, DEFAULT_THREADS, palette );
+    }
+
+    /**
+     * @param compression
+     *            the deflate level, between 0 and 9
+     * @param threads
+     *            the maximum number of strips to compress in parallel, 1 disables parallel compression
+     * @param palette
+     *            true, if 8 bit palette images should be written
+     */
+    public PngEncoder( int compression, int threads, boolean palette ) {
+        this.compression = compression;
+        this.threads = Math.max( 1, threads );
+        this.palette = palette;
+    }
+
+    /**
+     * @param format
+     *            the image mime type, must not be <code>null</code>
+     * @return an encoder for the format with default settings, or <code>null</code>, if the format is not a PNG format
+     */
+    public static PngEncoder forFormat( String format ) {
+        if ( format.equals( "image/png" ) ) {
+            return new PngEncoder( false );
+        }
+        if ( format.equals( "image/png; mode=8bit" ) || format.equals( "image/png; subtype=8bit" ) ) {
+            return new PngEncoder( true );
+        }
+        return null;
+    }
+
+    /**
+     * Writes the image as PNG. The stream is not closed.
+     * 
+     * @param img
+     *            the image to encode, must not be <code>null</code>
+     * @param out
+     *            the stream to write to, must not be <code>null</code>
+     * @throws IOException
+     */
+    public void encode( BufferedImage img, OutputStream out )
+                            throws IOException {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        boolean hasAlpha = img.getColorModel().hasAlpha();
+        int[] argb = getPixels( img );
+
+        RowSource rows;
+        DataOutputStream dout = new DataOutputStream( out );
+        dout.write( SIGNATURE );
+        if ( palette ) {
+            byte[] indices = new byte[argb.length];
+            int[] colors = MedianCutQuantizer.quantize( argb, indices, 256, hasAlpha );
+            writeHeader( dout, width, height, 3 );
+            writePalette( dout, colors );
+            rows = new IndexedRows( indices, width );
+        } else {
+            writeHeader( dout, width, height, hasAlpha ? 6 : 2 );
+            rows = new TrueColorRows( argb, width, hasAlpha );
+        }
+
+        int strips = Math.min( threads, height / MIN_STRIP_ROWS );
+        ChunkOutputStream idat = new ChunkOutputStream( dout, "IDAT" );
+        if ( strips > 1 && DEFLATE_WITH_FLUSH != null ) {
+            writeParallel( rows, height, strips, idat );
+        } else {
+            writeSequential( rows, height, idat );
+        }
+        idat.flush();
+        writeChunk( dout, "IEND", new byte[0], 0 );
+        dout.flush();
+    }
+
+    private static int[] getPixels( BufferedImage img ) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        if ( img.getType() == TYPE_INT_ARGB || img.getType() == TYPE_INT_RGB ) {
+            WritableRaster raster = img.getRaster();
+            if ( raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                 && ( (SinglePixelPackedSampleModel) raster.getSampleModel() ).getScanlineStride() == width
+                 && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0 ) {
+                DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+                if ( buffer.getOffset() == 0 && buffer.getSize() == width * height ) {
+                    return buffer.getData();
+                }
+            }
+        }
+        return img.getRGB( 0, 0, width, height, null, 0, width );
+    }
+
+    private void writeSequential( RowSource rows, int height, OutputStream idat )
+                            throws IOException {
+        Deflater deflater = new Deflater( compression );
+        try {
+            DeflaterOutputStream zout = new DeflaterOutputStream( idat, deflater, CHUNK_SIZE );
+            RowFilter filter = new RowFilter( rows );
+            for ( int y = 0; y < height; ++y ) {
+                zout.write( filter.filter( y ) );
+            }
+            zout.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeParallel( RowSource rows, int height, int strips, OutputStream idat )
+                            throws IOException {
+        List<Future<Strip>> futures = new ArrayList<Future<Strip>>( strips );
+        ExecutorService pool = CompressionPool.getPool( threads );
+        for ( int i = 0; i < strips; ++i ) {
+            int start = (int) ( (long) height * i / strips );
+            int end = (int) ( (long) height * ( i + 1 ) / strips );
+            futures.add( pool.submit( new StripCompression( rows, start, end, i == strips - 1 ) ) );
+        }
+        // zlib header: deflate with 32K window, no dictionary
+        idat.write( 0x78 );
+        idat.write( 0x01 );
+        long adler = 1;
+        try {
+            for ( Future<Strip> future : futures ) {
+                Strip strip = future.get();
+                strip.data.writeTo( idat );
+                adler = combineAdler32( adler, strip.adler, strip.length );
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while compressing PNG image." );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException( cause.getMessage(), cause );
+        } finally {
+            for ( Future<Strip> future : futures ) {
+                future.cancel( true );
+            }
+        }
+        idat.write( (int) ( adler >>> 24 ) & 0xff );
+        idat.write( (int) ( adler >>> 16 ) & 0xff );
+        idat.write( (int) ( adler >>> 8 ) & 0xff );
+        idat.write( (int) adler & 0xff );
+    }
+
+    // see adler32_combine in zlib
+    static long combineAdler32( long adler1, long adler2, long length2 ) {
+        final long base = 65521;
+        long rem = length2 % base;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = ( rem * sum1 ) % base;
+        sum1 += ( adler2 & 0xffff ) + base - 1;
+        sum2 += ( ( adler1 >> 16 ) & 0xffff ) + ( ( adler2 >> 16 ) & 0xffff ) + base - rem;
+        if ( sum1 >= base ) {
+            sum1 -= base;
+        }
+        if ( sum1 >= base ) {
+            sum1 -= base;
+        }
+        if ( sum2 >= ( base << 1 ) ) {
+            sum2 -= ( base << 1 );
+        }
+        if ( sum2 >= base ) {
+            sum2 -= base;
+        }
+        return sum1 | ( sum2 << 16 );
+    }
+
+    private static void writeHeader( DataOutputStream out, int width, int height, int colorType )
+                            throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream( 13 );
+        DataOutputStream header = new DataOutputStream( bos );
+        header.writeInt( width );
+        header.writeInt( height );
+        header.writeByte( 8 );
+        header.writeByte( colorType );
+        // compression, filter and interlace method
+        header.writeByte( 0 );
+        header.writeByte( 0 );
+        header.writeByte( 0 );
+        writeChunk( out, "IHDR", bos.toByteArray(), 13 );
+    }
+
+    private static void writePalette( DataOutputStream out, int[] colors )
+                            throws IOException {
+        byte[] plte = new byte[colors.length * 3];
+        byte[] trns = new byte[colors.length];
+        int translucent = 0;
+        for ( int i = 0; i < colors.length; ++i ) {
+            plte[i * 3] = (byte) ( colors[i] >> 16 );
+            plte[i * 3 + 1] = (byte) ( colors[i] >> 8 );
+            plte[i * 3 + 2] = (byte) colors[i];
+            trns[i] = (byte) ( colors[i] >>> 24 );
+            if ( ( colors[i] >>> 24 ) != 0xff ) {
+                // translucent entries are sorted first
+                translucent = i + 1;
+            }
+        }
+        writeChunk( out, "PLTE", plte, plte.length );
+        if ( translucent > 0 ) {
+            writeChunk( out, "tRNS", trns, translucent );
+        }
+    }
+
+    private static void writeChunk( DataOutputStream out, String type, byte[] data, int length )
+                            throws IOException {
+        byte[] typeBytes = type.getBytes( "US-ASCII" );
+        CRC32 crc = new CRC32();
+        crc.update( typeBytes );
+        crc.update( data, 0, length );
+        out.writeInt( length );
+        out.write( typeBytes );
+        out.write( data, 0, length );
+        out.writeInt( (int) crc.getValue() );
+    }
+
+    /**
+     * Provides the unfiltered bytes of the image rows.
+     */
+    private interface RowSource {
+
+        int getBytesPerPixel();
+
+        int getRowLength();
+
+        boolean isFiltered();
+
+        void getRow( int y, byte[] row );
+
+    }
+
+    private static class TrueColorRows implements RowSource {
+
+        private final int[] argb;
+
+        private final int width;
+
+        private final boolean alpha;
+
+        TrueColorRows( int[] argb, int width, boolean alpha ) {
+            this.argb = argb;
+            this.width = width;
+            this.alpha = alpha;
+        }
+
+        @Override
+        public int getBytesPerPixel() {
+            return alpha ? 4 : 3;
+        }
+
+        @Override
+        public int getRowLength() {
+            return width * getBytesPerPixel();
+        }
+
+        @Override
+        public boolean isFiltered() {
+            return true;
+        }
+
+        @Override
+        public void getRow( int y, byte[] row ) {
+            int off = y * width;
+            int pos = 0;
+            for ( int x = 0; x < width; ++x ) {
+                int pixel = argb[off + x];
+                row[pos++] = (byte) ( pixel >> 16 );
+                row[pos++] = (byte) ( pixel >> 8 );
+                row[pos++] = (byte) pixel;
+                if ( alpha ) {
+                    row[pos++] = (byte) ( pixel >>> 24 );
+                }
+            }
+        }
+    }
+
+    private static class IndexedRows implements RowSource {
+
+        private final byte[] indices;
+
+        private final int width;
+
+        IndexedRows( byte[] indices, int width ) {
+            this.indices = indices;
+            this.width = width;
+        }
+
+        @Override
+        public int getBytesPerPixel() {
+            return 1;
+        }
+
+        @Override
+        public int getRowLength() {
+            return width;
+        }
+
+        @Override
+        public boolean isFiltered() {
+            // filtering rarely pays off for palette images
+            return false;
+        }
+
+        @Override
+        public void getRow( int y, byte[] row ) {
+            System.arraycopy( indices, y * width, row, 0, width );
+        }
+    }
+
+    /**
+     * Filters consecutive rows, choosing the filter with the smallest sum of absolute differences for each row.
+     */
+    private static class RowFilter {
+
+        private final RowSource rows;
+
+        private final int bpp;
+
+        private byte[] previous;
+
+        private byte[] current;
+
+        private final byte[][] candidates;
+
+        private int lastRow = -2;
+
+        RowFilter( RowSource rows ) {
+            this.rows = rows;
+            bpp = rows.getBytesPerPixel();
+            int length = rows.getRowLength();
+            previous = new byte[length];
+            current = new byte[length];
+            int numCandidates = rows.isFiltered() ? 4 : 1;
+            candidates = new byte[numCandidates][length + 1];
+        }
+
+        /**
+         * @return the filter type byte followed by the filtered row, the array is reused for the next row
+         */
+        byte[] filter( int y ) {
+            if ( lastRow == y - 1 ) {
+                byte[] tmp = previous;
+                previous = current;
+                current = tmp;
+            } else if ( y > 0 ) {
+                rows.getRow( y - 1, previous );
+            }
+            rows.getRow( y, current );
+            lastRow = y;
+
+            if ( candidates.length == 1 ) {
+                byte[] out = candidates[0];
+                out[0] = FILTER_NONE;
+                System.arraycopy( current, 0, out, 1, current.length );
+                return out;
+            }
+
+            byte[] none = candidates[0], sub = candidates[1], up = candidates[2], paeth = candidates[3];
+            none[0] = FILTER_NONE;
+            sub[0] = FILTER_SUB;
+            up[0] = FILTER_UP;
+            paeth[0] = FILTER_PAETH;
+            long sumNone = 0, sumSub = 0, sumUp = 0, sumPaeth = 0;
+            boolean first = y == 0;
+            for ( int i = 0; i < current.length; ++i ) {
+                int x = current[i] & 0xff;
+                int a = i >= bpp ? current[i - bpp] & 0xff : 0;
+                int b = first ? 0 : previous[i] & 0xff;
+                int c = i >= bpp && !first ? previous[i - bpp] & 0xff : 0;
+                byte vNone = (byte) x;
+                byte vSub = (byte) ( x - a );
+                byte vUp = (byte) ( x - b );
+                byte vPaeth = (byte) ( x - paeth( a, b, c ) );
+                none[i + 1] = vNone;
+                sub[i + 1] = vSub;
+                up[i + 1] = vUp;
+                paeth[i + 1] = vPaeth;
+                sumNone += Math.abs( (int) vNone );
+                sumSub += Math.abs( (int) vSub );
+                sumUp += Math.abs( (int) vUp );
+                sumPaeth += Math.abs( (int) vPaeth );
+            }
+            byte[] best = none;
+            long min = sumNone;
+            if ( sumSub < min ) {
+                best = sub;
+                min = sumSub;
+            }
+            if ( sumUp < min ) {
+                best = up;
+                min = sumUp;
+            }
+            if ( sumPaeth < min ) {
+                best = paeth;
+            }
+            return best;
+        }
+
+        private static int paeth( int a, int b, int c ) {
+            int p = a + b - c;
+            int pa = Math.abs( p - a );
+            int pb = Math.abs( p - b );
+            int pc = Math.abs( p - c );
+            if ( pa <= pb && pa <= pc ) {
+                return a;
+            }
+            return pb <= pc ? b : c;
+        }
+    }
+
+    private static class Strip {
+
+        final ByteArrayOutputStream data;
+
+        final long adler;
+
+        final long length;
+
+        Strip( ByteArrayOutputStream data, long adler, long length ) {
+            this.data = data;
+            this.adler = adler;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Filters and compresses a range of rows into raw deflate blocks. All strips but the last one end with a sync
+     * flush, so the compressed strips can simply be concatenated.
+     */
+    private class StripCompression implements Callable<Strip> {
+
+        private final RowSource rows;
+
+        private final int start;
+
+        private final int end;
+
+        private final boolean last;
+
+        StripCompression( RowSource rows, int start, int end, boolean last ) {
+            this.rows = rows;
+            this.start = start;
+            this.end = end;
+            this.last = last;
+        }
+
+        @Override
+        public Strip call()
+                                throws Exception {
+            RowFilter filter = new RowFilter( rows );
+            Adler32 adler = new Adler32();
+            long length = 0;
+            int rowLength = rows.getRowLength() + 1;
+            ByteArrayOutputStream bos = new ByteArrayOutputStream( rowLength * ( end - start ) / 4 + 64 );
+            Deflater deflater = new Deflater( compression, true );
+            byte[] buf = new byte[CHUNK_SIZE];
+            try {
+                for ( int y = start; y < end; ++y ) {
+                    byte[] row = filter.filter( y );
+                    adler.update( row, 0, rowLength );
+                    length += rowLength;
+                    deflater.setInput( row, 0, rowLength );
+                    while ( !deflater.needsInput() ) {
+                        int n = deflater.deflate( buf );
+                        bos.write( buf, 0, n );
+                    }
+                }
+                if ( last ) {
+                    deflater.finish();
+                    while ( !deflater.finished() ) {
+                        int n = deflater.deflate( buf );
+                        bos.write( buf, 0, n );
+                    }
+                } else {
+                    int n;
+                    do {
+                        n = (Integer) DEFLATE_WITH_FLUSH.invoke( deflater, buf, 0, buf.length, SYNC_FLUSH );
+                        bos.write( buf, 0, n );
+                    } while ( n == buf.length );
+                }
+            } finally {
+                deflater.end();
+            }
+            return new Strip( bos, adler.getValue(), length );
+        }
+    }
+
+    /**
+     * Splits the written data into chunks of a fixed maximum size.
+     */
+    private static class ChunkOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+
+        private final String type;
+
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+
+        private int size;
+
+        ChunkOutputStream( DataOutputStream out, String type ) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write( int b )
+                                throws IOException {
+            if ( size == buffer.length ) {
+                flush();
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+                                throws IOException {
+            while ( len > 0 ) {
+                if ( size == buffer.length ) {
+                    flush();
+                }
+                int n = Math.min( len, buffer.length - size );
+                System.arraycopy( b, off, buffer, size, n );
+                size += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush()
+                                throws IOException {
+            if ( size > 0 ) {
+                writeChunk( out, type, buffer, size );
+                size = 0;
+            }
+        }
+
+        @Override
+        public void close()
+                                throws IOException {
+            flush();
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.awt.geom.PathIterator.SEG_CLOSE;
+import static java.awt.geom.PathIterator.SEG_LINETO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D.Double;
+import java.awt.geom.PathIterator;
+
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.io.WKTReader;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.io.ParseException;
+
+/**
+ * Test cases for the generalization done by {@link GeometryHelper}.
+ * 
+ * @since 3.4
+ */
+public class GeometryHelperTest {
+
+    private GeometryHelper helper;
+
+    @Before
+    public void setup() {
+        Envelope bbox = new GeometryFactory().createEnvelope( 0, 0, 100, 100, null );
+        // ten pixels per world unit
+        helper = new GeometryHelper( bbox, 1000, AffineTransform.getScaleInstance( 10, 10 ) );
+        helper.setGeneralizationTolerance( 1 );
+    }
+
+    @Test
+    public void testVerticesWithinTolerance()
+                            throws ParseException {
+        Curve curve = (Curve) new WKTReader( null ).read( "LINESTRING (0 0,0.01 0,0.02 0,0.03 0,1 0,1.01 0,2 0)" );
+        Double path = helper.fromCurve( curve, false );
+        assertEquals( 2, countSegments( path, SEG_LINETO ) );
+        assertEquals( 20, path.getCurrentPoint().getX(), 0 );
+    }
+
+    @Test
+    public void testGeneralizationDisabled()
+                            throws ParseException {
+        helper.setGeneralizationTolerance( 0 );
+        Curve curve = (Curve) new WKTReader( null ).read( "LINESTRING (0 0,0.01 0,0.02 0,0.03 0,1 0,1.01 0,2 0)" );
+        Double path = helper.fromCurve( curve, false );
+        assertEquals( 6, countSegments( path, SEG_LINETO ) );
+        assertFalse( helper.isBelowTolerance( path ) );
+    }
+
+    @Test
+    public void testRingStaysClosed()
+                            throws ParseException {
+        Polygon polygon = (Polygon) new WKTReader( null ).read( "POLYGON ((0 0,10 0,10.01 0.01,10 10,0 10,0 0))" );
+        Ring ring = polygon.getExteriorRing();
+        Double path = helper.fromCurve( ring, true );
+        assertEquals( 3, countSegments( path, SEG_LINETO ) );
+        assertEquals( 1, countSegments( path, SEG_CLOSE ) );
+        assertFalse( helper.isBelowTolerance( path ) );
+    }
+
+    @Test
+    public void testSubPixelRing()
+                            throws ParseException {
+        Polygon polygon = (Polygon) new WKTReader( null ).read( "POLYGON ((0 0,0.05 0,0.05 0.05,0 0.05,0 0))" );
+        Ring ring = polygon.getExteriorRing();
+        assertTrue( helper.isBelowTolerance( helper.fromCurve( ring, true ) ) );
+    }
+
+    private static int countSegments( Double path, int type ) {
+        int count = 0;
+        double[] coords = new double[6];
+        for ( PathIterator iter = path.getPathIterator( null ); !iter.isDone(); iter.next() ) {
+            if ( iter.currentSegment( coords ) == type ) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.context;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.geometry.GeometryFactory;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DefaultRenderContext}.
+ * 
+ * @since 3.4
+ */
+public class DefaultRenderContextTest {
+
+    private static BufferedImage fill( int width, Color color ) {
+        BufferedImage img = new BufferedImage( 10, 10, BufferedImage.TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        g.setColor( color );
+        g.fillRect( 0, 0, width, 10 );
+        g.dispose();
+        return img;
+    }
+
+    @Test
+    public void testLayersArePaintedInOrder()
+                            throws IOException {
+        RenderingInfo info = new RenderingInfo( "image/png", 10, 10, false, Color.WHITE,
+                                                new GeometryFactory().createEnvelope( 0, 0, 10, 10, null ), 0.00028,
+                                                Collections.<String, String> emptyMap() );
+        DefaultRenderContext ctx = new DefaultRenderContext( info );
+        DefaultRenderContext layer1 = ctx.createLayerContext();
+        DefaultRenderContext layer2 = ctx.createLayerContext();
+        // render the upper layer first
+        layer2.paintImage( fill( 5, Color.BLUE ) );
+        layer1.paintImage( fill( 10, Color.RED ) );
+        ctx.paintLayer( layer1 );
+        ctx.paintLayer( layer2 );
+        ctx.optimizeAndDrawLabels();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ctx.setOutput( out );
+        ctx.close();
+        BufferedImage img = ImageIO.read( new ByteArrayInputStream( out.toByteArray() ) );
+        assertEquals( Color.BLUE.getRGB(), img.getRGB( 2, 5 ) );
+        assertEquals( Color.RED.getRGB(), img.getRGB( 7, 5 ) );
+    }
+
+}
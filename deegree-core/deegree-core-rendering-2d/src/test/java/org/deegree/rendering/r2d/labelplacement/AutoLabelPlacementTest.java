@@ -0,0 +1,131 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.labelplacement;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.rendering.r2d.Java2DLabelRenderer;
+import org.deegree.rendering.r2d.Java2DRenderer;
+import org.deegree.rendering.r2d.Label;
+import org.deegree.style.styling.TextStyling;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+/**
+ * Test cases and a benchmark for {@link AutoLabelPlacement}. The benchmark is not part of the default test run, remove
+ * the {@link Ignore} annotation to run it.
+ * 
+ * @since 3.4
+ */
+public class AutoLabelPlacementTest {
+
+    private static final Logger LOG = getLogger( AutoLabelPlacementTest.class );
+
+    // average area in pixels available for each label, about a dense city map
+    private static final int AREA_PER_LABEL = 40 * 40;
+
+    @Test
+    public void testNeighboursMatchPairwiseComparison()
+                            throws Exception {
+        Java2DRenderer renderer = createRenderer( 1000 );
+        List<Label> labels = createLabels( renderer, 1000, 0 );
+        // some rotated labels, which are compared using their polygons
+        for ( int i = 0; i < labels.size(); i += 10 ) {
+            labels.get( i ).getStyling().rotation = 30;
+        }
+        AutoLabelPlacement placement = new AutoLabelPlacement( labels, renderer );
+
+        List<PointLabelPositionOptions> positions = placement.getLabelPositions();
+        assertEquals( 1000, positions.size() );
+        int pairs = 0;
+        for ( int i = 0; i < positions.size(); i++ ) {
+            for ( int j = i + 1; j < positions.size(); j++ ) {
+                boolean expected = positions.get( i ).intersectsAny( positions.get( j ) );
+                assertEquals( "Labels " + i + " and " + j, expected, placement.mayOverlap( i, j ) );
+                assertEquals( "Labels " + j + " and " + i, expected, placement.mayOverlap( j, i ) );
+                if ( expected ) {
+                    ++pairs;
+                }
+            }
+        }
+        assertTrue( pairs > 0 );
+    }
+
+    @Ignore
+    @Test
+    public void testPlacementTime()
+                            throws Exception {
+        for ( int n : new int[] { 1000, 10000, 50000 } ) {
+            Java2DRenderer renderer = createRenderer( n );
+            List<Label> labels = createLabels( renderer, n, 1 );
+            long time = System.currentTimeMillis();
+            AutoLabelPlacement placement = new AutoLabelPlacement( labels, renderer );
+            time = System.currentTimeMillis() - time;
+            assertEquals( n, placement.getLabelPositions().size() );
+            LOG.info( "Placing " + n + " labels took " + time + " ms." );
+        }
+    }
+
+    private static Java2DRenderer createRenderer( int numLabels ) {
+        int size = (int) Math.sqrt( (double) numLabels * AREA_PER_LABEL );
+        Graphics2D g = new BufferedImage( 1, 1, TYPE_INT_ARGB ).createGraphics();
+        return new Java2DRenderer( g, size, size, new GeometryFactory().createEnvelope( 0, 0, size, size, null ) );
+    }
+
+    private static List<Label> createLabels( Java2DRenderer renderer, int numLabels, long seed ) {
+        Java2DLabelRenderer labelRenderer = new Java2DLabelRenderer( renderer, null );
+        GeometryFactory fac = new GeometryFactory();
+        Font font = new Font( "SansSerif", Font.PLAIN, 10 );
+        int size = (int) Math.sqrt( (double) numLabels * AREA_PER_LABEL );
+        Random rnd = new Random( seed );
+        List<Label> labels = new ArrayList<Label>( numLabels );
+        for ( int i = 0; i < numLabels; i++ ) {
+            TextStyling styling = new TextStyling();
+            styling.auto = true;
+            styling.displacementX = 2;
+            styling.displacementY = 2;
+            labels.add( labelRenderer.createLabel( styling, font, "Label " + i,
+                                                   fac.createPoint( null, rnd.nextDouble() * size,
+                                                                    rnd.nextDouble() * size, null ) ) );
+        }
+        return labels;
+    }
+
+}
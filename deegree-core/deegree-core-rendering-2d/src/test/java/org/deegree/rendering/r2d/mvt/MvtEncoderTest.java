@@ -0,0 +1,143 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.mvt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.deegree.geometry.GeometryFactory;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKTReader;
+
+/**
+ * Tests the vector tile encoding against the examples of the specification.
+ * 
+ * @since 3.4
+ */
+public class MvtEncoderTest {
+
+    private static int[] encode( String wkt, int expectedType )
+                            throws ParseException {
+        Geometry geom = new WKTReader().read( wkt );
+        TileGeometryEncoder encoder = new TileGeometryEncoder();
+        assertEquals( expectedType, encoder.encode( geom ) );
+        int[] commands = new int[encoder.getLength()];
+        System.arraycopy( encoder.getCommands(), 0, commands, 0, commands.length );
+        return commands;
+    }
+
+    @Test
+    public void testEncodePoint()
+                            throws ParseException {
+        assertArrayEquals( new int[] { 9, 50, 34 }, encode( "POINT (25 17)", TileGeometryEncoder.POINT ) );
+    }
+
+    @Test
+    public void testEncodeMultiPoint()
+                            throws ParseException {
+        assertArrayEquals( new int[] { 17, 10, 14, 3, 9 },
+                           encode( "MULTIPOINT ((5 7), (3 2))", TileGeometryEncoder.POINT ) );
+    }
+
+    @Test
+    public void testEncodeLineString()
+                            throws ParseException {
+        assertArrayEquals( new int[] { 9, 4, 4, 18, 0, 16, 16, 0 },
+                           encode( "LINESTRING (2 2, 2 10, 10 10)", TileGeometryEncoder.LINESTRING ) );
+    }
+
+    @Test
+    public void testEncodeLineStringQuantized()
+                            throws ParseException {
+        // the second vertex collapses onto the first one
+        assertArrayEquals( new int[] { 9, 4, 4, 18, 0, 16, 16, 0 },
+                           encode( "LINESTRING (2 2, 2.2 1.9, 2 10, 10 10)", TileGeometryEncoder.LINESTRING ) );
+    }
+
+    @Test
+    public void testEncodePolygon()
+                            throws ParseException {
+        assertArrayEquals( new int[] { 9, 6, 12, 18, 10, 12, 24, 44, 15 },
+                           encode( "POLYGON ((3 6, 8 12, 20 34, 3 6))", TileGeometryEncoder.POLYGON ) );
+    }
+
+    @Test
+    public void testEncodePolygonWindingIsFixed()
+                            throws ParseException {
+        assertArrayEquals( new int[] { 9, 16, 24, 18, 24, 44, 33, 55, 15 },
+                           encode( "POLYGON ((3 6, 20 34, 8 12, 3 6))", TileGeometryEncoder.POLYGON ) );
+    }
+
+    @Test
+    public void testEncodePolygonWithHole()
+                            throws ParseException {
+        int[] commands = encode( "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 2 8, 8 8, 8 2, 2 2))",
+                                 TileGeometryEncoder.POLYGON );
+        // exterior ring clockwise (y axis pointing down), interior ring counter-clockwise
+        assertArrayEquals( new int[] { 9, 0, 0, 26, 20, 0, 0, 20, 19, 0, 15, 9, 4, 15, 26, 0, 12, 12, 0, 0, 11, 15 },
+                           commands );
+    }
+
+    @Test
+    public void testEncodeDegeneratePolygon()
+                            throws ParseException {
+        encode( "POLYGON ((1 1, 1.1 1.2, 0.9 1, 1 1))", TileGeometryEncoder.UNKNOWN );
+    }
+
+    @Test
+    public void testVarint() {
+        ProtobufWriter writer = new ProtobufWriter();
+        writer.writeUInt( 1, 300 );
+        writer.writeSInt( 2, -1 );
+        assertArrayEquals( new byte[] { 0x08, (byte) 0xac, 0x02, 0x10, 0x01 }, writer.toByteArray() );
+    }
+
+    @Test
+    public void testGetId() {
+        assertEquals( 42, MvtEncoder.getId( "ROADS_42" ) );
+        assertEquals( -1, MvtEncoder.getId( "ROADS" ) );
+        assertEquals( -1, MvtEncoder.getId( null ) );
+    }
+
+    @Test
+    public void testWriteEmptyTile()
+                            throws IOException {
+        MvtEncoder encoder = new MvtEncoder( new GeometryFactory().createEnvelope( 0, 0, 1, 1, null ) );
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.write( out );
+        assertEquals( 0, encoder.getNumberOfFeatures() );
+        assertEquals( 0, out.size() );
+    }
+
+}
@@ -0,0 +1,237 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.png;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Adler32;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+/**
+ * Tests that the {@link PngEncoder} output can be read by ImageIO.
+ * 
+ * @since 3.4
+ */
+public class PngEncoderTest {
+
+    private static BufferedImage createImage( int type, int width, int height ) {
+        BufferedImage img = new BufferedImage( width, height, type );
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint( RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON );
+        g.setPaint( new GradientPaint( 0, 0, new Color( 255, 0, 0, 200 ), width, height, new Color( 0, 0, 255, 50 ) ) );
+        g.fillOval( 5, 5, width - 10, height - 10 );
+        g.setColor( Color.GREEN );
+        g.setStroke( new BasicStroke( 3 ) );
+        g.drawLine( 0, height, width, 0 );
+        g.dispose();
+        return img;
+    }
+
+    private static BufferedImage roundTrip( PngEncoder encoder, BufferedImage img )
+                            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode( img, out );
+        return ImageIO.read( new ByteArrayInputStream( out.toByteArray() ) );
+    }
+
+    private static void assertSamePixels( BufferedImage expected, BufferedImage actual ) {
+        assertEquals( expected.getWidth(), actual.getWidth() );
+        assertEquals( expected.getHeight(), actual.getHeight() );
+        for ( int y = 0; y < expected.getHeight(); ++y ) {
+            for ( int x = 0; x < expected.getWidth(); ++x ) {
+                int e = expected.getRGB( x, y );
+                int a = actual.getRGB( x, y );
+                if ( ( e >>> 24 ) == 0 ) {
+                    assertEquals( 0, a >>> 24 );
+                } else {
+                    assertEquals( "pixel " + x + "," + y, e, a );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTrueColorWithAlpha()
+                            throws IOException {
+        BufferedImage img = createImage( TYPE_INT_ARGB, 123, 77 );
+        assertSamePixels( img, roundTrip( new PngEncoder( 1, 1, false ), img ) );
+    }
+
+    @Test
+    public void testTrueColorWithoutAlpha()
+                            throws IOException {
+        BufferedImage img = createImage( TYPE_INT_RGB, 64, 50 );
+        BufferedImage read = roundTrip( new PngEncoder( 6, 1, false ), img );
+        assertTrue( !read.getColorModel().hasAlpha() );
+        assertSamePixels( img, read );
+    }
+
+    @Test
+    public void testSubImage()
+                            throws IOException {
+        BufferedImage img = createImage( TYPE_INT_ARGB, 100, 100 ).getSubimage( 10, 20, 50, 40 );
+        assertSamePixels( img, roundTrip( new PngEncoder( 1, 1, false ), img ) );
+    }
+
+    @Test
+    public void testParallel()
+                            throws IOException {
+        BufferedImage img = createImage( TYPE_INT_ARGB, 300, 517 );
+        assertSamePixels( img, roundTrip( new PngEncoder( 1, 4, false ), img ) );
+        assertSamePixels( img, roundTrip( new PngEncoder( 9, 7, false ), img ) );
+    }
+
+    @Test
+    public void testPaletteExact()
+                            throws IOException {
+        BufferedImage img = new BufferedImage( 40, 40, TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        g.setColor( Color.RED );
+        g.fillRect( 0, 0, 20, 40 );
+        g.setColor( new Color( 0, 0, 255, 128 ) );
+        g.fillRect( 20, 0, 10, 40 );
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PngEncoder( true ).encode( img, out );
+        byte[] png = out.toByteArray();
+        // PLTE directly follows the header chunk
+        assertEquals( "PLTE", new String( png, 37, 4, "US-ASCII" ) );
+        assertEquals( 3 * 3, png[36] );
+        BufferedImage read = ImageIO.read( new ByteArrayInputStream( png ) );
+        assertTrue( read.getColorModel() instanceof IndexColorModel );
+        assertSamePixels( img, read );
+    }
+
+    @Test
+    public void testPaletteQuantized()
+                            throws IOException {
+        BufferedImage img = createImage( TYPE_INT_ARGB, 256, 256 );
+        for ( int threads : new int[] { 1, 4 } ) {
+            BufferedImage read = roundTrip( new PngEncoder( 1, threads, true ), img );
+            assertTrue( read.getColorModel() instanceof IndexColorModel );
+            assertTrue( ( (IndexColorModel) read.getColorModel() ).getMapSize() <= 256 );
+            long error = 0;
+            for ( int y = 0; y < img.getHeight(); ++y ) {
+                for ( int x = 0; x < img.getWidth(); ++x ) {
+                    int e = img.getRGB( x, y );
+                    int a = read.getRGB( x, y );
+                    if ( ( e >>> 24 ) == 0 ) {
+                        assertEquals( 0, a >>> 24 );
+                        continue;
+                    }
+                    for ( int shift = 0; shift < 32; shift += 8 ) {
+                        error += Math.abs( ( ( e >>> shift ) & 0xff ) - ( ( a >>> shift ) & 0xff ) );
+                    }
+                }
+            }
+            // average error per channel
+            assertTrue( error / ( 256.0 * 256 * 4 ) < 4 );
+        }
+    }
+
+    @Test
+    public void testPaletteQuantizedKeepsWhiteAndBlack()
+                            throws IOException {
+        // more colours than palette entries, so the palette is not exact
+        BufferedImage img = new BufferedImage( 300, 20, TYPE_INT_RGB );
+        for ( int x = 0; x < 300; ++x ) {
+            for ( int y = 0; y < 10; ++y ) {
+                img.setRGB( x, y, new Color( 20 + x / 2, 100, 60 + x % 2 ).getRGB() );
+            }
+        }
+        Graphics2D g = img.createGraphics();
+        g.setColor( Color.WHITE );
+        g.fillRect( 0, 10, 150, 10 );
+        g.setColor( Color.BLACK );
+        g.fillRect( 150, 10, 150, 10 );
+        g.dispose();
+        BufferedImage read = roundTrip( new PngEncoder( true ), img );
+        assertTrue( read.getColorModel() instanceof IndexColorModel );
+        assertEquals( Color.WHITE.getRGB(), read.getRGB( 10, 15 ) );
+        assertEquals( Color.BLACK.getRGB(), read.getRGB( 200, 15 ) );
+    }
+
+    @Test
+    public void testParallelAfterPoolDestroyed()
+                            throws IOException {
+        BufferedImage img = createImage( TYPE_INT_ARGB, 100, 200 );
+        assertSamePixels( img, roundTrip( new PngEncoder( 1, 4, false ), img ) );
+        new CompressionPool().destroy( null );
+        assertSamePixels( img, roundTrip( new PngEncoder( 1, 4, false ), img ) );
+    }
+
+    @Test
+    public void testPaletteIsSmaller()
+                            throws IOException {
+        BufferedImage img = createImage( TYPE_INT_ARGB, 256, 256 );
+        ByteArrayOutputStream trueColor = new ByteArrayOutputStream();
+        new PngEncoder( false ).encode( img, trueColor );
+        ByteArrayOutputStream palette = new ByteArrayOutputStream();
+        new PngEncoder( true ).encode( img, palette );
+        assertTrue( palette.size() < trueColor.size() );
+    }
+
+    @Test
+    public void testCombineAdler32() {
+        byte[] data = new byte[100000];
+        for ( int i = 0; i < data.length; ++i ) {
+            data[i] = (byte) ( i * 31 + i / 7 );
+        }
+        Adler32 all = new Adler32();
+        all.update( data );
+        Adler32 first = new Adler32();
+        first.update( data, 0, 40000 );
+        Adler32 second = new Adler32();
+        second.update( data, 40000, 60000 );
+        assertEquals( all.getValue(), PngEncoder.combineAdler32( first.getValue(), second.getValue(), 60000 ) );
+    }
+
+    @Test
+    public void testForFormat() {
+        assertNull( PngEncoder.forFormat( "image/jpeg" ) );
+        assertTrue( PngEncoder.forFormat( "image/png; mode=8bit" ) != null );
+    }
+
+}
@@ -37,6 +37,7 @@ package org.deegree.sqldialect;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
@@ -212,4 +213,39 @@ public interface SQLDialect {
      */
     String getSelectSequenceNextVal( String sequence );
 
+    /**
+     * Returns a <code>SELECT</code> statement that only returns a single page of the rows that match the given
+     * <code>FROM</code>/<code>WHERE</code> clause. The bounds of the page are not inlined, but represented by
+     * parameters that must be bound using {@link #setPagingArguments(PreparedStatement, int, int, int)} after all
+     * parameters of the <code>WHERE</code> clause have been bound, so the statement text only depends on the shape of
+     * the query.
+     * 
+     * @param columns
+     *            columns (or column expressions) to select, in result set order, must not be <code>null</code>
+     * @param fromWhere
+     *            <code>FROM</code> clause (including joins) and optional <code>WHERE</code> clause, must not be
+     *            <code>null</code>
+     * @param orderBy
+     *            sort expression (without <code>ORDER BY</code>), must define a total order of the rows and must not
+     *            contain parameters, must not be <code>null</code>
+     * @return SQL <code>SELECT</code> statement, never <code>null</code>
+     */
+    String getPagedSelect( List<String> columns, String fromWhere, String orderBy );
+
+    /**
+     * Binds the page bounds of a statement created by {@link #getPagedSelect(List, String, String)}.
+     * 
+     * @param stmt
+     *            prepared statement, must not be <code>null</code>
+     * @param paramIndex
+     *            index of the first paging parameter
+     * @param offset
+     *            number of leading rows to skip, zero if no rows are skipped
+     * @param limit
+     *            maximum number of rows to return, -1 for no limit
+     * @throws SQLException
+     */
+    void setPagingArguments( PreparedStatement stmt, int paramIndex, int offset, int limit )
+                            throws SQLException;
+
 }
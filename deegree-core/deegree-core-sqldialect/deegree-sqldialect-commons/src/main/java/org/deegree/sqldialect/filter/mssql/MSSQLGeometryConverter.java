@@ -97,6 +97,11 @@ public class MSSQLGeometryConverter implements GeometryParticleConverter {
         return tableAlias + "." + column + ".ToString()";
     }
 
+    @Override
+    public String getSelectSnippet( String tableAlias, double tolerance ) {
+        return getSelectSnippet( tableAlias );
+    }
+
     public String getSetSnippet( Geometry particle ) {
         if ( is2d )
             return "geometry::STGeomFromWKB(?, " + srid + ")";
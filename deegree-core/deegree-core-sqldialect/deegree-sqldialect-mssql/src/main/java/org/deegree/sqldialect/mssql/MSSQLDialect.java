@@ -37,6 +37,7 @@ package org.deegree.sqldialect.mssql;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -197,4 +198,33 @@ public class MSSQLDialect implements SQLDialect {
                                                  "Using DB sequences for FIDs is currently not supported on Microsoft SQL Server." );
     }
 
+    /**
+     * Uses <code>ROW_NUMBER()</code>, which works on SQL Server 2005 and later.
+     */
+    @Override
+    public String getPagedSelect( List<String> columns, String fromWhere, String orderBy ) {
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        for ( int i = 0; i < columns.size(); i++ ) {
+            if ( i > 0 ) {
+                sql.append( ',' );
+            }
+            sql.append( 'c' ).append( i + 1 ).append( '_' );
+        }
+        sql.append( " FROM (SELECT " );
+        for ( int i = 0; i < columns.size(); i++ ) {
+            sql.append( columns.get( i ) ).append( " AS c" ).append( i + 1 ).append( "_," );
+        }
+        sql.append( "ROW_NUMBER() OVER (ORDER BY " ).append( orderBy ).append( ") AS rnum_ " );
+        sql.append( fromWhere );
+        sql.append( ") q_ WHERE rnum_ > ? AND rnum_ <= ? ORDER BY rnum_" );
+        return sql.toString();
+    }
+
+    @Override
+    public void setPagingArguments( PreparedStatement stmt, int paramIndex, int offset, int limit )
+                            throws SQLException {
+        stmt.setLong( paramIndex, offset );
+        stmt.setLong( paramIndex + 1, limit < 0 ? Long.MAX_VALUE : (long) offset + limit );
+    }
+
 }
@@ -46,6 +46,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -267,4 +268,40 @@ public class OracleDialect implements SQLDialect {
         return "SELECT " + sequence + ".NEXTVAL from DUAL";
     }
 
+    /**
+     * Uses <code>ROWNUM</code> on an ordered inline view, which works on all Oracle versions.
+     */
+    @Override
+    public String getPagedSelect( List<String> columns, String fromWhere, String orderBy ) {
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        appendAliases( sql, columns.size() );
+        sql.append( " FROM (SELECT q_.*,ROWNUM rnum_ FROM (SELECT " );
+        for ( int i = 0; i < columns.size(); i++ ) {
+            if ( i > 0 ) {
+                sql.append( ',' );
+            }
+            sql.append( columns.get( i ) ).append( " AS c" ).append( i + 1 ).append( '_' );
+        }
+        sql.append( ' ' ).append( fromWhere );
+        sql.append( " ORDER BY " ).append( orderBy );
+        sql.append( ") q_ WHERE ROWNUM <= ?) WHERE rnum_ > ? ORDER BY rnum_" );
+        return sql.toString();
+    }
+
+    private static void appendAliases( StringBuilder sql, int numColumns ) {
+        for ( int i = 0; i < numColumns; i++ ) {
+            if ( i > 0 ) {
+                sql.append( ',' );
+            }
+            sql.append( 'c' ).append( i + 1 ).append( '_' );
+        }
+    }
+
+    @Override
+    public void setPagingArguments( PreparedStatement stmt, int paramIndex, int offset, int limit )
+                            throws SQLException {
+        stmt.setLong( paramIndex, limit < 0 ? Long.MAX_VALUE : (long) offset + limit );
+        stmt.setLong( paramIndex + 1, offset );
+    }
+
 }
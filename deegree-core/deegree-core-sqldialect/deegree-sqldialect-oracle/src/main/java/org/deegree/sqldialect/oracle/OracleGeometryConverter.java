@@ -102,6 +102,11 @@ public class OracleGeometryConverter implements GeometryParticleConverter {
         return column;
     }
 
+    @Override
+    public String getSelectSnippet( String tableAlias, double tolerance ) {
+        return getSelectSnippet( tableAlias );
+    }
+
     @Override
     public String getSetSnippet( Geometry particle ) {
         return "?";
@@ -37,6 +37,7 @@ package org.deegree.sqldialect.postgis;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -284,4 +285,26 @@ public class PostGISDialect implements SQLDialect {
         return "SELECT nextval('" + sequence + "')";
     }
 
+    @Override
+    public String getPagedSelect( List<String> columns, String fromWhere, String orderBy ) {
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        for ( int i = 0; i < columns.size(); i++ ) {
+            if ( i > 0 ) {
+                sql.append( ',' );
+            }
+            sql.append( columns.get( i ) );
+        }
+        sql.append( ' ' ).append( fromWhere );
+        sql.append( " ORDER BY " ).append( orderBy );
+        sql.append( " LIMIT ? OFFSET ?" );
+        return sql.toString();
+    }
+
+    @Override
+    public void setPagingArguments( PreparedStatement stmt, int paramIndex, int offset, int limit )
+                            throws SQLException {
+        stmt.setLong( paramIndex, limit < 0 ? Long.MAX_VALUE : limit );
+        stmt.setLong( paramIndex + 1, offset );
+    }
+
 }
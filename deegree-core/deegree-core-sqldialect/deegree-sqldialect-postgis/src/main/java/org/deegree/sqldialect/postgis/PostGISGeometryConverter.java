@@ -97,6 +97,21 @@ public class PostGISGeometryConverter implements GeometryParticleConverter {
         return asewkb + "(" + column + ")";
     }
 
+    /**
+     * Simplifies the geometries in the database using <code>ST_SimplifyPreserveTopology</code>. Geometries with arcs
+     * are not simplified, as they are not supported by that function. No simplification is performed if legacy
+     * predicates are used.
+     */
+    @Override
+    public String getSelectSnippet( String tableAlias, double tolerance ) {
+        if ( useLegacyPredicates || tolerance <= 0 ) {
+            return getSelectSnippet( tableAlias );
+        }
+        String col = tableAlias == null ? column : tableAlias + "." + column;
+        return "ST_AsEWKB(CASE WHEN ST_HasArc(" + col + ") THEN " + col + " ELSE ST_SimplifyPreserveTopology(" + col
+               + "," + tolerance + ") END)";
+    }
+
     @Override
     public Geometry toParticle( ResultSet rs, int colIndex )
                             throws SQLException {
@@ -51,6 +51,9 @@ import static org.deegree.commons.xml.stax.XMLStreamUtils.skipElement;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.Color;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 
 import javax.xml.stream.Location;
 import javax.xml.stream.XMLStreamException;
@@ -59,6 +62,7 @@ import javax.xml.stream.XMLStreamReader;
 import org.deegree.commons.utils.Pair;
 import org.deegree.feature.Feature;
 import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
 import org.deegree.style.se.unevaluated.Continuation;
 import org.deegree.style.se.unevaluated.Continuation.Updater;
 import org.deegree.style.styling.components.Fill;
@@ -104,6 +108,22 @@ class FillSymbologyParser {
                             public void updateStep( Fill base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 pair.second.evaluate( base.graphic, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                               XPathEvaluator<Feature> evaluator ) {
+                                return pair.second.appendDelta( delta, f, evaluator );
+                            }
+
+                            @Override
+                            protected void applyDeltaStep( Fill base, Iterator<Object> delta ) {
+                                pair.second.applyDelta( base.graphic, delta );
+                            }
+
+                            @Override
+                            protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                return pair.second.appendValueReferences( refs );
+                            }
                         };
                     }
                 }
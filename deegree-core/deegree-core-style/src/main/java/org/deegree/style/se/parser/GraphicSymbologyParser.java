@@ -60,6 +60,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -75,6 +77,7 @@ import org.deegree.commons.utils.Pair;
 import org.deegree.commons.utils.Triple;
 import org.deegree.feature.Feature;
 import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
 import org.deegree.style.se.unevaluated.Continuation;
 import org.deegree.style.se.unevaluated.Continuation.Updater;
 import org.deegree.style.styling.components.Fill;
@@ -124,6 +127,22 @@ class GraphicSymbologyParser {
                             public void updateStep( Graphic base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 pair.second.evaluate( base.mark, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                               XPathEvaluator<Feature> evaluator ) {
+                                return pair.second.appendDelta( delta, f, evaluator );
+                            }
+
+                            @Override
+                            protected void applyDeltaStep( Graphic base, Iterator<Object> delta ) {
+                                pair.second.applyDelta( base.mark, delta );
+                            }
+
+                            @Override
+                            protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                return pair.second.appendValueReferences( refs );
+                            }
                         };
                     }
                 }
@@ -138,6 +157,24 @@ class GraphicSymbologyParser {
                                 p.third.evaluate( list, f, evaluator );
                                 base.image = list.poll();
                             }
+
+                            @Override
+                            protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                               XPathEvaluator<Feature> evaluator ) {
+                                return p.third.appendDelta( delta, f, evaluator );
+                            }
+
+                            @Override
+                            protected void applyDeltaStep( Graphic base, Iterator<Object> delta ) {
+                                LinkedList<BufferedImage> list = new LinkedList<BufferedImage>();
+                                p.third.applyDelta( list, delta );
+                                base.image = list.poll();
+                            }
+
+                            @Override
+                            protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                return p.third.appendValueReferences( refs );
+                            }
                         };
                     } else {
                         base.image = p.first;
@@ -312,6 +349,22 @@ class GraphicSymbologyParser {
                             public void updateStep( Mark base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 fill.second.evaluate( base.fill, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                               XPathEvaluator<Feature> evaluator ) {
+                                return fill.second.appendDelta( delta, f, evaluator );
+                            }
+
+                            @Override
+                            protected void applyDeltaStep( Mark base, Iterator<Object> delta ) {
+                                fill.second.applyDelta( base.fill, delta );
+                            }
+
+                            @Override
+                            protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                return fill.second.appendValueReferences( refs );
+                            }
                         };
                     }
                 } else if ( in.getLocalName().equals( "Stroke" ) ) {
@@ -323,6 +376,22 @@ class GraphicSymbologyParser {
                             public void updateStep( Mark base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 stroke.second.evaluate( base.stroke, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                               XPathEvaluator<Feature> evaluator ) {
+                                return stroke.second.appendDelta( delta, f, evaluator );
+                            }
+
+                            @Override
+                            protected void applyDeltaStep( Mark base, Iterator<Object> delta ) {
+                                stroke.second.applyDelta( base.stroke, delta );
+                            }
+
+                            @Override
+                            protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                return stroke.second.appendValueReferences( refs );
+                            }
                         };
                     }
                 } else if ( in.isStartElement() ) {
@@ -388,7 +457,24 @@ class GraphicSymbologyParser {
                         public void updateStep( List<BufferedImage> base, Feature f, XPathEvaluator<Feature> evaluator ) {
                             StringBuffer sb = new StringBuffer();
                             sbcontn.evaluate( sb, f, evaluator );
-                            String file = sb.toString();
+                            addImage( base, sb.toString() );
+                        }
+
+                        @Override
+                        protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                           XPathEvaluator<Feature> evaluator ) {
+                            // the image only depends on the file name
+                            return sbcontn.appendDelta( delta, f, evaluator );
+                        }
+
+                        @Override
+                        protected void applyDeltaStep( List<BufferedImage> base, Iterator<Object> delta ) {
+                            StringBuffer sb = new StringBuffer();
+                            sbcontn.applyDelta( sb, delta );
+                            addImage( base, sb.toString() );
+                        }
+
+                        private void addImage( List<BufferedImage> base, String file ) {
                             if ( cache.containsKey( file ) ) {
                                 base.add( cache.get( file ) );
                                 return;
@@ -410,6 +496,11 @@ class GraphicSymbologyParser {
                                 e.printStackTrace();
                             }
                         }
+
+                        @Override
+                        protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                            return sbcontn.appendValueReferences( refs );
+                        }
                     };
                 }
             }
@@ -60,7 +60,9 @@ import java.io.StringWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -82,7 +84,9 @@ import org.deegree.feature.Feature;
 import org.deegree.filter.Expression;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.Filters;
 import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
 import org.deegree.filter.expression.custom.se.Categorize;
 import org.deegree.filter.expression.custom.se.Interpolate;
 import org.deegree.filter.xml.Filter110XMLDecoder;
@@ -230,6 +234,22 @@ public class SymbologyParser {
                         public void updateStep( PointStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                             pair.second.evaluate( base.graphic, f, evaluator );
                         }
+
+                        @Override
+                        protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                           XPathEvaluator<Feature> evaluator ) {
+                            return pair.second.appendDelta( delta, f, evaluator );
+                        }
+
+                        @Override
+                        protected void applyDeltaStep( PointStyling base, Iterator<Object> delta ) {
+                            pair.second.applyDelta( base.graphic, delta );
+                        }
+
+                        @Override
+                        protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                            return pair.second.appendValueReferences( refs );
+                        }
                     }, common.geometry, null, common.loc, common.line, common.col );
                 }
             } else if ( in.isStartElement() ) {
@@ -518,6 +538,22 @@ public class SymbologyParser {
                             public void updateStep( LineStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 pair.second.evaluate( base.stroke, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                               XPathEvaluator<Feature> evaluator ) {
+                                return pair.second.appendDelta( delta, f, evaluator );
+                            }
+
+                            @Override
+                            protected void applyDeltaStep( LineStyling base, Iterator<Object> delta ) {
+                                pair.second.applyDelta( base.stroke, delta );
+                            }
+
+                            @Override
+                            protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                return pair.second.appendValueReferences( refs );
+                            }
                         };
                     }
                 }
@@ -578,6 +614,22 @@ public class SymbologyParser {
                             public void updateStep( PolygonStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 pair.second.evaluate( base.stroke, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                               XPathEvaluator<Feature> evaluator ) {
+                                return pair.second.appendDelta( delta, f, evaluator );
+                            }
+
+                            @Override
+                            protected void applyDeltaStep( PolygonStyling base, Iterator<Object> delta ) {
+                                pair.second.applyDelta( base.stroke, delta );
+                            }
+
+                            @Override
+                            protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                return pair.second.appendValueReferences( refs );
+                            }
                         };
                     }
                 }
@@ -593,6 +645,22 @@ public class SymbologyParser {
                             public void updateStep( PolygonStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 fillPair.second.evaluate( base.fill, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                               XPathEvaluator<Feature> evaluator ) {
+                                return fillPair.second.appendDelta( delta, f, evaluator );
+                            }
+
+                            @Override
+                            protected void applyDeltaStep( PolygonStyling base, Iterator<Object> delta ) {
+                                fillPair.second.applyDelta( base.fill, delta );
+                            }
+
+                            @Override
+                            protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                return fillPair.second.appendValueReferences( refs );
+                            }
                         };
                     }
                 }
@@ -709,6 +777,32 @@ public class SymbologyParser {
                 contn = new Continuation<T>( contn ) {
                     @Override
                     public void updateStep( T base, Feature f, XPathEvaluator<Feature> evaluator ) {
+                        updater.update( base, evaluateText( f, evaluator ) );
+                    }
+
+                    @Override
+                    protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                       XPathEvaluator<Feature> evaluator ) {
+                        delta.add( evaluateText( f, evaluator ) );
+                        return true;
+                    }
+
+                    @Override
+                    protected void applyDeltaStep( T base, Iterator<Object> delta ) {
+                        updater.update( base, (String) delta.next() );
+                    }
+
+                    @Override
+                    protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                        for ( Pair<String, Pair<Expression, String>> p : text ) {
+                            if ( p.second != null ) {
+                                refs.addAll( Arrays.asList( Filters.getPropertyNames( p.second.first ) ) );
+                            }
+                        }
+                        return true;
+                    }
+
+                    private String evaluateText( Feature f, XPathEvaluator<Feature> evaluator ) {
                         StringBuilder tmp = new StringBuilder();
                         for ( Pair<String, Pair<Expression, String>> p : text ) {
                             if ( p.first != null ) {
@@ -729,8 +823,7 @@ public class SymbologyParser {
                                 }
                             }
                         }
-
-                        updater.update( base, tmp.toString() );
+                        return tmp.toString();
                     }
                 };
             }
@@ -866,6 +959,22 @@ public class SymbologyParser {
                                                             XPathEvaluator<Feature> evaluator ) {
                                         pair.second.evaluate( base.linePlacement, f, evaluator );
                                     }
+
+                                    @Override
+                                    protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                                       XPathEvaluator<Feature> evaluator ) {
+                                        return pair.second.appendDelta( delta, f, evaluator );
+                                    }
+
+                                    @Override
+                                    protected void applyDeltaStep( TextStyling base, Iterator<Object> delta ) {
+                                        pair.second.applyDelta( base.linePlacement, delta );
+                                    }
+
+                                    @Override
+                                    protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                        return pair.second.appendValueReferences( refs );
+                                    }
                                 };
                             }
                         }
@@ -882,6 +991,22 @@ public class SymbologyParser {
                             public void updateStep( TextStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 haloPair.second.evaluate( base.halo, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                               XPathEvaluator<Feature> evaluator ) {
+                                return haloPair.second.appendDelta( delta, f, evaluator );
+                            }
+
+                            @Override
+                            protected void applyDeltaStep( TextStyling base, Iterator<Object> delta ) {
+                                haloPair.second.applyDelta( base.halo, delta );
+                            }
+
+                            @Override
+                            protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                return haloPair.second.appendValueReferences( refs );
+                            }
                         };
                     }
                 }
@@ -896,6 +1021,22 @@ public class SymbologyParser {
                             public void updateStep( TextStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 fontPair.second.evaluate( base.font, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                               XPathEvaluator<Feature> evaluator ) {
+                                return fontPair.second.appendDelta( delta, f, evaluator );
+                            }
+
+                            @Override
+                            protected void applyDeltaStep( TextStyling base, Iterator<Object> delta ) {
+                                fontPair.second.applyDelta( base.font, delta );
+                            }
+
+                            @Override
+                            protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                return fontPair.second.appendValueReferences( refs );
+                            }
                         };
                     }
                 }
@@ -910,6 +1051,22 @@ public class SymbologyParser {
                             public void updateStep( TextStyling base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 fillPair.second.evaluate( base.fill, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                               XPathEvaluator<Feature> evaluator ) {
+                                return fillPair.second.appendDelta( delta, f, evaluator );
+                            }
+
+                            @Override
+                            protected void applyDeltaStep( TextStyling base, Iterator<Object> delta ) {
+                                fillPair.second.applyDelta( base.fill, delta );
+                            }
+
+                            @Override
+                            protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                return fillPair.second.appendValueReferences( refs );
+                            }
                         };
                     }
                 }
@@ -1018,6 +1175,22 @@ public class SymbologyParser {
                             public void updateStep( Halo base, Feature f, XPathEvaluator<Feature> evaluator ) {
                                 fillPair.second.evaluate( base.fill, f, evaluator );
                             }
+
+                            @Override
+                            protected boolean appendDeltaStep( List<Object> delta, Feature f,
+                                                               XPathEvaluator<Feature> evaluator ) {
+                                return fillPair.second.appendDelta( delta, f, evaluator );
+                            }
+
+                            @Override
+                            protected void applyDeltaStep( Halo base, Iterator<Object> delta ) {
+                                fillPair.second.applyDelta( base.fill, delta );
+                            }
+
+                            @Override
+                            protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+                                return fillPair.second.appendValueReferences( refs );
+                            }
                         };
                     }
                 }
@@ -1373,6 +1546,14 @@ public class SymbologyParser {
             }
         }
 
+        @Override
+        protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+            if ( filter != null && filter != ELSEFILTER ) {
+                refs.addAll( Arrays.asList( Filters.getPropertyNames( filter ) ) );
+            }
+            return true;
+        }
+
         /**
          * @return the symbolizers
          */
@@ -36,8 +36,13 @@
 
 package org.deegree.style.se.unevaluated;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
 import org.deegree.feature.Feature;
 import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
 
 /**
  * <code>Continuation</code> is not a real continuation...
@@ -83,6 +88,83 @@ public abstract class Continuation<T> {
         }
     }
 
+    /**
+     * Appends the values this step would apply to the base object for the given feature to the delta list, without
+     * modifying anything. Two features with equal deltas yield equal results when evaluated.
+     * 
+     * @param delta
+     * @param obj
+     * @param evaluator
+     * @return false, if this step cannot describe its changes as a list of values (the default)
+     */
+    protected boolean appendDeltaStep( List<Object> delta, Feature obj, XPathEvaluator<Feature> evaluator ) {
+        return false;
+    }
+
+    /**
+     * Appends the values this continuation and its successors would apply to the base object for the given feature to
+     * the delta list, without modifying anything.
+     * 
+     * @param delta
+     * @param obj
+     * @param evaluator
+     * @return false, if one of the steps cannot describe its changes as a list of values
+     */
+    public boolean appendDelta( List<Object> delta, Feature obj, XPathEvaluator<Feature> evaluator ) {
+        if ( !appendDeltaStep( delta, obj, evaluator ) ) {
+            return false;
+        }
+        return next == null || next.appendDelta( delta, obj, evaluator );
+    }
+
+    /**
+     * Applies the values appended by {@link #appendDeltaStep(List, Feature, XPathEvaluator)} to the base object, taking
+     * them from the iterator in the same order. Only called for steps that can describe their changes as values.
+     * 
+     * @param base
+     * @param delta
+     */
+    protected void applyDeltaStep( T base, Iterator<Object> delta ) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Applies a delta computed by {@link #appendDelta(List, Feature, XPathEvaluator)} to the base object, which yields
+     * the same result as evaluating the continuation for the feature the delta was computed for.
+     * 
+     * @param base
+     * @param delta
+     */
+    public void applyDelta( T base, Iterator<Object> delta ) {
+        applyDeltaStep( base, delta );
+        if ( next != null ) {
+            next.applyDelta( base, delta );
+        }
+    }
+
+    /**
+     * Adds the properties this step reads from a feature to the given collection.
+     * 
+     * @param refs
+     * @return false, if the properties read by this step are not known (the default)
+     */
+    protected boolean appendValueReferencesStep( Collection<ValueReference> refs ) {
+        return false;
+    }
+
+    /**
+     * Adds the properties this continuation and its successors read from a feature to the given collection.
+     * 
+     * @param refs
+     * @return false, if the properties read by one of the steps are not known
+     */
+    public boolean appendValueReferences( Collection<ValueReference> refs ) {
+        if ( !appendValueReferencesStep( refs ) ) {
+            return false;
+        }
+        return next == null || next.appendValueReferences( refs );
+    }
+
     /**
      * <code>Updater</code>
      * 
@@ -47,10 +47,13 @@ import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
@@ -60,6 +63,7 @@ import org.deegree.commons.utils.Pair;
 import org.deegree.commons.utils.Triple;
 import org.deegree.feature.Feature;
 import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
 import org.deegree.filter.function.geometry.IsCurve;
 import org.deegree.filter.function.geometry.IsPoint;
 import org.deegree.filter.function.geometry.IsSurface;
@@ -260,7 +264,7 @@ public class Style implements Copyable<Style> {
             return (LinkedList) res;
         }
 
-        StringBuffer sb = new StringBuffer();
+        StringBuffer sb = null;
         LinkedList<Symbolizer<?>> list = new LinkedList<Symbolizer<?>>();
         for ( Pair<Continuation<LinkedList<Symbolizer<?>>>, DoublePair> pair : rules ) {
             pair.first.evaluate( list, f, evaluator );
@@ -270,9 +274,14 @@ public class Style implements Copyable<Style> {
         for ( Symbolizer<?> s : list ) {
             Pair<?, ?> p = s.evaluate( f, evaluator );
 
-            if ( labels.containsKey( s ) ) {
-                sb.setLength( 0 );
-                labels.get( s ).evaluate( sb, f, evaluator );
+            Continuation<StringBuffer> label = labels.isEmpty() ? null : labels.get( s );
+            if ( label != null ) {
+                if ( sb == null ) {
+                    sb = new StringBuffer();
+                } else {
+                    sb.setLength( 0 );
+                }
+                label.evaluate( sb, f, evaluator );
                 text = sb.toString();
             }
             res.add( new Triple<Object, Object, String>( p.first, p.second, text ) );
@@ -281,6 +290,73 @@ public class Style implements Copyable<Style> {
         return (LinkedList) res;
     }
 
+    /**
+     * Determines the properties that are read when evaluating this style, ie. the properties used in rule filters,
+     * geometry expressions, dynamic symbolizer parameters and labels. Symbolizers without a geometry expression use
+     * the geometry properties of the feature in addition, see {@link #usesDefaultGeometries()}.
+     * 
+     * @return the referenced properties, or <code>null</code>, if they cannot be determined
+     */
+    public Set<ValueReference> getReferencedProperties() {
+        if ( useDefault ) {
+            return new HashSet<ValueReference>();
+        }
+        Set<ValueReference> refs = new HashSet<ValueReference>();
+        for ( Pair<Continuation<LinkedList<Symbolizer<?>>>, DoublePair> pair : rules ) {
+            List<Symbolizer<?>> syms = getSymbolizers( pair.first );
+            if ( syms == null ) {
+                return null;
+            }
+            for ( Symbolizer<?> s : syms ) {
+                if ( !s.appendValueReferences( refs ) ) {
+                    return null;
+                }
+            }
+            if ( !( pair.first instanceof InsertContinuation<?, ?> ) && !pair.first.appendValueReferences( refs ) ) {
+                return null;
+            }
+        }
+        for ( Continuation<StringBuffer> label : labels.values() ) {
+            if ( !label.appendValueReferences( refs ) ) {
+                return null;
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * @return true, if features are rendered using their geometry properties (instead of geometry expressions) for at
+     *         least one symbolizer
+     */
+    public boolean usesDefaultGeometries() {
+        if ( useDefault ) {
+            return true;
+        }
+        for ( Pair<Continuation<LinkedList<Symbolizer<?>>>, DoublePair> pair : rules ) {
+            List<Symbolizer<?>> syms = getSymbolizers( pair.first );
+            if ( syms == null ) {
+                return true;
+            }
+            for ( Symbolizer<?> s : syms ) {
+                if ( s.getGeometryExpression() == null ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // returns null if the rule type is unknown
+    private static List<Symbolizer<?>> getSymbolizers( Continuation<LinkedList<Symbolizer<?>>> rule ) {
+        if ( rule instanceof FilterContinuation ) {
+            return ( (FilterContinuation) rule ).getSymbolizers();
+        }
+        if ( rule instanceof InsertContinuation<?, ?> ) {
+            return Collections.<Symbolizer<?>> singletonList( ( (InsertContinuation<?, Symbolizer<?>>) rule ).value );
+        }
+        return null;
+    }
+
     /**
      * @return the live list of rules
      */
@@ -38,8 +38,14 @@ package org.deegree.style.se.unevaluated;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.genericxml.GenericXMLElement;
@@ -48,7 +54,9 @@ import org.deegree.commons.utils.Pair;
 import org.deegree.feature.Feature;
 import org.deegree.filter.Expression;
 import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.Filters;
 import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
 import org.deegree.geometry.Geometry;
 import org.deegree.style.styling.Styling;
 import org.slf4j.Logger;
@@ -70,9 +78,20 @@ public class Symbolizer<T extends Styling<T>> {
 
     private T base;
 
-    // TODO improve the caching, eg. implement a real cache with a limit etc.
+    private static final int MAX_INTERNED = 1024;
+
+    // number of lookups after which interning is given up if less than a quarter of them were hits
+    private static final int MIN_LOOKUPS = 256;
+
+    // evaluated stylings by the values of their dynamic parts, set to null if the continuations cannot describe their
+    // changes as values, or if sharing does not pay off; the shared stylings must never be modified, just as the
+    // constant evaluated one
     // NOTE: Using a synchronized map here is strictly necessary (race condition), RB / MS
-    // private Map<String, T> cache = new ConcurrentHashMap<String, T>();
+    private volatile ConcurrentMap<List<Object>, T> interned = new ConcurrentHashMap<List<Object>, T>();
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private final AtomicInteger hits = new AtomicInteger();
 
     private Continuation<T> next;
 
@@ -227,32 +246,67 @@ public class Symbolizer<T extends Styling<T>> {
             return new Pair<T, LinkedList<Geometry>>( evaluated == null ? base.copy() : evaluated.copy(), geoms );
         }
 
-        // String id = f.getId();
-        // if ( id != null && cache.containsKey( id ) ) {
-        // return new Pair<T, LinkedList<Geometry>>( cache.get( id ), geoms );
-        // }
-
         if ( evaluated != null ) {
-            Pair<T, LinkedList<Geometry>> pair = new Pair<T, LinkedList<Geometry>>( evaluated, geoms );
-            // if ( id != null ) {
-            // cache.put( id, pair.first );
-            // }
-            return pair;
+            return new Pair<T, LinkedList<Geometry>>( evaluated, geoms );
         }
 
-        T evald = base.copy();
-        Pair<T, LinkedList<Geometry>> pair = new Pair<T, LinkedList<Geometry>>( evald, geoms );
         if ( next == null ) {
             LOG.warn( "Something wrong with SE/SLD parsing. No continuation found, and no evaluated style." );
-            return pair;
+            return new Pair<T, LinkedList<Geometry>>( base.copy(), geoms );
         }
 
+        return new Pair<T, LinkedList<Geometry>>( evaluateDynamic( f, evaluator ), geoms );
+    }
+
+    /**
+     * Evaluates the dynamic parts of the styling. Features with equal values for the dynamic parts share the same
+     * styling instance, so the base styling is only copied for each distinct combination of values. Sharing is given up
+     * once {@link #MAX_INTERNED} stylings have been created, or if most lookups miss.
+     */
+    private T evaluateDynamic( Feature f, XPathEvaluator<Feature> evaluator ) {
+        ConcurrentMap<List<Object>, T> interned = this.interned;
+        if ( interned != null ) {
+            List<Object> delta = new ArrayList<Object>( 4 );
+            if ( next.appendDelta( delta, f, evaluator ) ) {
+                int numLookups = lookups.incrementAndGet();
+                T evald = interned.get( delta );
+                if ( evald != null ) {
+                    hits.incrementAndGet();
+                    return evald;
+                }
+                evald = base.copy();
+                next.applyDelta( evald, delta.iterator() );
+                if ( interned.size() >= MAX_INTERNED
+                     || ( numLookups >= MIN_LOOKUPS && hits.get() < numLookups / 4 ) ) {
+                    LOG.debug( "Styling of symbolizer in file '{}', line {}, column {} is not shared between features, "
+                               + "the values of its dynamic parts vary too much.", new Object[] { file, line, col } );
+                    this.interned = null;
+                    return evald;
+                }
+                T existing = interned.putIfAbsent( delta, evald );
+                return existing != null ? existing : evald;
+            }
+            LOG.debug( "Styling of symbolizer in file '{}', line {}, column {} cannot be shared between features.",
+                       new Object[] { file, line, col } );
+            this.interned = null;
+        }
+        T evald = base.copy();
         next.evaluate( evald, f, evaluator );
-        // if ( id != null ) {
-        // cache.put( id, pair.first );
-        // }
+        return evald;
+    }
 
-        return pair;
+    /**
+     * Adds the properties that are read when evaluating this symbolizer to the given collection. If the symbolizer has
+     * no geometry expression, the geometry properties of the feature are used, which are not included.
+     * 
+     * @param refs
+     * @return false, if the properties read by the symbolizer are not known
+     */
+    public boolean appendValueReferences( Collection<ValueReference> refs ) {
+        if ( geometry != null ) {
+            refs.addAll( Arrays.asList( Filters.getPropertyNames( geometry ) ) );
+        }
+        return evaluated != null || next == null || next.appendValueReferences( refs );
     }
 
     /**
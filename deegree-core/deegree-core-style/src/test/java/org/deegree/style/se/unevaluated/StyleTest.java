@@ -0,0 +1,120 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.style.se.unevaluated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.deegree.commons.utils.DoublePair;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.Feature;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.style.se.parser.SymbologyParser;
+import org.deegree.style.styling.TextStyling;
+import org.junit.Test;
+
+/**
+ * Test cases for determining the properties referenced by a {@link Style}.
+ * 
+ * @since 3.4
+ */
+public class StyleTest {
+
+    private static final String STYLE = "<FeatureTypeStyle xmlns='http://www.opengis.net/se' "
+                                        + "xmlns:ogc='http://www.opengis.net/ogc'><Rule><ogc:Filter>"
+                                        + "<ogc:PropertyIsEqualTo><ogc:PropertyName>kind</ogc:PropertyName>"
+                                        + "<ogc:Literal>road</ogc:Literal></ogc:PropertyIsEqualTo></ogc:Filter>"
+                                        + "<LineSymbolizer><Geometry><ogc:PropertyName>geom</ogc:PropertyName>"
+                                        + "</Geometry><Stroke><SvgParameter name='stroke-width'>"
+                                        + "<ogc:PropertyName>width</ogc:PropertyName></SvgParameter>"
+                                        + "<SvgParameter name='stroke'>#ff0000</SvgParameter></Stroke>"
+                                        + "</LineSymbolizer><TextSymbolizer><Label><ogc:PropertyName>name"
+                                        + "</ogc:PropertyName></Label></TextSymbolizer></Rule>"
+                                        + "<Rule><ElseFilter/><PolygonSymbolizer><Fill><SvgParameter name='fill'>"
+                                        + "#00ff00</SvgParameter></Fill></PolygonSymbolizer></Rule></FeatureTypeStyle>";
+
+    @Test
+    public void testReferencedProperties()
+                            throws XMLStreamException {
+        Style style = parseStyle();
+        Set<String> names = new HashSet<String>();
+        for ( ValueReference ref : style.getReferencedProperties() ) {
+            names.add( ref.getAsText() );
+        }
+        Set<String> expected = new HashSet<String>();
+        Collections.addAll( expected, "kind", "geom", "width", "name" );
+        assertEquals( expected, names );
+        // the polygon symbolizer has no geometry expression
+        assertTrue( style.usesDefaultGeometries() );
+    }
+
+    @Test
+    public void testUnknownContinuation() {
+        Continuation<LinkedList<Symbolizer<?>>> rule = new Continuation<LinkedList<Symbolizer<?>>>() {
+            @Override
+            public void updateStep( LinkedList<Symbolizer<?>> base, Feature obj, XPathEvaluator<Feature> evaluator ) {
+                // nothing to do
+            }
+        };
+        List<Pair<Continuation<LinkedList<Symbolizer<?>>>, DoublePair>> rules = new ArrayList<Pair<Continuation<LinkedList<Symbolizer<?>>>, DoublePair>>();
+        rules.add( new Pair<Continuation<LinkedList<Symbolizer<?>>>, DoublePair>( rule, new DoublePair( 0, 1 ) ) );
+        Map<Symbolizer<TextStyling>, Continuation<StringBuffer>> labels = Collections.emptyMap();
+        Style style = new Style( rules, labels, null, "test", null );
+        assertNull( style.getReferencedProperties() );
+    }
+
+    @Test
+    public void testDefaultStyle() {
+        Style style = new Style();
+        assertTrue( style.getReferencedProperties().isEmpty() );
+        assertTrue( style.usesDefaultGeometries() );
+    }
+
+    private static Style parseStyle()
+                            throws XMLStreamException {
+        XMLStreamReader in = XMLInputFactory.newInstance().createXMLStreamReader( new StringReader( STYLE ) );
+        in.nextTag();
+        return SymbologyParser.INSTANCE.parse( in );
+    }
+
+}
@@ -0,0 +1,162 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.style.se.unevaluated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+import java.util.Collections;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.style.se.parser.SymbologyParser;
+import org.deegree.style.styling.LineStyling;
+import org.junit.Test;
+
+/**
+ * Test cases for the evaluation of {@link Symbolizer}s with dynamic parts.
+ * 
+ * @since 3.4
+ */
+public class SymbolizerTest {
+
+    private static final String SYMBOLIZER = "<LineSymbolizer xmlns='http://www.opengis.net/se' "
+                                             + "xmlns:ogc='http://www.opengis.net/ogc'><Stroke>"
+                                             + "<SvgParameter name='stroke-width'><ogc:PropertyName>width"
+                                             + "</ogc:PropertyName></SvgParameter></Stroke></LineSymbolizer>";
+
+    private final Feature feature = new GenericFeature( new GenericFeatureType( new QName( "test" ),
+                                                                                Collections.<PropertyType> emptyList(),
+                                                                                false ), "f1",
+                                                        Collections.<Property> emptyList(), null );
+
+    @Test
+    public void testEqualValuesShareStyling()
+                            throws XMLStreamException {
+        Symbolizer<LineStyling> sym = parseSymbolizer();
+        LineStyling first = sym.evaluate( feature, new ConstantEvaluator( "2" ) ).first;
+        LineStyling second = sym.evaluate( feature, new ConstantEvaluator( "2" ) ).first;
+        LineStyling third = sym.evaluate( feature, new ConstantEvaluator( "5" ) ).first;
+
+        assertSame( first, second );
+        assertNotSame( first, third );
+        assertEquals( 2, first.stroke.width, 0 );
+        assertEquals( 5, third.stroke.width, 0 );
+        assertNotSame( sym.getBase(), first );
+    }
+
+    @Test
+    public void testContinuationWithoutDelta() {
+        LineStyling base = new LineStyling();
+        Symbolizer<LineStyling> sym = new Symbolizer<LineStyling>( base, new Continuation<LineStyling>() {
+            private int width;
+
+            @Override
+            public void updateStep( LineStyling base, Feature obj, XPathEvaluator<Feature> evaluator ) {
+                base.stroke.width = ++width;
+            }
+        }, null, "test", null, 0, 0 );
+
+        LineStyling first = sym.evaluate( feature, null ).first;
+        LineStyling second = sym.evaluate( feature, null ).first;
+
+        assertNotSame( first, second );
+        assertEquals( 1, first.stroke.width, 0 );
+        assertEquals( 2, second.stroke.width, 0 );
+    }
+
+    @Test
+    public void testMissEvaluatesExpressionsOnce()
+                            throws XMLStreamException {
+        Symbolizer<LineStyling> sym = parseSymbolizer();
+        ConstantEvaluator evaluator = new ConstantEvaluator( "3" );
+        LineStyling styling = sym.evaluate( feature, evaluator ).first;
+        assertEquals( 3, styling.stroke.width, 0 );
+        assertEquals( 1, evaluator.evaluations );
+    }
+
+    @Test
+    public void testSharingStopsForVaryingValues()
+                            throws XMLStreamException {
+        Symbolizer<LineStyling> sym = parseSymbolizer();
+        for ( int i = 0; i < 300; ++i ) {
+            ConstantEvaluator evaluator = new ConstantEvaluator( Integer.toString( i ) );
+            assertEquals( i, sym.evaluate( feature, evaluator ).first.stroke.width, 0 );
+            assertEquals( 1, evaluator.evaluations );
+        }
+        LineStyling first = sym.evaluate( feature, new ConstantEvaluator( "2" ) ).first;
+        LineStyling second = sym.evaluate( feature, new ConstantEvaluator( "2" ) ).first;
+        assertNotSame( first, second );
+        assertEquals( 2, second.stroke.width, 0 );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Symbolizer<LineStyling> parseSymbolizer()
+                            throws XMLStreamException {
+        XMLStreamReader in = XMLInputFactory.newInstance().createXMLStreamReader( new StringReader( SYMBOLIZER ) );
+        in.nextTag();
+        return (Symbolizer<LineStyling>) SymbologyParser.INSTANCE.parseSymbolizer( in ).first;
+    }
+
+    private static class ConstantEvaluator implements XPathEvaluator<Feature> {
+
+        private final String value;
+
+        int evaluations;
+
+        ConstantEvaluator( String value ) {
+            this.value = value;
+        }
+
+        @Override
+        public TypedObjectNode[] eval( Feature context, ValueReference valueRef ) {
+            ++evaluations;
+            return new TypedObjectNode[] { new PrimitiveValue( value ) };
+        }
+
+        @Override
+        public String getId( Feature context ) {
+            return context.getId();
+        }
+    }
+
+}
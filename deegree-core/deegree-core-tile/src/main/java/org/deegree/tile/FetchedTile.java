@@ -0,0 +1,89 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+
+/**
+ * {@link Tile} whose image has already been fetched by the {@link TileFetcher}.
+ * 
+ * @since 3.4
+ */
+class FetchedTile implements Tile {
+
+    private final Tile tile;
+
+    private final BufferedImage image;
+
+    private final RuntimeException error;
+
+    /**
+     * @param tile
+     *            the original tile, never <code>null</code>
+     * @param image
+     *            the fetched image, <code>null</code> if fetching failed
+     * @param error
+     *            the error that occurred while fetching, <code>null</code> if fetching succeeded
+     */
+    FetchedTile( Tile tile, BufferedImage image, RuntimeException error ) {
+        this.tile = tile;
+        this.image = image;
+        this.error = error;
+    }
+
+    @Override
+    public BufferedImage getAsImage()
+                            throws TileIOException {
+        if ( error != null ) {
+            throw error;
+        }
+        return image;
+    }
+
+    @Override
+    public InputStream getAsStream()
+                            throws TileIOException {
+        return tile.getAsStream();
+    }
+
+    @Override
+    public Envelope getEnvelope() {
+        return tile.getEnvelope();
+    }
+
+    @Override
+    public FeatureCollection getFeatures( int i, int j, int limit )
+                            throws UnsupportedOperationException {
+        return tile.getFeatures( i, j, limit );
+    }
+
+}
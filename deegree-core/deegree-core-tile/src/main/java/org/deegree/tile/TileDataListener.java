@@ -0,0 +1,55 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+/**
+ * Receives tile data that a {@link TileDataLevel} produced as a side effect of producing another tile.
+ * <p>
+ * Data levels that fetch or render more than one tile at once (e.g. meta tiling) use this to hand the sibling tiles to
+ * interested parties such as caches, so they don't have to be requested again.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public interface TileDataListener {
+
+    /**
+     * Called after the data of a tile has been produced.
+     * 
+     * @param level
+     *            the level the tile belongs to, never <code>null</code>
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @param data
+     *            the encoded tile data (in the native format of the level), never <code>null</code>
+     */
+    void tileProduced( TileDataLevel level, long x, long y, byte[] data );
+
+}
@@ -0,0 +1,117 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * A running fetch of tile images started by {@link TileFetcher#fetch(Iterator)}. Yields the fetched tiles in the order
+ * their images become available.
+ * 
+ * @since 3.4
+ */
+public class TileFetch implements Iterator<Tile> {
+
+    private final CompletionService<Tile> completionService;
+
+    private final List<Future<Tile>> futures = new ArrayList<Future<Tile>>();
+
+    private final long deadline;
+
+    private int returned;
+
+    TileFetch( Executor executor, long deadline ) {
+        this.completionService = new ExecutorCompletionService<Tile>( executor );
+        this.deadline = deadline;
+    }
+
+    void submit( Callable<Tile> fetch ) {
+        futures.add( completionService.submit( fetch ) );
+    }
+
+    @Override
+    public boolean hasNext() {
+        return returned < futures.size();
+    }
+
+    /**
+     * Waits for the next tile image to become available.
+     * 
+     * @return the next fetched tile, never <code>null</code>
+     * @throws TileIOException
+     *             if the time-out has been exceeded or the current thread has been interrupted (outstanding fetches
+     *             are cancelled in both cases)
+     */
+    @Override
+    public Tile next()
+                            throws TileIOException {
+        if ( !hasNext() ) {
+            throw new NoSuchElementException();
+        }
+        Future<Tile> future;
+        try {
+            future = completionService.poll( Math.max( 0, deadline - System.currentTimeMillis() ), MILLISECONDS );
+        } catch ( InterruptedException e ) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new TileIOException( "Interrupted while fetching tiles.", e );
+        }
+        if ( future == null ) {
+            cancel();
+            throw new TileIOException( "Fetching tiles timed out, " + ( futures.size() - returned )
+                                       + " tile(s) outstanding." );
+        }
+        ++returned;
+        return TileFetcher.get( future, deadline );
+    }
+
+    /**
+     * Cancels all outstanding fetches. Calling this after all tiles have been returned has no effect.
+     */
+    public void cancel() {
+        for ( Future<Tile> future : futures ) {
+            future.cancel( true );
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -0,0 +1,281 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.utils.RequestUtils;
+import org.slf4j.Logger;
+
+/**
+ * Fetches the images of multiple {@link Tile}s concurrently, using a bounded pool of threads.
+ * <p>
+ * The shared instance (see {@link #acquire()}) uses the number of threads given by the system property
+ * <code>deegree.tile.fetch.threads</code> (default: 16) and the time-out given by
+ * <code>deegree.tile.fetch.timeout</code> (milliseconds, default: 60000). The time-out applies to all tiles fetched
+ * for one request. Interrupting the requesting thread (e.g. by the request watchdog) cancels all outstanding fetches
+ * of the request.
+ * </p>
+ * <p>
+ * The shared instance is reference counted: resources using it (e.g. tile layers or merging tile stores) acquire it
+ * when they are created and release it when they are destroyed, its threads are stopped when the last user releases
+ * it. This way, no threads are left running after a workspace has been destroyed.
+ * </p>
+ * <p>
+ * Fetches requested from within a fetcher thread (e.g. by a tile that merges other tiles) are performed sequentially
+ * in that thread, so the pool can't deadlock.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class TileFetcher {
+
+    private static final Logger LOG = getLogger( TileFetcher.class );
+
+    private static TileFetcher shared;
+
+    private static int sharedUsers;
+
+    private static final Executor CALLER_RUNS = new Executor() {
+        @Override
+        public void execute( Runnable command ) {
+            command.run();
+        }
+    };
+
+    private final ThreadPoolExecutor executor;
+
+    private final long timeoutMillis;
+
+    /**
+     * @param threads
+     *            maximum number of concurrent fetches, must be positive
+     * @param timeoutMillis
+     *            maximum time to wait for the tiles of one request (in milliseconds)
+     */
+    public TileFetcher( int threads, long timeoutMillis ) {
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor( threads, threads, 60, SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                new FetcherThreadFactory() );
+        executor.allowCoreThreadTimeOut( true );
+    }
+
+    /**
+     * Returns the shared instance, creating it if it is not in use. Each call must be matched by a call to
+     * {@link #release(TileFetcher)} when the caller is destroyed.
+     * 
+     * @return the shared instance, never <code>null</code>
+     */
+    public static synchronized TileFetcher acquire() {
+        if ( shared == null ) {
+            shared = new TileFetcher( Integer.getInteger( "deegree.tile.fetch.threads", 16 ),
+                                      Long.getLong( "deegree.tile.fetch.timeout", 60000 ) );
+        }
+        ++sharedUsers;
+        return shared;
+    }
+
+    /**
+     * Releases the shared instance. The threads of the shared instance are stopped when it has been released by all
+     * users.
+     * 
+     * @param fetcher
+     *            the instance returned by {@link #acquire()}, may be <code>null</code> (ignored)
+     */
+    public static synchronized void release( TileFetcher fetcher ) {
+        if ( fetcher == null || fetcher != shared ) {
+            return;
+        }
+        if ( --sharedUsers == 0 ) {
+            LOG.debug( "Shutting down shared tile fetcher." );
+            shared.shutdown();
+            shared = null;
+        }
+    }
+
+    /**
+     * Starts fetching the images of all given tiles. The returned iterator yields the tiles in the order their images
+     * become available, <code>null</code> tiles are skipped. Calling {@link Tile#getAsImage()} on the returned tiles
+     * does not block, fetching errors are rethrown from there.
+     * <p>
+     * Callers must invoke {@link TileFetch#cancel()} when they are done (use a <code>finally</code> block).
+     * </p>
+     * 
+     * @param tiles
+     *            the tiles to fetch, must not be <code>null</code>
+     * @return the fetch, never <code>null</code>
+     */
+    public TileFetch fetch( Iterator<Tile> tiles ) {
+        TileFetch fetch = new TileFetch( getExecutor(), System.currentTimeMillis() + timeoutMillis );
+        Map<String, String> params = RequestUtils.getCurrentThreadRequestParameters().get();
+        while ( tiles.hasNext() ) {
+            Tile tile = tiles.next();
+            if ( tile != null ) {
+                fetch.submit( new Fetch( tile, params ) );
+            }
+        }
+        return fetch;
+    }
+
+    /**
+     * Fetches the images of all given tiles concurrently and returns them in the order of the tiles.
+     * 
+     * @param tiles
+     *            the tiles to fetch, must not be <code>null</code> and must not contain <code>null</code>
+     * @return the images, never <code>null</code>
+     * @throws TileIOException
+     *             if fetching one of the images failed, timed out or was interrupted
+     */
+    public List<BufferedImage> fetchImages( List<Tile> tiles )
+                            throws TileIOException {
+        List<BufferedImage> images = new ArrayList<BufferedImage>( tiles.size() );
+        if ( tiles.size() < 2 || isFetcherThread() ) {
+            for ( Tile tile : tiles ) {
+                images.add( tile.getAsImage() );
+            }
+            return images;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        Map<String, String> params = RequestUtils.getCurrentThreadRequestParameters().get();
+        List<Future<Tile>> futures = new ArrayList<Future<Tile>>( tiles.size() );
+        try {
+            for ( Tile tile : tiles ) {
+                futures.add( executor.submit( new Fetch( tile, params ) ) );
+            }
+            for ( Future<Tile> future : futures ) {
+                images.add( get( future, deadline ).getAsImage() );
+            }
+        } finally {
+            for ( Future<Tile> future : futures ) {
+                future.cancel( true );
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Stops the threads of this fetcher. Must not be called on the shared instance, use {@link #release(TileFetcher)}
+     * instead.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Executor getExecutor() {
+        return isFetcherThread() ? CALLER_RUNS : executor;
+    }
+
+    private static boolean isFetcherThread() {
+        return Thread.currentThread() instanceof FetcherThread;
+    }
+
+    static Tile get( Future<Tile> future, long deadline )
+                            throws TileIOException {
+        try {
+            return future.get( Math.max( 0, deadline - System.currentTimeMillis() ), MILLISECONDS );
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new TileIOException( "Interrupted while fetching tiles.", e );
+        } catch ( TimeoutException e ) {
+            throw new TileIOException( "Fetching tiles timed out.", e );
+        } catch ( ExecutionException e ) {
+            // Fetch catches everything, so this should not happen
+            throw new TileIOException( e.getCause().getMessage(), e.getCause() );
+        }
+    }
+
+    /**
+     * Fetches the image of a single tile in a fetcher thread.
+     */
+    private static class Fetch implements Callable<Tile> {
+
+        private final Tile tile;
+
+        private final Map<String, String> params;
+
+        Fetch( Tile tile, Map<String, String> params ) {
+            this.tile = tile;
+            this.params = params;
+        }
+
+        @Override
+        public Tile call() {
+            ThreadLocal<Map<String, String>> current = RequestUtils.getCurrentThreadRequestParameters();
+            Map<String, String> previous = current.get();
+            current.set( params );
+            try {
+                return new FetchedTile( tile, tile.getAsImage(), null );
+            } catch ( RuntimeException e ) {
+                LOG.trace( "Fetching tile failed: " + e.getMessage(), e );
+                return new FetchedTile( tile, null, e );
+            } finally {
+                if ( previous == null ) {
+                    current.remove();
+                } else {
+                    current.set( previous );
+                }
+            }
+        }
+    }
+
+    private static class FetcherThread extends Thread {
+
+        FetcherThread( Runnable r, String name ) {
+            super( r, name );
+            setDaemon( true );
+        }
+    }
+
+    private static class FetcherThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            return new FetcherThread( r, "TileFetcher-" + count.incrementAndGet() );
+        }
+    }
+
+}
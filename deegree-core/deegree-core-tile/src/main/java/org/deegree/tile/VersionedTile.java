@@ -0,0 +1,56 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+/**
+ * A {@link Tile} that can provide validators for its encoded data without accessing the data itself.
+ * <p>
+ * Services use the validators to answer conditional requests (e.g. HTTP <code>If-None-Match</code>) without reading
+ * the tile. Tiles that do not implement this interface have to be read (and hashed) to derive a validator.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public interface VersionedTile extends Tile {
+
+    /**
+     * Returns an opaque identifier for the current version of the tile data. The identifier must change whenever the
+     * encoded tile data changes.
+     * 
+     * @return version identifier, can be <code>null</code> (unknown)
+     */
+    String getVersion();
+
+    /**
+     * Returns the time of the last modification of the tile data.
+     * 
+     * @return modification time in milliseconds since the epoch, or <code>-1</code> if unknown
+     */
+    long getLastModified();
+
+}
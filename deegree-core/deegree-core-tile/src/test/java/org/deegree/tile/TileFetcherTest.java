@@ -0,0 +1,181 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Test cases for {@link TileFetcher}.
+ * 
+ * @since 3.4
+ */
+public class TileFetcherTest {
+
+    private TileFetcher fetcher;
+
+    @Before
+    public void setUp() {
+        fetcher = new TileFetcher( 4, 5000 );
+    }
+
+    @After
+    public void tearDown() {
+        fetcher.shutdown();
+    }
+
+    private static Tile mockTile( BufferedImage img ) {
+        Tile tile = mock( Tile.class );
+        when( tile.getAsImage() ).thenReturn( img );
+        return tile;
+    }
+
+    /**
+     * Returns a tile whose image only becomes available if as many tiles as the latch counts are fetched concurrently.
+     */
+    private static Tile mockBarrierTile( final CountDownLatch latch, final BufferedImage img ) {
+        Tile tile = mock( Tile.class );
+        when( tile.getAsImage() ).thenAnswer( new Answer<BufferedImage>() {
+            @Override
+            public BufferedImage answer( InvocationOnMock invocation )
+                                    throws Throwable {
+                latch.countDown();
+                if ( !latch.await( 2, TimeUnit.SECONDS ) ) {
+                    throw new TileIOException( "Tiles have not been fetched concurrently." );
+                }
+                return img;
+            }
+        } );
+        return tile;
+    }
+
+    @Test
+    public void testFetchIsConcurrent() {
+        CountDownLatch latch = new CountDownLatch( 4 );
+        List<Tile> tiles = new ArrayList<Tile>();
+        for ( int i = 0; i < 4; ++i ) {
+            tiles.add( mockBarrierTile( latch, new BufferedImage( 1, 1, BufferedImage.TYPE_INT_ARGB ) ) );
+        }
+        TileFetch fetch = fetcher.fetch( tiles.iterator() );
+        int count = 0;
+        try {
+            while ( fetch.hasNext() ) {
+                assertTrue( fetch.next().getAsImage() != null );
+                ++count;
+            }
+        } finally {
+            fetch.cancel();
+        }
+        assertEquals( 4, count );
+    }
+
+    @Test
+    public void testFetchSkipsNullTiles() {
+        BufferedImage img = new BufferedImage( 1, 1, BufferedImage.TYPE_INT_ARGB );
+        TileFetch fetch = fetcher.fetch( Arrays.asList( null, mockTile( img ), null ).iterator() );
+        assertTrue( fetch.hasNext() );
+        assertSame( img, fetch.next().getAsImage() );
+        assertFalse( fetch.hasNext() );
+    }
+
+    @Test
+    public void testFetchErrorIsRethrownByTile() {
+        Tile tile = mock( Tile.class );
+        when( tile.getAsImage() ).thenThrow( new TileIOException( "broken" ) );
+        TileFetch fetch = fetcher.fetch( Arrays.asList( tile ).iterator() );
+        Tile fetched = fetch.next();
+        try {
+            fetched.getAsImage();
+            fail( "Expected TileIOException." );
+        } catch ( TileIOException e ) {
+            assertEquals( "broken", e.getMessage() );
+        }
+    }
+
+    @Test
+    public void testFetchImagesKeepsOrder() {
+        CountDownLatch latch = new CountDownLatch( 3 );
+        List<Tile> tiles = new ArrayList<Tile>();
+        List<BufferedImage> expected = new ArrayList<BufferedImage>();
+        for ( int i = 0; i < 3; ++i ) {
+            BufferedImage img = new BufferedImage( 1, 1, BufferedImage.TYPE_INT_ARGB );
+            expected.add( img );
+            tiles.add( mockBarrierTile( latch, img ) );
+        }
+        assertEquals( expected, fetcher.fetchImages( tiles ) );
+    }
+
+    @Test(expected = TileIOException.class)
+    public void testFetchTimesOut() {
+        TileFetcher fetcher = new TileFetcher( 1, 100 );
+        try {
+            CountDownLatch never = new CountDownLatch( 2 );
+            fetcher.fetchImages( Arrays.asList( mockBarrierTile( never, null ), mockBarrierTile( never, null ) ) );
+        } finally {
+            fetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testSharedInstanceIsStoppedWhenReleasedByAllUsers() {
+        TileFetcher first = TileFetcher.acquire();
+        TileFetcher second = TileFetcher.acquire();
+        assertSame( first, second );
+        TileFetcher.release( first );
+        BufferedImage img = new BufferedImage( 1, 1, BufferedImage.TYPE_INT_ARGB );
+        List<Tile> tiles = Arrays.asList( mockTile( img ), mockTile( img ) );
+        assertEquals( Arrays.asList( img, img ), second.fetchImages( tiles ) );
+        TileFetcher.release( second );
+        TileFetcher third = TileFetcher.acquire();
+        try {
+            assertNotSame( first, third );
+        } finally {
+            TileFetcher.release( third );
+        }
+    }
+
+}
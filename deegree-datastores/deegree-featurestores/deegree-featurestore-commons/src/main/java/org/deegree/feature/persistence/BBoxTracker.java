@@ -35,8 +35,10 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -66,6 +68,9 @@ public class BBoxTracker {
 
     private final Map<QName, Envelope> increaseBBoxes = new HashMap<QName, Envelope>();
 
+    // envelopes of all inserted, updated and deleted features, null if unknown
+    private List<Envelope> changedEnvelopes = new ArrayList<Envelope>();
+
     /**
      * An insert event for the specified feature instance.
      *
@@ -75,14 +80,16 @@ public class BBoxTracker {
      *            srs of stored envelope, must not be <code>null</code>
      */
     public void insert( Feature f, ICRS storageSrs ) {
-        if ( !recalcFts.contains( f.getName() ) ) {
-            Envelope bbox = null;
-            try {
-                bbox = f.getEnvelope();
-            } catch ( Exception e ) {
-                LOG.warn( "Unable to determine bbox of feature with id " + f.getId() + ": " + e.getMessage() );
-            }
-            if ( bbox != null ) {
+        Envelope bbox = null;
+        try {
+            bbox = f.getEnvelope();
+        } catch ( Exception e ) {
+            LOG.warn( "Unable to determine bbox of feature with id " + f.getId() + ": " + e.getMessage() );
+            changedEnvelopes = null;
+        }
+        if ( bbox != null ) {
+            changed( bbox );
+            if ( !recalcFts.contains( f.getName() ) ) {
                 try {
                     if ( bbox.getCoordinateSystem() != null && !bbox.getCoordinateSystem().equals( storageSrs ) ) {
                         GeometryTransformer transformer = new GeometryTransformer( storageSrs );
@@ -124,6 +131,51 @@ public class BBoxTracker {
         recalcFts.add( ft );
     }
 
+    /**
+     * A change of the specified feature instance. For updates and deletes, to be called with the feature's state before
+     * the change.
+     * 
+     * @param f
+     *            feature instance that is changed, must not be <code>null</code>
+     */
+    public void changed( Feature f ) {
+        try {
+            changed( f.getEnvelope() );
+        } catch ( Exception e ) {
+            LOG.warn( "Unable to determine bbox of feature with id " + f.getId() + ": " + e.getMessage() );
+            changedEnvelopes = null;
+        }
+    }
+
+    /**
+     * A change affecting the specified area (e.g. an updated geometry).
+     * 
+     * @param bbox
+     *            envelope of the change, may be <code>null</code> (nothing changed spatially)
+     */
+    public void changed( Envelope bbox ) {
+        if ( bbox != null && changedEnvelopes != null ) {
+            changedEnvelopes.add( bbox );
+        }
+    }
+
+    /**
+     * A change affecting an unknown area (e.g. the changed features could not be determined).
+     */
+    public void changedAnywhere() {
+        changedEnvelopes = null;
+    }
+
+    /**
+     * Returns the envelopes of all features inserted, updated or deleted during the transaction (for updates and
+     * deletes both the envelopes before and after the change, if available).
+     * 
+     * @return envelopes (in the CRS of the features), <code>null</code> if the affected area could not be determined
+     */
+    public List<Envelope> getChangedEnvelopes() {
+        return changedEnvelopes;
+    }
+
     /**
      * Returns feature type name to {@link Envelope} mappings for all envelopes to be increased.
      *
@@ -97,6 +97,10 @@ public class Query {
 
     private int maxFeatures = -1;
 
+    private int offset;
+
+    private int count = -1;
+
     private final List<ProjectionClause> projections;
 
     /**
@@ -173,6 +177,31 @@ public class Query {
      */
     public Query( TypeName[] typeNames, Filter filter, SortProperty[] sortBy, int scale, int maxFeatures,
                   double resolution ) {
+        this( typeNames, filter, sortBy, scale, maxFeatures, resolution, null );
+    }
+
+    /**
+     * Creates a new {@link Query} instance.
+     * 
+     * @param typeNames
+     *            feature type names to be queried, must not be <code>null</code> and contain at least one entry
+     * @param filter
+     *            filter to be applied, can be <code>null</code>, if not <code>null</code>, all contained geometry
+     *            operands must have a non-null {@link CRS}
+     * @param sortBy
+     *            sort criteria to be applied, can be <code>null</code>
+     * @param scale
+     *            if scale is positive, a scale query hint will be used
+     * @param maxFeatures
+     *            may be -1 if no limit needs to be exercised
+     * @param resolution
+     *            if resolution is positive, a pixel resolution hint will be used
+     * @param projections
+     *            projections to be applied to returned features, can be <code>null</code> (all properties are
+     *            returned then)
+     */
+    public Query( TypeName[] typeNames, Filter filter, SortProperty[] sortBy, int scale, int maxFeatures,
+                  double resolution, List<ProjectionClause> projections ) {
         this.typeNames = typeNames;
         this.filter = filter;
         if ( sortBy != null ) {
@@ -187,7 +216,11 @@ public class Query {
         if ( resolution > 0 ) {
             hints.put( HINT_RESOLUTION, resolution );
         }
-        this.projections = emptyList();
+        if ( projections != null ) {
+            this.projections = projections;
+        } else {
+            this.projections = emptyList();
+        }
     }
 
     public Object getHint( QueryHint code ) {
@@ -277,4 +310,45 @@ public class Query {
     public int getMaxFeatures() {
         return maxFeatures;
     }
+
+    /**
+     * Returns the number of leading features that must be skipped (e.g. WFS 2.0 <code>startIndex</code>).
+     * 
+     * @return number of features to skip, zero if no features are skipped
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Sets the number of leading features that must be skipped. In contrast to the maximum number of features, this
+     * is not a hint: feature stores that cannot skip the features in the backend must skip them while iterating the
+     * result.
+     * 
+     * @param offset
+     *            number of features to skip, zero if no features are skipped
+     */
+    public void setOffset( int offset ) {
+        this.offset = offset;
+    }
+
+    /**
+     * Returns the number of features that must be returned at most after skipping the offset (e.g. WFS 2.0
+     * <code>count</code>). In contrast to {@link #getMaxFeatures()}, this is only set for paged requests.
+     * 
+     * @return maximum number of features, -1 if unlimited
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Sets the number of features that must be returned at most after skipping the offset.
+     * 
+     * @param count
+     *            maximum number of features, -1 if unlimited
+     */
+    public void setCount( int count ) {
+        this.count = count;
+    }
 }
\ No newline at end of file
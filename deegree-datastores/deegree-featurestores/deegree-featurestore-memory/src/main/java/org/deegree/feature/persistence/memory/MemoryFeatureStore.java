@@ -36,7 +36,9 @@
 package org.deegree.feature.persistence.memory;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.xml.namespace.QName;
 
@@ -46,19 +48,24 @@ import org.deegree.db.ConnectionProvider;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.i18n.Messages;
 import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChangeListener;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.ObservableFeatureStore;
 import org.deegree.feature.persistence.lock.DefaultLockManager;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.stream.CombinedFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.geometry.Envelope;
 import org.deegree.workspace.Resource;
 import org.deegree.workspace.ResourceMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * {@link FeatureStore} implementation that keeps the feature instances in memory.
@@ -71,7 +78,9 @@ import org.deegree.workspace.ResourceMetadata;
  * 
  * @version $Revision: $, $Date: $
  */
-public class MemoryFeatureStore implements FeatureStore {
+public class MemoryFeatureStore implements ObservableFeatureStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger( MemoryFeatureStore.class );
 
     private final AppSchema schema;
 
@@ -87,6 +96,8 @@ public class MemoryFeatureStore implements FeatureStore {
 
     private MemoryFeatureStoreMetadata metadata;
 
+    private final List<FeatureStoreChangeListener> changeListeners = new CopyOnWriteArrayList<FeatureStoreChangeListener>();
+
     /**
      * Creates a new {@link MemoryFeatureStore} instance for the given {@link AppSchema}.
      * 
@@ -125,7 +136,11 @@ public class MemoryFeatureStore implements FeatureStore {
     @Override
     public FeatureInputStream query( Query query )
                             throws FilterEvaluationException, FeatureStoreException {
-        return storedFeatures.query( query );
+        FeatureInputStream rs = storedFeatures.query( query );
+        if ( query.getOffset() > 0 ) {
+            rs = new PagedFeatureInputStream( rs, query.getOffset(), -1 );
+        }
+        return rs;
     }
 
     @Override
@@ -273,6 +288,27 @@ public class MemoryFeatureStore implements FeatureStore {
         return true;
     }
 
+    @Override
+    public void addChangeListener( FeatureStoreChangeListener listener ) {
+        changeListeners.add( listener );
+    }
+
+    @Override
+    public void removeChangeListener( FeatureStoreChangeListener listener ) {
+        changeListeners.remove( listener );
+    }
+
+    void fireFeaturesChanged( List<Envelope> envelopes ) {
+        for ( FeatureStoreChangeListener listener : changeListeners ) {
+            try {
+                listener.featuresChanged( this, envelopes );
+            } catch ( Throwable t ) {
+                LOG.warn( "Feature store change listener failed: {}", t.getLocalizedMessage() );
+                LOG.trace( "Stack trace:", t );
+            }
+        }
+    }
+
     /**
      * Returns the CRS used for storing the geometries.
      * 
@@ -56,6 +56,7 @@ import org.deegree.cs.exceptions.UnknownCRSException;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.BBoxTracker;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
@@ -68,6 +69,7 @@ import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
 import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.ResourceId;
+import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
 import org.deegree.geometry.linearization.GeometryLinearizer;
@@ -106,6 +108,8 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 
     private final LockManager lockManager;
 
+    private final BBoxTracker bboxTracker = new BBoxTracker();
+
     /**
      * Creates a new {@link MemoryFeatureStoreTransaction} instance.
      * 
@@ -131,6 +135,10 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
             throw new FeatureStoreException( e.getMessage() );
         }
         fs.releaseTransaction( this, sf );
+        List<Envelope> changed = bboxTracker.getChangedEnvelopes();
+        if ( changed == null || !changed.isEmpty() ) {
+            fs.fireFeaturesChanged( changed );
+        }
     }
 
     @Override
@@ -169,6 +177,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 
                 deleted = delete.size();
                 for ( Feature feature : delete ) {
+                    bboxTracker.changed( feature );
                     sf.removeFeature( feature );
                     if ( lock != null ) {
                         lock.release( feature.getId() );
@@ -205,6 +214,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
             if ( obj != null ) {
                 if ( obj instanceof Feature ) {
                     Feature f = (Feature) obj;
+                    bboxTracker.changed( f );
                     sf.removeFeature( f );
                     deleted++;
                 }
@@ -245,6 +255,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
         begin = System.currentTimeMillis();
         for ( Feature feature : features ) {
             sf.addFeature( feature );
+            bboxTracker.changed( feature );
         }
         elapsed = System.currentTimeMillis() - begin;
         LOG.debug( "Adding of features took {} [ms]", elapsed );
@@ -531,7 +542,9 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 
                 for ( Feature feature : update ) {
                     updatedFids.add( feature.getId() );
+                    bboxTracker.changed( feature );
                     sf.updateFeature( feature, replacementProps );
+                    bboxTracker.changed( feature.calcEnvelope() );
                     if ( lock != null ) {
                         lock.release( feature.getId() );
                     }
@@ -90,6 +90,7 @@ import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.GenericAppSchema;
@@ -417,6 +418,10 @@ public class ShapeFeatureStore implements FeatureStore {
             rs = new MemoryFeatureInputStream( Features.sortFc( rs.toCollection(), p.second ) );
         }
 
+        if ( query.getOffset() > 0 ) {
+            rs = new PagedFeatureInputStream( rs, query.getOffset(), -1 );
+        }
+
         return rs;
     }
 
@@ -75,6 +75,7 @@ import org.deegree.feature.stream.CombinedFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.GenericAppSchema;
@@ -371,6 +372,9 @@ public class SimpleSQLFeatureStore implements FeatureStore {
                 if ( q.getFilter() != null ) {
                     set = new FilteredFeatureInputStream( set, q.getFilter() );
                 }
+                if ( q.getOffset() > 0 ) {
+                    set = new PagedFeatureInputStream( set, q.getOffset(), -1 );
+                }
 
                 list.add( set );
             }
@@ -39,6 +39,8 @@ import static org.deegree.commons.utils.JDBCUtils.close;
 import static org.deegree.commons.xml.CommonNamespaces.OGCNS;
 import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
 import static org.deegree.commons.xml.CommonNamespaces.XSINS;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_RESOLUTION;
+import static org.deegree.feature.persistence.sql.rules.FeatureBuilderRelational.getKeyBatchSize;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.lang.reflect.Constructor;
@@ -49,12 +51,18 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.xml.namespace.QName;
 
@@ -71,6 +79,7 @@ import org.deegree.commons.tom.primitive.PrimitiveType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.tom.sql.ParticleConverter;
 import org.deegree.commons.tom.sql.SQLValueMangler;
+import org.deegree.commons.utils.CloseableIterator;
 import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
@@ -80,10 +89,12 @@ import org.deegree.feature.Feature;
 import org.deegree.feature.Features;
 import org.deegree.feature.persistence.FeatureInspector;
 import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChangeListener;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreGMLIdResolver;
 import org.deegree.feature.persistence.FeatureStoreManager;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.ObservableFeatureStore;
 import org.deegree.feature.persistence.cache.BBoxCache;
 import org.deegree.feature.persistence.cache.FeatureStoreCache;
 import org.deegree.feature.persistence.cache.SimpleFeatureStoreCache;
@@ -112,14 +123,18 @@ import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension;
 import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.Filters;
 import org.deegree.filter.IdFilter;
 import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.projection.ProjectionClause;
+import org.deegree.filter.projection.PropertyName;
 import org.deegree.filter.sort.SortProperty;
 import org.deegree.filter.spatial.BBOX;
 import org.deegree.geometry.Envelope;
@@ -139,6 +154,10 @@ import org.deegree.workspace.Resource;
 import org.deegree.workspace.ResourceInitException;
 import org.deegree.workspace.ResourceMetadata;
 import org.deegree.workspace.Workspace;
+import org.jaxen.expr.Expr;
+import org.jaxen.expr.LocationPath;
+import org.jaxen.expr.NameStep;
+import org.jaxen.saxpath.Axis;
 import org.slf4j.Logger;
 
 /**
@@ -152,7 +171,7 @@ import org.slf4j.Logger;
  * @version $Revision$, $Date$
  */
 @LoggingNotes(info = "logs particle converter initialization", debug = "logs the SQL statements sent to the SQL server and startup/shutdown information")
-public class SQLFeatureStore implements FeatureStore {
+public class SQLFeatureStore implements ObservableFeatureStore {
 
     private static final Logger LOG = getLogger( SQLFeatureStore.class );
 
@@ -160,6 +179,20 @@ public class SQLFeatureStore implements FeatureStore {
 
     private static final int DEFAULT_CACHE_SIZE = 10000;
 
+    /**
+     * Distance in pixels by which geometries may be simplified in the database for queries with a resolution hint
+     * (map queries), can be overridden using the system property
+     * <code>deegree.sqlfeaturestore.simplification.tolerance</code>. A value of 0 disables the simplification.
+     */
+    private static final double SIMPLIFICATION_TOLERANCE = getSimplificationTolerance();
+
+    /**
+     * Number of rows for which the values of joined properties are fetched with a single SELECT per join, can be
+     * overridden using the system property <code>deegree.sqlfeaturestore.joinbatchsize</code>. A value of 1 or less
+     * disables the batching (one SELECT per row and join).
+     */
+    private static final int JOIN_BATCH_SIZE = getJoinBatchSize();
+
     private final SQLFeatureStoreJAXB config;
 
     private final URL configURL;
@@ -200,6 +233,8 @@ public class SQLFeatureStore implements FeatureStore {
 
     private ConnectionProvider connProvider;
 
+    private final List<FeatureStoreChangeListener> changeListeners = new CopyOnWriteArrayList<FeatureStoreChangeListener>();
+
     /**
      * Creates a new {@link SQLFeatureStore} for the given configuration.
      * 
@@ -468,6 +503,231 @@ public class SQLFeatureStore implements FeatureStore {
         return env;
     }
 
+    /**
+     * Determines the envelopes of the specified features in their currently stored state. The envelopes are SELECTed
+     * in batches (one query per feature type and {@link FeatureBuilderRelational#MAX_BOUND_PARAMETERS} bound id
+     * values), not feature by feature.
+     * 
+     * @param filter
+     *            ids of the features, must not be <code>null</code>
+     * @param conn
+     *            connection to use, must not be <code>null</code>
+     * @return envelopes of the features (features without geometry are omitted), never <code>null</code>
+     * @throws FeatureStoreException
+     *             if the envelopes could not be determined
+     */
+    List<Envelope> getEnvelopes( IdFilter filter, Connection conn )
+                            throws FeatureStoreException {
+        List<Envelope> envelopes = new ArrayList<Envelope>();
+        List<String> ids = new ArrayList<String>( filter.getMatchingIds() );
+        if ( blobMapping != null ) {
+            for ( List<String> batch : partition( ids, getKeyBatchSize( 1 ) ) ) {
+                addEnvelopesBlob( batch, conn, envelopes );
+            }
+            return envelopes;
+        }
+
+        Map<QName, List<String>> ftNameToIds = new LinkedHashMap<QName, List<String>>();
+        try {
+            for ( String id : ids ) {
+                QName ftName = getSchema().analyzeId( id ).getFeatureType().getName();
+                List<String> ftIds = ftNameToIds.get( ftName );
+                if ( ftIds == null ) {
+                    ftIds = new ArrayList<String>();
+                    ftNameToIds.put( ftName, ftIds );
+                }
+                ftIds.add( id );
+            }
+        } catch ( IllegalArgumentException e ) {
+            throw new FeatureStoreException( e.getMessage(), e );
+        }
+
+        for ( Map.Entry<QName, List<String>> entry : ftNameToIds.entrySet() ) {
+            FeatureTypeMapping ftMapping = getSchema().getFtMapping( entry.getKey() );
+            List<GeometryMapping> geometryMappings = new ArrayList<GeometryMapping>();
+            if ( ftMapping != null && collectGeometryMappings( ftMapping.getMappings(), geometryMappings ) ) {
+                if ( geometryMappings.isEmpty() ) {
+                    continue;
+                }
+                int batchSize = getKeyBatchSize( ftMapping.getFidMapping().getColumns().size() );
+                for ( List<String> batch : partition( entry.getValue(), batchSize ) ) {
+                    addEnvelopesRelational( ftMapping, geometryMappings, batch, conn, envelopes );
+                }
+            } else {
+                // geometries stored in joined tables, build the features (still batched)
+                for ( List<String> batch : partition( entry.getValue(), getKeyBatchSize( 1 ) ) ) {
+                    addFeatureEnvelopes( batch, envelopes );
+                }
+            }
+        }
+        return envelopes;
+    }
+
+    /**
+     * Collects the geometry mappings stored in the feature type table itself.
+     * 
+     * @return <code>false</code>, if there are geometry mappings that are not stored in the feature type table
+     */
+    private boolean collectGeometryMappings( List<Mapping> mappings, List<GeometryMapping> geometryMappings ) {
+        for ( Mapping mapping : mappings ) {
+            boolean joined = mapping.getJoinedTable() != null && !mapping.getJoinedTable().isEmpty();
+            if ( mapping instanceof GeometryMapping ) {
+                if ( joined || !( ( (GeometryMapping) mapping ).getMapping() instanceof DBField ) ) {
+                    return false;
+                }
+                geometryMappings.add( (GeometryMapping) mapping );
+            } else if ( mapping instanceof CompoundMapping ) {
+                List<GeometryMapping> nested = new ArrayList<GeometryMapping>();
+                if ( !collectGeometryMappings( ( (CompoundMapping) mapping ).getParticles(), nested ) ) {
+                    return false;
+                }
+                if ( joined && !nested.isEmpty() ) {
+                    return false;
+                }
+                geometryMappings.addAll( nested );
+            }
+        }
+        return true;
+    }
+
+    private void addEnvelopesRelational( FeatureTypeMapping ftMapping, List<GeometryMapping> geometryMappings,
+                                         List<String> ids, Connection conn, List<Envelope> envelopes )
+                            throws FeatureStoreException {
+        FIDMapping fidMapping = ftMapping.getFidMapping();
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = fidMapping.getColumns();
+
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        for ( int i = 0; i < geometryMappings.size(); i++ ) {
+            if ( i > 0 ) {
+                sql.append( ',' );
+            }
+            String column = ( (DBField) geometryMappings.get( i ).getMapping() ).getColumn();
+            sql.append( dialect.getBBoxAggregateSnippet( column ) );
+        }
+        sql.append( " FROM " );
+        sql.append( ftMapping.getFtTable() );
+        sql.append( " WHERE " );
+        if ( fidColumns.size() == 1 ) {
+            sql.append( fidColumns.get( 0 ).first );
+            sql.append( " IN (?" );
+            for ( int i = 1; i < ids.size(); i++ ) {
+                sql.append( ",?" );
+            }
+            sql.append( ")" );
+        } else {
+            for ( int i = 0; i < ids.size(); i++ ) {
+                if ( i > 0 ) {
+                    sql.append( " OR " );
+                }
+                sql.append( "(" );
+                for ( int j = 0; j < fidColumns.size(); j++ ) {
+                    if ( j > 0 ) {
+                        sql.append( " AND " );
+                    }
+                    sql.append( fidColumns.get( j ).first );
+                    sql.append( "=?" );
+                }
+                sql.append( ")" );
+            }
+        }
+        // one aggregated envelope per feature
+        sql.append( " GROUP BY " );
+        for ( int j = 0; j < fidColumns.size(); j++ ) {
+            if ( j > 0 ) {
+                sql.append( ',' );
+            }
+            sql.append( fidColumns.get( j ).first );
+        }
+
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            LOG.debug( "Executing envelope SELECT: " + sql );
+            stmt = conn.prepareStatement( sql.toString() );
+            int i = 1;
+            for ( String id : ids ) {
+                int j = 0;
+                for ( Object o : getSchema().analyzeId( id ).getIdKernels() ) {
+                    PrimitiveType pt = new PrimitiveType( fidColumns.get( j++ ).getSecond() );
+                    stmt.setObject( i++, SQLValueMangler.internalToSQL( new PrimitiveValue( o, pt ) ) );
+                }
+            }
+            rs = stmt.executeQuery();
+            while ( rs.next() ) {
+                for ( int j = 0; j < geometryMappings.size(); j++ ) {
+                    Envelope env = dialect.getBBoxAggregateValue( rs, j + 1, geometryMappings.get( j ).getCRS() );
+                    if ( env != null ) {
+                        envelopes.add( env );
+                    }
+                }
+            }
+        } catch ( SQLException e ) {
+            LOG.debug( e.getMessage(), e );
+            throw new FeatureStoreException( e.getMessage(), e );
+        } finally {
+            close( rs, stmt, null, LOG );
+        }
+    }
+
+    private void addEnvelopesBlob( List<String> ids, Connection conn, List<Envelope> envelopes )
+                            throws FeatureStoreException {
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        sql.append( dialect.getBBoxAggregateSnippet( blobMapping.getBBoxColumn() ) );
+        sql.append( " FROM " );
+        sql.append( blobMapping.getTable() );
+        sql.append( " WHERE gml_id IN (?" );
+        for ( int i = 1; i < ids.size(); i++ ) {
+            sql.append( ",?" );
+        }
+        sql.append( ") GROUP BY gml_id" );
+
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            LOG.debug( "Executing envelope SELECT: " + sql );
+            stmt = conn.prepareStatement( sql.toString() );
+            int i = 1;
+            for ( String id : ids ) {
+                stmt.setString( i++, id );
+            }
+            rs = stmt.executeQuery();
+            while ( rs.next() ) {
+                Envelope env = dialect.getBBoxAggregateValue( rs, 1, blobMapping.getCRS() );
+                if ( env != null ) {
+                    envelopes.add( env );
+                }
+            }
+        } catch ( SQLException e ) {
+            LOG.debug( e.getMessage(), e );
+            throw new FeatureStoreException( e.getMessage(), e );
+        } finally {
+            close( rs, stmt, null, LOG );
+        }
+    }
+
+    private void addFeatureEnvelopes( List<String> ids, List<Envelope> envelopes )
+                            throws FeatureStoreException {
+        FeatureInputStream features = queryByIdFilterRelational( new IdFilter( ids ), new SortProperty[0] );
+        try {
+            for ( Feature f : features ) {
+                Envelope env = f.getEnvelope();
+                if ( env != null ) {
+                    envelopes.add( env );
+                }
+            }
+        } finally {
+            features.close();
+        }
+    }
+
+    private static <T> List<List<T>> partition( List<T> list, int size ) {
+        List<List<T>> partitions = new ArrayList<List<T>>();
+        for ( int i = 0; i < list.size(); i += size ) {
+            partitions.add( list.subList( i, Math.min( list.size(), i + size ) ) );
+        }
+        return partitions;
+    }
+
     BBoxCache getBBoxCache() {
         return bboxCache;
     }
@@ -572,6 +832,34 @@ public class SQLFeatureStore implements FeatureStore {
         return ta;
     }
 
+    @Override
+    public void addChangeListener( FeatureStoreChangeListener listener ) {
+        changeListeners.add( listener );
+    }
+
+    @Override
+    public void removeChangeListener( FeatureStoreChangeListener listener ) {
+        changeListeners.remove( listener );
+    }
+
+    /**
+     * @return true, if changes need to be tracked for {@link FeatureStoreChangeListener}s
+     */
+    boolean hasChangeListeners() {
+        return !changeListeners.isEmpty();
+    }
+
+    void fireFeaturesChanged( List<Envelope> envelopes ) {
+        for ( FeatureStoreChangeListener listener : changeListeners ) {
+            try {
+                listener.featuresChanged( this, envelopes );
+            } catch ( Throwable t ) {
+                LOG.warn( "Feature store change listener failed: {}", t.getLocalizedMessage() );
+                LOG.trace( "Stack trace:", t );
+            }
+        }
+    }
+
     /**
      * Returns the {@link FeatureStoreCache}.
      * 
@@ -661,7 +949,7 @@ public class SQLFeatureStore implements FeatureStore {
             if ( wb.getPostFilter() != null ) {
                 conn.close();
                 LOG.debug( "Filter not fully mappable to WHERE clause. Need to iterate over all features to determine count." );
-                hits = queryByOperatorFilter( query, ftName, filter ).count();
+                hits = queryByOperatorFilter( query, ftName, filter, false ).count();
             } else {
                 StringBuilder sql = new StringBuilder( "SELECT " );
                 if ( wb.getWhere() == null ) {
@@ -878,7 +1166,7 @@ public class SQLFeatureStore implements FeatureStore {
                 String msg = "Feature store is not configured to serve feature type '" + ftName + "'.";
                 throw new FeatureStoreException( msg );
             }
-            result = queryByOperatorFilter( query, ftName, (OperatorFilter) filter );
+            result = queryByOperatorFilter( query, ftName, (OperatorFilter) filter, true );
         } else {
             // must be an id filter based query
             if ( query.getFilter() == null || !( query.getFilter() instanceof IdFilter ) ) {
@@ -886,6 +1174,9 @@ public class SQLFeatureStore implements FeatureStore {
                 throw new FilterEvaluationException( msg );
             }
             result = queryByIdFilter( (IdFilter) filter, query.getSortProperties() );
+            if ( query.getOffset() > 0 ) {
+                result = new PagedFeatureInputStream( result, query.getOffset(), -1 );
+            }
         }
         return result;
     }
@@ -898,7 +1189,7 @@ public class SQLFeatureStore implements FeatureStore {
         boolean wmsStyleQuery = false;
         Envelope env = queries[0].getPrefilterBBoxEnvelope();
         if ( getSchema().getBlobMapping() != null && queries[0].getFilter() == null
-                                && queries[0].getSortProperties().length == 0 ) {
+                                && queries[0].getSortProperties().length == 0 && queries[0].getOffset() == 0 ) {
             wmsStyleQuery = true;
             for ( int i = 1; i < queries.length; i++ ) {
                 Envelope queryBBox = queries[i].getPrefilterBBoxEnvelope();
@@ -1030,8 +1321,8 @@ public class SQLFeatureStore implements FeatureStore {
             conn = getConnection();
 
             String tableAlias = "X1";
-            FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, tableAlias,
-                                                                   nullEscalation );
+            FeatureBuilderRelational builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, tableAlias,
+                                                                             nullEscalation );
             List<String> columns = builder.getInitialSelectColumns();
             StringBuilder sql = new StringBuilder( "SELECT " );
             sql.append( columns.get( 0 ) );
@@ -1082,7 +1373,7 @@ public class SQLFeatureStore implements FeatureStore {
             begin = System.currentTimeMillis();
             rs = stmt.executeQuery();
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
-            result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
+            result = new IteratorFeatureInputStream( getFeatureIterator( builder, rs, conn, stmt ) );
         } catch ( Exception e ) {
             close( rs, stmt, conn, LOG );
             String msg = "Error performing query by id filter (relational mode): " + e.getMessage();
@@ -1243,13 +1534,25 @@ public class SQLFeatureStore implements FeatureStore {
         return result;
     }
 
-    private FeatureInputStream queryByOperatorFilter( Query query, QName ftName, OperatorFilter filter )
+    /**
+     * @param paged
+     *            <code>true</code>, if the offset and count of the query shall be applied,
+     *            <code>false</code> if all matching features are required (e.g. for counting)
+     */
+    private FeatureInputStream queryByOperatorFilter( Query query, QName ftName, OperatorFilter filter, boolean paged )
                             throws FeatureStoreException {
 
         LOG.debug( "Performing query by operator filter" );
 
+        int offset = paged ? query.getOffset() : 0;
+        int limit = paged && query.getCount() > 0 ? query.getCount() : -1;
+
         if ( getSchema().getBlobMapping() != null ) {
-            return queryByOperatorFilterBlob( query, ftName, filter );
+            FeatureInputStream result = queryByOperatorFilterBlob( query, ftName, filter );
+            if ( offset > 0 ) {
+                result = new PagedFeatureInputStream( result, offset, -1 );
+            }
+            return result;
         }
 
         AbstractWhereBuilder wb = null;
@@ -1257,6 +1560,7 @@ public class SQLFeatureStore implements FeatureStore {
         FeatureInputStream result = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
+        boolean pagedInDb = false;
 
         FeatureType ft = getSchema().getFeatureType( ftName );
         FeatureTypeMapping ftMapping = getMapping( ftName );
@@ -1273,52 +1577,28 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "WHERE clause: " + wb.getWhere() );
             LOG.debug( "ORDER BY clause: " + wb.getOrderBy() );
 
-            FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, ftTableAlias,
-                                                                   nullEscalation );
+            Envelope bbox = query.getPrefilterBBoxEnvelope();
+            double tolerance = wb.getPostFilter() == null ? getSimplificationTolerance( query ) : -1;
+            FeatureBuilderRelational builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, ftTableAlias,
+                                                                             nullEscalation,
+                                                                             getProjectedProperties( query ), bbox,
+                                                                             tolerance );
             List<String> columns = builder.getInitialSelectColumns();
 
-            BlobMapping blobMapping = getSchema().getBlobMapping();
-
-            StringBuilder sql = new StringBuilder( "SELECT " );
-            sql.append( columns.get( 0 ) );
-            for ( int i = 1; i < columns.size(); i++ ) {
-                sql.append( ',' );
-                sql.append( columns.get( i ) );
-            }
-            sql.append( " FROM " );
-
-            // pure relational query
-            sql.append( ftMapping.getFtTable() );
-            sql.append( ' ' );
-            sql.append( ftTableAlias );
+            String joins = getJoinClause( wb );
+            String where = wb.getWhere() != null ? wb.getWhere().getSQL().toString() : null;
+            String orderBy = wb.getOrderBy() != null ? wb.getOrderBy().getSQL().toString() : null;
 
-            for ( PropertyNameMapping mappedPropName : wb.getMappedPropertyNames() ) {
-                for ( Join join : mappedPropName.getJoins() ) {
-                    sql.append( " LEFT OUTER JOIN " );
-                    sql.append( join.getToTable() );
-                    sql.append( ' ' );
-                    sql.append( join.getToTableAlias() );
-                    sql.append( " ON " );
-                    sql.append( join.getSQLJoinCondition() );
-                }
-            }
+            // skipping / limiting in the db is only possible if every row is a result feature
+            pagedInDb = ( offset > 0 || limit > 0 ) && wb.getPostFilter() == null
+                        && wb.getPostSortCriteria() == null && joins.isEmpty()
+                        && ( wb.getOrderBy() == null || wb.getOrderBy().getArguments().isEmpty() );
 
-            if ( wb.getWhere() != null ) {
-                if ( blobMapping != null ) {
-                    sql.append( " AND " );
-                } else {
-                    sql.append( " WHERE " );
-                }
-                sql.append( wb.getWhere().getSQL() );
-            }
-            if ( wb.getOrderBy() != null ) {
-                sql.append( " ORDER BY " );
-                sql.append( wb.getOrderBy().getSQL() );
-            }
+            String sql = buildSelect( ftMapping, ftTableAlias, columns, joins, where, orderBy, pagedInDb );
 
             LOG.debug( "SQL: {}", sql );
             long begin = System.currentTimeMillis();
-            stmt = conn.prepareStatement( sql.toString() );
+            stmt = conn.prepareStatement( sql );
             LOG.debug( "Preparing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
             int i = 1;
@@ -1327,7 +1607,9 @@ public class SQLFeatureStore implements FeatureStore {
                     o.setArgument( stmt, i++ );
                 }
             }
-            if ( wb.getOrderBy() != null ) {
+            if ( pagedInDb ) {
+                dialect.setPagingArguments( stmt, i, offset, limit );
+            } else if ( wb.getOrderBy() != null ) {
                 for ( SQLArgument o : wb.getOrderBy().getArguments() ) {
                     o.setArgument( stmt, i++ );
                 }
@@ -1338,7 +1620,7 @@ public class SQLFeatureStore implements FeatureStore {
             rs = stmt.executeQuery();
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
-            result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
+            result = new IteratorFeatureInputStream( getFeatureIterator( builder, rs, conn, stmt ) );
         } catch ( Exception e ) {
             close( rs, stmt, conn, LOG );
             String msg = "Error performing query by operator filter: " + e.getMessage();
@@ -1354,9 +1636,182 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "Applying in-memory post-sorting." );
             result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), wb.getPostSortCriteria() ) );
         }
+        if ( !pagedInDb && offset > 0 ) {
+            LOG.debug( "Applying in-memory offset." );
+            result = new PagedFeatureInputStream( result, offset, -1 );
+        }
         return result;
     }
 
+    private String getJoinClause( AbstractWhereBuilder wb ) {
+        StringBuilder sql = new StringBuilder();
+        for ( PropertyNameMapping mappedPropName : wb.getMappedPropertyNames() ) {
+            for ( Join join : mappedPropName.getJoins() ) {
+                sql.append( " LEFT OUTER JOIN " );
+                sql.append( join.getToTable() );
+                sql.append( ' ' );
+                sql.append( join.getToTableAlias() );
+                sql.append( " ON " );
+                sql.append( join.getSQLJoinCondition() );
+            }
+        }
+        return sql.toString();
+    }
+
+    private String buildSelect( FeatureTypeMapping ftMapping, String ftTableAlias, List<String> columns, String joins,
+                                String where, String orderBy, boolean paged ) {
+        StringBuilder fromWhere = new StringBuilder( "FROM " );
+        fromWhere.append( ftMapping.getFtTable() );
+        fromWhere.append( ' ' );
+        fromWhere.append( ftTableAlias );
+        fromWhere.append( joins );
+        if ( where != null ) {
+            fromWhere.append( " WHERE " );
+            fromWhere.append( where );
+        }
+
+        if ( paged ) {
+            // pages are only stable with a total order, so the fid columns are always used as tie-breaker
+            StringBuilder pageOrder = new StringBuilder();
+            if ( orderBy != null ) {
+                pageOrder.append( orderBy );
+                pageOrder.append( ',' );
+            }
+            appendFidColumns( pageOrder, ftMapping, ftTableAlias );
+            return dialect.getPagedSelect( columns, fromWhere.toString(), pageOrder.toString() );
+        }
+
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        sql.append( columns.get( 0 ) );
+        for ( int i = 1; i < columns.size(); i++ ) {
+            sql.append( ',' );
+            sql.append( columns.get( i ) );
+        }
+        sql.append( ' ' );
+        sql.append( fromWhere );
+        if ( orderBy != null ) {
+            sql.append( " ORDER BY " );
+            sql.append( orderBy );
+        }
+        return sql.toString();
+    }
+
+    private void appendFidColumns( StringBuilder sql, FeatureTypeMapping ftMapping, String ftTableAlias ) {
+        boolean first = true;
+        for ( Pair<SQLIdentifier, BaseType> fidCol : ftMapping.getFidMapping().getColumns() ) {
+            if ( !first ) {
+                sql.append( ',' );
+            }
+            first = false;
+            sql.append( ftTableAlias ).append( '.' ).append( fidCol.first );
+        }
+    }
+
+    /**
+     * @return the distance (in units of the query CRS) by which geometries may be simplified, or -1, if the query does
+     *         not have a resolution hint
+     */
+    private static double getSimplificationTolerance( Query query ) {
+        Object resolution = query.getHint( HINT_RESOLUTION );
+        if ( SIMPLIFICATION_TOLERANCE <= 0 || !( resolution instanceof Double ) ) {
+            return -1;
+        }
+        return (Double) resolution * SIMPLIFICATION_TOLERANCE;
+    }
+
+    private static double getSimplificationTolerance() {
+        String tolerance = System.getProperty( "deegree.sqlfeaturestore.simplification.tolerance" );
+        if ( tolerance != null ) {
+            try {
+                return Double.parseDouble( tolerance );
+            } catch ( NumberFormatException e ) {
+                LOG.warn( "Ignoring invalid simplification tolerance '{}'.", tolerance );
+            }
+        }
+        return 0.5;
+    }
+
+    private static int getJoinBatchSize() {
+        String size = System.getProperty( "deegree.sqlfeaturestore.joinbatchsize" );
+        if ( size != null ) {
+            try {
+                return Integer.parseInt( size );
+            } catch ( NumberFormatException e ) {
+                LOG.warn( "Ignoring invalid join batch size '{}'.", size );
+            }
+        }
+        return 500;
+    }
+
+    /**
+     * @return an iterator that fetches the joined properties of several rows at once, if the builder builds joined
+     *         properties and batching is enabled, otherwise an iterator that builds one feature per row
+     */
+    private CloseableIterator<Feature> getFeatureIterator( FeatureBuilderRelational builder, ResultSet rs,
+                                                           Connection conn, Statement stmt ) {
+        if ( JOIN_BATCH_SIZE > 1 && builder.hasJoinedProperties() ) {
+            return new BatchedFeatureResultSetIterator( builder, rs, conn, stmt );
+        }
+        return new FeatureResultSetIterator( builder, rs, conn, stmt );
+    }
+
+    /**
+     * Determines the properties that need to be fetched for a query, ie. the projected properties and the properties
+     * that may be needed for in-memory filtering and sorting.
+     * 
+     * @param query
+     *            the query, must not be <code>null</code>
+     * @return the names of the top level properties, or <code>null</code>, if all properties need to be fetched
+     */
+    private Set<QName> getProjectedProperties( Query query ) {
+        if ( query.getProjections().isEmpty() ) {
+            return null;
+        }
+        List<ValueReference> refs = new ArrayList<ValueReference>();
+        for ( ProjectionClause clause : query.getProjections() ) {
+            if ( !( clause instanceof PropertyName ) ) {
+                return null;
+            }
+            refs.add( ( (PropertyName) clause ).getPropertyName() );
+        }
+        if ( query.getFilter() != null ) {
+            refs.addAll( Arrays.asList( Filters.getPropertyNames( query.getFilter() ) ) );
+        }
+        for ( SortProperty sortProp : query.getSortProperties() ) {
+            refs.add( sortProp.getSortProperty() );
+        }
+        Set<QName> propNames = new HashSet<QName>();
+        for ( ValueReference ref : refs ) {
+            QName propName = getTopLevelPropertyName( ref );
+            if ( propName == null ) {
+                LOG.debug( "Cannot determine property targeted by '{}', fetching all properties.", ref );
+                return null;
+            }
+            propNames.add( propName );
+        }
+        return propNames;
+    }
+
+    private static QName getTopLevelPropertyName( ValueReference ref ) {
+        Expr xpath = ref.getAsXPath();
+        if ( !( xpath instanceof LocationPath ) || ( (LocationPath) xpath ).isAbsolute() ) {
+            return null;
+        }
+        List<?> steps = ( (LocationPath) xpath ).getSteps();
+        if ( steps.isEmpty() || !( steps.get( 0 ) instanceof NameStep ) ) {
+            return null;
+        }
+        NameStep step = (NameStep) steps.get( 0 );
+        if ( step.getAxis() != Axis.CHILD || step.getLocalName().equals( "*" ) ) {
+            return null;
+        }
+        String prefix = step.getPrefix();
+        if ( prefix.isEmpty() ) {
+            return new QName( step.getLocalName() );
+        }
+        return new QName( ref.getNsContext().translateNamespacePrefixToUri( prefix ), step.getLocalName(), prefix );
+    }
+
     private FeatureInputStream queryMultipleFts( Query[] queries, Envelope looseBBox )
                             throws FeatureStoreException {
         FeatureInputStream result = null;
@@ -1483,6 +1938,89 @@ public class SQLFeatureStore implements FeatureStore {
         }
     }
 
+    /**
+     * Builds the features in batches of {@link #JOIN_BATCH_SIZE} rows, so the joined properties are fetched with one
+     * SELECT per join and batch.
+     */
+    private class BatchedFeatureResultSetIterator implements CloseableIterator<Feature> {
+
+        private final FeatureBuilderRelational builder;
+
+        private final ResultSet rs;
+
+        private final Connection conn;
+
+        private final Statement stmt;
+
+        private Iterator<Feature> batch = Collections.<Feature> emptyList().iterator();
+
+        private boolean exhausted;
+
+        BatchedFeatureResultSetIterator( FeatureBuilderRelational builder, ResultSet rs, Connection conn,
+                                         Statement stmt ) {
+            this.builder = builder;
+            this.rs = rs;
+            this.conn = conn;
+            this.stmt = stmt;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if ( batch.hasNext() ) {
+                return true;
+            }
+            if ( exhausted ) {
+                return false;
+            }
+            try {
+                List<Feature> features = builder.buildFeatures( rs, JOIN_BATCH_SIZE );
+                exhausted = features.size() < JOIN_BATCH_SIZE;
+                batch = features.iterator();
+            } catch ( SQLException e ) {
+                // try to close everything
+                close();
+                // wrap as unchecked exception
+                throw new RuntimeException( e.getMessage(), e );
+            }
+            return batch.hasNext();
+        }
+
+        @Override
+        public Feature next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            return batch.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            LOG.debug( "Closing JDBC ResultSet, Statement and Connection" );
+            JDBCUtils.close( rs, stmt, conn, LOG );
+        }
+
+        @Override
+        public List<Feature> getAsListAndClose() {
+            List<Feature> list = new ArrayList<Feature>();
+            getAsCollectionAndClose( list );
+            return list;
+        }
+
+        @Override
+        public Collection<Feature> getAsCollectionAndClose( Collection<Feature> collection ) {
+            while ( hasNext() ) {
+                collection.add( next() );
+            }
+            close();
+            return collection;
+        }
+    }
+
     @Override
     public ResourceMetadata<? extends Resource> getMetadata() {
         return metadata;
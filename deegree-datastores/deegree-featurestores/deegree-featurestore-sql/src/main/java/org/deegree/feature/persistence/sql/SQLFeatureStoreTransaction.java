@@ -122,6 +122,9 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 
     private static final Logger LOG = LoggerFactory.getLogger( SQLFeatureStoreTransaction.class );
 
+    // maximum number of rows that are inserted using a single JDBC batch
+    private static final int INSERT_BATCH_SIZE = getInsertBatchSize();
+
     private final SQLFeatureStore fs;
 
     private final MappedAppSchema schema;
@@ -185,6 +188,10 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
                 LOG.error( "Error closing connection/removing it from the pool." );
             }
         }
+        List<Envelope> changed = bboxTracker.getChangedEnvelopes();
+        if ( changed == null || !changed.isEmpty() ) {
+            fs.fireFeaturesChanged( changed );
+        }
     }
 
     private void updateBBoxCache()
@@ -268,6 +275,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
     @Override
     public int performDelete( IdFilter filter, Lock lock )
                             throws FeatureStoreException {
+        trackChanged( filter );
         int deleted = 0;
         if ( blobMapping != null ) {
             deleted = performDeleteBlob( filter, lock );
@@ -626,10 +634,15 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
                 sql.append( ")" );
                 LOG.debug( "Inserting: {}", sql );
                 blobInsertStmt = conn.prepareStatement( sql.toString() );
+                int batched = 0;
                 for ( Feature feature : features ) {
                     fid = feature.getId();
                     if ( blobInsertStmt != null ) {
                         insertFeatureBlob( blobInsertStmt, feature );
+                        if ( ++batched >= INSERT_BATCH_SIZE ) {
+                            blobInsertStmt.executeBatch();
+                            batched = 0;
+                        }
                     }
                     FeatureTypeMapping ftMapping = fs.getMapping( feature.getName() );
                     if ( ftMapping != null ) {
@@ -639,12 +652,15 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
                     bboxTracker.insert( feature, storageSrs );
                 }
                 if ( blobInsertStmt != null ) {
+                    if ( batched > 0 ) {
+                        blobInsertStmt.executeBatch();
+                    }
                     blobInsertStmt.close();
                 }
             } else {
                 // pure relational mode
                 List<FeatureRow> idAssignments = new ArrayList<FeatureRow>();
-                InsertRowManager insertManager = new InsertRowManager( fs, conn, mode );
+                InsertRowManager insertManager = new InsertRowManager( fs, conn, mode, INSERT_BATCH_SIZE );
                 for ( Feature feature : features ) {
                     FeatureTypeMapping ftMapping = fs.getMapping( feature.getName() );
                     if ( ftMapping == null ) {
@@ -658,6 +674,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
                         bboxTracker.insert( feature, storageSrs );
                     }
                 }
+                insertManager.flush();
                 if ( insertManager.getDelayedRows() != 0 ) {
                     String msg = "After insertion, " + insertManager.getDelayedRows()
                                  + " delayed rows left uninserted. Probably a cyclic key constraint blocks insertion.";
@@ -685,12 +702,24 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         return UUID.randomUUID().toString();
     }
 
+    private static int getInsertBatchSize() {
+        String size = System.getProperty( "deegree.sqlfeaturestore.insertbatchsize" );
+        if ( size != null ) {
+            try {
+                return Integer.parseInt( size );
+            } catch ( NumberFormatException e ) {
+                LOG.warn( "Ignoring invalid insert batch size '{}'.", size );
+            }
+        }
+        return 100;
+    }
+
     /**
-     * Inserts the given feature into BLOB table and returns the generated primary key.
+     * Adds the insertion of the given feature into the BLOB table to the batch of the given statement.
      * 
      * @param stmt
      * @param feature
-     * @return primary key of the feature
+     * @return primary key of the feature (currently always -1)
      * @throws SQLException
      * @throws FeatureStoreException
      */
@@ -730,8 +759,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
             LOG.warn( "Unable to determine bbox of feature with id '" + feature.getId() + "': " + e.getMessage() );
         }
         blobGeomConverter.setParticle( stmt, bboxGeom, 4 );
-        // stmt.addBatch();
-        stmt.execute();
+        stmt.addBatch();
 
         int internalId = -1;
 
@@ -767,9 +795,38 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
             LOG.debug( e.getMessage(), e );
         }
         bboxTracker.update( ftName );
+        trackChanged( idFilter );
+        for ( ParsedPropertyReplacement replacement : replacementProps ) {
+            TypedObjectNode value = replacement.getNewValue().getValue();
+            if ( value instanceof Geometry ) {
+                bboxTracker.changed( ( (Geometry) value ).getEnvelope() );
+            }
+        }
         return performUpdate( ftName, replacementProps, idFilter );
     }
 
+    /**
+     * Tracks the envelopes of the features to be changed (in their current state, fetched in batches) for the
+     * {@link org.deegree.feature.persistence.FeatureStoreChangeListener}s of the store.
+     */
+    private void trackChanged( IdFilter filter ) {
+        if ( !fs.hasChangeListeners() ) {
+            return;
+        }
+        if ( filter == null ) {
+            bboxTracker.changedAnywhere();
+            return;
+        }
+        try {
+            for ( Envelope env : fs.getEnvelopes( filter, conn ) ) {
+                bboxTracker.changed( env );
+            }
+        } catch ( Exception e ) {
+            LOG.debug( "Unable to determine the envelopes of the changed features: " + e.getMessage() );
+            bboxTracker.changedAnywhere();
+        }
+    }
+
     private List<String> performUpdate( QName ftName, List<ParsedPropertyReplacement> replacementProps, IdFilter filter )
                             throws FeatureStoreException {
         List<String> updated = null;
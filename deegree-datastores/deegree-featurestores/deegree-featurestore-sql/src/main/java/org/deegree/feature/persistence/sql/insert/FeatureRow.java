@@ -35,8 +35,6 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.sql.insert;
 
-import java.sql.Connection;
-import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -106,10 +104,8 @@ public class FeatureRow extends InsertRow {
     }
 
     @Override
-    void performInsert( Connection conn, boolean propagateAutoGenColumns )
-                            throws SQLException, FeatureStoreException {
-
-        super.performInsert( conn, propagateAutoGenColumns );
+    void inserted()
+                            throws FeatureStoreException {
 
         newId = buildNewFid();
         if ( newId == null ) {
@@ -165,6 +161,11 @@ public class FeatureRow extends InsertRow {
         return fidMapping != null;
     }
 
+    @Override
+    boolean isBatchable( boolean propagateNonFidAutoGenColumns ) {
+        return isAssigned() && super.isBatchable( propagateNonFidAutoGenColumns );
+    }
+
     @Override
     protected Set<SQLIdentifier> getAutogenColumns( boolean propagateNonFidAutoGenColumns ) {
         Set<SQLIdentifier> cols = super.getAutogenColumns( propagateNonFidAutoGenColumns );
@@ -212,22 +212,7 @@ public abstract class InsertRow extends TransactionRow {
             }
             stmt = conn.prepareStatement( sql, cols );
         }
-        int columnId = 1;
-        for ( Entry<SQLIdentifier, Object> entry : columnToObject.entrySet() ) {
-            if ( entry.getValue() != null ) {
-                LOG.debug( "- Argument " + entry.getKey() + " = " + entry.getValue() + " ("
-                           + entry.getValue().getClass() + ")" );
-                if ( entry.getValue() instanceof ParticleConversion<?> ) {
-                    ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
-                    conversion.setParticle( stmt, columnId++ );
-                } else {
-                    stmt.setObject( columnId++, entry.getValue() );
-                }
-            } else {
-                LOG.debug( "- Argument " + entry.getKey() + " = NULL" );
-                stmt.setObject( columnId++, null );
-            }
-        }
+        setArguments( stmt );
         stmt.execute();
 
         if ( !autoGenColumns.isEmpty() ) {
@@ -251,6 +236,73 @@ public abstract class InsertRow extends TransactionRow {
             }
         }
         stmt.close();
+        inserted();
+    }
+
+    /**
+     * Returns whether this row can be inserted as part of a JDBC batch, i.e. whether the values of all columns that
+     * need to be propagated are known before the insert.
+     * 
+     * @param propagateNonFidAutoGenColumns
+     *            <code>true</code>, if auto generated key columns need to be processed (and propagated),
+     *            <code>false</code> otherwise
+     * @return <code>true</code>, if the row can be batched, <code>false</code> if it must be inserted using
+     *         {@link #performInsert(Connection, boolean)}
+     */
+    boolean isBatchable( boolean propagateNonFidAutoGenColumns ) {
+        for ( SQLIdentifier autoGenColumn : getAutogenColumns( propagateNonFidAutoGenColumns ) ) {
+            if ( get( autoGenColumn ) == null ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the insertion of this row to the batch of the given statement. The statement must have been prepared for
+     * the SQL of this row. {@link #inserted()} must be invoked after the batch has been executed.
+     * 
+     * @param stmt
+     *            statement to add the row to, must not be <code>null</code>
+     * @throws SQLException
+     */
+    void addToBatch( PreparedStatement stmt )
+                            throws SQLException {
+        if ( LOG.isDebugEnabled() ) {
+            LOG.debug( "Batching row: " + this );
+        }
+        setArguments( stmt );
+        stmt.addBatch();
+    }
+
+    /**
+     * Called after the row has been inserted.
+     * 
+     * @throws FeatureStoreException
+     */
+    void inserted()
+                            throws FeatureStoreException {
+        // nothing to do by default
+    }
+
+    private void setArguments( PreparedStatement stmt )
+                            throws SQLException {
+        int columnId = 1;
+        for ( Entry<SQLIdentifier, Object> entry : columnToObject.entrySet() ) {
+            if ( entry.getValue() != null ) {
+                LOG.debug( "- Argument " + entry.getKey() + " = " + entry.getValue() + " ("
+                           + entry.getValue().getClass() + ")" );
+                if ( entry.getValue() instanceof ParticleConversion<?> ) {
+                    ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
+                    conversion.setParticle( stmt, columnId++ );
+                } else {
+                    stmt.setObject( columnId++, entry.getValue() );
+                }
+            } else {
+                LOG.debug( "- Argument " + entry.getKey() + " = NULL" );
+                stmt.setObject( columnId++, null );
+            }
+        }
     }
 
     protected Set<SQLIdentifier> getAutogenColumns( boolean propagateNonFidAutoGenColumns ) {
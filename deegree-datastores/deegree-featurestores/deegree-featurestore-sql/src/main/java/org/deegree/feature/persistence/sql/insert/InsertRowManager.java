@@ -36,11 +36,13 @@
 package org.deegree.feature.persistence.sql.insert;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,6 +57,7 @@ import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
 import org.deegree.feature.Feature;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -93,6 +96,7 @@ import org.slf4j.LoggerFactory;
  * <li>Usability for complex structures/mappings</li>
  * <li>Coping with unresolved feature references (forward/backward xlinks)</li>
  * <li>Auto-generated feature ids/key columns</li>
+ * <li>Batching of rows with equal SQL (only rows that don't need to retrieve auto-generated keys from the DB)</li>
  * </ul>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
@@ -126,8 +130,19 @@ public class InsertRowManager {
     // values: rows that have not been inserted yet, but can be inserted (no parents)
     private final Set<InsertRow> rootRows = new HashSet<InsertRow>();
 
+    private final int batchSize;
+
+    // key: SQL, value: batch of rows with this SQL that have not been executed yet
+    private final Map<String, InsertBatch> sqlToBatch = new LinkedHashMap<String, InsertBatch>();
+
+    // key: batched row (not executed yet), value: batch
+    private final Map<InsertRow, InsertBatch> batchedRows = new HashMap<InsertRow, InsertBatch>();
+
+    // key: row, value: batches containing parent rows that have to be executed before the row can be inserted
+    private final Map<InsertRow, Set<InsertBatch>> rowToParentBatches = new HashMap<InsertRow, Set<InsertBatch>>();
+
     /**
-     * Creates a new {@link InsertRowManager} instance.
+     * Creates a new {@link InsertRowManager} instance that inserts every row with a separate statement.
      * 
      * @param fs
      *            feature store, must not be <code>null</code>
@@ -137,11 +152,29 @@ public class InsertRowManager {
      *            feature id generation mode, must not be <code>null</code>
      */
     public InsertRowManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode ) {
+        this( fs, conn, idGenMode, 1 );
+    }
+
+    /**
+     * Creates a new {@link InsertRowManager} instance.
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param conn
+     *            connection, must not be <code>null</code>
+     * @param idGenMode
+     *            feature id generation mode, must not be <code>null</code>
+     * @param batchSize
+     *            maximum number of rows to insert with a single JDBC batch, a value smaller than 2 disables batching
+     *            (if batching is enabled, {@link #flush()} must be called after the last feature)
+     */
+    public InsertRowManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode, int batchSize ) {
         this.fs = fs;
         this.dialect = fs.getDialect();
         this.conn = conn;
         this.idGenMode = idGenMode;
         this.tableDeps = fs.getSchema().getKeyDependencies();
+        this.batchSize = batchSize;
     }
 
     /**
@@ -390,7 +423,7 @@ public class InsertRowManager {
 
                         if ( !delayedRows.contains( subFeatureRow ) ) {
                             // sub feature already inserted, propagate key values right away
-                            currentRow.removeParent( subFeatureRow );
+                            removeParent( currentRow, subFeatureRow );
                         }
                     }
                 }
@@ -519,7 +552,7 @@ public class InsertRowManager {
             List<InsertRow> rootAdds = new ArrayList<InsertRow>();
             for ( InsertRow row : rootRows ) {
                 LOG.debug( "Inserting row " + row );
-                row.performInsert( conn, rowToChildRows.get( row ) != null );
+                insert( row, rowToChildRows.get( row ) != null );
                 delayedRows.remove( row );
                 rootRemoves.add( row );
 
@@ -528,7 +561,7 @@ public class InsertRowManager {
                 if ( childRows != null ) {
                     for ( InsertRow childRow : childRows ) {
                         LOG.debug( "Child row: " + childRow );
-                        childRow.removeParent( row );
+                        removeParent( childRow, row );
                         if ( !childRow.hasParents() ) {
                             rootAdds.add( childRow );
                         }
@@ -541,6 +574,100 @@ public class InsertRowManager {
         }
     }
 
+    /**
+     * Executes all batched rows that have not been executed yet.
+     * 
+     * @throws SQLException
+     * @throws FeatureStoreException
+     */
+    public void flush()
+                            throws SQLException, FeatureStoreException {
+        for ( InsertBatch batch : sqlToBatch.values() ) {
+            batch.execute();
+        }
+        sqlToBatch.clear();
+    }
+
+    private void insert( InsertRow row, boolean propagateNonFidAutoGenColumns )
+                            throws SQLException, FeatureStoreException {
+
+        // parent rows must be in the DB before the row can be inserted
+        Set<InsertBatch> parentBatches = rowToParentBatches.remove( row );
+        if ( parentBatches != null ) {
+            for ( InsertBatch parentBatch : parentBatches ) {
+                parentBatch.execute();
+            }
+        }
+
+        if ( batchSize < 2 || !row.isBatchable( propagateNonFidAutoGenColumns ) ) {
+            row.performInsert( conn, propagateNonFidAutoGenColumns );
+            return;
+        }
+
+        String sql = row.getSql();
+        InsertBatch batch = sqlToBatch.get( sql );
+        if ( batch == null ) {
+            batch = new InsertBatch( sql );
+            sqlToBatch.put( sql, batch );
+        }
+        batch.rows.add( row );
+        batchedRows.put( row, batch );
+        if ( batch.rows.size() >= batchSize ) {
+            batch.execute();
+        }
+    }
+
+    private void removeParent( InsertRow row, InsertRow parent ) {
+        row.removeParent( parent );
+        InsertBatch parentBatch = batchedRows.get( parent );
+        if ( parentBatch != null ) {
+            Set<InsertBatch> parentBatches = rowToParentBatches.get( row );
+            if ( parentBatches == null ) {
+                parentBatches = new HashSet<InsertBatch>();
+                rowToParentBatches.put( row, parentBatches );
+            }
+            parentBatches.add( parentBatch );
+        }
+    }
+
+    /**
+     * Rows with equal SQL that are inserted using a single JDBC batch. All rows must have their parent rows inserted
+     * when they are added, so the batch may be executed at any time.
+     */
+    private class InsertBatch {
+
+        private final String sql;
+
+        private final List<InsertRow> rows = new ArrayList<InsertRow>();
+
+        InsertBatch( String sql ) {
+            this.sql = sql;
+        }
+
+        void execute()
+                                throws SQLException, FeatureStoreException {
+            if ( rows.isEmpty() ) {
+                return;
+            }
+            LOG.debug( "Executing batch of " + rows.size() + " rows: " + sql );
+            PreparedStatement stmt = null;
+            try {
+                stmt = conn.prepareStatement( sql );
+                for ( InsertRow row : rows ) {
+                    row.addToBatch( stmt );
+                }
+                stmt.executeBatch();
+            } finally {
+                JDBCUtils.close( stmt );
+            }
+            for ( InsertRow row : rows ) {
+                row.inserted();
+                batchedRows.remove( row );
+            }
+            rows.clear();
+        }
+    }
+
     /**
      * Returns the number of currently delayed rows (rows that depend on some other row to be inserted first).
      * 
@@ -41,16 +41,20 @@ import static org.deegree.commons.xml.CommonNamespaces.XSINS;
 import static org.deegree.commons.xml.CommonNamespaces.XSI_PREFIX;
 import static org.jaxen.saxpath.Axis.CHILD;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
@@ -71,6 +75,7 @@ import org.deegree.commons.tom.sql.ParticleConverter;
 import org.deegree.commons.utils.Pair;
 import org.deegree.commons.xml.CommonNamespaces;
 import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.feature.Feature;
 import org.deegree.feature.persistence.sql.FeatureBuilder;
 import org.deegree.feature.persistence.sql.FeatureTypeMapping;
@@ -80,12 +85,15 @@ import org.deegree.feature.property.GenericProperty;
 import org.deegree.feature.types.AppSchemaGeometryHierarchy;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.GeometryTransformer;
 import org.deegree.geometry.primitive.LineString;
 import org.deegree.geometry.primitive.Polygon;
 import org.deegree.geometry.primitive.patches.SurfacePatch;
 import org.deegree.geometry.primitive.segments.CurveSegment;
+import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.deegree.sqldialect.filter.DBField;
 import org.deegree.sqldialect.filter.MappingExpression;
 import org.jaxen.expr.Expr;
@@ -111,6 +119,12 @@ public class FeatureBuilderRelational implements FeatureBuilder {
 
     private static final Logger LOG = LoggerFactory.getLogger( FeatureBuilderRelational.class );
 
+    /**
+     * Maximum number of values bound to a single statement. SQL Server allows 2100 parameters per statement, Oracle
+     * 1000 values per <code>IN</code> list.
+     */
+    public static final int MAX_BOUND_PARAMETERS = 1000;
+
     private final SQLFeatureStore fs;
 
     private final FeatureType ft;
@@ -129,6 +143,15 @@ public class FeatureBuilderRelational implements FeatureBuilder {
 
     private final boolean nullEscalation;
 
+    private final Set<QName> projection;
+
+    private final Envelope bbox;
+
+    private final double tolerance;
+
+    // select snippets of simplified geometry mappings
+    private final Map<Mapping, String> simplifiedSnippets = new IdentityHashMap<Mapping, String>();
+
     /**
      * Creates a new {@link FeatureBuilderRelational} instance.
      * 
@@ -145,12 +168,68 @@ public class FeatureBuilderRelational implements FeatureBuilder {
      */
     public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
                                      String ftTableAlias, boolean nullEscalation ) {
+        this( fs, ft, ftMapping, conn, ftTableAlias, nullEscalation, null );
+    }
+
+    /**
+     * Creates a new {@link FeatureBuilderRelational} instance that only builds the given properties. Features built
+     * this way are incomplete and are therefore not added to the feature cache.
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param ft
+     *            feature type, must not be <code>null</code>
+     * @param ftMapping
+     *            feature type mapping, must not be <code>null</code>
+     * @param conn
+     *            JDBC connection (used for performing subsequent SELECTs), must not be <code>null</code>
+     * @param escalationPolicy
+     *            the void escalation policy, must not be <code>null</code>
+     * @param projection
+     *            names of the properties to build, names without namespace match properties with any namespace, may
+     *            be <code>null</code> (all properties are built)
+     */
+    public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
+                                     String ftTableAlias, boolean nullEscalation, Set<QName> projection ) {
+        this( fs, ft, ftMapping, conn, ftTableAlias, nullEscalation, projection, null, -1 );
+    }
+
+    /**
+     * Creates a new {@link FeatureBuilderRelational} instance that only builds the given properties, with geometries
+     * that may be simplified by the database. Features built this way are not added to the feature cache.
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param ft
+     *            feature type, must not be <code>null</code>
+     * @param ftMapping
+     *            feature type mapping, must not be <code>null</code>
+     * @param conn
+     *            JDBC connection (used for performing subsequent SELECTs), must not be <code>null</code>
+     * @param escalationPolicy
+     *            the void escalation policy, must not be <code>null</code>
+     * @param projection
+     *            names of the properties to build, names without namespace match properties with any namespace, may
+     *            be <code>null</code> (all properties are built)
+     * @param bbox
+     *            extent of the query, used to convert the tolerance to the storage CRS, may be <code>null</code> (no
+     *            simplification)
+     * @param tolerance
+     *            distance (in units of the CRS of the bbox) by which geometries may be simplified, zero or less for no
+     *            simplification
+     */
+    public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
+                                     String ftTableAlias, boolean nullEscalation, Set<QName> projection,
+                                     Envelope bbox, double tolerance ) {
         this.fs = fs;
         this.ft = ft;
         this.ftMapping = ftMapping;
         this.conn = conn;
         this.tableAlias = ftTableAlias;
         this.nullEscalation = nullEscalation;
+        this.projection = projection;
+        this.bbox = bbox;
+        this.tolerance = bbox == null ? -1 : tolerance;
         this.nsBindings = new NamespaceBindings();
         for ( String prefix : fs.getNamespaceContext().keySet() ) {
             String ns = fs.getNamespaceContext().get( prefix );
@@ -169,12 +248,68 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             addColumn( colToRsIdx, tableAlias + "." + fidColumn.first.getName() );
         }
         for ( Mapping mapping : ftMapping.getMappings() ) {
-            addSelectColumns( mapping, colToRsIdx, true );
+            if ( isProjected( mapping ) ) {
+                addSelectColumns( mapping, colToRsIdx, true );
+            }
         }
         LOG.debug( "Initial select columns: " + colToRsIdx );
         return new ArrayList<String>( colToRsIdx.keySet() );
     }
 
+    private boolean isProjected( Mapping mapping ) {
+        if ( projection == null ) {
+            return true;
+        }
+        QName name = getChildElementStepAsQName( mapping.getPath() );
+        if ( name == null ) {
+            return true;
+        }
+        return projection.contains( name ) || projection.contains( new QName( name.getLocalPart() ) );
+    }
+
+    private String getGeometrySelectSnippet( Mapping mapping, ParticleConverter<?> converter ) {
+        if ( tolerance <= 0 || !( converter instanceof GeometryParticleConverter ) ) {
+            return converter.getSelectSnippet( tableAlias );
+        }
+        String snippet = simplifiedSnippets.get( mapping );
+        if ( snippet == null ) {
+            GeometryParticleConverter geomConverter = (GeometryParticleConverter) converter;
+            double storageTolerance = getStorageTolerance( geomConverter.getCrs() );
+            if ( storageTolerance > 0 ) {
+                snippet = geomConverter.getSelectSnippet( tableAlias, storageTolerance );
+            } else {
+                snippet = converter.getSelectSnippet( tableAlias );
+            }
+            simplifiedSnippets.put( mapping, snippet );
+        }
+        return snippet;
+    }
+
+    /**
+     * Converts the tolerance to units of the storage CRS, using the ratio of the extents of the bbox in both CRS.
+     * 
+     * @return the tolerance, rounded down to a power of two (so the SQL is the same for similar resolutions), or -1,
+     *         if the tolerance cannot be converted
+     */
+    private double getStorageTolerance( ICRS storageCrs ) {
+        double tol = tolerance;
+        ICRS crs = bbox.getCoordinateSystem();
+        if ( storageCrs != null && crs != null && !storageCrs.equals( crs ) ) {
+            try {
+                Envelope env = new GeometryTransformer( storageCrs ).transform( bbox );
+                tol *= Math.min( env.getSpan0() / bbox.getSpan0(), env.getSpan1() / bbox.getSpan1() );
+            } catch ( Exception e ) {
+                LOG.debug( "Cannot convert simplification tolerance to storage CRS: {}", e.getLocalizedMessage() );
+                LOG.trace( "Stack trace:", e );
+                return -1;
+            }
+        }
+        if ( tol <= 0 || Double.isNaN( tol ) || Double.isInfinite( tol ) ) {
+            return -1;
+        }
+        return Math.scalb( 1.0, Math.getExponent( tol ) );
+    }
+
     private void addColumn( LinkedHashMap<String, Integer> colToRsIdx, String column ) {
         if ( !colToRsIdx.containsKey( column ) ) {
             colToRsIdx.put( column, colToRsIdx.size() + 1 );
@@ -213,7 +348,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 }
             } else if ( mapping instanceof GeometryMapping ) {
                 if ( particleConverter != null ) {
-                    addColumn( colToRsIdx, particleConverter.getSelectSnippet( tableAlias ) );
+                    addColumn( colToRsIdx, getGeometrySelectSnippet( mapping, particleConverter ) );
                 } else {
                     LOG.info( "Omitting mapping '" + mapping + "' from SELECT list. Not mapped to column.'" );
                 }
@@ -242,13 +377,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
 
         Feature feature = null;
         try {
-            String gmlId = ftMapping.getFidMapping().getPrefix();
-            List<Pair<SQLIdentifier, BaseType>> fidColumns = ftMapping.getFidMapping().getColumns();
-            gmlId += rs.getObject( colToRsIdx.get( tableAlias + "." + fidColumns.get( 0 ).first ) );
-            for ( int i = 1; i < fidColumns.size(); i++ ) {
-                gmlId += ftMapping.getFidMapping().getDelimiter()
-                                        + rs.getObject( colToRsIdx.get( tableAlias + "." + fidColumns.get( i ).first ) );
-            }
+            String gmlId = getGmlId( rs );
             if ( fs.getCache() != null ) {
                 feature = (Feature) fs.getCache().get( gmlId );
             }
@@ -256,6 +385,9 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 LOG.debug( "Recreating feature '" + gmlId + "' from db (relational mode)." );
                 List<Property> props = new ArrayList<Property>();
                 for ( Mapping mapping : ftMapping.getMappings() ) {
+                    if ( !isProjected( mapping ) ) {
+                        continue;
+                    }
                     ValueReference propName = mapping.getPath();
                     QName childEl = getChildElementStepAsQName( propName );
                     if ( childEl != null ) {
@@ -269,7 +401,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                     }
                 }
                 feature = ft.newFeature( gmlId, props, null );
-                if ( fs.getCache() != null ) {
+                if ( fs.getCache() != null && projection == null && tolerance <= 0 ) {
                     fs.getCache().add( feature );
                 }
             } else {
@@ -282,6 +414,323 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         return feature;
     }
 
+    /**
+     * Builds {@link Feature} instances from the next rows of the given {@link ResultSet}. In contrast to calling
+     * {@link #buildFeature(ResultSet)} for every row, the values of properties that are stored in joined tables are
+     * fetched with a single SELECT per join for all of the rows (split if it would bind more than
+     * {@link #MAX_BOUND_PARAMETERS} values).
+     * 
+     * @param rs
+     *            SQL result set, must not be <code>null</code>
+     * @param maxRows
+     *            maximum number of rows to consume
+     * @return created {@link Feature} instances, empty if there are no more rows, never <code>null</code>
+     * @throws SQLException
+     */
+    public List<Feature> buildFeatures( ResultSet rs, int maxRows )
+                            throws SQLException {
+
+        List<Feature> features = new ArrayList<Feature>();
+        try {
+            List<PendingFeature> pending = new ArrayList<PendingFeature>();
+            while ( features.size() < maxRows && rs.next() ) {
+                String gmlId = getGmlId( rs );
+                Feature feature = null;
+                if ( fs.getCache() != null ) {
+                    feature = (Feature) fs.getCache().get( gmlId );
+                }
+                if ( feature == null ) {
+                    LOG.debug( "Recreating feature '" + gmlId + "' from db (relational mode, batched)." );
+                    pending.add( createPendingFeature( gmlId, features.size(), rs ) );
+                } else {
+                    LOG.debug( "Cache hit." );
+                }
+                features.add( feature );
+            }
+            if ( pending.isEmpty() ) {
+                return features;
+            }
+            for ( Mapping mapping : ftMapping.getMappings() ) {
+                if ( isProjected( mapping ) && isJoined( mapping ) ) {
+                    buildJoinedParticles( mapping, pending );
+                }
+            }
+            for ( PendingFeature p : pending ) {
+                List<Property> props = new ArrayList<Property>();
+                for ( PendingProperty prop : p.props ) {
+                    addProperties( props, prop.pt, prop.mapping, prop.particles );
+                }
+                Feature feature = ft.newFeature( p.gmlId, props, null );
+                if ( fs.getCache() != null && projection == null && tolerance <= 0 ) {
+                    fs.getCache().add( feature );
+                }
+                features.set( p.index, feature );
+            }
+        } catch ( Throwable t ) {
+            LOG.error( t.getMessage(), t );
+            throw new SQLException( t.getMessage(), t );
+        }
+        return features;
+    }
+
+    /**
+     * @return true, if properties that are stored in joined tables are built, i.e. if
+     *         {@link #buildFeatures(ResultSet, int)} saves SELECTs compared to {@link #buildFeature(ResultSet)}
+     */
+    public boolean hasJoinedProperties() {
+        for ( Mapping mapping : ftMapping.getMappings() ) {
+            if ( isProjected( mapping ) && isJoined( mapping ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getGmlId( ResultSet rs )
+                            throws SQLException {
+        String gmlId = ftMapping.getFidMapping().getPrefix();
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = ftMapping.getFidMapping().getColumns();
+        gmlId += rs.getObject( colToRsIdx.get( tableAlias + "." + fidColumns.get( 0 ).first ) );
+        for ( int i = 1; i < fidColumns.size(); i++ ) {
+            gmlId += ftMapping.getFidMapping().getDelimiter()
+                     + rs.getObject( colToRsIdx.get( tableAlias + "." + fidColumns.get( i ).first ) );
+        }
+        return gmlId;
+    }
+
+    private static boolean isJoined( Mapping mapping ) {
+        return !( mapping instanceof FeatureMapping ) && mapping.getJoinedTable() != null;
+    }
+
+    /**
+     * Builds the properties of the current row that are not stored in joined tables, and remembers the join keys of the
+     * others.
+     */
+    private PendingFeature createPendingFeature( String gmlId, int index, ResultSet rs )
+                            throws SQLException {
+        PendingFeature feature = new PendingFeature( gmlId, index );
+        for ( Mapping mapping : ftMapping.getMappings() ) {
+            if ( !isProjected( mapping ) ) {
+                continue;
+            }
+            ValueReference propName = mapping.getPath();
+            QName childEl = getChildElementStepAsQName( propName );
+            if ( childEl == null ) {
+                LOG.warn( "Omitting mapping '" + mapping
+                          + "'. Only single child element steps (optionally with number predicate)"
+                          + " are currently supported." );
+                continue;
+            }
+            PropertyType pt = ft.getPropertyDeclaration( childEl );
+            String idPrefix = gmlId + "_" + toIdPrefix( propName );
+            PendingProperty prop = new PendingProperty( mapping, pt, idPrefix );
+            if ( isJoined( mapping ) ) {
+                List<Object> key = new ArrayList<Object>();
+                for ( SQLIdentifier keyColumn : mapping.getJoinedTable().get( 0 ).getFromColumns() ) {
+                    key.add( rs.getObject( colToRsIdx.get( tableAlias + "." + keyColumn ) ) );
+                }
+                prop.key = key;
+                feature.joined.put( mapping, prop );
+            } else {
+                prop.particles.addAll( buildParticles( mapping, rs, colToRsIdx, idPrefix ) );
+            }
+            feature.props.add( prop );
+        }
+        return feature;
+    }
+
+    /**
+     * Fetches the rows of the joined table of the given mapping for all pending features and builds the particles. A
+     * single SELECT is used, unless the keys need more than {@link #MAX_BOUND_PARAMETERS} bind parameters.
+     */
+    private void buildJoinedParticles( Mapping mapping, List<PendingFeature> pending )
+                            throws SQLException {
+
+        TableJoin jc = mapping.getJoinedTable().get( 0 );
+
+        // the same key may be referenced by several features
+        Map<List<String>, List<PendingProperty>> keyToProps = new LinkedHashMap<List<String>, List<PendingProperty>>();
+        List<List<Object>> keys = new ArrayList<List<Object>>();
+        for ( PendingFeature feature : pending ) {
+            PendingProperty prop = feature.joined.get( mapping );
+            if ( prop == null || prop.key.contains( null ) ) {
+                continue;
+            }
+            List<String> normalizedKey = normalizeKey( prop.key );
+            List<PendingProperty> props = keyToProps.get( normalizedKey );
+            if ( props == null ) {
+                props = new ArrayList<PendingProperty>();
+                keyToProps.put( normalizedKey, props );
+                keys.add( prop.key );
+            }
+            props.add( prop );
+        }
+        if ( keys.isEmpty() ) {
+            return;
+        }
+
+        LinkedHashMap<String, Integer> rsToIdx = getSubsequentSelectColumns( mapping );
+        List<Integer> keyIdx = new ArrayList<Integer>();
+        for ( SQLIdentifier keyColumn : jc.getToColumns() ) {
+            String column = tableAlias + "." + keyColumn;
+            addColumn( rsToIdx, column );
+            keyIdx.add( rsToIdx.get( column ) );
+        }
+
+        StringBuilder select = new StringBuilder( "SELECT " );
+        boolean first = true;
+        for ( String column : rsToIdx.keySet() ) {
+            if ( !first ) {
+                select.append( ',' );
+            }
+            select.append( column );
+            first = false;
+        }
+        select.append( " FROM " );
+        select.append( jc.getToTable() );
+        select.append( ' ' );
+        select.append( tableAlias );
+        select.append( " WHERE " );
+
+        // all rows of a key are fetched by the same SELECT, so the order of the rows of each key is preserved
+        for ( List<List<Object>> batch : getKeyBatches( keys, jc.getToColumns().size() ) ) {
+            StringBuilder sql = new StringBuilder( select );
+            appendKeyCondition( sql, jc.getToColumns(), batch.size() );
+            appendOrderBy( sql, jc );
+            buildJoinedParticles( mapping, sql.toString(), batch, rsToIdx, keyIdx, keyToProps );
+        }
+    }
+
+    private void buildJoinedParticles( Mapping mapping, String sql, List<List<Object>> keys,
+                                       LinkedHashMap<String, Integer> rsToIdx, List<Integer> keyIdx,
+                                       Map<List<String>, List<PendingProperty>> keyToProps )
+                            throws SQLException {
+        LOG.debug( "SQL: {}", sql );
+        TableJoin jc = mapping.getJoinedTable().get( 0 );
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            long begin = System.currentTimeMillis();
+            stmt = conn.prepareStatement( sql );
+            LOG.debug( "Preparing batched subsequent SELECT took {} [ms] ", System.currentTimeMillis() - begin );
+            int i = 1;
+            for ( List<Object> key : keys ) {
+                for ( Object value : key ) {
+                    stmt.setObject( i++, value );
+                }
+            }
+            begin = System.currentTimeMillis();
+            rs = stmt.executeQuery();
+            LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
+
+            List<Object> key = new ArrayList<Object>( keyIdx.size() );
+            while ( rs.next() ) {
+                key.clear();
+                for ( int idx : keyIdx ) {
+                    key.add( rs.getObject( idx ) );
+                }
+                List<PendingProperty> props = keyToProps.get( normalizeKey( key ) );
+                if ( props == null ) {
+                    LOG.warn( "Row of joined table " + jc.getToTable() + " does not match any requested key: " + key );
+                    continue;
+                }
+                for ( PendingProperty prop : props ) {
+                    TypedObjectNode particle = buildParticle( mapping, rs, rsToIdx,
+                                                              prop.idPrefix + "_" + ( prop.numRows++ ) );
+                    if ( particle != null ) {
+                        prop.particles.add( particle );
+                    }
+                }
+            }
+        } catch ( SQLException e ) {
+            String msg = "Error performing batched subsequent SELECT: " + e.getMessage();
+            LOG.error( msg, e );
+            throw new SQLException( msg, e );
+        } finally {
+            close( rs, stmt, null, LOG );
+        }
+    }
+
+    /**
+     * Splits the keys into batches, so that a SELECT for a single batch binds no more than
+     * {@link #MAX_BOUND_PARAMETERS} values.
+     * 
+     * @param keys
+     *            keys to split, must not be <code>null</code>
+     * @param keyColumns
+     *            number of columns of each key, must be positive
+     * @return batches of keys, never <code>null</code>
+     */
+    static <T> List<List<T>> getKeyBatches( List<T> keys, int keyColumns ) {
+        int batchSize = getKeyBatchSize( keyColumns );
+        List<List<T>> batches = new ArrayList<List<T>>();
+        for ( int i = 0; i < keys.size(); i += batchSize ) {
+            batches.add( keys.subList( i, Math.min( keys.size(), i + batchSize ) ) );
+        }
+        return batches;
+    }
+
+    /**
+     * Returns the maximum number of keys that may be selected by a single statement.
+     * 
+     * @param keyColumns
+     *            number of columns of each key, must be positive
+     * @return maximum number of keys, at least one
+     */
+    public static int getKeyBatchSize( int keyColumns ) {
+        return Math.max( 1, MAX_BOUND_PARAMETERS / keyColumns );
+    }
+
+    /**
+     * Appends a condition that matches the given number of keys (as bind parameters): <code>IN</code> for single
+     * column keys, OR-ed tuples for composite keys.
+     */
+    static void appendKeyCondition( StringBuilder sql, List<SQLIdentifier> keyColumns, int numKeys ) {
+        if ( keyColumns.size() == 1 ) {
+            sql.append( keyColumns.get( 0 ) );
+            sql.append( " IN (?" );
+            for ( int i = 1; i < numKeys; i++ ) {
+                sql.append( ",?" );
+            }
+            sql.append( ')' );
+            return;
+        }
+        for ( int i = 0; i < numKeys; i++ ) {
+            if ( i > 0 ) {
+                sql.append( " OR " );
+            }
+            sql.append( '(' );
+            boolean first = true;
+            for ( SQLIdentifier keyColumn : keyColumns ) {
+                if ( !first ) {
+                    sql.append( " AND " );
+                }
+                sql.append( keyColumn );
+                sql.append( " = ?" );
+                first = false;
+            }
+            sql.append( ')' );
+        }
+    }
+
+    /**
+     * Converts the key values to strings, so keys match regardless of the numeric types used by the JDBC driver for
+     * the columns of the parent and the joined table.
+     */
+    private static List<String> normalizeKey( List<Object> key ) {
+        String[] values = new String[key.size()];
+        int i = 0;
+        for ( Object value : key ) {
+            if ( value instanceof BigDecimal ) {
+                BigDecimal d = (BigDecimal) value;
+                values[i++] = d.signum() == 0 ? "0" : d.stripTrailingZeros().toPlainString();
+            } else {
+                values[i++] = String.valueOf( value );
+            }
+        }
+        return Arrays.asList( values );
+    }
+
     private String toIdPrefix( ValueReference propName ) {
         String s = propName.getAsText();
         s = s.replace( "/", "_" );
@@ -296,7 +745,11 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                                 String idPrefix )
                                                         throws SQLException {
 
-        List<TypedObjectNode> particles = buildParticles( propMapping, rs, colToRsIdx, idPrefix );
+        addProperties( props, pt, propMapping, buildParticles( propMapping, rs, colToRsIdx, idPrefix ) );
+    }
+
+    private void addProperties( List<Property> props, PropertyType pt, Mapping propMapping,
+                                List<TypedObjectNode> particles ) {
         if ( particles.isEmpty() && pt.getMinOccurs() > 0 ) {
             if ( pt.isNillable() ) {
                 Map<QName, PrimitiveValue> attrs = Collections.singletonMap( new QName( CommonNamespaces.XSINS, "nil" ),
@@ -372,7 +825,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             GeometryMapping pm = (GeometryMapping) mapping;
             MappingExpression me = pm.getMapping();
             if ( me instanceof DBField ) {
-                String col = converter.getSelectSnippet( tableAlias );
+                String col = getGeometrySelectSnippet( mapping, converter );
                 int colIndex = colToRsIdx.get( col );
                 particle = converter.toParticle( rs, colIndex );
                 Geometry geom = ( (Geometry) particle );
@@ -642,22 +1095,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             sql.append( " = ?" );
             first = false;
         }
-        if ( jc.getOrderColumns() != null && !jc.getOrderColumns().isEmpty() ) {
-            sql.append( " ORDER BY " );
-            first = true;
-            for ( SQLIdentifier orderColumn : jc.getOrderColumns() ) {
-                if ( !first ) {
-                    sql.append( "," );
-                }
-                if ( orderColumn.toString().endsWith( "-" ) ) {
-                    sql.append( orderColumn.toString().substring( 0, orderColumn.toString().length() - 1 ) );
-                    sql.append( " DESC" );
-                } else {
-                    sql.append( orderColumn );
-                }
-                first = false;
-            }
-        }
+        appendOrderBy( sql, jc );
         LOG.debug( "SQL: {}", sql );
 
         PreparedStatement stmt = null;
@@ -685,6 +1123,25 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         return new Pair<ResultSet, LinkedHashMap<String, Integer>>( rs2, rsToIdx );
     }
 
+    private static void appendOrderBy( StringBuilder sql, TableJoin jc ) {
+        if ( jc.getOrderColumns() != null && !jc.getOrderColumns().isEmpty() ) {
+            sql.append( " ORDER BY " );
+            boolean first = true;
+            for ( SQLIdentifier orderColumn : jc.getOrderColumns() ) {
+                if ( !first ) {
+                    sql.append( "," );
+                }
+                if ( orderColumn.toString().endsWith( "-" ) ) {
+                    sql.append( orderColumn.toString().substring( 0, orderColumn.toString().length() - 1 ) );
+                    sql.append( " DESC" );
+                } else {
+                    sql.append( orderColumn );
+                }
+                first = false;
+            }
+        }
+    }
+
     private QName getChildElementStepAsQName( ValueReference ref ) {
         QName qName = null;
         Expr xpath = ref.getAsXPath();
@@ -735,4 +1192,49 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         }
         return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * A feature of a batch whose joined properties have not been fetched yet.
+     */
+    private static class PendingFeature {
+
+        private final String gmlId;
+
+        private final int index;
+
+        private final List<PendingProperty> props = new ArrayList<PendingProperty>();
+
+        private final Map<Mapping, PendingProperty> joined = new IdentityHashMap<Mapping, PendingProperty>();
+
+        private PendingFeature( String gmlId, int index ) {
+            this.gmlId = gmlId;
+            this.index = index;
+        }
+    }
+
+    /**
+     * The particles of a top level mapping of a pending feature.
+     */
+    private static class PendingProperty {
+
+        private final Mapping mapping;
+
+        private final PropertyType pt;
+
+        private final String idPrefix;
+
+        private final List<TypedObjectNode> particles = new ArrayList<TypedObjectNode>();
+
+        // values of the join key columns (joined properties only)
+        private List<Object> key;
+
+        private int numRows;
+
+        private PendingProperty( Mapping mapping, PropertyType pt, String idPrefix ) {
+            this.mapping = mapping;
+            this.pt = pt;
+            this.idPrefix = idPrefix;
+        }
+    }
+
+}
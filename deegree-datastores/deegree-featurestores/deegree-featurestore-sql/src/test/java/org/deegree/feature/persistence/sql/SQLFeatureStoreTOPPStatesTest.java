@@ -69,6 +69,7 @@ import org.deegree.db.ConnectionProviderProvider;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChangeListener;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.FeatureStoreProvider;
@@ -79,11 +80,13 @@ import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.IdFilter;
 import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.comparison.PropertyIsEqualTo;
 import org.deegree.filter.expression.Literal;
 import org.deegree.filter.expression.ValueReference;
 import org.deegree.filter.spatial.BBOX;
+import org.deegree.geometry.Envelope;
 import org.deegree.geometry.GeometryFactory;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLStreamReader;
@@ -307,6 +310,87 @@ public class SQLFeatureStoreTOPPStatesTest {
         Assert.assertTrue( stateNames.contains( "New Jersey" ) );
     }
 
+    @Test
+    public void deleteByIdsPublishesEnvelopes()
+                            throws Exception {
+        Feature illinois = queryByName( "Illinois" );
+        Feature indiana = queryByName( "Indiana" );
+        final List<List<Envelope>> published = new ArrayList<List<Envelope>>();
+        fs.addChangeListener( new FeatureStoreChangeListener() {
+            @Override
+            public void featuresChanged( FeatureStore store, List<Envelope> envelopes ) {
+                published.add( envelopes );
+            }
+        } );
+
+        FeatureStoreTransaction ta = fs.acquireTransaction();
+        try {
+            assertEquals( 2, ta.performDelete( new IdFilter( illinois.getId(), indiana.getId() ), null ) );
+            ta.commit();
+        } catch ( Exception e ) {
+            ta.rollback();
+            throw e;
+        }
+
+        assertEquals( 1, published.size() );
+        List<Envelope> envelopes = published.get( 0 );
+        assertEquals( 2, envelopes.size() );
+        assertContainsEnvelope( envelopes, illinois.getEnvelope() );
+        assertContainsEnvelope( envelopes, indiana.getEnvelope() );
+    }
+
+    @Test
+    public void deleteByOperatorFilterPublishesEnvelopes()
+                            throws Exception {
+        Feature illinois = queryByName( "Illinois" );
+        final List<List<Envelope>> published = new ArrayList<List<Envelope>>();
+        fs.addChangeListener( new FeatureStoreChangeListener() {
+            @Override
+            public void featuresChanged( FeatureStore store, List<Envelope> envelopes ) {
+                published.add( envelopes );
+            }
+        } );
+
+        PropertyIsEqualTo oper = new PropertyIsEqualTo( new ValueReference( STATE_NAME ), new Literal( "Illinois" ),
+                                                        false, null );
+        FeatureStoreTransaction ta = fs.acquireTransaction();
+        try {
+            assertEquals( 1, ta.performDelete( TOPP_STATES, new OperatorFilter( oper ), null ) );
+            ta.commit();
+        } catch ( Exception e ) {
+            ta.rollback();
+            throw e;
+        }
+
+        assertEquals( 1, published.size() );
+        assertEquals( 1, published.get( 0 ).size() );
+        assertContainsEnvelope( published.get( 0 ), illinois.getEnvelope() );
+    }
+
+    private Feature queryByName( String name )
+                            throws FeatureStoreException, FilterEvaluationException {
+        PropertyIsEqualTo oper = new PropertyIsEqualTo( new ValueReference( STATE_NAME ), new Literal( name ), false,
+                                                        null );
+        Query query = new Query( TOPP_STATES, new OperatorFilter( oper ), -1, -1, -1 );
+        FeatureCollection fc = fs.query( query ).toCollection();
+        Assert.assertEquals( 1, fc.size() );
+        return fc.iterator().next();
+    }
+
+    private static void assertContainsEnvelope( List<Envelope> envelopes, Envelope expected ) {
+        // aggregated envelopes may be stored with single precision
+        double delta = 0.001;
+        for ( Envelope env : envelopes ) {
+            if ( Math.abs( env.getMin().get0() - expected.getMin().get0() ) < delta
+                 && Math.abs( env.getMin().get1() - expected.getMin().get1() ) < delta
+                 && Math.abs( env.getMax().get0() - expected.getMax().get0() ) < delta
+                 && Math.abs( env.getMax().get1() - expected.getMax().get1() ) < delta ) {
+                return;
+            }
+        }
+        Assert.fail( "Envelope " + expected + " has not been published: " + envelopes );
+    }
+
     private PrimitiveValue getPropertyValue( Feature f, QName propName ) {
         return (PrimitiveValue) f.getProperties( propName ).get( 0 ).getValue();
     }
@@ -0,0 +1,125 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import static org.deegree.feature.persistence.sql.rules.FeatureBuilderRelational.MAX_BOUND_PARAMETERS;
+import static org.deegree.feature.persistence.sql.rules.FeatureBuilderRelational.appendKeyCondition;
+import static org.deegree.feature.persistence.sql.rules.FeatureBuilderRelational.getKeyBatches;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.junit.Test;
+
+/**
+ * Tests for the batching of joined property SELECTs of {@link FeatureBuilderRelational}.
+ * 
+ * @since 3.4
+ */
+public class FeatureBuilderRelationalTest {
+
+    private static List<List<Object>> createKeys( int numKeys, int keyColumns ) {
+        List<List<Object>> keys = new ArrayList<List<Object>>( numKeys );
+        for ( int i = 0; i < numKeys; i++ ) {
+            List<Object> key = new ArrayList<Object>( keyColumns );
+            for ( int j = 0; j < keyColumns; j++ ) {
+                key.add( i * keyColumns + j );
+            }
+            keys.add( key );
+        }
+        return keys;
+    }
+
+    private static List<SQLIdentifier> createColumns( String... names ) {
+        List<SQLIdentifier> columns = new ArrayList<SQLIdentifier>();
+        for ( String name : names ) {
+            columns.add( new SQLIdentifier( name ) );
+        }
+        return columns;
+    }
+
+    private static int countParameters( String sql ) {
+        int count = 0;
+        for ( char c : sql.toCharArray() ) {
+            if ( c == '?' ) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testCompositeKeyBatchesStayBelowParameterLimit() {
+        List<List<Object>> keys = createKeys( 1500, 3 );
+        List<SQLIdentifier> columns = createColumns( "a", "b", "c" );
+        List<List<List<Object>>> batches = getKeyBatches( keys, 3 );
+        assertEquals( 5, batches.size() );
+        List<List<Object>> selected = new ArrayList<List<Object>>();
+        for ( List<List<Object>> batch : batches ) {
+            StringBuilder sql = new StringBuilder();
+            appendKeyCondition( sql, columns, batch.size() );
+            int parameters = countParameters( sql.toString() );
+            assertEquals( batch.size() * 3, parameters );
+            assertTrue( parameters <= MAX_BOUND_PARAMETERS );
+            selected.addAll( batch );
+        }
+        assertEquals( keys, selected );
+    }
+
+    @Test
+    public void testSingleColumnKeyBatchesStayBelowParameterLimit() {
+        List<List<Object>> keys = createKeys( 2500, 1 );
+        List<List<List<Object>>> batches = getKeyBatches( keys, 1 );
+        assertEquals( 3, batches.size() );
+        assertEquals( MAX_BOUND_PARAMETERS, batches.get( 0 ).size() );
+        assertEquals( MAX_BOUND_PARAMETERS, batches.get( 1 ).size() );
+        assertEquals( 500, batches.get( 2 ).size() );
+    }
+
+    @Test
+    public void testSmallBatchIsNotSplit() {
+        List<List<Object>> keys = createKeys( 10, 2 );
+        assertEquals( Arrays.asList( keys ), getKeyBatches( keys, 2 ) );
+    }
+
+    @Test
+    public void testKeyConditions() {
+        StringBuilder sql = new StringBuilder();
+        appendKeyCondition( sql, createColumns( "id" ), 3 );
+        assertEquals( "id IN (?,?,?)", sql.toString() );
+
+        sql = new StringBuilder();
+        appendKeyCondition( sql, createColumns( "a", "b" ), 2 );
+        assertEquals( "(a = ? AND b = ?) OR (a = ? AND b = ?)", sql.toString() );
+    }
+
+}
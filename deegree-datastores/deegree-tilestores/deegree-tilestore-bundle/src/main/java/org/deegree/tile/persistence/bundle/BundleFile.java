@@ -0,0 +1,289 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.bundle;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.deegree.tile.TileIOException;
+
+/**
+ * A single bundle file that stores a block of <code>bundleSize</code> x <code>bundleSize</code> encoded tiles.
+ * <p>
+ * The file starts with a fixed size header (magic number, format version, bundle size), followed by a fixed size index
+ * with one entry (64 bit offset, 32 bit length) per tile in row-major order. The tile payloads are appended after the
+ * index, an entry with length zero denotes a missing tile. Replacing or deleting a tile only updates the index, the
+ * space of the old payload is not reclaimed.
+ * </p>
+ * <p>
+ * Reads are served from a read-only memory mapping of the file, so tile data is never copied onto the heap. The mapping
+ * is renewed lazily when the file has grown beyond the mapped region. Index entries are read and written while holding
+ * the lock of the bundle file, so readers never see an offset and a length of different writes.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class BundleFile {
+
+    static final int MAGIC = 0x44475442;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_LENGTH = 16;
+
+    static final int INDEX_ENTRY_LENGTH = 12;
+
+    private final File file;
+
+    private final int bundleSize;
+
+    private final int dataOffset;
+
+    private RandomAccessFile raf;
+
+    private boolean writable;
+
+    private volatile MappedByteBuffer mapping;
+
+    /**
+     * Opens an existing bundle file.
+     * 
+     * @param file
+     *            the bundle file, must not be <code>null</code> and must exist
+     * @param bundleSize
+     *            number of tile columns and rows in the bundle, must be positive
+     * @throws IOException
+     *             if the file could not be opened or is not a compatible bundle file
+     */
+    BundleFile( File file, int bundleSize ) throws IOException {
+        this.file = file;
+        this.bundleSize = bundleSize;
+        this.dataOffset = HEADER_LENGTH + bundleSize * bundleSize * INDEX_ENTRY_LENGTH;
+        if ( file.exists() ) {
+            raf = new RandomAccessFile( file, "r" );
+            checkHeader();
+        } else {
+            create();
+        }
+        remap();
+    }
+
+    /**
+     * Returns the encoded data of a tile.
+     * 
+     * @param col
+     *            column of the tile within the bundle
+     * @param row
+     *            row of the tile within the bundle
+     * @return read-only view of the tile data in the mapped file, or <code>null</code> if the tile is not present
+     */
+    ByteBuffer read( int col, int row ) {
+        long[] entry = readIndexEntry( col, row );
+        return entry == null ? null : slice( entry[0], (int) entry[1] );
+    }
+
+    /**
+     * Returns the index entry of a tile. As payloads are only ever appended, the offset identifies the current version
+     * of the tile data.
+     * 
+     * @param col
+     *            column of the tile within the bundle
+     * @param row
+     *            row of the tile within the bundle
+     * @return offset and length of the tile data, or <code>null</code> if the tile is not present
+     */
+    synchronized long[] readIndexEntry( int col, int row ) {
+        MappedByteBuffer buf = mapping;
+        int entry = getIndexEntryPosition( col, row );
+        long offset = buf.getLong( entry );
+        int length = buf.getInt( entry + 8 );
+        if ( length <= 0 ) {
+            return null;
+        }
+        return new long[] { offset, length };
+    }
+
+    /**
+     * Returns a view of a region of the mapped file.
+     * 
+     * @param offset
+     *            start of the region
+     * @param length
+     *            length of the region
+     * @return read-only view of the region, never <code>null</code>
+     */
+    ByteBuffer slice( long offset, int length ) {
+        MappedByteBuffer buf = mapping;
+        if ( offset + length > buf.capacity() ) {
+            // written after the current mapping has been created
+            buf = remap();
+            if ( offset + length > buf.capacity() ) {
+                throw new TileIOException( "Corrupt index entry (offset " + offset + ", length " + length
+                                           + ") in bundle " + file );
+            }
+        }
+        ByteBuffer slice = buf.duplicate();
+        slice.position( (int) offset );
+        slice.limit( (int) offset + length );
+        return slice.slice();
+    }
+
+    /**
+     * Stores the encoded data of a tile, replacing any previous data.
+     * 
+     * @param col
+     *            column of the tile within the bundle
+     * @param row
+     *            row of the tile within the bundle
+     * @param data
+     *            encoded tile data, must not be <code>null</code>
+     * @throws IOException
+     */
+    synchronized void write( int col, int row, byte[] data )
+                            throws IOException {
+        ensureWritable();
+        FileChannel channel = raf.getChannel();
+        long offset = channel.size();
+        if ( offset + data.length > Integer.MAX_VALUE ) {
+            throw new TileIOException( "Bundle " + file + " is full (2 GB), consider a smaller bundle size." );
+        }
+        writeFully( channel, ByteBuffer.wrap( data ), offset );
+        writeIndexEntry( col, row, offset, data.length );
+    }
+
+    /**
+     * Removes a tile from the bundle.
+     * 
+     * @param col
+     *            column of the tile within the bundle
+     * @param row
+     *            row of the tile within the bundle
+     * @throws IOException
+     */
+    synchronized void delete( int col, int row )
+                            throws IOException {
+        ensureWritable();
+        writeIndexEntry( col, row, 0, 0 );
+    }
+
+    /**
+     * Releases the file handle. The mapping stays valid until it is garbage collected.
+     */
+    synchronized void close() {
+        closeQuietly( raf );
+    }
+
+    private int getIndexEntryPosition( int col, int row ) {
+        return HEADER_LENGTH + ( row * bundleSize + col ) * INDEX_ENTRY_LENGTH;
+    }
+
+    private void writeIndexEntry( int col, int row, long offset, int length )
+                            throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate( INDEX_ENTRY_LENGTH );
+        entry.putLong( offset );
+        entry.putInt( length );
+        entry.flip();
+        writeFully( raf.getChannel(), entry, getIndexEntryPosition( col, row ) );
+    }
+
+    private synchronized MappedByteBuffer remap() {
+        try {
+            long size = raf.getChannel().size();
+            if ( mapping == null || mapping.capacity() < size ) {
+                mapping = raf.getChannel().map( READ_ONLY, 0, size );
+            }
+            return mapping;
+        } catch ( IOException e ) {
+            throw new TileIOException( "Unable to map bundle " + file + ": " + e.getMessage(), e );
+        }
+    }
+
+    private void create()
+                            throws IOException {
+        File parent = file.getParentFile();
+        if ( parent != null && !parent.exists() && !parent.mkdirs() ) {
+            throw new IOException( "Unable to create parent directories for " + file );
+        }
+        raf = new RandomAccessFile( file, "rw" );
+        writable = true;
+        // extending the file zero-fills the index
+        raf.setLength( dataOffset );
+        ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+        header.putInt( MAGIC );
+        header.putInt( VERSION );
+        header.putInt( bundleSize );
+        header.putInt( 0 );
+        header.flip();
+        writeFully( raf.getChannel(), header, 0 );
+    }
+
+    private void checkHeader()
+                            throws IOException {
+        if ( raf.length() < dataOffset ) {
+            throw new IOException( "File " + file + " is not a valid bundle file (truncated index)." );
+        }
+        raf.seek( 0 );
+        if ( raf.readInt() != MAGIC ) {
+            throw new IOException( "File " + file + " is not a bundle file." );
+        }
+        int version = raf.readInt();
+        if ( version != VERSION ) {
+            throw new IOException( "Bundle file " + file + " has unsupported version " + version + "." );
+        }
+        int size = raf.readInt();
+        if ( size != bundleSize ) {
+            throw new IOException( "Bundle file " + file + " has bundle size " + size + ", but " + bundleSize
+                                   + " is configured." );
+        }
+    }
+
+    private void ensureWritable()
+                            throws IOException {
+        if ( !writable ) {
+            closeQuietly( raf );
+            raf = new RandomAccessFile( file, "rw" );
+            writable = true;
+        }
+    }
+
+    private static void writeFully( FileChannel channel, ByteBuffer buf, long position )
+                            throws IOException {
+        long pos = position;
+        while ( buf.hasRemaining() ) {
+            pos += channel.write( buf, pos );
+        }
+    }
+
+}
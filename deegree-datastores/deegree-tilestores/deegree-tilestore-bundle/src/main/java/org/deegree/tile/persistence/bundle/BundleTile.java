@@ -0,0 +1,110 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.bundle;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.VersionedTile;
+
+/**
+ * A {@link Tile} that is backed by a slice of a memory-mapped {@link BundleFile}.
+ * 
+ * @since 3.4
+ */
+class BundleTile implements VersionedTile {
+
+    private final Envelope bbox;
+
+    private final ByteBuffer data;
+
+    private final long offset;
+
+    /**
+     * Creates a new {@link BundleTile} instance.
+     * 
+     * @param bbox
+     *            envelope of the tile, must not be <code>null</code>
+     * @param data
+     *            encoded tile data, must not be <code>null</code>
+     * @param offset
+     *            offset of the tile data in the bundle file
+     */
+    BundleTile( Envelope bbox, ByteBuffer data, long offset ) {
+        this.bbox = bbox;
+        this.data = data;
+        this.offset = offset;
+    }
+
+    @Override
+    public BufferedImage getAsImage()
+                            throws TileIOException {
+        try {
+            return ImageIO.read( getAsStream() );
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error decoding tile from bundle: " + e.getMessage(), e );
+        }
+    }
+
+    @Override
+    public InputStream getAsStream()
+                            throws TileIOException {
+        return new ByteBufferInputStream( data.duplicate() );
+    }
+
+    @Override
+    public Envelope getEnvelope() {
+        return bbox;
+    }
+
+    @Override
+    public String getVersion() {
+        // tile data is never overwritten in place, so offset and length identify the version
+        return Long.toHexString( offset ) + "-" + Integer.toHexString( data.remaining() );
+    }
+
+    @Override
+    public long getLastModified() {
+        return -1;
+    }
+
+    @Override
+    public FeatureCollection getFeatures( int i, int j, int limit )
+                            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException( "Feature retrieval is not supported by the BundleTileStore." );
+    }
+
+}
@@ -0,0 +1,198 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.bundle;
+
+import static org.deegree.tile.Tiles.calcTileEnvelope;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.TileMatrix;
+import org.slf4j.Logger;
+
+/**
+ * {@link TileDataLevel} implementation for the {@link BundleTileStore}.
+ * <p>
+ * The tiles of the level are split into blocks of <code>bundleSize</code> x <code>bundleSize</code> tiles, each block
+ * is stored in a bundle file <code>&lt;level directory&gt;/R&lt;block row&gt;C&lt;block column&gt;.bundle</code>.
+ * Bundle files are opened on first access and kept open until the store is destroyed.
+ * </p>
+ * 
+ * @see BundleFile
+ * 
+ * @since 3.4
+ */
+class BundleTileDataLevel implements TileDataLevel {
+
+    private static final Logger LOG = getLogger( BundleTileDataLevel.class );
+
+    private final TileMatrix metadata;
+
+    private final File levelDir;
+
+    private final int bundleSize;
+
+    private final ConcurrentMap<String, BundleFile> bundles = new ConcurrentHashMap<String, BundleFile>();
+
+    /**
+     * Creates a new {@link BundleTileDataLevel} instance.
+     * 
+     * @param metadata
+     *            tile matrix, must not be <code>null</code>
+     * @param levelDir
+     *            directory for the bundle files of this level, must not be <code>null</code>
+     * @param bundleSize
+     *            number of tile columns and rows per bundle, must be positive
+     */
+    BundleTileDataLevel( TileMatrix metadata, File levelDir, int bundleSize ) {
+        this.metadata = metadata;
+        this.levelDir = levelDir;
+        this.bundleSize = bundleSize;
+    }
+
+    @Override
+    public TileMatrix getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public Tile getTile( long x, long y ) {
+        if ( !isInRange( x, y ) ) {
+            return null;
+        }
+        BundleFile bundle = getBundle( x, y, false );
+        if ( bundle == null ) {
+            return null;
+        }
+        long[] entry = bundle.readIndexEntry( (int) ( x % bundleSize ), (int) ( y % bundleSize ) );
+        if ( entry == null ) {
+            return null;
+        }
+        ByteBuffer data = bundle.slice( entry[0], (int) entry[1] );
+        return new BundleTile( calcTileEnvelope( metadata, x, y ), data, entry[0] );
+    }
+
+    /**
+     * Stores the encoded data of a tile.
+     * 
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @param data
+     *            encoded tile data, must not be <code>null</code>
+     * @throws TileIOException
+     *             if the indexes are out of range or writing failed
+     */
+    void put( long x, long y, byte[] data )
+                            throws TileIOException {
+        if ( !isInRange( x, y ) ) {
+            throw new TileIOException( "Tile " + x + "/" + y + " is out of range of tile matrix "
+                                       + metadata.getIdentifier() + "." );
+        }
+        try {
+            getBundle( x, y, true ).write( (int) ( x % bundleSize ), (int) ( y % bundleSize ), data );
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error writing tile " + x + "/" + y + ": " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Removes a tile, nothing happens if the tile does not exist.
+     * 
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @throws TileIOException
+     *             if writing failed
+     */
+    void delete( long x, long y )
+                            throws TileIOException {
+        if ( !isInRange( x, y ) ) {
+            return;
+        }
+        BundleFile bundle = getBundle( x, y, false );
+        if ( bundle == null ) {
+            return;
+        }
+        try {
+            bundle.delete( (int) ( x % bundleSize ), (int) ( y % bundleSize ) );
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error deleting tile " + x + "/" + y + ": " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Closes all open bundle files.
+     */
+    void close() {
+        for ( BundleFile bundle : bundles.values() ) {
+            bundle.close();
+        }
+        bundles.clear();
+    }
+
+    private boolean isInRange( long x, long y ) {
+        return x >= 0 && y >= 0 && x < metadata.getNumTilesX() && y < metadata.getNumTilesY();
+    }
+
+    private BundleFile getBundle( long x, long y, boolean create ) {
+        String name = "R" + ( y / bundleSize ) + "C" + ( x / bundleSize ) + ".bundle";
+        BundleFile bundle = bundles.get( name );
+        if ( bundle != null ) {
+            return bundle;
+        }
+        synchronized ( bundles ) {
+            bundle = bundles.get( name );
+            if ( bundle != null ) {
+                return bundle;
+            }
+            File file = new File( levelDir, name );
+            if ( !create && !file.exists() ) {
+                return null;
+            }
+            try {
+                LOG.debug( "Opening bundle file {}.", file );
+                bundle = new BundleFile( file, bundleSize );
+            } catch ( IOException e ) {
+                throw new TileIOException( "Unable to open bundle file " + file + ": " + e.getMessage(), e );
+            }
+            bundles.put( name, bundle );
+            return bundle;
+        }
+    }
+
+}
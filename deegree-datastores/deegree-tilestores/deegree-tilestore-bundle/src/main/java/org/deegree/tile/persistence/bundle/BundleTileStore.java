@@ -0,0 +1,73 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.bundle;
+
+import java.util.Map;
+
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.persistence.GenericTileStore;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreTransaction;
+import org.deegree.workspace.ResourceMetadata;
+
+/**
+ * {@link TileStore} that packs blocks of tiles into memory-mapped bundle files, avoiding one file (and one
+ * open/read/close sequence) per tile.
+ * 
+ * @since 3.4
+ */
+public class BundleTileStore extends GenericTileStore {
+
+    /**
+     * Creates a new {@link BundleTileStore} instance.
+     * 
+     * @param tileDataSets
+     *            the tile data sets to serve, must not be <code>null</code>
+     * @param metadata
+     *            resource metadata for this tile store, may not be <code>null</code> if managed by workspace
+     */
+    public BundleTileStore( Map<String, TileDataSet> tileDataSets, ResourceMetadata<TileStore> metadata ) {
+        super( tileDataSets, metadata );
+    }
+
+    @Override
+    public void destroy() {
+        for ( String id : getTileDataSetIds() ) {
+            for ( TileDataLevel level : getTileDataSet( id ).getTileDataLevels() ) {
+                ( (BundleTileDataLevel) level ).close();
+            }
+        }
+    }
+
+    @Override
+    public TileStoreTransaction acquireTransaction( String id ) {
+        return new BundleTileStoreTransaction( id, this );
+    }
+
+}
@@ -0,0 +1,118 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.bundle;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deegree.tile.DefaultTileDataSet;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.TileMatrixSet;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.bundle.jaxb.BundleTileStoreJAXB;
+import org.deegree.tile.tilematrixset.TileMatrixSetProvider;
+import org.deegree.workspace.ResourceBuilder;
+import org.deegree.workspace.ResourceInitException;
+import org.deegree.workspace.ResourceMetadata;
+import org.deegree.workspace.Workspace;
+import org.slf4j.Logger;
+
+/**
+ * This class is responsible for building bundle tile stores.
+ * 
+ * @since 3.4
+ */
+public class BundleTileStoreBuilder implements ResourceBuilder<TileStore> {
+
+    private static final Logger LOG = getLogger( BundleTileStoreBuilder.class );
+
+    private static final int DEFAULT_BUNDLE_SIZE = 128;
+
+    private BundleTileStoreJAXB config;
+
+    private ResourceMetadata<TileStore> metadata;
+
+    private Workspace workspace;
+
+    public BundleTileStoreBuilder( BundleTileStoreJAXB config, ResourceMetadata<TileStore> metadata,
+                                   Workspace workspace ) {
+        this.config = config;
+        this.metadata = metadata;
+        this.workspace = workspace;
+    }
+
+    @Override
+    public TileStore build() {
+        try {
+            Map<String, TileDataSet> map = new HashMap<String, TileDataSet>();
+
+            for ( BundleTileStoreJAXB.TileDataSet tds : config.getTileDataSet() ) {
+                File baseDir = new File( tds.getBundleDirectory() );
+                if ( !baseDir.isAbsolute() ) {
+                    baseDir = metadata.getLocation().resolveToFile( tds.getBundleDirectory() );
+                }
+                String id = tds.getIdentifier();
+                if ( id == null ) {
+                    id = baseDir.getName();
+                }
+                int bundleSize = DEFAULT_BUNDLE_SIZE;
+                if ( tds.getBundleSize() != null ) {
+                    bundleSize = tds.getBundleSize().intValue();
+                }
+
+                TileMatrixSet tms = workspace.getResource( TileMatrixSetProvider.class, tds.getTileMatrixSetId() );
+
+                List<TileDataLevel> list = new ArrayList<TileDataLevel>( tms.getTileMatrices().size() );
+                DecimalFormat formatter = new DecimalFormat( "00" );
+                int index = 0;
+                for ( TileMatrix tm : tms.getTileMatrices() ) {
+                    File levelDir = new File( baseDir, formatter.format( index++ ) );
+                    list.add( new BundleTileDataLevel( tm, levelDir, bundleSize ) );
+                }
+
+                String format = "image/" + tds.getFileType();
+                map.put( id, new DefaultTileDataSet( list, tms, format ) );
+            }
+
+            return new BundleTileStore( map, metadata );
+        } catch ( Exception e ) {
+            String msg = "Unable to create BundleTileStore: " + e.getMessage();
+            LOG.error( msg );
+            throw new ResourceInitException( msg, e );
+        }
+    }
+
+}
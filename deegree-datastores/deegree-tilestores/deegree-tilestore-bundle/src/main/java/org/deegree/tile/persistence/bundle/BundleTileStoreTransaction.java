@@ -0,0 +1,90 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.bundle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.persistence.AbstractTileStoreTransaction;
+
+/**
+ * {@link org.deegree.tile.persistence.TileStoreTransaction} for the {@link BundleTileStore}.
+ * 
+ * @since 3.4
+ */
+class BundleTileStoreTransaction extends AbstractTileStoreTransaction {
+
+    private final String fileType;
+
+    /**
+     * Creates a new {@link org.deegree.tile.persistence.TileStoreTransaction}.
+     * 
+     * @param id
+     *            id of the tile data set, must not be <code>null</code>
+     * @param store
+     *            tile store, must not be <code>null</code>
+     */
+    BundleTileStoreTransaction( String id, BundleTileStore store ) {
+        super( store, id );
+        String format = store.getTileDataSet( id ).getNativeImageFormat();
+        this.fileType = format.substring( format.indexOf( '/' ) + 1 );
+    }
+
+    @Override
+    public void put( String matrixId, Tile tile, long x, long y )
+                            throws TileIOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            if ( !ImageIO.write( tile.getAsImage(), fileType, bos ) ) {
+                throw new TileIOException( "No image writer available for file type '" + fileType + "'." );
+            }
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error encoding image: " + e.getMessage(), e );
+        }
+        getLevel( matrixId ).put( x, y, bos.toByteArray() );
+    }
+
+    @Override
+    public void delete( String matrixId, long x, long y )
+                            throws TileIOException {
+        getLevel( matrixId ).delete( x, y );
+    }
+
+    private BundleTileDataLevel getLevel( String matrixId ) {
+        BundleTileDataLevel level = (BundleTileDataLevel) store.getTileDataSet( tileMatrixSet ).getTileDataLevel( matrixId );
+        if ( level == null ) {
+            throw new TileIOException( "No tile matrix with identifier '" + matrixId + "'." );
+        }
+        return level;
+    }
+
+}
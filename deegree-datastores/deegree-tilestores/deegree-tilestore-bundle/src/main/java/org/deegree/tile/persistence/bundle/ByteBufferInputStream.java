@@ -0,0 +1,102 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.bundle;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link InputStream} that reads from a {@link ByteBuffer} without copying it.
+ * 
+ * @since 3.4
+ */
+class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buf;
+
+    /**
+     * @param buf
+     *            buffer to read from (from its position up to its limit), must not be <code>null</code> and must not be
+     *            shared with other readers
+     */
+    ByteBufferInputStream( ByteBuffer buf ) {
+        this.buf = buf;
+    }
+
+    @Override
+    public int read() {
+        if ( !buf.hasRemaining() ) {
+            return -1;
+        }
+        return buf.get() & 0xff;
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len ) {
+        if ( len == 0 ) {
+            return 0;
+        }
+        if ( !buf.hasRemaining() ) {
+            return -1;
+        }
+        int n = Math.min( len, buf.remaining() );
+        buf.get( b, off, n );
+        return n;
+    }
+
+    @Override
+    public long skip( long n ) {
+        if ( n <= 0 ) {
+            return 0;
+        }
+        int skipped = (int) Math.min( n, buf.remaining() );
+        buf.position( buf.position() + skipped );
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buf.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark( int readlimit ) {
+        buf.mark();
+    }
+
+    @Override
+    public synchronized void reset() {
+        buf.reset();
+    }
+
+}
@@ -0,0 +1,193 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.bundle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BundleFile}.
+ * 
+ * @since 3.4
+ */
+public class BundleFileTest {
+
+    private File file;
+
+    @Before
+    public void setup()
+                            throws IOException {
+        file = File.createTempFile( "bundletest", ".bundle" );
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testEmptyBundle()
+                            throws IOException {
+        BundleFile bundle = new BundleFile( file, 4 );
+        try {
+            assertNull( bundle.read( 0, 0 ) );
+            assertNull( bundle.read( 3, 3 ) );
+        } finally {
+            bundle.close();
+        }
+    }
+
+    @Test
+    public void testWriteAndRead()
+                            throws IOException {
+        BundleFile bundle = new BundleFile( file, 4 );
+        try {
+            bundle.write( 1, 2, new byte[] { 1, 2, 3 } );
+            bundle.write( 3, 0, new byte[] { 4, 5 } );
+            assertArrayEquals( new byte[] { 1, 2, 3 }, toArray( bundle.read( 1, 2 ) ) );
+            assertArrayEquals( new byte[] { 4, 5 }, toArray( bundle.read( 3, 0 ) ) );
+            assertNull( bundle.read( 2, 1 ) );
+        } finally {
+            bundle.close();
+        }
+    }
+
+    @Test
+    public void testOverwriteAndDelete()
+                            throws IOException {
+        BundleFile bundle = new BundleFile( file, 4 );
+        try {
+            bundle.write( 0, 0, new byte[] { 1 } );
+            bundle.write( 0, 0, new byte[] { 2, 3 } );
+            assertArrayEquals( new byte[] { 2, 3 }, toArray( bundle.read( 0, 0 ) ) );
+            bundle.delete( 0, 0 );
+            assertNull( bundle.read( 0, 0 ) );
+        } finally {
+            bundle.close();
+        }
+    }
+
+    @Test
+    public void testReopen()
+                            throws IOException {
+        BundleFile bundle = new BundleFile( file, 4 );
+        bundle.write( 2, 3, new byte[] { 7, 8, 9 } );
+        bundle.close();
+
+        bundle = new BundleFile( file, 4 );
+        try {
+            assertArrayEquals( new byte[] { 7, 8, 9 }, toArray( bundle.read( 2, 3 ) ) );
+            bundle.write( 1, 1, new byte[] { 6 } );
+            assertArrayEquals( new byte[] { 6 }, toArray( bundle.read( 1, 1 ) ) );
+        } finally {
+            bundle.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testBundleSizeMismatch()
+                            throws IOException {
+        new BundleFile( file, 4 ).close();
+        new BundleFile( file, 8 );
+    }
+
+    @Test
+    public void testStream()
+                            throws IOException {
+        BundleFile bundle = new BundleFile( file, 4 );
+        try {
+            bundle.write( 0, 1, new byte[] { 10, 20, 30 } );
+            BundleTile tile = new BundleTile( null, bundle.read( 0, 1 ), 0 );
+            // streams must be independent of each other
+            assertArrayEquals( new byte[] { 10, 20, 30 }, IOUtils.toByteArray( tile.getAsStream() ) );
+            assertArrayEquals( new byte[] { 10, 20, 30 }, IOUtils.toByteArray( tile.getAsStream() ) );
+        } finally {
+            bundle.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentReadsSeeCompleteWrites()
+                            throws Exception {
+        final BundleFile bundle = new BundleFile( file, 4 );
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                while ( !done.get() ) {
+                    ByteBuffer buf = bundle.read( 0, 0 );
+                    if ( buf == null ) {
+                        continue;
+                    }
+                    // each write stores n bytes of value n
+                    byte[] data = toArray( buf );
+                    for ( byte b : data ) {
+                        if ( b != data.length ) {
+                            failure.set( "Read " + data.length + " bytes of value " + b );
+                            return;
+                        }
+                    }
+                }
+            }
+        };
+        reader.start();
+        try {
+            for ( int i = 0; i < 5000; ++i ) {
+                byte[] data = new byte[1 + i % 100];
+                Arrays.fill( data, (byte) data.length );
+                bundle.write( 0, 0, data );
+            }
+        } finally {
+            done.set( true );
+            reader.join();
+            bundle.close();
+        }
+        assertNull( failure.get() );
+    }
+
+    private static byte[] toArray( ByteBuffer buf ) {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get( bytes );
+        return bytes;
+    }
+
+}
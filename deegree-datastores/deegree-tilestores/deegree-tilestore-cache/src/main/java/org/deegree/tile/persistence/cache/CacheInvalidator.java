@@ -0,0 +1,169 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChangeListener;
+import org.deegree.feature.persistence.ObservableFeatureStore;
+import org.deegree.geometry.Envelope;
+import org.slf4j.Logger;
+
+/**
+ * Invalidates the tiles of a {@link CachingTileStore} affected by committed feature store transactions.
+ * <p>
+ * Changes are collected and invalidated in batches: a batch is invalidated once no changes have been reported for the
+ * delay, but no later than the maximum delay after its first change. This avoids invalidating (and re-rendering) the
+ * same tiles over and over while a feature store is being edited.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class CacheInvalidator implements FeatureStoreChangeListener {
+
+    private static final Logger LOG = getLogger( CacheInvalidator.class );
+
+    private static final ScheduledExecutorService SCHEDULER = new ScheduledThreadPoolExecutor( 1, new ThreadFactory() {
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "tile-cache-invalidator" );
+            t.setDaemon( true );
+            return t;
+        }
+    } );
+
+    private final CachingTileStore store;
+
+    private final Collection<ObservableFeatureStore> featureStores;
+
+    private final long delay;
+
+    private final long maxDelay;
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    // null if everything needs to be invalidated
+    private List<Envelope> pending = new ArrayList<Envelope>();
+
+    private boolean scheduled;
+
+    private boolean destroyed;
+
+    private long firstChange;
+
+    private long lastChange;
+
+    /**
+     * @param store
+     *            the store to invalidate, must not be <code>null</code>
+     * @param featureStores
+     *            the feature stores to listen to, must not be <code>null</code>
+     * @param delay
+     *            time without changes after which a batch is invalidated (in milliseconds)
+     * @param maxDelay
+     *            maximum time after the first change of a batch until it is invalidated (in milliseconds)
+     */
+    CacheInvalidator( CachingTileStore store, Collection<ObservableFeatureStore> featureStores, long delay,
+                      long maxDelay ) {
+        this.store = store;
+        this.featureStores = featureStores;
+        this.delay = delay;
+        this.maxDelay = Math.max( delay, maxDelay );
+        for ( ObservableFeatureStore fs : featureStores ) {
+            fs.addChangeListener( this );
+        }
+    }
+
+    @Override
+    public synchronized void featuresChanged( FeatureStore fs, List<Envelope> envelopes ) {
+        if ( destroyed ) {
+            return;
+        }
+        if ( envelopes == null ) {
+            pending = null;
+        } else if ( pending != null ) {
+            pending.addAll( envelopes );
+        }
+        lastChange = System.currentTimeMillis();
+        if ( !scheduled ) {
+            firstChange = lastChange;
+            scheduled = true;
+            SCHEDULER.schedule( flush, delay, MILLISECONDS );
+        }
+    }
+
+    /**
+     * Stops listening to the feature stores, pending changes are discarded.
+     */
+    synchronized void destroy() {
+        destroyed = true;
+        for ( ObservableFeatureStore fs : featureStores ) {
+            fs.removeChangeListener( this );
+        }
+    }
+
+    private void flush() {
+        List<Envelope> envelopes;
+        synchronized ( this ) {
+            if ( destroyed ) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long due = Math.min( lastChange + delay, firstChange + maxDelay );
+            if ( now < due ) {
+                SCHEDULER.schedule( flush, due - now, MILLISECONDS );
+                return;
+            }
+            envelopes = pending;
+            pending = new ArrayList<Envelope>();
+            scheduled = false;
+        }
+        try {
+            long num = store.invalidateCache( envelopes );
+            LOG.debug( "Invalidated {} cached tiles after feature store changes.", num );
+        } catch ( Throwable t ) {
+            LOG.warn( "Could not invalidate cached tiles: {}", t.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", t );
+        }
+    }
+
+}
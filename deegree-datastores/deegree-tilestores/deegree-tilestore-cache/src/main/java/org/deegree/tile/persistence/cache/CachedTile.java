@@ -50,18 +50,19 @@ import java.io.InputStream;
 
 import javax.imageio.ImageIO;
 
-import net.sf.ehcache.Cache;
-import net.sf.ehcache.Element;
-
-import org.apache.commons.io.IOUtils;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
+import org.deegree.tile.VersionedTile;
 import org.slf4j.Logger;
 
 /**
  * A {@link Tile} that is backed by a {@link CachingTileStore}.
+ * <p>
+ * The version is taken from the wrapped tile if it is a {@link VersionedTile}, otherwise it is the MD5 digest that the
+ * {@link CoalescingTileLoader} stored when the data was cached.
+ * </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author <a href="mailto:schneider@occamlabs.de">Markus Schneider</a>
@@ -69,22 +70,37 @@ import org.slf4j.Logger;
  * 
  * @version $Revision: 31882 $, $Date: 2011-09-15 02:05:04 +0200 (Thu, 15 Sep 2011) $
  */
-public class CachedTile implements Tile {
+public class CachedTile implements VersionedTile {
 
     private static final Logger LOG = getLogger( CachedTile.class );
 
     private final Tile tile;
 
-    private final Cache cache;
+    private final CoalescingTileLoader loader;
 
     private final String key;
 
-    private byte[] data;
+    private final TileCacheStatistics stats;
+
+    public CachedTile( Tile tile, CoalescingTileLoader loader, String key ) {
+        this( tile, loader, key, null );
+    }
 
-    public CachedTile( Tile tile, Cache cache, String key ) {
+    /**
+     * @param tile
+     *            the tile to load the data from on a cache miss, must not be <code>null</code>
+     * @param loader
+     *            the loader to use, must not be <code>null</code>
+     * @param key
+     *            the cache key of the tile, must not be <code>null</code>
+     * @param stats
+     *            statistics to record cache accesses in, may be <code>null</code>
+     */
+    public CachedTile( Tile tile, CoalescingTileLoader loader, String key, TileCacheStatistics stats ) {
         this.tile = tile;
-        this.cache = cache;
+        this.loader = loader;
         this.key = key;
+        this.stats = stats;
     }
 
     @Override
@@ -115,26 +131,24 @@ public class CachedTile implements Tile {
         return tile.getFeatures( i, j, limit );
     }
 
-    private synchronized byte[] getData() {
-        if ( data == null ) {
-            Element elem = cache.get( key );
-            if ( elem == null ) {
-                try {
-                    InputStream is = tile.getAsStream();
-                    if ( is == null ) {
-                        data = new byte[] {};
-                    } else {
-                        data = IOUtils.toByteArray( is );
-                    }
-                    cache.put( new Element( key, data ) );
-                } catch ( IOException e ) {
-                    LOG.trace( e.getMessage(), e );
-                    throw new TileIOException( e.getMessage(), e );
-                }
-            } else {
-                data = (byte[]) elem.getValue();
-            }
+    @Override
+    public String getVersion() {
+        if ( tile instanceof VersionedTile ) {
+            return ( (VersionedTile) tile ).getVersion();
+        }
+        return loader.getVersion( key, tile );
+    }
+
+    @Override
+    public long getLastModified() {
+        if ( tile instanceof VersionedTile ) {
+            return ( (VersionedTile) tile ).getLastModified();
         }
-        return data;
+        return -1;
+    }
+
+    // the data is not kept, so the size of the cache alone determines the memory used for tiles
+    private byte[] getData() {
+        return loader.getData( key, tile, stats );
     }
 }
@@ -41,10 +41,10 @@
 
 package org.deegree.tile.persistence.cache;
 
-import net.sf.ehcache.Cache;
-
+import org.deegree.tile.ObservableTileDataLevel;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataListener;
 import org.deegree.tile.TileMatrix;
 
 /**
@@ -60,14 +60,43 @@ public class CachingTileMatrix implements TileDataLevel {
 
     private final TileDataLevel tileMatrix;
 
-    private final Cache cache;
+    private final CoalescingTileLoader loader;
+
+    private final String prefix;
 
-    private final String identifier;
+    private final TileCacheStatistics stats;
 
-    public CachingTileMatrix( TileDataLevel tileMatrix, Cache cache ) {
+    private final TileDataListener listener = new TileDataListener() {
+        @Override
+        public void tileProduced( TileDataLevel level, long x, long y, byte[] data ) {
+            loader.offer( getKey( x, y ), data );
+        }
+    };
+
+    public CachingTileMatrix( TileDataLevel tileMatrix, CoalescingTileLoader loader ) {
+        this( tileMatrix, loader, null, null );
+    }
+
+    /**
+     * @param tileMatrix
+     *            the level to cache, must not be <code>null</code>
+     * @param loader
+     *            the loader to use, must not be <code>null</code>
+     * @param dataSetId
+     *            the identifier of the tile data set of the level, used to distinguish the cache keys of data sets
+     *            sharing a tile matrix set, may be <code>null</code>
+     * @param stats
+     *            statistics to record cache accesses in, may be <code>null</code>
+     */
+    public CachingTileMatrix( TileDataLevel tileMatrix, CoalescingTileLoader loader, String dataSetId,
+                              TileCacheStatistics stats ) {
         this.tileMatrix = tileMatrix;
-        this.cache = cache;
-        this.identifier = tileMatrix.getMetadata().getIdentifier();
+        this.loader = loader;
+        this.stats = stats;
+        this.prefix = getKeyPrefix( dataSetId, tileMatrix.getMetadata().getIdentifier() );
+        if ( tileMatrix instanceof ObservableTileDataLevel ) {
+            ( (ObservableTileDataLevel) tileMatrix ).addTileDataListener( listener );
+        }
     }
 
     @Override
@@ -78,11 +107,49 @@ public class CachingTileMatrix implements TileDataLevel {
     @Override
     public Tile getTile( long x, long y ) {
         Tile tile = tileMatrix.getTile( x, y );
-        if (tile == null) {
+        if ( tile == null ) {
             return null;
         }
-        String key = identifier + "_" + x + "_" + y;
-        return new CachedTile( tile, cache, key );
+        return new CachedTile( tile, loader, getKey( x, y ), stats );
+    }
+
+    /**
+     * Stops populating the cache with tiles produced by the wrapped level on its own.
+     */
+    public void destroy() {
+        if ( tileMatrix instanceof ObservableTileDataLevel ) {
+            ( (ObservableTileDataLevel) tileMatrix ).removeTileDataListener( listener );
+        }
+    }
+
+    private String getKey( long x, long y ) {
+        return getKey( prefix, x, y );
+    }
+
+    /**
+     * @param dataSetId
+     *            may be <code>null</code>
+     * @param tileMatrixId
+     *            must not be <code>null</code>
+     * @return the common part of the cache keys of the tiles of the level
+     */
+    static String getKeyPrefix( String dataSetId, String tileMatrixId ) {
+        return dataSetId == null ? tileMatrixId : dataSetId + "/" + tileMatrixId;
+    }
+
+    static String getKey( String prefix, long x, long y ) {
+        return prefix + "_" + x + "_" + y;
+    }
+
+    /**
+     * @param key
+     *            a cache key
+     * @return the prefix of the key, or <code>null</code> if it is no valid key
+     */
+    static String getPrefix( String key ) {
+        int yIdx = key.lastIndexOf( '_' );
+        int xIdx = yIdx < 0 ? -1 : key.lastIndexOf( '_', yIdx - 1 );
+        return xIdx < 0 ? null : key.substring( 0, xIdx );
     }
 
 }
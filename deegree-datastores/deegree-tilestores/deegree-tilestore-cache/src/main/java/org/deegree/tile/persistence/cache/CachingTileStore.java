@@ -40,17 +40,23 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.cache;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
-import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.persistence.ObservableFeatureStore;
 import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryTransformer;
 import org.deegree.tile.DefaultTileDataSet;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
@@ -60,6 +66,7 @@ import org.deegree.tile.persistence.TileStore;
 import org.deegree.tile.persistence.TileStoreTransaction;
 import org.deegree.workspace.Resource;
 import org.deegree.workspace.ResourceMetadata;
+import org.slf4j.Logger;
 
 /**
  * {@link TileStore} that acts as a caching proxy to another {@link TileStore}.
@@ -71,38 +78,74 @@ import org.deegree.workspace.ResourceMetadata;
  */
 public class CachingTileStore implements TileStore {
 
+    private static final Logger LOG = getLogger( CachingTileStore.class );
+
     private final TileStore tileStore;
 
-    private final CacheManager cacheManager;
+    private final TileCache cache;
 
-    private final Cache cache;
+    private final CoalescingTileLoader loader;
 
     private Map<String, TileDataSet> tileMatrixSets;
 
+    private Map<String, TileCacheStatistics> statistics;
+
+    // statistics by key prefix
+    private Map<String, TileCacheStatistics> levelStatistics;
+
     private ResourceMetadata<TileStore> metadata;
 
+    private CacheInvalidator invalidator;
+
     public CachingTileStore( TileStore tileStore, CacheManager cacheManager, String cacheName,
                              ResourceMetadata<TileStore> metadata ) {
+        this( tileStore, new EhcacheTileCache( cacheManager, cacheName ), metadata );
+    }
+
+    /**
+     * @param tileStore
+     *            the tile store to cache, must not be <code>null</code>
+     * @param cache
+     *            the cache to use, is destroyed along with the tile store, must not be <code>null</code>
+     * @param metadata
+     *            the metadata of the tile store, may be <code>null</code>
+     */
+    public CachingTileStore( TileStore tileStore, TileCache cache, ResourceMetadata<TileStore> metadata ) {
         this.tileStore = tileStore;
-        this.cacheManager = cacheManager;
         this.metadata = metadata;
-        this.cache = cacheManager.getCache( cacheName );
+        this.cache = cache;
+        this.loader = new CoalescingTileLoader( cache );
     }
 
     @Override
     public void init() {
         Collection<String> ids = tileStore.getTileDataSetIds();
         tileMatrixSets = new HashMap<String, TileDataSet>();
+        statistics = new HashMap<String, TileCacheStatistics>();
+        levelStatistics = new HashMap<String, TileCacheStatistics>();
         for ( String id : ids ) {
             TileDataSet cachedDataset = tileStore.getTileDataSet( id );
+            TileCacheStatistics stats = new TileCacheStatistics();
+            statistics.put( id, stats );
             List<TileDataLevel> list = new ArrayList<TileDataLevel>();
             for ( TileDataLevel tm : cachedDataset.getTileDataLevels() ) {
-                list.add( new CachingTileMatrix( tm, cache ) );
+                list.add( new CachingTileMatrix( tm, loader, id, stats ) );
+                levelStatistics.put( CachingTileMatrix.getKeyPrefix( id, tm.getMetadata().getIdentifier() ), stats );
             }
             TileDataSet cachingDataset = new DefaultTileDataSet( list, cachedDataset.getTileMatrixSet(),
                                                                  cachedDataset.getNativeImageFormat() );
             this.tileMatrixSets.put( id, cachingDataset );
         }
+        cache.setEvictionListener( new TileCache.EvictionListener() {
+            @Override
+            public void evicted( String key ) {
+                String prefix = CachingTileMatrix.getPrefix( key );
+                TileCacheStatistics stats = prefix == null ? null : levelStatistics.get( prefix );
+                if ( stats != null ) {
+                    stats.evicted();
+                }
+            }
+        } );
     }
 
     @Override
@@ -112,7 +155,16 @@ public class CachingTileStore implements TileStore {
 
     @Override
     public void destroy() {
-        cacheManager.shutdown();
+        if ( invalidator != null ) {
+            invalidator.destroy();
+        }
+        for ( TileDataSet dataSet : tileMatrixSets.values() ) {
+            for ( TileDataLevel level : dataSet.getTileDataLevels() ) {
+                ( (CachingTileMatrix) level ).destroy();
+            }
+        }
+        cache.setEvictionListener( null );
+        cache.destroy();
     }
 
     @Override
@@ -144,18 +196,64 @@ public class CachingTileStore implements TileStore {
      */
     public long invalidateCache( String tileMatrixSet, Envelope envelope ) {
         if ( envelope == null ) {
-            int size = cache.getSize();
-            cache.removeAll();
-            return size;
+            return invalidateCache( null );
+        }
+        return invalidateCache( tileMatrixSet, Collections.singletonList( envelope ) );
+    }
+
+    /**
+     * Removes the objects intersecting any of the envelopes from the cache, on all levels.
+     * 
+     * @param tileMatrixSet
+     *            the id of the tile matrix set, must not be <code>null</code>
+     * @param envelopes
+     *            the envelopes, must not be <code>null</code>, envelopes in other CRS than the tile matrix set are
+     *            transformed
+     * @return the number of removed objects
+     */
+    public long invalidateCache( String tileMatrixSet, List<Envelope> envelopes ) {
+        TileDataSet dataSet = tileMatrixSets.get( tileMatrixSet );
+        ICRS crs = dataSet.getTileMatrixSet().getSpatialMetadata().getCoordinateSystems().get( 0 );
+        GeometryTransformer transformer = new GeometryTransformer( crs );
+
+        // collect the affected tile index ranges per level
+        Map<String, List<long[]>> ranges = new HashMap<String, List<long[]>>();
+        long numTiles = 0;
+        for ( Envelope envelope : envelopes ) {
+            if ( envelope.getCoordinateSystem() != null && !envelope.getCoordinateSystem().equals( crs ) ) {
+                try {
+                    envelope = transformer.transform( envelope );
+                } catch ( Exception e ) {
+                    LOG.warn( "Could not transform envelope to {}, invalidating the whole cache: {}", crs.getAlias(),
+                              e.getLocalizedMessage() );
+                    return invalidateCache( null );
+                }
+            }
+            for ( TileDataLevel tm : dataSet.getTileDataLevels() ) {
+                long[] ts = Tiles.getTileIndexRange( tm, envelope );
+                if ( ts != null ) {
+                    String id = CachingTileMatrix.getKeyPrefix( tileMatrixSet, tm.getMetadata().getIdentifier() );
+                    List<long[]> list = ranges.get( id );
+                    if ( list == null ) {
+                        list = new ArrayList<long[]>();
+                        ranges.put( id, list );
+                    }
+                    list.add( ts );
+                    numTiles += ( ts[2] - ts[0] + 1 ) * ( ts[3] - ts[1] + 1 );
+                }
+            }
+        }
+
+        // large areas on fine levels cover more tiles than the cache holds, check the cached keys instead
+        if ( numTiles > cache.size() ) {
+            return invalidateCachedKeys( ranges );
         }
         long cnt = 0;
-        for ( TileDataLevel tm : tileMatrixSets.get( tileMatrixSet ).getTileDataLevels() ) {
-            long[] ts = Tiles.getTileIndexRange( tm, envelope );
-            if ( ts != null ) {
-                String id = tm.getMetadata().getIdentifier();
+        for ( Entry<String, List<long[]>> e : ranges.entrySet() ) {
+            for ( long[] ts : e.getValue() ) {
                 for ( long x = ts[0]; x <= ts[2]; ++x ) {
                     for ( long y = ts[1]; y <= ts[3]; ++y ) {
-                        if ( cache.remove( id + "_" + x + "_" + y ) ) {
+                        if ( cache.remove( CachingTileMatrix.getKey( e.getKey(), x, y ) ) ) {
                             ++cnt;
                         }
                     }
@@ -165,9 +263,97 @@ public class CachingTileStore implements TileStore {
         return cnt;
     }
 
+    /**
+     * Removes the objects intersecting any of the envelopes from the cache, in all tile data sets.
+     * 
+     * @param envelopes
+     *            may be null, in which case all objects will be removed from the cache
+     * @return the number of removed objects
+     */
+    long invalidateCache( List<Envelope> envelopes ) {
+        if ( envelopes == null ) {
+            long size = cache.size();
+            cache.clear();
+            return size;
+        }
+        long cnt = 0;
+        if ( tileMatrixSets != null && !envelopes.isEmpty() ) {
+            for ( String id : tileMatrixSets.keySet() ) {
+                cnt += invalidateCache( id, envelopes );
+            }
+        }
+        return cnt;
+    }
+
+    private long invalidateCachedKeys( Map<String, List<long[]>> ranges ) {
+        long cnt = 0;
+        for ( String key : cache.getKeys() ) {
+            String prefix = CachingTileMatrix.getPrefix( key );
+            List<long[]> list = prefix == null ? null : ranges.get( prefix );
+            if ( list == null ) {
+                continue;
+            }
+            int xIdx = prefix.length();
+            int yIdx = key.lastIndexOf( '_' );
+            long x = Long.parseLong( key.substring( xIdx + 1, yIdx ) );
+            long y = Long.parseLong( key.substring( yIdx + 1 ) );
+            for ( long[] ts : list ) {
+                if ( x >= ts[0] && x <= ts[2] && y >= ts[1] && y <= ts[3] ) {
+                    if ( cache.remove( key ) ) {
+                        ++cnt;
+                    }
+                    break;
+                }
+            }
+        }
+        return cnt;
+    }
+
+    /**
+     * Invalidates the cached tiles affected by transactions of the given feature stores (after a delay, to combine
+     * subsequent transactions).
+     * 
+     * @param featureStores
+     *            the feature stores the cached tiles are rendered from, must not be <code>null</code>
+     * @param delay
+     *            time without changes after which changes are invalidated (in milliseconds)
+     * @param maxDelay
+     *            maximum time after a change until it is invalidated (in milliseconds)
+     */
+    public void invalidateOnChanges( Collection<ObservableFeatureStore> featureStores, long delay, long maxDelay ) {
+        invalidator = new CacheInvalidator( this, featureStores, delay, maxDelay );
+    }
+
+    /**
+     * @param tileDataSet
+     *            the identifier of the tile data set
+     * @return the cache statistics of the tile data set, or <code>null</code> if there is no such data set
+     */
+    public TileCacheStatistics getStatistics( String tileDataSet ) {
+        return statistics == null ? null : statistics.get( tileDataSet );
+    }
+
+    /**
+     * @return the cache backend, never <code>null</code>
+     */
+    public TileCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return the tile store whose tiles are cached, never <code>null</code>
+     */
+    public TileStore getCachedTileStore() {
+        return tileStore;
+    }
+
+    /**
+     * Returns a transaction that puts tiles into and removes tiles from the cache (not the cached tile store). Used to
+     * seed the cache.
+     */
     @Override
     public TileStoreTransaction acquireTransaction( String id ) {
-        throw new UnsupportedOperationException( "CachingTileStore does not support transactions." );
+        return new CachingTileStoreTransaction( id, this, cache );
     }
 
     @Override
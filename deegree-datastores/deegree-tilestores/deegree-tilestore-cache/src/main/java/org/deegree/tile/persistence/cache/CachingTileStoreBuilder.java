@@ -27,17 +27,35 @@
 ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.cache;
 
+import static org.deegree.tile.persistence.cache.TwoTierTileCache.EvictionPolicy.LRU;
+import static org.deegree.tile.persistence.cache.TwoTierTileCache.EvictionPolicy.TINY_LFU;
+import static org.slf4j.LoggerFactory.getLogger;
+
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import net.sf.ehcache.CacheException;
 import net.sf.ehcache.CacheManager;
 
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreProvider;
+import org.deegree.feature.persistence.ObservableFeatureStore;
 import org.deegree.tile.persistence.TileStore;
 import org.deegree.tile.persistence.TileStoreProvider;
+import org.deegree.tile.persistence.cache.TwoTierTileCache.EvictionPolicy;
+import org.deegree.tile.persistence.cache.jaxb.CachingTileStore.Invalidation;
+import org.deegree.workspace.Resource;
 import org.deegree.workspace.ResourceBuilder;
+import org.deegree.workspace.ResourceIdentifier;
 import org.deegree.workspace.ResourceInitException;
 import org.deegree.workspace.ResourceMetadata;
 import org.deegree.workspace.Workspace;
+import org.deegree.workspace.graph.ResourceNode;
+import org.slf4j.Logger;
 
 /**
  * This class is responsible for building caching tile stores.
@@ -48,6 +66,13 @@ import org.deegree.workspace.Workspace;
  */
 public class CachingTileStoreBuilder implements ResourceBuilder<TileStore> {
 
+    private static final Logger LOG = getLogger( CachingTileStoreBuilder.class );
+
+    private static final long MB = 1024 * 1024;
+
+    // in megabytes
+    private static final long DEFAULT_DISK_SIZE = 1024;
+
     private org.deegree.tile.persistence.cache.jaxb.CachingTileStore cfg;
 
     private ResourceMetadata<TileStore> metadata;
@@ -64,14 +89,17 @@ public class CachingTileStoreBuilder implements ResourceBuilder<TileStore> {
     @Override
     public TileStore build() {
         try {
-            String cache = cfg.getCacheConfiguration();
-            File f = new File( cache );
-            if ( !f.isAbsolute() ) {
-                f = metadata.getLocation().resolveToFile( cache );
-            }
-            CacheManager cmgr = new CacheManager( f.toURI().toURL() );
             TileStore tileStore = workspace.getResource( TileStoreProvider.class, cfg.getTileStoreId() );
-            return new CachingTileStore( tileStore, cmgr, cfg.getCacheName(), metadata );
+            CachingTileStore store = new CachingTileStore( tileStore, buildCache(), metadata );
+            List<ObservableFeatureStore> featureStores = findFeatureStores();
+            if ( !featureStores.isEmpty() ) {
+                Invalidation inv = cfg.getInvalidation();
+                if ( inv == null ) {
+                    inv = new Invalidation();
+                }
+                store.invalidateOnChanges( featureStores, inv.getDelay(), inv.getMaxDelay() );
+            }
+            return store;
         } catch ( CacheException e ) {
             // case needed, as NPE's inside exception can occur otherwise
             throw new ResourceInitException( "Unable to create tile store: " + e.getMessage() );
@@ -80,4 +108,68 @@ public class CachingTileStoreBuilder implements ResourceBuilder<TileStore> {
         }
     }
 
+    private TileCache buildCache()
+                            throws IOException {
+        org.deegree.tile.persistence.cache.jaxb.CachingTileStore.TileCache tileCache = cfg.getTileCache();
+        if ( tileCache == null ) {
+            String cache = cfg.getCacheConfiguration();
+            File f = new File( cache );
+            if ( !f.isAbsolute() ) {
+                f = metadata.getLocation().resolveToFile( cache );
+            }
+            CacheManager cmgr = new CacheManager( f.toURI().toURL() );
+            return new EhcacheTileCache( cmgr, cfg.getCacheName() );
+        }
+        long heapSize = tileCache.getHeapSize().longValue() * MB;
+        File dir = null;
+        long diskSize = 0;
+        if ( tileCache.getDiskDirectory() != null ) {
+            dir = new File( tileCache.getDiskDirectory() );
+            if ( !dir.isAbsolute() ) {
+                dir = metadata.getLocation().resolveToFile( tileCache.getDiskDirectory() );
+            }
+            diskSize = tileCache.getDiskSize() == null ? DEFAULT_DISK_SIZE : tileCache.getDiskSize().longValue();
+            diskSize *= MB;
+        }
+        EvictionPolicy policy = "LRU".equals( tileCache.getEvictionPolicy() ) ? LRU : TINY_LFU;
+        return new TwoTierTileCache( heapSize, dir, diskSize, policy );
+    }
+
+    /**
+     * Finds the feature stores the cached tiles (transitively) depend on.
+     */
+    private List<ObservableFeatureStore> findFeatureStores() {
+        Set<ResourceIdentifier<? extends Resource>> ids = new HashSet<ResourceIdentifier<? extends Resource>>();
+        collectDependencies( ids, workspace.getDependencyGraph().getNode( metadata.getIdentifier() ) );
+        List<ObservableFeatureStore> featureStores = new ArrayList<ObservableFeatureStore>();
+        for ( ResourceIdentifier<? extends Resource> id : ids ) {
+            if ( id.getProvider() != FeatureStoreProvider.class ) {
+                continue;
+            }
+            FeatureStore fs = workspace.getResource( FeatureStoreProvider.class, id.getId() );
+            if ( fs instanceof ObservableFeatureStore ) {
+                LOG.debug( "Invalidating cached tiles on changes of feature store {}.", id.getId() );
+                featureStores.add( (ObservableFeatureStore) fs );
+            } else if ( fs != null ) {
+                LOG.warn( "Feature store {} does not report changes, cached tiles won't be invalidated.", id.getId() );
+            }
+        }
+        return featureStores;
+    }
+
+    private static void collectDependencies( Set<ResourceIdentifier<? extends Resource>> ids,
+                                             ResourceNode<? extends Resource> node ) {
+        if ( node == null ) {
+            return;
+        }
+        List<ResourceNode<? extends Resource>> deps = new ArrayList<ResourceNode<? extends Resource>>();
+        deps.addAll( node.getDependencies() );
+        deps.addAll( node.getSoftDependencies() );
+        for ( ResourceNode<? extends Resource> dep : deps ) {
+            if ( dep.getMetadata() != null && ids.add( dep.getMetadata().getIdentifier() ) ) {
+                collectDependencies( ids, dep );
+            }
+        }
+    }
+
 }
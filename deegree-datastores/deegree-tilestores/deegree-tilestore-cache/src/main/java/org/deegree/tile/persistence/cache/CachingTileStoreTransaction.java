@@ -0,0 +1,78 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.persistence.AbstractTileStoreTransaction;
+
+/**
+ * {@link org.deegree.tile.persistence.TileStoreTransaction} for the {@link CachingTileStore}, operates on the cache
+ * only.
+ * 
+ * @since 3.4
+ */
+class CachingTileStoreTransaction extends AbstractTileStoreTransaction {
+
+    private final TileCache cache;
+
+    CachingTileStoreTransaction( String id, CachingTileStore store, TileCache cache ) {
+        super( store, id );
+        this.cache = cache;
+    }
+
+    @Override
+    public void put( String matrixId, Tile tile, long x, long y )
+                            throws TileIOException {
+        InputStream is = null;
+        try {
+            is = tile.getAsStream();
+            byte[] data = is == null ? new byte[] {} : IOUtils.toByteArray( is );
+            cache.put( getKey( matrixId, x, y ), data );
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error retrieving tile: " + e.getMessage(), e );
+        } finally {
+            IOUtils.closeQuietly( is );
+        }
+    }
+
+    @Override
+    public void delete( String matrixId, long x, long y )
+                            throws TileIOException {
+        cache.remove( getKey( matrixId, x, y ) );
+    }
+
+    private String getKey( String matrixId, long x, long y ) {
+        return CachingTileMatrix.getKey( CachingTileMatrix.getKeyPrefix( tileMatrixSet, matrixId ), x, y );
+    }
+
+}
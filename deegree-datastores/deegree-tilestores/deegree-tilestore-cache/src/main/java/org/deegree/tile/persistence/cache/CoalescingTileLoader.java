@@ -0,0 +1,263 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static java.util.Collections.synchronizedMap;
+import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import net.sf.ehcache.Cache;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.slf4j.Logger;
+
+/**
+ * Loads tile data into the cache, making sure that concurrent cache misses for the same key result in a single load
+ * of the wrapped tile only.
+ * <p>
+ * The first thread that misses a key performs the load, all other threads requesting the same key in the meantime wait
+ * for that load and share its result (or its failure).
+ * </p>
+ * <p>
+ * The MD5 digest of the data is computed when the loader writes it to the cache and kept as long as the cached array
+ * is, so versions of cached tiles can be looked up without hashing the data again.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class CoalescingTileLoader {
+
+    private static final Logger LOG = getLogger( CoalescingTileLoader.class );
+
+    private final TileCache cache;
+
+    private final ConcurrentMap<String, FutureTask<byte[]>> loads = new ConcurrentHashMap<String, FutureTask<byte[]>>();
+
+    // arrays use identity for equals and hashCode, so digests are bound to the cached data and dropped along with it
+    private final Map<byte[], String> digests = synchronizedMap( new WeakHashMap<byte[], String>() );
+
+    /**
+     * @param cache
+     *            the cache to read from and populate, must not be <code>null</code>
+     */
+    public CoalescingTileLoader( TileCache cache ) {
+        this.cache = cache;
+    }
+
+    /**
+     * @param cache
+     *            the cache to read from and populate, must not be <code>null</code>
+     */
+    public CoalescingTileLoader( Cache cache ) {
+        this( new EhcacheTileCache( cache ) );
+    }
+
+    /**
+     * Returns the encoded tile data for the given key, loading it from the tile if it is not cached.
+     * 
+     * @param key
+     *            cache key of the tile, must not be <code>null</code>
+     * @param tile
+     *            the tile to load the data from on a cache miss, must not be <code>null</code>
+     * @return the encoded tile data, never <code>null</code>
+     * @throws TileIOException
+     *             if loading the tile failed
+     */
+    public byte[] getData( String key, Tile tile )
+                            throws TileIOException {
+        return getData( key, tile, null );
+    }
+
+    /**
+     * Returns the encoded tile data for the given key, loading it from the tile if it is not cached.
+     * 
+     * @param key
+     *            cache key of the tile, must not be <code>null</code>
+     * @param tile
+     *            the tile to load the data from on a cache miss, must not be <code>null</code>
+     * @param stats
+     *            statistics to record the access in, may be <code>null</code>
+     * @return the encoded tile data, never <code>null</code>
+     * @throws TileIOException
+     *             if loading the tile failed
+     */
+    public byte[] getData( String key, Tile tile, TileCacheStatistics stats )
+                            throws TileIOException {
+        byte[] data = cache.get( key );
+        if ( data != null ) {
+            if ( stats != null ) {
+                stats.hit();
+            }
+            return data;
+        }
+        if ( stats != null ) {
+            stats.miss();
+        }
+        FutureTask<byte[]> load = new FutureTask<byte[]>( new TileLoad( key, tile, stats ) );
+        FutureTask<byte[]> running = loads.putIfAbsent( key, load );
+        if ( running == null ) {
+            running = load;
+            try {
+                load.run();
+            } finally {
+                loads.remove( key, load );
+            }
+        } else {
+            LOG.trace( "Waiting for concurrent load of tile {}.", key );
+        }
+        return await( key, running );
+    }
+
+    /**
+     * Returns the version (MD5 digest) of the tile data for the given key. For cached data, the digest stored along
+     * with the data is returned. If the data is not cached, it is loaded from the tile (and cached) first.
+     * 
+     * @param key
+     *            cache key of the tile, must not be <code>null</code>
+     * @param tile
+     *            the tile to load the data from on a cache miss, must not be <code>null</code>
+     * @return the hex encoded digest of the encoded tile data, never <code>null</code>
+     * @throws TileIOException
+     *             if loading the tile failed
+     */
+    public String getVersion( String key, Tile tile )
+                            throws TileIOException {
+        byte[] data = cache.get( key );
+        if ( data == null ) {
+            data = getData( key, tile, null );
+        }
+        String digest = digests.get( data );
+        if ( digest == null ) {
+            // data not written by this loader, or read back from a disk store
+            digest = digest( data );
+        }
+        return digest;
+    }
+
+    /**
+     * Puts tile data into the cache that has been produced without a request for it (e.g. sibling tiles of a meta
+     * tile). Existing cache entries are left untouched.
+     * 
+     * @param key
+     *            the cache key, must not be <code>null</code>
+     * @param data
+     *            the encoded tile data, must not be <code>null</code>
+     */
+    public void offer( String key, byte[] data ) {
+        digest( data );
+        cache.putIfAbsent( key, data );
+    }
+
+    private String digest( byte[] data ) {
+        String digest = md5Hex( data );
+        digests.put( data, digest );
+        return digest;
+    }
+
+    /**
+     * @return the number of loads currently in progress
+     */
+    public int getNumberOfLoadsInProgress() {
+        return loads.size();
+    }
+
+    private byte[] await( String key, FutureTask<byte[]> load ) {
+        try {
+            return load.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new TileIOException( "Interrupted while waiting for tile " + key + ".", e );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof TileIOException ) {
+                throw (TileIOException) cause;
+            }
+            throw new TileIOException( cause.getMessage(), cause );
+        }
+    }
+
+    private class TileLoad implements Callable<byte[]> {
+
+        private final String key;
+
+        private final Tile tile;
+
+        private final TileCacheStatistics stats;
+
+        TileLoad( String key, Tile tile, TileCacheStatistics stats ) {
+            this.key = key;
+            this.tile = tile;
+            this.stats = stats;
+        }
+
+        @Override
+        public byte[] call() {
+            // a concurrent load may have completed between the cache miss and the registration of this load
+            byte[] data = cache.get( key );
+            if ( data != null ) {
+                return data;
+            }
+            long start = System.nanoTime();
+            boolean success = false;
+            InputStream is = null;
+            try {
+                is = tile.getAsStream();
+                if ( is == null ) {
+                    data = new byte[] {};
+                } else {
+                    data = IOUtils.toByteArray( is );
+                }
+                success = true;
+            } catch ( IOException e ) {
+                LOG.trace( e.getMessage(), e );
+                throw new TileIOException( e.getMessage(), e );
+            } finally {
+                IOUtils.closeQuietly( is );
+                if ( stats != null ) {
+                    stats.loaded( System.nanoTime() - start, success );
+                }
+            }
+            digest( data );
+            cache.put( key, data );
+            return data;
+        }
+    }
+
+}
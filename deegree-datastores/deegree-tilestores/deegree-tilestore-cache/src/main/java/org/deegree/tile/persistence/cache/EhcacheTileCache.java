@@ -0,0 +1,144 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListener;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
+
+/**
+ * {@link TileCache} backed by an ehcache {@link Cache}.
+ * 
+ * @since 3.4
+ */
+public class EhcacheTileCache implements TileCache {
+
+    private final Cache cache;
+
+    private final CacheManager cacheManager;
+
+    private CacheEventListener eventListener;
+
+    /**
+     * @param cacheManager
+     *            the cache manager, is shut down when the tile cache is destroyed, must not be <code>null</code>
+     * @param cacheName
+     *            the name of the cache to use, must not be <code>null</code>
+     */
+    public EhcacheTileCache( CacheManager cacheManager, String cacheName ) {
+        this.cacheManager = cacheManager;
+        this.cache = cacheManager.getCache( cacheName );
+    }
+
+    /**
+     * @param cache
+     *            the cache to use, must not be <code>null</code>
+     */
+    public EhcacheTileCache( Cache cache ) {
+        this.cacheManager = null;
+        this.cache = cache;
+    }
+
+    @Override
+    public byte[] get( String key ) {
+        Element elem = cache.get( key );
+        return elem == null ? null : (byte[]) elem.getValue();
+    }
+
+    @Override
+    public void put( String key, byte[] data ) {
+        cache.put( new Element( key, data ) );
+    }
+
+    @Override
+    public void putIfAbsent( String key, byte[] data ) {
+        cache.putIfAbsent( new Element( key, data ) );
+    }
+
+    @Override
+    public boolean remove( String key ) {
+        return cache.remove( key );
+    }
+
+    @Override
+    public void clear() {
+        cache.removeAll();
+    }
+
+    @Override
+    public long size() {
+        return cache.getSize();
+    }
+
+    @Override
+    public Collection<String> getKeys() {
+        List<String> keys = new ArrayList<String>();
+        for ( Object key : cache.getKeys() ) {
+            keys.add( (String) key );
+        }
+        return keys;
+    }
+
+    @Override
+    public synchronized void setEvictionListener( final EvictionListener listener ) {
+        if ( eventListener != null ) {
+            cache.getCacheEventNotificationService().unregisterListener( eventListener );
+            eventListener = null;
+        }
+        if ( listener == null ) {
+            return;
+        }
+        eventListener = new CacheEventListenerAdapter() {
+            @Override
+            public void notifyElementEvicted( Ehcache cache, Element element ) {
+                listener.evicted( (String) element.getObjectKey() );
+            }
+
+            @Override
+            public void notifyElementExpired( Ehcache cache, Element element ) {
+                listener.evicted( (String) element.getObjectKey() );
+            }
+        };
+        cache.getCacheEventNotificationService().registerListener( eventListener );
+    }
+
+    @Override
+    public void destroy() {
+        if ( cacheManager != null ) {
+            cacheManager.shutdown();
+        }
+    }
+
+}
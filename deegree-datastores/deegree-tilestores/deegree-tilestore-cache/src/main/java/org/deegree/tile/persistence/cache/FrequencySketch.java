@@ -0,0 +1,121 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+/**
+ * Approximates the access frequency of keys with a count-min sketch of 4 bit counters.
+ * <p>
+ * All counters are halved periodically, so the frequencies reflect the recent history only.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+                                         0xcbf29ce484222325L };
+
+    private static final int MAX_COUNT = 15;
+
+    private final byte[] table;
+
+    private final int mask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    /**
+     * @param expectedEntries
+     *            the expected number of cached entries
+     */
+    FrequencySketch( int expectedEntries ) {
+        int entries = Math.max( 64, Math.min( expectedEntries, 1 << 22 ) );
+        // 16 counters per entry keep the error caused by hash collisions low
+        int size = Integer.highestOneBit( 16 * entries - 1 ) << 1;
+        table = new byte[size];
+        mask = size - 1;
+        sampleSize = 10 * entries;
+    }
+
+    /**
+     * Records an access of the key.
+     * 
+     * @param key
+     *            the key, must not be <code>null</code>
+     */
+    void increment( String key ) {
+        int hash = spread( key.hashCode() );
+        boolean added = false;
+        for ( int i = 0; i < SEEDS.length; ++i ) {
+            int idx = indexOf( hash, i );
+            if ( table[idx] < MAX_COUNT ) {
+                ++table[idx];
+                added = true;
+            }
+        }
+        if ( added && ++additions == sampleSize ) {
+            reset();
+        }
+    }
+
+    /**
+     * @param key
+     *            the key, must not be <code>null</code>
+     * @return the estimated number of recent accesses of the key (at most 15)
+     */
+    int frequency( String key ) {
+        int hash = spread( key.hashCode() );
+        int freq = MAX_COUNT;
+        for ( int i = 0; i < SEEDS.length; ++i ) {
+            freq = Math.min( freq, table[indexOf( hash, i )] );
+        }
+        return freq;
+    }
+
+    private void reset() {
+        for ( int i = 0; i < table.length; ++i ) {
+            table[i] = (byte) ( table[i] >>> 1 );
+        }
+        additions /= 2;
+    }
+
+    private int indexOf( int hash, int i ) {
+        long h = ( hash + SEEDS[i] ) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & mask;
+    }
+
+    private static int spread( int h ) {
+        h ^= h >>> 17;
+        h *= 0xed5ad4bb;
+        h ^= h >>> 11;
+        return h;
+    }
+
+}
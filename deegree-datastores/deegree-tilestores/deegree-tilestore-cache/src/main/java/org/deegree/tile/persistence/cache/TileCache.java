@@ -0,0 +1,119 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import java.util.Collection;
+
+/**
+ * Storage backend of the {@link CachingTileStore}, maps keys to encoded tile data.
+ * <p>
+ * Implementations must be thread safe.
+ * </p>
+ * 
+ * @see EhcacheTileCache
+ * @see TwoTierTileCache
+ * 
+ * @since 3.4
+ */
+public interface TileCache {
+
+    /**
+     * @param key
+     *            the key, must not be <code>null</code>
+     * @return the cached tile data, or <code>null</code> if the key is not cached
+     */
+    byte[] get( String key );
+
+    /**
+     * Caches the tile data, replacing existing data.
+     * 
+     * @param key
+     *            the key, must not be <code>null</code>
+     * @param data
+     *            the encoded tile data, must not be <code>null</code>
+     */
+    void put( String key, byte[] data );
+
+    /**
+     * Caches the tile data, unless the key is already cached.
+     * 
+     * @param key
+     *            the key, must not be <code>null</code>
+     * @param data
+     *            the encoded tile data, must not be <code>null</code>
+     */
+    void putIfAbsent( String key, byte[] data );
+
+    /**
+     * @param key
+     *            the key, must not be <code>null</code>
+     * @return true, if the key was cached
+     */
+    boolean remove( String key );
+
+    /**
+     * Removes all entries.
+     */
+    void clear();
+
+    /**
+     * @return the number of cached entries
+     */
+    long size();
+
+    /**
+     * @return a snapshot of the cached keys, never <code>null</code>
+     */
+    Collection<String> getKeys();
+
+    /**
+     * @param listener
+     *            will be notified about entries dropped from the cache to make room for others, may be
+     *            <code>null</code>
+     */
+    void setEvictionListener( EvictionListener listener );
+
+    /**
+     * Releases all resources held by the cache.
+     */
+    void destroy();
+
+    /**
+     * Notified about entries dropped from a {@link TileCache} to make room for others.
+     */
+    interface EvictionListener {
+
+        /**
+         * @param key
+         *            the key of the evicted entry, never <code>null</code>
+         */
+        void evicted( String key );
+
+    }
+
+}
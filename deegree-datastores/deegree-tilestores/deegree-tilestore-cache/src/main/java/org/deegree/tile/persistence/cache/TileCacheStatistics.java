@@ -0,0 +1,138 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the cache accesses for a tile data set of a {@link CachingTileStore}.
+ * 
+ * @since 3.4
+ */
+public class TileCacheStatistics {
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong loads = new AtomicLong();
+
+    private final AtomicLong loadFailures = new AtomicLong();
+
+    private final AtomicLong loadTime = new AtomicLong();
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    void evicted() {
+        evictions.incrementAndGet();
+    }
+
+    void loaded( long nanos, boolean success ) {
+        loads.incrementAndGet();
+        loadTime.addAndGet( nanos );
+        if ( !success ) {
+            loadFailures.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of requests served from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of requests not found in the cache
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the ratio of hits to requests, 0 if there were no requests
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * @return the number of entries dropped from the cache to make room for others
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of tiles loaded from the cached tile store (concurrent misses of the same tile result in
+     *         one load)
+     */
+    public long getLoads() {
+        return loads.get();
+    }
+
+    /**
+     * @return the number of failed loads
+     */
+    public long getLoadFailures() {
+        return loadFailures.get();
+    }
+
+    /**
+     * @return the total time spent loading tiles, in milliseconds
+     */
+    public long getTotalLoadTime() {
+        return loadTime.get() / 1000000;
+    }
+
+    /**
+     * @return the average time spent loading a tile, in milliseconds, 0 if no tiles have been loaded
+     */
+    public double getAverageLoadTime() {
+        long l = loads.get();
+        return l == 0 ? 0 : loadTime.get() / 1000000.0 / l;
+    }
+
+    @Override
+    public String toString() {
+        return String.format( "hits: %d, misses: %d, hit rate: %.1f%%, evictions: %d, loads: %d (%d failed), "
+                                      + "average load time: %.1f ms", getHits(), getMisses(), getHitRate() * 100,
+                              getEvictions(), getLoads(), getLoadFailures(), getAverageLoadTime() );
+    }
+
+}
@@ -0,0 +1,519 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+
+/**
+ * {@link TileCache} with an on-heap tier bounded by the size of the cached data, and an optional overflow tier on disk.
+ * <p>
+ * Entries evicted from the heap tier are moved to the disk tier, which appends them to segment files. When the disk
+ * tier exceeds its size, the oldest segment file is dropped. Entries read from the disk tier are moved back to the heap.
+ * The disk tier is not persistent, its files are removed on startup and when the cache is destroyed.
+ * </p>
+ * <p>
+ * The heap tier either evicts the least recently used entries ({@link EvictionPolicy#LRU}), or uses W-TinyLFU (
+ * {@link EvictionPolicy#TINY_LFU}): new entries are put into a small LRU window, entries leaving the window are only
+ * admitted to the main LRU area if they were accessed more frequently than the entry they would evict. This keeps
+ * frequently used tiles (e.g. of coarse levels) cached while large scans (e.g. seeding) pass through.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class TwoTierTileCache implements TileCache {
+
+    private static final Logger LOG = getLogger( TwoTierTileCache.class );
+
+    /**
+     * Eviction policies of the heap tier.
+     */
+    public enum EvictionPolicy {
+        /** least recently used */
+        LRU,
+        /** least recently used with a window, and admission based on access frequency */
+        TINY_LFU
+    }
+
+    private static final double WINDOW_RATIO = 0.01;
+
+    // average size of a tile, used to size the frequency sketch
+    private static final int EXPECTED_TILE_SIZE = 16 * 1024;
+
+    private final LinkedHashMap<String, byte[]> window = new LinkedHashMap<String, byte[]>( 16, 0.75f, true );
+
+    private final LinkedHashMap<String, byte[]> main = new LinkedHashMap<String, byte[]>( 16, 0.75f, true );
+
+    private final long maxWindowBytes;
+
+    private final long maxMainBytes;
+
+    private final FrequencySketch sketch;
+
+    private final DiskTier disk;
+
+    // all keys of both tiers, so snapshots of the keys do not need the lock
+    private final Set<String> keys = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+    private long windowBytes;
+
+    private long mainBytes;
+
+    // number of keys, written under the lock
+    private volatile long entries;
+
+    private volatile EvictionListener listener;
+
+    /**
+     * @param maxHeapBytes
+     *            maximum size of the tile data on the heap, in bytes
+     * @param diskDirectory
+     *            directory for the disk tier, may be <code>null</code> (no disk tier)
+     * @param maxDiskBytes
+     *            maximum size of the disk tier, in bytes, ignored if no directory has been given
+     * @param policy
+     *            eviction policy of the heap tier, must not be <code>null</code>
+     * @throws IOException
+     *             if the directory for the disk tier could not be set up
+     */
+    public TwoTierTileCache( long maxHeapBytes, File diskDirectory, long maxDiskBytes, EvictionPolicy policy )
+                            throws IOException {
+        if ( policy == EvictionPolicy.TINY_LFU ) {
+            maxWindowBytes = (long) ( maxHeapBytes * WINDOW_RATIO );
+            sketch = new FrequencySketch( (int) Math.min( Integer.MAX_VALUE, maxHeapBytes / EXPECTED_TILE_SIZE ) );
+        } else {
+            maxWindowBytes = 0;
+            sketch = null;
+        }
+        maxMainBytes = maxHeapBytes - maxWindowBytes;
+        disk = diskDirectory == null ? null : new DiskTier( diskDirectory, maxDiskBytes );
+    }
+
+    @Override
+    public byte[] get( String key ) {
+        Location loc;
+        synchronized ( this ) {
+            if ( sketch != null ) {
+                sketch.increment( key );
+            }
+            byte[] data = window.get( key );
+            if ( data == null ) {
+                data = main.get( key );
+            }
+            if ( data != null || disk == null ) {
+                return data;
+            }
+            loc = disk.locate( key );
+            if ( loc == null ) {
+                return null;
+            }
+        }
+        // read outside of the lock, the segment may be dropped concurrently
+        byte[] data = disk.read( loc );
+        if ( data == null ) {
+            return null;
+        }
+        List<String> evicted = new ArrayList<String>();
+        synchronized ( this ) {
+            if ( disk.locate( key ) == loc && !isOnHeap( key ) ) {
+                addToHeap( key, data, evicted );
+                removeKeys( evicted );
+            }
+        }
+        notifyEvicted( evicted );
+        return data;
+    }
+
+    @Override
+    public void put( String key, byte[] data ) {
+        List<String> evicted = new ArrayList<String>();
+        synchronized ( this ) {
+            put( key, data, evicted );
+        }
+        notifyEvicted( evicted );
+    }
+
+    @Override
+    public void putIfAbsent( String key, byte[] data ) {
+        List<String> evicted = new ArrayList<String>();
+        synchronized ( this ) {
+            if ( contains( key ) ) {
+                return;
+            }
+            put( key, data, evicted );
+        }
+        notifyEvicted( evicted );
+    }
+
+    @Override
+    public synchronized boolean remove( String key ) {
+        boolean removed = removeFromHeap( key );
+        if ( disk != null ) {
+            removed |= disk.remove( key );
+        }
+        if ( removed ) {
+            keys.remove( key );
+            --entries;
+        }
+        return removed;
+    }
+
+    @Override
+    public synchronized void clear() {
+        window.clear();
+        main.clear();
+        windowBytes = 0;
+        mainBytes = 0;
+        if ( disk != null ) {
+            disk.clear();
+        }
+        keys.clear();
+        entries = 0;
+    }
+
+    @Override
+    public long size() {
+        return entries;
+    }
+
+    @Override
+    public Collection<String> getKeys() {
+        return new ArrayList<String>( keys );
+    }
+
+    @Override
+    public void setEvictionListener( EvictionListener listener ) {
+        this.listener = listener;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        clear();
+    }
+
+    /**
+     * @return the size of the tile data on the heap, in bytes
+     */
+    public synchronized long getHeapSize() {
+        return windowBytes + mainBytes;
+    }
+
+    /**
+     * @return the size of the segment files of the disk tier (including replaced or removed entries), in bytes
+     */
+    public synchronized long getDiskSize() {
+        return disk == null ? 0 : disk.bytes;
+    }
+
+    private void put( String key, byte[] data, List<String> evicted ) {
+        if ( sketch != null ) {
+            sketch.increment( key );
+        }
+        boolean existed = removeFromHeap( key );
+        if ( disk != null ) {
+            existed |= disk.remove( key );
+        }
+        if ( !existed ) {
+            keys.add( key );
+            ++entries;
+        }
+        addToHeap( key, data, evicted );
+        removeKeys( evicted );
+    }
+
+    // entries that move between the tiers may be reported as evicted although they are still cached
+    private void removeKeys( List<String> evicted ) {
+        Iterator<String> it = evicted.iterator();
+        while ( it.hasNext() ) {
+            String key = it.next();
+            if ( contains( key ) ) {
+                it.remove();
+            } else {
+                keys.remove( key );
+                --entries;
+            }
+        }
+    }
+
+    private boolean contains( String key ) {
+        return isOnHeap( key ) || ( disk != null && disk.locate( key ) != null );
+    }
+
+    private boolean isOnHeap( String key ) {
+        return window.containsKey( key ) || main.containsKey( key );
+    }
+
+    private boolean removeFromHeap( String key ) {
+        byte[] data = window.remove( key );
+        if ( data != null ) {
+            windowBytes -= data.length;
+            return true;
+        }
+        data = main.remove( key );
+        if ( data != null ) {
+            mainBytes -= data.length;
+            return true;
+        }
+        return false;
+    }
+
+    private void addToHeap( String key, byte[] data, List<String> evicted ) {
+        if ( sketch == null ) {
+            admit( key, data, evicted, false );
+            return;
+        }
+        window.put( key, data );
+        windowBytes += data.length;
+        while ( windowBytes > maxWindowBytes && !window.isEmpty() ) {
+            Iterator<Entry<String, byte[]>> it = window.entrySet().iterator();
+            Entry<String, byte[]> candidate = it.next();
+            it.remove();
+            windowBytes -= candidate.getValue().length;
+            admit( candidate.getKey(), candidate.getValue(), evicted, true );
+        }
+    }
+
+    private void admit( String key, byte[] data, List<String> evicted, boolean compareFrequency ) {
+        if ( data.length > maxMainBytes ) {
+            spill( key, data, evicted );
+            return;
+        }
+        if ( compareFrequency && mainBytes + data.length > maxMainBytes ) {
+            String victim = main.keySet().iterator().next();
+            if ( sketch.frequency( key ) <= sketch.frequency( victim ) ) {
+                spill( key, data, evicted );
+                return;
+            }
+        }
+        while ( mainBytes + data.length > maxMainBytes ) {
+            Iterator<Entry<String, byte[]>> it = main.entrySet().iterator();
+            Entry<String, byte[]> victim = it.next();
+            it.remove();
+            mainBytes -= victim.getValue().length;
+            spill( victim.getKey(), victim.getValue(), evicted );
+        }
+        main.put( key, data );
+        mainBytes += data.length;
+    }
+
+    private void spill( String key, byte[] data, List<String> evicted ) {
+        if ( disk == null ) {
+            evicted.add( key );
+        } else if ( disk.locate( key ) == null ) {
+            disk.append( key, data, evicted );
+        }
+    }
+
+    private void notifyEvicted( List<String> evicted ) {
+        EvictionListener listener = this.listener;
+        if ( listener != null ) {
+            for ( String key : evicted ) {
+                listener.evicted( key );
+            }
+        }
+    }
+
+    private static class Segment {
+
+        final File file;
+
+        final RandomAccessFile raf;
+
+        final List<String> keys = new ArrayList<String>();
+
+        long size;
+
+        Segment( File file )
+                                throws IOException {
+            this.file = file;
+            this.raf = new RandomAccessFile( file, "rw" );
+        }
+
+        synchronized void write( long pos, byte[] data )
+                                throws IOException {
+            raf.seek( pos );
+            raf.write( data );
+        }
+
+        synchronized byte[] read( long pos, int length )
+                                throws IOException {
+            byte[] data = new byte[length];
+            raf.seek( pos );
+            raf.readFully( data );
+            return data;
+        }
+
+        synchronized void delete() {
+            try {
+                raf.close();
+            } catch ( IOException e ) {
+                LOG.debug( "Could not close segment file {}: {}", file, e.getLocalizedMessage() );
+            }
+            if ( !file.delete() ) {
+                LOG.warn( "Could not delete segment file {}.", file );
+            }
+        }
+
+    }
+
+    private static class Location {
+
+        final Segment segment;
+
+        final long position;
+
+        final int length;
+
+        Location( Segment segment, long position, int length ) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+        }
+
+    }
+
+    /**
+     * Guarded by the lock of the enclosing cache, except for {@link #read(Location)}.
+     */
+    private class DiskTier {
+
+        private static final String SUFFIX = ".seg";
+
+        private final File dir;
+
+        private final long maxBytes;
+
+        private final long segmentSize;
+
+        private final LinkedList<Segment> segments = new LinkedList<Segment>();
+
+        private final Map<String, Location> index = new HashMap<String, Location>();
+
+        private long bytes;
+
+        private int nextSegment;
+
+        DiskTier( File dir, long maxBytes ) throws IOException {
+            this.dir = dir;
+            this.maxBytes = maxBytes;
+            this.segmentSize = Math.max( maxBytes / 16, Math.min( maxBytes, 1024 * 1024 ) );
+            if ( !dir.isDirectory() && !dir.mkdirs() ) {
+                throw new IOException( "Unable to create cache directory " + dir );
+            }
+            File[] leftovers = dir.listFiles();
+            if ( leftovers != null ) {
+                for ( File f : leftovers ) {
+                    if ( f.getName().endsWith( SUFFIX ) && !f.delete() ) {
+                        throw new IOException( "Unable to delete segment file " + f );
+                    }
+                }
+            }
+        }
+
+        Location locate( String key ) {
+            return index.get( key );
+        }
+
+        void append( String key, byte[] data, List<String> evicted ) {
+            try {
+                Segment seg = segments.isEmpty() ? null : segments.getLast();
+                if ( seg == null || ( seg.size > 0 && seg.size + data.length > segmentSize ) ) {
+                    seg = new Segment( new File( dir, ( nextSegment++ ) + SUFFIX ) );
+                    segments.add( seg );
+                }
+                seg.write( seg.size, data );
+                index.put( key, new Location( seg, seg.size, data.length ) );
+                seg.keys.add( key );
+                seg.size += data.length;
+                bytes += data.length;
+            } catch ( IOException e ) {
+                LOG.warn( "Could not write tile to the disk cache: {}", e.getLocalizedMessage() );
+                evicted.add( key );
+            }
+            while ( bytes > maxBytes && segments.size() > 1 ) {
+                drop( segments.removeFirst(), evicted );
+            }
+        }
+
+        byte[] read( Location loc ) {
+            try {
+                return loc.segment.read( loc.position, loc.length );
+            } catch ( IOException e ) {
+                // dropped concurrently
+                LOG.debug( "Could not read tile from the disk cache: {}", e.getLocalizedMessage() );
+                return null;
+            }
+        }
+
+        boolean remove( String key ) {
+            return index.remove( key ) != null;
+        }
+
+        void clear() {
+            for ( Segment seg : segments ) {
+                seg.delete();
+            }
+            segments.clear();
+            index.clear();
+            bytes = 0;
+        }
+
+        private void drop( Segment seg, List<String> evicted ) {
+            for ( String key : seg.keys ) {
+                Location loc = index.get( key );
+                if ( loc != null && loc.segment == seg ) {
+                    index.remove( key );
+                    if ( !isOnHeap( key ) ) {
+                        evicted.add( key );
+                    }
+                }
+            }
+            bytes -= seg.size;
+            seg.delete();
+        }
+
+    }
+
+}
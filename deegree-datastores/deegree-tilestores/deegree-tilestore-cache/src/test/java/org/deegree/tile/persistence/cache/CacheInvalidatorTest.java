@@ -0,0 +1,102 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.deegree.feature.persistence.ObservableFeatureStore;
+import org.deegree.geometry.Envelope;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Tests for {@link CacheInvalidator}.
+ * 
+ * @since 3.4
+ */
+public class CacheInvalidatorTest {
+
+    private CachingTileStore store;
+
+    private ObservableFeatureStore fs;
+
+    @Before
+    public void setup() {
+        store = mock( CachingTileStore.class );
+        fs = mock( ObservableFeatureStore.class );
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testChangesAreBatched() {
+        CacheInvalidator invalidator = new CacheInvalidator( store, singletonList( fs ), 100, 1000 );
+        verify( fs ).addChangeListener( invalidator );
+        Envelope env1 = mock( Envelope.class );
+        Envelope env2 = mock( Envelope.class );
+        invalidator.featuresChanged( fs, singletonList( env1 ) );
+        invalidator.featuresChanged( fs, singletonList( env2 ) );
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass( List.class );
+        verify( store, timeout( 2000 ) ).invalidateCache( captor.capture() );
+        assertEquals( 2, captor.getValue().size() );
+        assertEquals( env1, captor.getValue().get( 0 ) );
+        assertEquals( env2, captor.getValue().get( 1 ) );
+    }
+
+    @Test
+    public void testUnknownChangeInvalidatesEverything() {
+        CacheInvalidator invalidator = new CacheInvalidator( store, singletonList( fs ), 50, 1000 );
+        invalidator.featuresChanged( fs, singletonList( mock( Envelope.class ) ) );
+        invalidator.featuresChanged( fs, null );
+
+        verify( store, timeout( 2000 ) ).invalidateCache( (List<Envelope>) null );
+    }
+
+    @Test
+    public void testDestroyDiscardsPendingChanges()
+                            throws InterruptedException {
+        CacheInvalidator invalidator = new CacheInvalidator( store, singletonList( fs ), 50, 1000 );
+        invalidator.featuresChanged( fs, Collections.<Envelope> emptyList() );
+        invalidator.destroy();
+        verify( fs ).removeChangeListener( invalidator );
+
+        Thread.sleep( 200 );
+        verify( store, never() ).invalidateCache( anyListOf( Envelope.class ) );
+    }
+
+}
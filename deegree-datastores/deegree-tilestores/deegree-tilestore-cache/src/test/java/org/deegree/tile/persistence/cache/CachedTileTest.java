@@ -0,0 +1,136 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+
+import org.deegree.tile.Tile;
+import org.deegree.tile.VersionedTile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the versions of {@link CachedTile}s.
+ * 
+ * @since 3.4
+ */
+public class CachedTileTest {
+
+    private CacheManager cacheManager;
+
+    private Cache cache;
+
+    private CoalescingTileLoader loader;
+
+    @Before
+    public void setup() {
+        cacheManager = new CacheManager();
+        cacheManager.addCache( "tiles" );
+        cache = cacheManager.getCache( "tiles" );
+        loader = new CoalescingTileLoader( cache );
+    }
+
+    @After
+    public void tearDown() {
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void testVersionIsDelegated() {
+        VersionedTile tile = mock( VersionedTile.class );
+        when( tile.getVersion() ).thenReturn( "v1" );
+        when( tile.getLastModified() ).thenReturn( 1000L );
+        CachedTile cached = new CachedTile( tile, loader, "0_0_0" );
+        assertEquals( "v1", cached.getVersion() );
+        assertEquals( 1000L, cached.getLastModified() );
+        verify( tile, never() ).getAsStream();
+    }
+
+    @Test
+    public void testVersionIsDerivedFromCachedData() {
+        cache.put( new Element( "0_0_0", new byte[] { 1, 2, 3 } ) );
+        cache.put( new Element( "0_0_1", new byte[] { 1, 2, 4 } ) );
+        Tile tile = mock( Tile.class );
+        CachedTile cached = new CachedTile( tile, loader, "0_0_0" );
+        assertEquals( cached.getVersion(), new CachedTile( tile, loader, "0_0_0" ).getVersion() );
+        assertFalse( cached.getVersion().equals( new CachedTile( tile, loader, "0_0_1" ).getVersion() ) );
+        assertEquals( -1, cached.getLastModified() );
+        verify( tile, never() ).getAsStream();
+    }
+
+    @Test
+    public void testVersionChangesWithCachedData() {
+        Tile tile = mock( Tile.class );
+        when( tile.getAsStream() ).thenReturn( new ByteArrayInputStream( new byte[] { 1, 2, 3 } ) );
+        CachedTile cached = new CachedTile( tile, loader, "0_0_0" );
+        String version = cached.getVersion();
+        cache.put( new Element( "0_0_0", new byte[] { 1, 2, 3, 4 } ) );
+        assertFalse( version.equals( cached.getVersion() ) );
+    }
+
+    @Test
+    public void testVersionIsStoredWhenLoaded() {
+        byte[] data = new byte[] { 1, 2, 3 };
+        Tile tile = mock( Tile.class );
+        when( tile.getAsStream() ).thenReturn( new ByteArrayInputStream( data ) );
+        CachedTile cached = new CachedTile( tile, loader, "0_0_0" );
+        String version = cached.getVersion();
+        assertEquals( md5Hex( data ), version );
+        // looked up, not computed again
+        assertSame( version, cached.getVersion() );
+        cached.getAsStream();
+        verify( tile, times( 1 ) ).getAsStream();
+    }
+
+    @Test
+    public void testVersionOfOfferedData() {
+        byte[] data = new byte[] { 5, 6 };
+        loader.offer( "0_0_0", data );
+        Tile tile = mock( Tile.class );
+        String version = new CachedTile( tile, loader, "0_0_0" ).getVersion();
+        assertEquals( md5Hex( data ), version );
+        assertSame( version, new CachedTile( tile, loader, "0_0_0" ).getVersion() );
+        verify( tile, never() ).getAsStream();
+    }
+
+}
@@ -0,0 +1,192 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests for {@link CoalescingTileLoader}.
+ * 
+ * @since 3.4
+ */
+public class CoalescingTileLoaderTest {
+
+    private static final byte[] DATA = new byte[] { 1, 2, 3 };
+
+    private CacheManager cacheManager;
+
+    private Cache cache;
+
+    private CoalescingTileLoader loader;
+
+    @Before
+    public void setup() {
+        cacheManager = new CacheManager();
+        cacheManager.addCache( "tiles" );
+        cache = cacheManager.getCache( "tiles" );
+        loader = new CoalescingTileLoader( cache );
+    }
+
+    @After
+    public void tearDown() {
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void testCachedDataIsNotLoaded() {
+        cache.put( new Element( "0_0_0", DATA ) );
+        Tile tile = mock( Tile.class );
+        assertArrayEquals( DATA, loader.getData( "0_0_0", tile ) );
+        verify( tile, never() ).getAsStream();
+    }
+
+    @Test
+    public void testMissPopulatesCache() {
+        Tile tile = mock( Tile.class );
+        Mockito.when( tile.getAsStream() ).thenReturn( new ByteArrayInputStream( DATA ) );
+        assertArrayEquals( DATA, loader.getData( "0_0_0", tile ) );
+        assertArrayEquals( DATA, (byte[]) cache.get( "0_0_0" ).getValue() );
+        assertEquals( 0, loader.getNumberOfLoadsInProgress() );
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce()
+                            throws Exception {
+        final CountDownLatch loadStarted = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final AtomicInteger loads = new AtomicInteger();
+        final Tile tile = new BlockingTile( loadStarted, release, loads );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try {
+            List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+            for ( int i = 0; i < 8; ++i ) {
+                results.add( executor.submit( new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() {
+                        return loader.getData( "0_0_0", tile );
+                    }
+                } ) );
+            }
+            loadStarted.await( 5, TimeUnit.SECONDS );
+            Thread.sleep( 100 );
+            release.countDown();
+            for ( Future<byte[]> result : results ) {
+                assertArrayEquals( DATA, result.get( 5, TimeUnit.SECONDS ) );
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals( 1, loads.get() );
+    }
+
+    @Test(expected = TileIOException.class)
+    public void testFailedLoadIsNotCached() {
+        Tile tile = mock( Tile.class );
+        Mockito.when( tile.getAsStream() ).thenThrow( new TileIOException( "backend down" ) );
+        try {
+            loader.getData( "0_0_0", tile );
+        } finally {
+            assertEquals( null, cache.get( "0_0_0" ) );
+            assertEquals( 0, loader.getNumberOfLoadsInProgress() );
+        }
+    }
+
+    private static class BlockingTile implements Tile {
+
+        private final CountDownLatch loadStarted;
+
+        private final CountDownLatch release;
+
+        private final AtomicInteger loads;
+
+        BlockingTile( CountDownLatch loadStarted, CountDownLatch release, AtomicInteger loads ) {
+            this.loadStarted = loadStarted;
+            this.release = release;
+            this.loads = loads;
+        }
+
+        @Override
+        public InputStream getAsStream() {
+            loads.incrementAndGet();
+            loadStarted.countDown();
+            try {
+                release.await( 5, TimeUnit.SECONDS );
+            } catch ( InterruptedException e ) {
+                throw new TileIOException( e );
+            }
+            return new ByteArrayInputStream( DATA );
+        }
+
+        @Override
+        public BufferedImage getAsImage() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return null;
+        }
+
+        @Override
+        public FeatureCollection getFeatures( int i, int j, int limit ) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static org.deegree.tile.persistence.cache.TwoTierTileCache.EvictionPolicy.LRU;
+import static org.deegree.tile.persistence.cache.TwoTierTileCache.EvictionPolicy.TINY_LFU;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TwoTierTileCache}.
+ * 
+ * @since 3.4
+ */
+public class TwoTierTileCacheTest {
+
+    private File dir;
+
+    private TwoTierTileCache cache;
+
+    private final List<String> evicted = new ArrayList<String>();
+
+    @Before
+    public void setup()
+                            throws IOException {
+        dir = File.createTempFile( "tiercache", "" );
+        dir.delete();
+    }
+
+    @After
+    public void cleanup()
+                            throws IOException {
+        if ( cache != null ) {
+            cache.destroy();
+        }
+        FileUtils.deleteDirectory( dir );
+    }
+
+    private void createCache( long heap, File disk, long diskSize, TwoTierTileCache.EvictionPolicy policy )
+                            throws IOException {
+        cache = new TwoTierTileCache( heap, disk, diskSize, policy );
+        cache.setEvictionListener( new TileCache.EvictionListener() {
+            @Override
+            public void evicted( String key ) {
+                evicted.add( key );
+            }
+        } );
+    }
+
+    private static byte[] data( int size, int value ) {
+        byte[] bs = new byte[size];
+        for ( int i = 0; i < size; ++i ) {
+            bs[i] = (byte) value;
+        }
+        return bs;
+    }
+
+    @Test
+    public void testHeapIsBoundedBySize()
+                            throws IOException {
+        createCache( 1000, null, 0, LRU );
+        for ( int i = 0; i < 10; ++i ) {
+            cache.put( "k" + i, data( 200, i ) );
+        }
+        assertTrue( cache.getHeapSize() <= 1000 );
+        assertEquals( 5, cache.size() );
+        assertEquals( 5, evicted.size() );
+        assertEquals( "k0", evicted.get( 0 ) );
+        assertNull( cache.get( "k0" ) );
+        assertArrayEquals( data( 200, 9 ), cache.get( "k9" ) );
+    }
+
+    @Test
+    public void testLruKeepsRecentlyUsed()
+                            throws IOException {
+        createCache( 600, null, 0, LRU );
+        cache.put( "a", data( 200, 1 ) );
+        cache.put( "b", data( 200, 2 ) );
+        cache.put( "c", data( 200, 3 ) );
+        cache.get( "a" );
+        cache.put( "d", data( 200, 4 ) );
+        assertNotNull( cache.get( "a" ) );
+        assertNull( cache.get( "b" ) );
+    }
+
+    @Test
+    public void testTinyLfuKeepsFrequentlyUsed()
+                            throws IOException {
+        int size = 16 * 1024;
+        createCache( 100 * size, null, 0, TINY_LFU );
+        for ( int i = 0; i < 50; ++i ) {
+            cache.put( "hot" + i, data( size, i ) );
+            for ( int j = 0; j < 5; ++j ) {
+                cache.get( "hot" + i );
+            }
+        }
+        // a scan of keys used once must not flush the frequently used keys
+        for ( int i = 0; i < 1000; ++i ) {
+            cache.put( "scan" + i, data( size, i ) );
+        }
+        int hits = 0;
+        for ( int i = 0; i < 50; ++i ) {
+            if ( cache.get( "hot" + i ) != null ) {
+                ++hits;
+            }
+        }
+        assertEquals( 50, hits );
+        assertTrue( cache.getHeapSize() <= 100 * size );
+    }
+
+    @Test
+    public void testOverflowToDisk()
+                            throws IOException {
+        createCache( 1000, dir, 10000, LRU );
+        for ( int i = 0; i < 10; ++i ) {
+            cache.put( "k" + i, data( 200, i ) );
+        }
+        assertTrue( evicted.isEmpty() );
+        assertEquals( 10, cache.size() );
+        assertTrue( cache.getDiskSize() > 0 );
+        for ( int i = 0; i < 10; ++i ) {
+            assertArrayEquals( data( 200, i ), cache.get( "k" + i ) );
+        }
+    }
+
+    @Test
+    public void testDiskIsBoundedBySize()
+                            throws IOException {
+        createCache( 1000, dir, 2000, LRU );
+        for ( int i = 0; i < 100; ++i ) {
+            cache.put( "k" + i, data( 100, i ) );
+        }
+        assertTrue( cache.getDiskSize() <= 2000 + 1000 );
+        assertFalse( evicted.isEmpty() );
+        assertNull( cache.get( "k0" ) );
+        assertArrayEquals( data( 100, 99 ), cache.get( "k99" ) );
+    }
+
+    @Test
+    public void testReplaceAndRemove()
+                            throws IOException {
+        createCache( 400, dir, 10000, LRU );
+        cache.put( "a", data( 200, 1 ) );
+        cache.put( "b", data( 200, 2 ) );
+        cache.put( "c", data( 200, 3 ) );
+        // a is on disk now, replacing it must not serve the old data
+        cache.put( "a", data( 200, 4 ) );
+        assertArrayEquals( data( 200, 4 ), cache.get( "a" ) );
+        cache.put( "d", data( 200, 5 ) );
+        cache.put( "e", data( 200, 6 ) );
+        assertArrayEquals( data( 200, 4 ), cache.get( "a" ) );
+
+        assertTrue( cache.remove( "a" ) );
+        assertNull( cache.get( "a" ) );
+        assertFalse( cache.remove( "a" ) );
+
+        cache.clear();
+        assertEquals( 0, cache.size() );
+        assertEquals( 0, cache.getDiskSize() );
+    }
+
+    @Test
+    public void testPutIfAbsent()
+                            throws IOException {
+        createCache( 1000, null, 0, TINY_LFU );
+        cache.put( "a", data( 10, 1 ) );
+        cache.putIfAbsent( "a", data( 10, 2 ) );
+        assertArrayEquals( data( 10, 1 ), cache.get( "a" ) );
+        cache.putIfAbsent( "b", data( 10, 2 ) );
+        assertArrayEquals( data( 10, 2 ), cache.get( "b" ) );
+    }
+
+    @Test
+    public void testPutIfAbsentKeepsEntryOnDisk()
+                            throws IOException {
+        createCache( 400, dir, 10000, LRU );
+        cache.put( "a", data( 200, 1 ) );
+        cache.put( "b", data( 200, 2 ) );
+        cache.put( "c", data( 200, 3 ) );
+        // a is on disk now
+        cache.putIfAbsent( "a", data( 200, 4 ) );
+        assertArrayEquals( data( 200, 1 ), cache.get( "a" ) );
+        assertEquals( 3, cache.size() );
+    }
+
+    @Test
+    public void testSizeAndKeysAcrossTiers()
+                            throws IOException {
+        createCache( 1000, dir, 2000, LRU );
+        for ( int i = 0; i < 100; ++i ) {
+            cache.put( "k" + i, data( 100, i ) );
+            // moves entries back to the heap, while they are still on disk
+            cache.get( "k" + ( i / 2 ) );
+        }
+        assertEquals( 100 - evicted.size(), cache.size() );
+        assertEquals( cache.size(), new HashSet<String>( cache.getKeys() ).size() );
+        for ( String key : evicted ) {
+            assertFalse( cache.getKeys().contains( key ) );
+        }
+        String key = cache.getKeys().iterator().next();
+        assertTrue( cache.remove( key ) );
+        assertEquals( 99 - evicted.size(), cache.size() );
+        cache.put( "k0", data( 100, 0 ) );
+        cache.put( "k0", data( 100, 1 ) );
+        assertEquals( cache.getKeys().size(), cache.size() );
+    }
+
+}
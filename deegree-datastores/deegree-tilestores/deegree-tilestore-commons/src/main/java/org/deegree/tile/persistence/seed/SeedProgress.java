@@ -0,0 +1,112 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.seed;
+
+/**
+ * Snapshot of the progress of a {@link TileSeeder}.
+ * 
+ * @since 3.4
+ */
+public class SeedProgress {
+
+    /**
+     * The states of a seeding run.
+     */
+    public enum State {
+        /** the run has not been started yet */
+        PENDING,
+        /** tiles are being seeded */
+        RUNNING,
+        /** all tiles have been processed */
+        FINISHED,
+        /** the run has been cancelled, it can be resumed from its checkpoint */
+        CANCELLED,
+        /** the run has been aborted by an error, it can be resumed from its checkpoint */
+        FAILED
+    }
+
+    private final State state;
+
+    private final long total;
+
+    private final long completed;
+
+    private final long failed;
+
+    private final double tilesPerSecond;
+
+    SeedProgress( State state, long total, long completed, long failed, double tilesPerSecond ) {
+        this.state = state;
+        this.total = total;
+        this.completed = completed;
+        this.failed = failed;
+        this.tilesPerSecond = tilesPerSecond;
+    }
+
+    /**
+     * @return the state of the run, never <code>null</code>
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the number of tiles covered by the run
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the number of tiles processed so far (including failed tiles and tiles done by previous runs)
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return the number of tiles that could not be seeded
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the average number of tiles processed per second by this run
+     */
+    public double getTilesPerSecond() {
+        return tilesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return String.format( "%s: %d/%d tiles (%d failed), %.1f tiles/s", state, completed, total, failed,
+                              tilesPerSecond );
+    }
+
+}
@@ -0,0 +1,399 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.seed;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.geometry.Envelope;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.TileMatrixSet;
+import org.deegree.tile.Tiles;
+import org.deegree.tile.persistence.TileStoreTransaction;
+import org.deegree.tile.persistence.seed.SeedProgress.State;
+import org.slf4j.Logger;
+
+/**
+ * Fills a {@link TileStoreTransaction} with the tiles of a {@link TileDataSet}, using a configurable number of worker
+ * threads.
+ * <p>
+ * The tiles of the selected levels (indices into the tile matrices of the {@link TileMatrixSet}, coarsest first) that
+ * intersect the envelope are processed level by level, row by row. If a checkpoint file is given, the number of tiles processed so far is
+ * written to it periodically and when the run is cancelled, and a later run with the same parameters continues after
+ * the last checkpoint. The checkpoint file is removed once all tiles have been processed.
+ * </p>
+ * <p>
+ * Tiles that can't be fetched or stored are logged and counted as failed, they don't abort the run.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class TileSeeder {
+
+    private static final Logger LOG = getLogger( TileSeeder.class );
+
+    private static final long CHECKPOINT_INTERVAL = 10000;
+
+    private final TileDataSet source;
+
+    private final TileStoreTransaction target;
+
+    private final Envelope envelope;
+
+    private final int minLevel;
+
+    private final int maxLevel;
+
+    private final int workers;
+
+    private final File checkpoint;
+
+    private final TreeSet<Long> finished = new TreeSet<Long>();
+
+    private final AtomicLong processed = new AtomicLong();
+
+    private volatile boolean cancelled;
+
+    private State state = State.PENDING;
+
+    private long total;
+
+    private long watermark;
+
+    private long failed;
+
+    private long startTime;
+
+    private long endTime;
+
+    /**
+     * @param source
+     *            the tiles to seed, must not be <code>null</code>
+     * @param target
+     *            the transaction to put the tiles into, must not be <code>null</code>
+     * @param envelope
+     *            the area to seed, may be <code>null</code> (seed the complete levels)
+     * @param minLevel
+     *            index of the first level to seed
+     * @param maxLevel
+     *            index of the last level to seed, values beyond the last level are ignored
+     * @param workers
+     *            number of tiles to seed concurrently, must be positive
+     * @param checkpoint
+     *            file to record the progress in, may be <code>null</code> (run can't be resumed)
+     */
+    public TileSeeder( TileDataSet source, TileStoreTransaction target, Envelope envelope, int minLevel,
+                       int maxLevel, int workers, File checkpoint ) {
+        if ( workers < 1 ) {
+            throw new IllegalArgumentException( "The number of workers must be positive." );
+        }
+        this.source = source;
+        this.target = target;
+        this.envelope = envelope;
+        this.minLevel = Math.max( 0, minLevel );
+        this.maxLevel = Math.min( source.getTileMatrixSet().getTileMatrices().size() - 1, maxLevel );
+        this.workers = workers;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Seeds the tiles, blocks until all tiles have been processed or the run has been cancelled (by {@link #cancel()}
+     * or by interrupting the calling thread).
+     * 
+     * @return the final progress, never <code>null</code>
+     * @throws IOException
+     *             if the checkpoint could not be read or written
+     */
+    public SeedProgress run()
+                            throws IOException {
+        List<TileDataLevel> levels = new ArrayList<TileDataLevel>();
+        for ( TileMatrix matrix : source.getTileMatrixSet().getTileMatrices() ) {
+            levels.add( source.getTileDataLevel( matrix.getIdentifier() ) );
+        }
+        long[][] ranges = new long[levels.size()][];
+        long count = 0;
+        for ( int i = minLevel; i <= maxLevel; ++i ) {
+            ranges[i] = levels.get( i ) == null ? null : getIndexRange( levels.get( i ) );
+            if ( ranges[i] != null ) {
+                count += ( ranges[i][2] - ranges[i][0] + 1 ) * ( ranges[i][3] - ranges[i][1] + 1 );
+            }
+        }
+        String signature = getSignature();
+        long resumeAt = readCheckpoint( signature );
+        synchronized ( this ) {
+            total = count;
+            watermark = resumeAt;
+            state = State.RUNNING;
+            startTime = System.currentTimeMillis();
+        }
+        if ( resumeAt > 0 ) {
+            LOG.info( "Resuming seeding of {} tiles after tile {}.", count, resumeAt );
+        } else {
+            LOG.info( "Seeding {} tiles with {} workers.", count, workers );
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool( workers, new SeederThreadFactory() );
+        Semaphore permits = new Semaphore( workers * 2 );
+        long lastCheckpoint = System.currentTimeMillis();
+        boolean error = true;
+        try {
+            long seq = 0;
+            levels: for ( int i = minLevel; i <= maxLevel; ++i ) {
+                long[] range = ranges[i];
+                if ( range == null ) {
+                    continue;
+                }
+                long width = range[2] - range[0] + 1;
+                long num = width * ( range[3] - range[1] + 1 );
+                for ( long idx = Math.max( 0, resumeAt - seq ); idx < num; ++idx ) {
+                    if ( cancelled ) {
+                        break levels;
+                    }
+                    permits.acquire();
+                    pool.execute( new SeedTask( levels.get( i ), range[0] + idx % width, range[1] + idx / width,
+                                                seq + idx, permits ) );
+                    if ( System.currentTimeMillis() - lastCheckpoint > CHECKPOINT_INTERVAL ) {
+                        writeCheckpoint( signature );
+                        LOG.info( "Seeding progress: {}", getProgress() );
+                        lastCheckpoint = System.currentTimeMillis();
+                    }
+                }
+                seq += num;
+            }
+            error = false;
+        } catch ( InterruptedException e ) {
+            cancelled = true;
+            Thread.currentThread().interrupt();
+            error = false;
+        } finally {
+            awaitTermination( pool );
+            synchronized ( this ) {
+                endTime = System.currentTimeMillis();
+                state = error ? State.FAILED : ( cancelled ? State.CANCELLED : State.FINISHED );
+            }
+        }
+
+        if ( state == State.FINISHED ) {
+            if ( checkpoint != null && checkpoint.exists() && !checkpoint.delete() ) {
+                LOG.warn( "Could not delete seeding checkpoint {}.", checkpoint );
+            }
+        } else {
+            writeCheckpoint( signature );
+        }
+        SeedProgress progress = getProgress();
+        LOG.info( "Seeding done: {}", progress );
+        return progress;
+    }
+
+    /**
+     * Stops the run after the tiles currently in progress. The run can be resumed from its checkpoint.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return the current progress, never <code>null</code>
+     */
+    public synchronized SeedProgress getProgress() {
+        long end = state == State.RUNNING ? System.currentTimeMillis() : endTime;
+        double seconds = ( end - startTime ) / 1000.0;
+        double tps = seconds > 0 ? processed.get() / seconds : 0;
+        return new SeedProgress( state, total, watermark + finished.size(), failed, tps );
+    }
+
+    private long[] getIndexRange( TileDataLevel level ) {
+        if ( envelope == null ) {
+            return new long[] { 0, 0, level.getMetadata().getNumTilesX() - 1, level.getMetadata().getNumTilesY() - 1 };
+        }
+        return Tiles.getTileIndexRange( level, envelope );
+    }
+
+    private String getSignature() {
+        List<TileMatrix> matrices = source.getTileMatrixSet().getTileMatrices();
+        StringBuilder sb = new StringBuilder( source.getTileMatrixSet().getIdentifier() );
+        sb.append( ';' ).append( matrices.get( minLevel ).getIdentifier() );
+        sb.append( ';' ).append( matrices.get( maxLevel ).getIdentifier() );
+        if ( envelope != null ) {
+            sb.append( ';' ).append( envelope.getMin().get0() ).append( ',' ).append( envelope.getMin().get1() );
+            sb.append( ',' ).append( envelope.getMax().get0() ).append( ',' ).append( envelope.getMax().get1() );
+        }
+        return sb.toString();
+    }
+
+    private synchronized void tileDone( long seq, boolean success ) {
+        processed.incrementAndGet();
+        if ( !success ) {
+            ++failed;
+        }
+        if ( seq != watermark ) {
+            finished.add( seq );
+            return;
+        }
+        ++watermark;
+        while ( !finished.isEmpty() && finished.first() == watermark ) {
+            finished.pollFirst();
+            ++watermark;
+        }
+    }
+
+    private long readCheckpoint( String signature )
+                            throws IOException {
+        if ( checkpoint == null || !checkpoint.exists() ) {
+            return 0;
+        }
+        Properties props = new Properties();
+        InputStream in = new FileInputStream( checkpoint );
+        try {
+            props.load( in );
+        } finally {
+            IOUtils.closeQuietly( in );
+        }
+        if ( !signature.equals( props.getProperty( "signature" ) ) ) {
+            LOG.warn( "Ignoring seeding checkpoint {}, it has been written for different parameters.", checkpoint );
+            return 0;
+        }
+        failed = Long.parseLong( props.getProperty( "failed", "0" ) );
+        return Long.parseLong( props.getProperty( "completed", "0" ) );
+    }
+
+    private void writeCheckpoint( String signature )
+                            throws IOException {
+        if ( checkpoint == null ) {
+            return;
+        }
+        Properties props = new Properties();
+        props.setProperty( "signature", signature );
+        synchronized ( this ) {
+            props.setProperty( "completed", Long.toString( watermark ) );
+            props.setProperty( "failed", Long.toString( failed ) );
+        }
+        // write a new file and replace the old one, so an interruption never leaves a broken checkpoint behind
+        File tmp = new File( checkpoint.getPath() + ".tmp" );
+        OutputStream out = new FileOutputStream( tmp );
+        try {
+            props.store( out, "deegree tile seeding checkpoint" );
+        } finally {
+            IOUtils.closeQuietly( out );
+        }
+        if ( checkpoint.exists() && !checkpoint.delete() || !tmp.renameTo( checkpoint ) ) {
+            throw new IOException( "Could not write seeding checkpoint " + checkpoint + "." );
+        }
+    }
+
+    private static void awaitTermination( ExecutorService pool ) {
+        pool.shutdown();
+        boolean interrupted = false;
+        while ( true ) {
+            try {
+                if ( pool.awaitTermination( 1, SECONDS ) ) {
+                    break;
+                }
+            } catch ( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class SeedTask implements Runnable {
+
+        private final TileDataLevel level;
+
+        private final long x;
+
+        private final long y;
+
+        private final long seq;
+
+        private final Semaphore permits;
+
+        SeedTask( TileDataLevel level, long x, long y, long seq, Semaphore permits ) {
+            this.level = level;
+            this.x = x;
+            this.y = y;
+            this.seq = seq;
+            this.permits = permits;
+        }
+
+        @Override
+        public void run() {
+            boolean success = false;
+            String id = level.getMetadata().getIdentifier();
+            try {
+                Tile tile = level.getTile( x, y );
+                if ( tile != null ) {
+                    target.put( id, tile, x, y );
+                }
+                success = true;
+            } catch ( Exception e ) {
+                LOG.warn( "Could not seed tile {}/{}/{}: {}", new Object[] { id, x, y, e.getMessage() } );
+                LOG.trace( "Stack trace:", e );
+            } finally {
+                tileDone( seq, success );
+                permits.release();
+            }
+        }
+    }
+
+    private static class SeederThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "tile-seeder-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.seed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.geometry.Envelope;
+import org.deegree.tile.DefaultTileDataSet;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.TileMatrixSet;
+import org.deegree.tile.persistence.TileStoreTransaction;
+import org.deegree.tile.persistence.seed.SeedProgress.State;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TileSeeder}.
+ * 
+ * @since 3.4
+ */
+public class TileSeederTest {
+
+    private File checkpoint;
+
+    private TileDataSet source;
+
+    @Before
+    public void setup()
+                            throws IOException {
+        checkpoint = File.createTempFile( "seed", ".properties" );
+        checkpoint.delete();
+        List<TileMatrix> matrices = new ArrayList<TileMatrix>();
+        List<TileDataLevel> levels = new ArrayList<TileDataLevel>();
+        for ( int i = 0; i < 3; ++i ) {
+            TileMatrix matrix = new TileMatrix( "level" + i, null, 256, 256, 1 << ( 2 - i ), 1 << i, 1 << i );
+            matrices.add( matrix );
+            levels.add( new TestLevel( matrix, null ) );
+        }
+        source = new DefaultTileDataSet( levels, new TileMatrixSet( "tms", null, matrices, null, null ), "image/png" );
+    }
+
+    @After
+    public void cleanup() {
+        checkpoint.delete();
+    }
+
+    @Test
+    public void testSeedAll()
+                            throws IOException {
+        RecordingTransaction ta = new RecordingTransaction( -1 );
+        SeedProgress progress = new TileSeeder( source, ta, null, 0, 10, 4, checkpoint ).run();
+        assertEquals( State.FINISHED, progress.getState() );
+        assertEquals( 21, progress.getTotal() );
+        assertEquals( 21, progress.getCompleted() );
+        assertEquals( 0, progress.getFailed() );
+        assertEquals( 21, ta.tiles.size() );
+        assertTrue( ta.tiles.contains( "level2_3_3" ) );
+        assertFalse( checkpoint.exists() );
+    }
+
+    @Test
+    public void testSeedLevelRange()
+                            throws IOException {
+        RecordingTransaction ta = new RecordingTransaction( -1 );
+        SeedProgress progress = new TileSeeder( source, ta, null, 1, 1, 2, null ).run();
+        assertEquals( 4, progress.getTotal() );
+        assertEquals( 4, ta.tiles.size() );
+        assertTrue( ta.tiles.contains( "level1_1_0" ) );
+    }
+
+    @Test
+    public void testFailedTilesAreCounted()
+                            throws IOException {
+        List<TileDataLevel> levels = new ArrayList<TileDataLevel>();
+        for ( TileDataLevel level : source.getTileDataLevels() ) {
+            levels.add( new TestLevel( level.getMetadata(), "level1_0_1" ) );
+        }
+        TileDataSet failing = new DefaultTileDataSet( levels, source.getTileMatrixSet(), "image/png" );
+        RecordingTransaction ta = new RecordingTransaction( -1 );
+        SeedProgress progress = new TileSeeder( failing, ta, null, 0, 10, 3, checkpoint ).run();
+        assertEquals( State.FINISHED, progress.getState() );
+        assertEquals( 21, progress.getCompleted() );
+        assertEquals( 1, progress.getFailed() );
+        assertEquals( 20, ta.tiles.size() );
+    }
+
+    @Test
+    public void testResumeAfterCancel()
+                            throws IOException {
+        RecordingTransaction first = new RecordingTransaction( 5 );
+        TileSeeder seeder = new TileSeeder( source, first, null, 0, 10, 2, checkpoint );
+        first.seeder = seeder;
+        SeedProgress progress = seeder.run();
+        assertEquals( State.CANCELLED, progress.getState() );
+        assertTrue( checkpoint.exists() );
+        long done = readCompleted();
+        assertTrue( done >= 5 && done < 21 );
+
+        RecordingTransaction second = new RecordingTransaction( -1 );
+        progress = new TileSeeder( source, second, null, 0, 10, 2, checkpoint ).run();
+        assertEquals( State.FINISHED, progress.getState() );
+        assertEquals( 21 - done, second.tiles.size() );
+        Set<String> all = new HashSet<String>( first.tiles );
+        all.addAll( second.tiles );
+        assertEquals( 21, all.size() );
+        assertFalse( checkpoint.exists() );
+    }
+
+    @Test
+    public void testCheckpointOfOtherRunIsIgnored()
+                            throws IOException {
+        RecordingTransaction first = new RecordingTransaction( 3 );
+        TileSeeder seeder = new TileSeeder( source, first, null, 0, 10, 1, checkpoint );
+        first.seeder = seeder;
+        seeder.run();
+        assertTrue( checkpoint.exists() );
+
+        RecordingTransaction second = new RecordingTransaction( -1 );
+        new TileSeeder( source, second, null, 1, 2, 2, checkpoint ).run();
+        assertEquals( 20, second.tiles.size() );
+    }
+
+    private long readCompleted()
+                            throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream( checkpoint );
+        try {
+            props.load( in );
+        } finally {
+            in.close();
+        }
+        return Long.parseLong( props.getProperty( "completed" ) );
+    }
+
+    private static class TestLevel implements TileDataLevel {
+
+        private final TileMatrix matrix;
+
+        private final String failing;
+
+        TestLevel( TileMatrix matrix, String failing ) {
+            this.matrix = matrix;
+            this.failing = failing;
+        }
+
+        @Override
+        public TileMatrix getMetadata() {
+            return matrix;
+        }
+
+        @Override
+        public Tile getTile( long x, long y ) {
+            if ( ( matrix.getIdentifier() + "_" + x + "_" + y ).equals( failing ) ) {
+                throw new TileIOException( "Broken tile." );
+            }
+            return mock( Tile.class );
+        }
+    }
+
+    private static class RecordingTransaction implements TileStoreTransaction {
+
+        private final Set<String> tiles = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final int cancelAfter;
+
+        private volatile TileSeeder seeder;
+
+        RecordingTransaction( int cancelAfter ) {
+            this.cancelAfter = cancelAfter;
+        }
+
+        @Override
+        public void put( String tileDataLevel, Tile tile, long x, long y ) {
+            tiles.add( tileDataLevel + "_" + x + "_" + y );
+            if ( count.incrementAndGet() == cancelAfter ) {
+                seeder.cancel();
+            }
+        }
+
+        @Override
+        public void delete( String tileDataLevel, long x, long y ) {
+            tiles.remove( tileDataLevel + "_" + x + "_" + y );
+        }
+
+        @Override
+        public void delete( String tileDataLevel, Envelope envelope ) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.filesystem;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Stores tile files content-addressed, so that byte-identical tiles (empty areas, nodata, uniform fields) are stored
+ * only once.
+ * <p>
+ * The encoded tile is stored as a blob file named after the SHA-1 hash of its content (
+ * <code>blobdir/ab/cd/abcd...ef.png</code>). At the location of the tile file as defined by the {@link DiskLayout}, only
+ * a small reference file containing the hash is stored (tile file name plus <code>.ref</code>). Tile files without a
+ * reference file are still read, so deduplication can be enabled for existing tile directories.
+ * </p>
+ * <p>
+ * Blobs are never removed, as they may be shared between any number of tiles.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class ContentAddressedStorage {
+
+    private static final String REF_SUFFIX = ".ref";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File blobDir;
+
+    private final String fileType;
+
+    /**
+     * @param blobDir
+     *            the directory to store the blobs in, must not be <code>null</code>
+     * @param fileType
+     *            suffix of the blob files (without '.'), must not be <code>null</code>
+     */
+    public ContentAddressedStorage( File blobDir, String fileType ) {
+        this.blobDir = blobDir;
+        this.fileType = fileType;
+    }
+
+    /**
+     * Returns the file containing the data of the tile stored at the given location.
+     * 
+     * @param tileFile
+     *            the location of the tile file as defined by the {@link DiskLayout}, must not be <code>null</code>
+     * @return the blob file, or the tile file itself if it is not stored deduplicated, never <code>null</code>
+     * @throws IOException
+     *             if the reference file could not be read
+     */
+    public File resolve( File tileFile )
+                            throws IOException {
+        String hash = getHash( tileFile );
+        return hash == null ? tileFile : getBlobFile( hash );
+    }
+
+    /**
+     * Returns the content hash of the tile stored at the given location.
+     * 
+     * @param tileFile
+     *            the location of the tile file as defined by the {@link DiskLayout}, must not be <code>null</code>
+     * @return the hash, or <code>null</code> if the tile is not stored deduplicated
+     * @throws IOException
+     *             if the reference file could not be read
+     */
+    public String getHash( File tileFile )
+                            throws IOException {
+        File ref = getRefFile( tileFile );
+        if ( !ref.exists() ) {
+            return null;
+        }
+        return FileUtils.readFileToString( ref, "US-ASCII" ).trim();
+    }
+
+    /**
+     * Stores the encoded tile data at the given location. If a blob with identical content already exists, only the
+     * reference file is written.
+     * 
+     * @param tileFile
+     *            the location of the tile file as defined by the {@link DiskLayout}, must not be <code>null</code>
+     * @param data
+     *            the encoded tile, must not be <code>null</code>
+     * @return the blob file, never <code>null</code>
+     * @throws IOException
+     *             if writing the blob or reference file failed
+     */
+    public File put( File tileFile, byte[] data )
+                            throws IOException {
+        String hash = hash( data );
+        File blob = getBlobFile( hash );
+        if ( !blob.exists() ) {
+            writeAtomically( blob, data );
+        }
+        writeAtomically( getRefFile( tileFile ), hash.getBytes( "US-ASCII" ) );
+        if ( tileFile.exists() && !tileFile.delete() ) {
+            throw new IOException( "Unable to delete tile file " + tileFile );
+        }
+        return blob;
+    }
+
+    /**
+     * Removes the tile stored at the given location (the blob is kept).
+     * 
+     * @param tileFile
+     *            the location of the tile file as defined by the {@link DiskLayout}, must not be <code>null</code>
+     * @throws IOException
+     *             if deleting the reference file failed
+     */
+    public void delete( File tileFile )
+                            throws IOException {
+        File ref = getRefFile( tileFile );
+        if ( ref.exists() && !ref.delete() ) {
+            throw new IOException( "Unable to delete tile reference file " + ref );
+        }
+        if ( tileFile.exists() && !tileFile.delete() ) {
+            throw new IOException( "Unable to delete tile file " + tileFile );
+        }
+    }
+
+    File getBlobFile( String hash ) {
+        File dir = new File( new File( blobDir, hash.substring( 0, 2 ) ), hash.substring( 2, 4 ) );
+        return new File( dir, hash + "." + fileType );
+    }
+
+    static File getRefFile( File tileFile ) {
+        return new File( tileFile.getParentFile(), tileFile.getName() + REF_SUFFIX );
+    }
+
+    private static void writeAtomically( File file, byte[] data )
+                            throws IOException {
+        File dir = file.getParentFile();
+        if ( !dir.exists() && !dir.mkdirs() && !dir.exists() ) {
+            throw new IOException( "Unable to create directory " + dir );
+        }
+        // readers must never see partially written files
+        File tmp = File.createTempFile( file.getName(), ".tmp", dir );
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream( tmp );
+            fos.write( data );
+            fos.close();
+            fos = null;
+            if ( !tmp.renameTo( file ) ) {
+                // some platforms do not replace existing files on rename
+                file.delete();
+                if ( !tmp.renameTo( file ) ) {
+                    throw new IOException( "Unable to rename " + tmp + " to " + file );
+                }
+            }
+        } finally {
+            closeQuietly( fos );
+            tmp.delete();
+        }
+    }
+
+    static String hash( byte[] data ) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        } catch ( NoSuchAlgorithmException e ) {
+            // every Java platform is required to support SHA-1
+            throw new IllegalStateException( e );
+        }
+        byte[] bs = digest.digest( data );
+        char[] cs = new char[bs.length * 2];
+        for ( int i = 0; i < bs.length; ++i ) {
+            cs[2 * i] = HEX[( bs[i] >> 4 ) & 0xf];
+            cs[2 * i + 1] = HEX[bs[i] & 0xf];
+        }
+        return new String( cs );
+    }
+
+}
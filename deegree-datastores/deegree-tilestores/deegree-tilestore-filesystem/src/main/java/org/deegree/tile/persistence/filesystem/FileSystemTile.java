@@ -50,6 +50,7 @@ import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
+import org.deegree.tile.VersionedTile;
 
 /**
  * A {@link Tile} that is backed by a {@link FileSystemTileStore}.
@@ -59,12 +60,16 @@ import org.deegree.tile.TileIOException;
  * 
  * @version $Revision$, $Date$
  */
-class FileSystemTile implements Tile {
+class FileSystemTile implements VersionedTile {
 
     private final Envelope bbox;
 
     private final File file;
 
+    private final File stampFile;
+
+    private final String hash;
+
     /**
      * Creates a new {@link FileSystemTile} instance.
      * 
@@ -74,8 +79,27 @@ class FileSystemTile implements Tile {
      *            image file, must not be <code>null</code> and point to an existing image file
      */
     FileSystemTile( Envelope bbox, File file ) {
+        this( bbox, file, file, null );
+    }
+
+    /**
+     * Creates a new {@link FileSystemTile} instance for a tile stored in a {@link ContentAddressedStorage}.
+     * 
+     * @param bbox
+     *            envelope of the tile, must not be <code>null</code>
+     * @param file
+     *            image file, must not be <code>null</code> and point to an existing image file
+     * @param stampFile
+     *            file whose modification time is the one of the tile (the reference file), must not be
+     *            <code>null</code>
+     * @param hash
+     *            content hash of the tile, may be <code>null</code> if the tile is not stored content-addressed
+     */
+    FileSystemTile( Envelope bbox, File file, File stampFile, String hash ) {
         this.bbox = bbox;
         this.file = file;
+        this.stampFile = stampFile;
+        this.hash = hash;
     }
 
     @Override
@@ -107,6 +131,24 @@ class FileSystemTile implements Tile {
         return bbox;
     }
 
+    @Override
+    public String getVersion() {
+        if ( hash != null ) {
+            return hash;
+        }
+        long lastModified = file.lastModified();
+        if ( lastModified == 0 ) {
+            return null;
+        }
+        return Long.toHexString( lastModified ) + "-" + Long.toHexString( file.length() );
+    }
+
+    @Override
+    public long getLastModified() {
+        long lastModified = stampFile.lastModified();
+        return lastModified == 0 ? -1 : lastModified;
+    }
+
     @Override
     public FeatureCollection getFeatures( int i, int j, int limit )
                             throws UnsupportedOperationException {
@@ -38,11 +38,13 @@ package org.deegree.tile.persistence.filesystem;
 import static org.deegree.tile.Tiles.calcTileEnvelope;
 
 import java.io.File;
+import java.io.IOException;
 
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileIOException;
 import org.deegree.tile.TileMatrix;
 import org.deegree.tile.persistence.TileStore;
 import org.deegree.tile.persistence.TileStoreProvider;
@@ -66,6 +68,8 @@ class FileSystemTileDataLevel implements TileDataLevel {
 
     private final DiskLayout layout;
 
+    private final ContentAddressedStorage storage;
+
     private String baseStoreId;
 
     private String baseDataSetId;
@@ -81,11 +85,16 @@ class FileSystemTileDataLevel implements TileDataLevel {
      * 
      * @param metadata
      * @param layout
+     * @param storage
+     *            content-addressed storage for deduplicated tiles, may be <code>null</code> (tiles are stored as
+     *            plain files)
      */
-    FileSystemTileDataLevel( TileMatrix metadata, DiskLayout layout, String baseStoreId, String baseDataSetId,
-                             Workspace workspace, ResourceMetadata<TileStore> tsMetadata, String myId ) {
+    FileSystemTileDataLevel( TileMatrix metadata, DiskLayout layout, ContentAddressedStorage storage,
+                             String baseStoreId, String baseDataSetId, Workspace workspace,
+                             ResourceMetadata<TileStore> tsMetadata, String myId ) {
         this.metadata = metadata;
         this.layout = layout;
+        this.storage = storage;
         this.baseStoreId = baseStoreId;
         this.baseDataSetId = baseDataSetId;
         this.workspace = workspace;
@@ -99,7 +108,7 @@ class FileSystemTileDataLevel implements TileDataLevel {
     }
 
     private void checkBase( long x, long y, File file ) {
-        if ( baseStoreId != null && !file.exists() ) {
+        if ( baseStoreId != null && !exists( file ) ) {
             file.getParentFile().mkdirs();
             TileStore store = workspace.getResource( TileStoreProvider.class, baseStoreId );
             TileDataSet set = store.getTileDataSet( baseDataSetId );
@@ -119,10 +128,36 @@ class FileSystemTileDataLevel implements TileDataLevel {
         Envelope bbox = calcTileEnvelope( metadata, x, y );
         File file = layout.resolve( metadata.getIdentifier(), x, y );
         checkBase( x, y, file );
-        return new FileSystemTile( bbox, file );
+        if ( storage == null ) {
+            return new FileSystemTile( bbox, file );
+        }
+        String hash;
+        try {
+            hash = storage.getHash( file );
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error reading tile reference for '" + file + "': " + e.getMessage(), e );
+        }
+        if ( hash == null ) {
+            return new FileSystemTile( bbox, file );
+        }
+        return new FileSystemTile( bbox, storage.getBlobFile( hash ), ContentAddressedStorage.getRefFile( file ), hash );
+    }
+
+    private boolean exists( File file ) {
+        if ( file.exists() ) {
+            return true;
+        }
+        return storage != null && ContentAddressedStorage.getRefFile( file ).exists();
     }
 
     public DiskLayout getLayout() {
         return layout;
     }
+
+    /**
+     * @return the content-addressed storage, or <code>null</code> if tiles are stored as plain files
+     */
+    ContentAddressedStorage getStorage() {
+        return storage;
+    }
 }
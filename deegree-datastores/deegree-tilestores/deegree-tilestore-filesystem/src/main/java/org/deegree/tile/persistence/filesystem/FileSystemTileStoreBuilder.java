@@ -98,12 +98,25 @@ public class FileSystemTileStoreBuilder implements ResourceBuilder<TileStore> {
 
                 TileCacheDiskLayout layout = new TileCacheDiskLayout( baseDir, lay.getFileType() );
 
+                ContentAddressedStorage storage = null;
+                if ( lay.getDeduplication() != null ) {
+                    String blobDirName = lay.getDeduplication().getBlobDirectory();
+                    File blobDir = new File( baseDir, "blobs" );
+                    if ( blobDirName != null ) {
+                        blobDir = new File( blobDirName );
+                        if ( !blobDir.isAbsolute() ) {
+                            blobDir = metadata.getLocation().resolveToFile( blobDirName );
+                        }
+                    }
+                    storage = new ContentAddressedStorage( blobDir, lay.getFileType() );
+                }
+
                 TileMatrixSet tms = workspace.getResource( TileMatrixSetProvider.class, tmsId );
 
                 List<TileDataLevel> list = new ArrayList<TileDataLevel>( tms.getTileMatrices().size() );
 
                 for ( TileMatrix tm : tms.getTileMatrices() ) {
-                    list.add( new FileSystemTileDataLevel( tm, layout, baseStore, baseDataSet, workspace, metadata, id ) );
+                    list.add( new FileSystemTileDataLevel( tm, layout, storage, baseStore, baseDataSet, workspace, metadata, id ) );
                 }
 
                 String format = "image/" + layout.getFileType();
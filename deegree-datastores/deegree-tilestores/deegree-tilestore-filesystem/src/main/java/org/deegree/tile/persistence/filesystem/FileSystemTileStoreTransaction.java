@@ -35,6 +35,7 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.filesystem;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -72,10 +73,21 @@ class FileSystemTileStoreTransaction extends AbstractTileStoreTransaction {
     @Override
     public void put( String matrixId, Tile tile, long x, long y )
                             throws TileIOException {
-        DiskLayout layout = ( (FileSystemTileDataLevel) this.store.getTileDataSet( this.tileMatrixSet ).getTileDataLevel( matrixId ) ).getLayout();
+        FileSystemTileDataLevel level = (FileSystemTileDataLevel) this.store.getTileDataSet( this.tileMatrixSet ).getTileDataLevel( matrixId );
+        DiskLayout layout = level.getLayout();
+        File file = layout.resolve( matrixId, x, y );
+        if ( level.getStorage() != null ) {
+            try {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                ImageIO.write( tile.getAsImage(), layout.getFileType(), bos );
+                level.getStorage().put( file, bos.toByteArray() );
+            } catch ( IOException e ) {
+                throw new TileIOException( "Error storing tile: " + e.getMessage(), e );
+            }
+            return;
+        }
         FileOutputStream fos = null;
         try {
-            File file = layout.resolve( matrixId, x, y );
             synchronized ( store ) {
                 if ( !file.getParentFile().exists() && !file.getParentFile().mkdirs() ) {
                     throw new TileIOException( "Unable to create parent directories for " + file );
@@ -93,9 +105,15 @@ class FileSystemTileStoreTransaction extends AbstractTileStoreTransaction {
     @Override
     public void delete( String matrixId, long x, long y )
                             throws TileIOException {
-        DiskLayout layout = ( (FileSystemTileDataLevel) this.store.getTileDataSet( this.tileMatrixSet ).getTileDataLevel( matrixId ) ).getLayout();
-        File file = layout.resolve( matrixId, x, y );
-        if ( file.exists() ) {
+        FileSystemTileDataLevel level = (FileSystemTileDataLevel) this.store.getTileDataSet( this.tileMatrixSet ).getTileDataLevel( matrixId );
+        File file = level.getLayout().resolve( matrixId, x, y );
+        if ( level.getStorage() != null ) {
+            try {
+                level.getStorage().delete( file );
+            } catch ( IOException e ) {
+                throw new TileIOException( e.getMessage(), e );
+            }
+        } else if ( file.exists() ) {
             if ( !file.delete() ) {
                 throw new TileIOException( "Unable to delete tile file " + file );
             }
@@ -0,0 +1,125 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.filesystem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ContentAddressedStorage}.
+ * 
+ * @since 3.4
+ */
+public class ContentAddressedStorageTest {
+
+    private File dir;
+
+    private File blobDir;
+
+    private ContentAddressedStorage storage;
+
+    @Before
+    public void setup()
+                            throws IOException {
+        dir = File.createTempFile( "castest", "" );
+        dir.delete();
+        dir.mkdirs();
+        blobDir = new File( dir, "blobs" );
+        storage = new ContentAddressedStorage( blobDir, "png" );
+    }
+
+    @After
+    public void cleanup()
+                            throws IOException {
+        FileUtils.deleteDirectory( dir );
+    }
+
+    @Test
+    public void testIdenticalTilesAreStoredOnce()
+                            throws IOException {
+        File tile1 = new File( dir, "00/000/000/000/000/000/000.png" );
+        File tile2 = new File( dir, "00/000/000/001/000/000/000.png" );
+        byte[] data = new byte[] { 1, 2, 3 };
+        File blob1 = storage.put( tile1, data );
+        File blob2 = storage.put( tile2, data );
+        assertEquals( blob1, blob2 );
+        assertEquals( blob1, storage.resolve( tile1 ) );
+        assertEquals( blob1, storage.resolve( tile2 ) );
+        assertArrayEquals( data, FileUtils.readFileToByteArray( blob1 ) );
+        assertEquals( 1, FileUtils.listFiles( blobDir, null, true ).size() );
+    }
+
+    @Test
+    public void testReplaceTile()
+                            throws IOException {
+        File tile = new File( dir, "00/000/000/000/000/000/000.png" );
+        storage.put( tile, new byte[] { 1 } );
+        File blob = storage.put( tile, new byte[] { 2 } );
+        assertEquals( blob, storage.resolve( tile ) );
+        assertEquals( ContentAddressedStorage.hash( new byte[] { 2 } ), storage.getHash( tile ) );
+    }
+
+    @Test
+    public void testPlainTileFileIsReadAndReplaced()
+                            throws IOException {
+        File tile = new File( dir, "00/000/000/000/000/000/000.png" );
+        FileUtils.writeByteArrayToFile( tile, new byte[] { 1 } );
+        assertNull( storage.getHash( tile ) );
+        assertEquals( tile, storage.resolve( tile ) );
+
+        File blob = storage.put( tile, new byte[] { 1 } );
+        assertFalse( tile.exists() );
+        assertEquals( blob, storage.resolve( tile ) );
+    }
+
+    @Test
+    public void testDeleteKeepsSharedBlob()
+                            throws IOException {
+        File tile1 = new File( dir, "00/000/000/000/000/000/000.png" );
+        File tile2 = new File( dir, "00/000/000/001/000/000/000.png" );
+        byte[] data = new byte[] { 1, 2, 3 };
+        storage.put( tile1, data );
+        File blob = storage.put( tile2, data );
+        storage.delete( tile1 );
+        assertNull( storage.getHash( tile1 ) );
+        assertEquals( blob, storage.resolve( tile2 ) );
+        assertTrue( blob.exists() );
+    }
+
+}
@@ -78,8 +78,15 @@ public class GeoTIFFTile implements Tile {
 
     private final GenericObjectPool readerPool;
 
+    private final TiffTiles jpegTiles;
+
     public GeoTIFFTile( GenericObjectPool readerPool, int imageIndex, int x, int y, Envelope envelope, int sizeX,
                         int sizeY ) {
+        this( readerPool, imageIndex, x, y, envelope, sizeX, sizeY, null );
+    }
+
+    GeoTIFFTile( GenericObjectPool readerPool, int imageIndex, int x, int y, Envelope envelope, int sizeX, int sizeY,
+                 TiffTiles jpegTiles ) {
         this.readerPool = readerPool;
         this.imageIndex = imageIndex;
         this.x = x;
@@ -87,6 +94,7 @@ public class GeoTIFFTile implements Tile {
         this.envelope = envelope;
         this.sizeX = sizeX;
         this.sizeY = sizeY;
+        this.jpegTiles = jpegTiles;
     }
 
     @Override
@@ -127,6 +135,16 @@ public class GeoTIFFTile implements Tile {
     @Override
     public InputStream getAsStream()
                             throws TileIOException {
+        if ( jpegTiles != null ) {
+            try {
+                byte[] jpeg = jpegTiles.readJpegTile( x, y );
+                if ( jpeg != null ) {
+                    return new ByteArrayInputStream( jpeg );
+                }
+            } catch ( IOException e ) {
+                throw new TileIOException( "Error retrieving image: " + e.getMessage(), e );
+            }
+        }
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try {
             ImageIO.write( getAsImage(), "png", bos );
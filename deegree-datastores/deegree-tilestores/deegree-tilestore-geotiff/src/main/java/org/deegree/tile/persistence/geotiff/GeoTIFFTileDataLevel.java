@@ -40,13 +40,17 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.geotiff;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 import java.io.File;
+import java.io.IOException;
 
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.GeometryFactory;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileMatrix;
+import org.slf4j.Logger;
 
 /**
  * The <code>GeoTIFFTileMatrix</code> is a tile matrix handing out GeoTIFFTile tiles. It uses an object pool shared
@@ -60,6 +64,8 @@ import org.deegree.tile.TileMatrix;
 
 public class GeoTIFFTileDataLevel implements TileDataLevel {
 
+    private static final Logger LOG = getLogger( GeoTIFFTileDataLevel.class );
+
     private final TileMatrix metadata;
 
     private final int imageIndex;
@@ -70,7 +76,26 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
 
     private final int xoff, yoff, numx, numy;
 
+    private final TiffTiles jpegTiles;
+
     public GeoTIFFTileDataLevel( TileMatrix metadata, File file, int imageIndex, int xoff, int yoff, int numx, int numy ) {
+        this( metadata, file, imageIndex, xoff, yoff, numx, numy, null );
+    }
+
+    /**
+     * @param metadata
+     * @param file
+     * @param imageIndex
+     * @param xoff
+     * @param yoff
+     * @param numx
+     * @param numy
+     * @param format
+     *            the image format of the tile data set, if it is <code>image/jpeg</code> and the tiles in the file are
+     *            JPEG compressed with the tile size of the matrix, the compressed tiles are delivered as is
+     */
+    public GeoTIFFTileDataLevel( TileMatrix metadata, File file, int imageIndex, int xoff, int yoff, int numx,
+                                 int numy, String format ) {
         this.metadata = metadata;
         this.imageIndex = imageIndex;
         ImageReaderFactory fac = new ImageReaderFactory( file );
@@ -79,6 +104,22 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
         this.yoff = yoff;
         this.numx = numx;
         this.numy = numy;
+        this.jpegTiles = "image/jpeg".equals( format ) ? findJpegTiles( file ) : null;
+    }
+
+    private TiffTiles findJpegTiles( File file ) {
+        try {
+            TiffTiles tiles = TiffTiles.read( file, imageIndex );
+            if ( tiles != null && tiles.hasJpegTiles() && tiles.getTileWidth() == metadata.getTilePixelsX()
+                 && tiles.getTileHeight() == metadata.getTilePixelsY() ) {
+                LOG.debug( "Delivering JPEG tiles of image {} in {} without recoding.", imageIndex, file );
+                return tiles;
+            }
+        } catch ( IOException e ) {
+            LOG.debug( "Could not read tile layout of image {} in {}: {}", new Object[] { imageIndex, file,
+                                                                                         e.getLocalizedMessage() } );
+        }
+        return null;
     }
 
     @Override
@@ -108,6 +149,6 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
         double miny = env.getMax().get1() - height * y;
         Envelope envelope = fac.createEnvelope( minx, miny, minx + width, miny - height, env.getCoordinateSystem() );
         return new GeoTIFFTile( readerPool, imageIndex, (int) x, (int) y, envelope, (int) metadata.getTilePixelsX(),
-                                (int) metadata.getTilePixelsY() );
+                                (int) metadata.getTilePixelsY(), jpegTiles );
     }
 }
@@ -0,0 +1,386 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Provides access to the raw (still compressed) tiles of an image in a TIFF/BigTIFF file, based on the tile offsets
+ * and byte counts in the image file directory.
+ * <p>
+ * Only the tags needed to locate and interpret the tiles are evaluated. The offsets and byte counts of the single
+ * tiles are read on demand, so the memory footprint does not depend on the number of tiles.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class TiffTiles {
+
+    static final int COMPRESSION_JPEG = 7;
+
+    static final int PHOTOMETRIC_BLACK_IS_ZERO = 1;
+
+    static final int PHOTOMETRIC_YCBCR = 6;
+
+    private static final int TAG_IMAGE_WIDTH = 256;
+
+    private static final int TAG_COMPRESSION = 259;
+
+    private static final int TAG_PHOTOMETRIC = 262;
+
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+
+    private static final int TAG_PLANAR_CONFIGURATION = 284;
+
+    private static final int TAG_TILE_WIDTH = 322;
+
+    private static final int TAG_TILE_LENGTH = 323;
+
+    private static final int TAG_TILE_OFFSETS = 324;
+
+    private static final int TAG_TILE_BYTE_COUNTS = 325;
+
+    private static final int TAG_JPEG_TABLES = 347;
+
+    private final File file;
+
+    private final int imageWidth, tileWidth, tileHeight;
+
+    private final int compression, photometric, samplesPerPixel, planarConfiguration;
+
+    private final Field offsets, byteCounts;
+
+    private final byte[] jpegTables;
+
+    private TiffTiles( File file, Map<Integer, Field> fields, RandomAccessFile in )
+                            throws IOException {
+        this.file = file;
+        this.imageWidth = (int) fields.get( TAG_IMAGE_WIDTH ).getLong( in, 0 );
+        this.tileWidth = (int) fields.get( TAG_TILE_WIDTH ).getLong( in, 0 );
+        this.tileHeight = (int) fields.get( TAG_TILE_LENGTH ).getLong( in, 0 );
+        this.compression = (int) getLong( fields, TAG_COMPRESSION, in, 1 );
+        this.photometric = (int) getLong( fields, TAG_PHOTOMETRIC, in, -1 );
+        this.samplesPerPixel = (int) getLong( fields, TAG_SAMPLES_PER_PIXEL, in, 1 );
+        this.planarConfiguration = (int) getLong( fields, TAG_PLANAR_CONFIGURATION, in, 1 );
+        this.offsets = fields.get( TAG_TILE_OFFSETS );
+        this.byteCounts = fields.get( TAG_TILE_BYTE_COUNTS );
+        Field tables = fields.get( TAG_JPEG_TABLES );
+        this.jpegTables = tables == null ? null : tables.getBytes( in );
+    }
+
+    /**
+     * Reads the tile layout of an image.
+     * 
+     * @param file
+     *            TIFF/BigTIFF file, must not be <code>null</code>
+     * @param imageIndex
+     *            index of the image file directory
+     * @return the tile layout, or <code>null</code> if the image does not exist or is not tiled
+     * @throws IOException
+     *             if the file is not a TIFF/BigTIFF file or could not be read
+     */
+    static TiffTiles read( File file, int imageIndex )
+                            throws IOException {
+        RandomAccessFile in = new RandomAccessFile( file, "r" );
+        try {
+            ByteBuffer header = read( in, 0, 16, BIG_ENDIAN );
+            ByteOrder order;
+            if ( header.get( 0 ) == 'I' && header.get( 1 ) == 'I' ) {
+                order = LITTLE_ENDIAN;
+            } else if ( header.get( 0 ) == 'M' && header.get( 1 ) == 'M' ) {
+                order = BIG_ENDIAN;
+            } else {
+                throw new IOException( "Not a TIFF file: " + file );
+            }
+            header.order( order );
+            boolean bigTiff;
+            long ifd;
+            switch ( header.getShort( 2 ) ) {
+            case 42:
+                bigTiff = false;
+                ifd = header.getInt( 4 ) & 0xFFFFFFFFL;
+                break;
+            case 43:
+                bigTiff = true;
+                ifd = header.getLong( 8 );
+                break;
+            default:
+                throw new IOException( "Not a TIFF file: " + file );
+            }
+            for ( int i = 0; i < imageIndex && ifd != 0; ++i ) {
+                ifd = nextDirectory( in, ifd, order, bigTiff );
+            }
+            if ( ifd == 0 ) {
+                return null;
+            }
+            Map<Integer, Field> fields = readDirectory( in, ifd, order, bigTiff );
+            if ( !fields.containsKey( TAG_TILE_WIDTH ) || !fields.containsKey( TAG_TILE_LENGTH )
+                 || !fields.containsKey( TAG_TILE_OFFSETS ) || !fields.containsKey( TAG_TILE_BYTE_COUNTS )
+                 || !fields.containsKey( TAG_IMAGE_WIDTH ) ) {
+                return null;
+            }
+            return new TiffTiles( file, fields, in );
+        } finally {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+    int getTileWidth() {
+        return tileWidth;
+    }
+
+    int getTileHeight() {
+        return tileHeight;
+    }
+
+    /**
+     * @return <code>true</code>, if the tiles are self-contained baseline JPEG images once the shared tables are
+     *         merged in (see {@link #readJpegTile(int, int)})
+     */
+    boolean hasJpegTiles() {
+        if ( compression != COMPRESSION_JPEG || planarConfiguration != 1 ) {
+            return false;
+        }
+        // JPEG decoders assume YCbCr for three components, so RGB encoded tiles would change their colors
+        return ( samplesPerPixel == 1 && photometric == PHOTOMETRIC_BLACK_IS_ZERO )
+               || ( samplesPerPixel == 3 && photometric == PHOTOMETRIC_YCBCR );
+    }
+
+    /**
+     * Reads the raw data of a tile.
+     * 
+     * @param x
+     *            tile column
+     * @param y
+     *            tile row
+     * @return the raw tile data, or <code>null</code> if the tile is not present in the file (sparse file)
+     * @throws IOException
+     */
+    byte[] readTile( int x, int y )
+                            throws IOException {
+        int tilesAcross = ( imageWidth + tileWidth - 1 ) / tileWidth;
+        if ( x < 0 || y < 0 || x >= tilesAcross ) {
+            return null;
+        }
+        long index = (long) y * tilesAcross + x;
+        if ( index >= offsets.count ) {
+            return null;
+        }
+        // a new file handle per read keeps this thread safe, the costs are negligible compared to the tile transfer
+        RandomAccessFile in = new RandomAccessFile( file, "r" );
+        try {
+            long offset = offsets.getLong( in, index );
+            long length = byteCounts.getLong( in, index );
+            if ( offset == 0 || length == 0 ) {
+                return null;
+            }
+            if ( length > Integer.MAX_VALUE ) {
+                throw new IOException( "Tile " + x + "/" + y + " is too large." );
+            }
+            byte[] data = new byte[(int) length];
+            in.seek( offset );
+            in.readFully( data );
+            return data;
+        } finally {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+    /**
+     * Reads a JPEG compressed tile as a self-contained JPEG image. Only use if {@link #hasJpegTiles()} is
+     * <code>true</code>.
+     * 
+     * @param x
+     *            tile column
+     * @param y
+     *            tile row
+     * @return the JPEG image, or <code>null</code> if the tile is not present in the file (sparse file)
+     * @throws IOException
+     */
+    byte[] readJpegTile( int x, int y )
+                            throws IOException {
+        byte[] data = readTile( x, y );
+        if ( data == null || jpegTables == null || jpegTables.length < 4 ) {
+            return data;
+        }
+        if ( !isMarker( data, 0, 0xD8 ) || !isMarker( jpegTables, 0, 0xD8 )
+             || !isMarker( jpegTables, jpegTables.length - 2, 0xD9 ) ) {
+            throw new IOException( "Tile " + x + "/" + y + " is not a valid JPEG stream." );
+        }
+        // abbreviated stream: SOI + tables (without their SOI/EOI) + tile data (without its SOI)
+        byte[] jpeg = new byte[jpegTables.length - 2 + data.length - 2];
+        System.arraycopy( jpegTables, 0, jpeg, 0, jpegTables.length - 2 );
+        System.arraycopy( data, 2, jpeg, jpegTables.length - 2, data.length - 2 );
+        return jpeg;
+    }
+
+    private static boolean isMarker( byte[] data, int pos, int marker ) {
+        return data.length >= pos + 2 && ( data[pos] & 0xFF ) == 0xFF && ( data[pos + 1] & 0xFF ) == marker;
+    }
+
+    private static long getLong( Map<Integer, Field> fields, int tag, RandomAccessFile in, long defaultValue )
+                            throws IOException {
+        Field field = fields.get( tag );
+        return field == null ? defaultValue : field.getLong( in, 0 );
+    }
+
+    private static ByteBuffer read( RandomAccessFile in, long pos, int length, ByteOrder order )
+                            throws IOException {
+        byte[] bs = new byte[length];
+        in.seek( pos );
+        in.readFully( bs );
+        return ByteBuffer.wrap( bs ).order( order );
+    }
+
+    private static long nextDirectory( RandomAccessFile in, long ifd, ByteOrder order, boolean bigTiff )
+                            throws IOException {
+        if ( bigTiff ) {
+            long num = read( in, ifd, 8, order ).getLong();
+            return read( in, ifd + 8 + num * 20, 8, order ).getLong();
+        }
+        int num = read( in, ifd, 2, order ).getShort() & 0xFFFF;
+        return read( in, ifd + 2 + num * 12, 4, order ).getInt() & 0xFFFFFFFFL;
+    }
+
+    private static Map<Integer, Field> readDirectory( RandomAccessFile in, long ifd, ByteOrder order, boolean bigTiff )
+                            throws IOException {
+        Map<Integer, Field> fields = new HashMap<Integer, Field>();
+        long num = bigTiff ? read( in, ifd, 8, order ).getLong() : read( in, ifd, 2, order ).getShort() & 0xFFFF;
+        int entrySize = bigTiff ? 20 : 12;
+        int inlineSize = bigTiff ? 8 : 4;
+        ByteBuffer entries = read( in, ifd + ( bigTiff ? 8 : 2 ), (int) ( num * entrySize ), order );
+        for ( int i = 0; i < num; ++i ) {
+            int base = i * entrySize;
+            int tag = entries.getShort( base ) & 0xFFFF;
+            int type = entries.getShort( base + 2 ) & 0xFFFF;
+            long count = bigTiff ? entries.getLong( base + 4 ) : entries.getInt( base + 4 ) & 0xFFFFFFFFL;
+            int valuePos = base + ( bigTiff ? 12 : 8 );
+            int typeSize = getTypeSize( type );
+            if ( typeSize == 0 ) {
+                // unknown type, not needed anyway
+                continue;
+            }
+            long pos;
+            if ( count * typeSize <= inlineSize ) {
+                pos = ifd + ( bigTiff ? 8 : 2 ) + valuePos;
+            } else {
+                pos = bigTiff ? entries.getLong( valuePos ) : entries.getInt( valuePos ) & 0xFFFFFFFFL;
+            }
+            fields.put( tag, new Field( type, typeSize, count, pos, order ) );
+        }
+        return fields;
+    }
+
+    private static int getTypeSize( int type ) {
+        switch ( type ) {
+        case 1: // BYTE
+        case 2: // ASCII
+        case 6: // SBYTE
+        case 7: // UNDEFINED
+            return 1;
+        case 3: // SHORT
+        case 8: // SSHORT
+            return 2;
+        case 4: // LONG
+        case 9: // SLONG
+        case 13: // IFD
+            return 4;
+        case 16: // LONG8
+        case 17: // SLONG8
+        case 18: // IFD8
+            return 8;
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * A field of an image file directory, the values are read on demand.
+     */
+    private static class Field {
+
+        private final int type, typeSize;
+
+        private final long count, pos;
+
+        private final ByteOrder order;
+
+        Field( int type, int typeSize, long count, long pos, ByteOrder order ) {
+            this.type = type;
+            this.typeSize = typeSize;
+            this.count = count;
+            this.pos = pos;
+            this.order = order;
+        }
+
+        long getLong( RandomAccessFile in, long index )
+                                throws IOException {
+            if ( index >= count ) {
+                throw new IOException( "Invalid TIFF field index " + index + "." );
+            }
+            ByteBuffer buf = read( in, pos + index * typeSize, typeSize, order );
+            switch ( type ) {
+            case 3:
+                return buf.getShort() & 0xFFFF;
+            case 8:
+                return buf.getShort();
+            case 4:
+            case 13:
+                return buf.getInt() & 0xFFFFFFFFL;
+            case 9:
+                return buf.getInt();
+            case 16:
+            case 17:
+            case 18:
+                return buf.getLong();
+            default:
+                return buf.get() & 0xFF;
+            }
+        }
+
+        byte[] getBytes( RandomAccessFile in )
+                                throws IOException {
+            if ( count * typeSize > Integer.MAX_VALUE ) {
+                throw new IOException( "TIFF field is too large." );
+            }
+            return read( in, pos, (int) ( count * typeSize ), order ).array();
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link TiffTiles}.
+ * 
+ * @since 3.4
+ */
+public class TiffTilesTest {
+
+    private File file;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        file = File.createTempFile( "tifftiles", ".tif" );
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Writes a 512x256 pixel image (left half red, right half blue) as tiled TIFF.
+     * 
+     * @return false, if no suitable TIFF writer is available
+     */
+    private boolean writeTiff( String compression )
+                            throws IOException {
+        BufferedImage img = new BufferedImage( 512, 256, BufferedImage.TYPE_3BYTE_BGR );
+        Graphics2D g = img.createGraphics();
+        g.setColor( Color.RED );
+        g.fillRect( 0, 0, 256, 256 );
+        g.setColor( Color.BLUE );
+        g.fillRect( 256, 0, 256, 256 );
+        g.dispose();
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName( "tiff" );
+        if ( !writers.hasNext() ) {
+            return false;
+        }
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setTilingMode( ImageWriteParam.MODE_EXPLICIT );
+        param.setTiling( 256, 256, 0, 0 );
+        param.setCompressionMode( ImageWriteParam.MODE_EXPLICIT );
+        param.setCompressionType( compression );
+        file.delete();
+        ImageOutputStream out = ImageIO.createImageOutputStream( file );
+        try {
+            writer.setOutput( out );
+            writer.write( null, new IIOImage( img, null, null ), param );
+        } finally {
+            out.close();
+            writer.dispose();
+        }
+        return true;
+    }
+
+    @Test
+    public void testJpegTiles()
+                            throws IOException {
+        assumeTrue( writeTiff( "JPEG" ) );
+        TiffTiles tiles = TiffTiles.read( file, 0 );
+        assertNotNull( tiles );
+        assertEquals( 256, tiles.getTileWidth() );
+        assertEquals( 256, tiles.getTileHeight() );
+        assumeTrue( tiles.hasJpegTiles() );
+
+        BufferedImage left = ImageIO.read( new ByteArrayInputStream( tiles.readJpegTile( 0, 0 ) ) );
+        BufferedImage right = ImageIO.read( new ByteArrayInputStream( tiles.readJpegTile( 1, 0 ) ) );
+        assertEquals( 256, left.getWidth() );
+        assertEquals( 256, left.getHeight() );
+        assertTrue( new Color( left.getRGB( 128, 128 ) ).getRed() > 200 );
+        assertTrue( new Color( left.getRGB( 128, 128 ) ).getBlue() < 50 );
+        assertTrue( new Color( right.getRGB( 128, 128 ) ).getBlue() > 200 );
+        assertTrue( new Color( right.getRGB( 128, 128 ) ).getRed() < 50 );
+    }
+
+    @Test
+    public void testTilesOutsideImage()
+                            throws IOException {
+        assumeTrue( writeTiff( "JPEG" ) );
+        TiffTiles tiles = TiffTiles.read( file, 0 );
+        assertNull( tiles.readTile( 2, 0 ) );
+        assertNull( tiles.readTile( 0, 1 ) );
+        assertNull( TiffTiles.read( file, 1 ) );
+    }
+
+    @Test
+    public void testUncompressedTilesAreNotJpeg()
+                            throws IOException {
+        assumeTrue( writeTiff( "Deflate" ) );
+        TiffTiles tiles = TiffTiles.read( file, 0 );
+        assertNotNull( tiles );
+        assertTrue( !tiles.hasJpegTiles() );
+        assertNotNull( tiles.readTile( 1, 0 ) );
+    }
+
+}
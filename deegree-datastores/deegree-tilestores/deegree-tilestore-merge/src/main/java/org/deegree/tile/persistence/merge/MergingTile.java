@@ -51,6 +51,7 @@ import javax.imageio.ImageIO;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileFetcher;
 import org.deegree.tile.TileIOException;
 
 /**
@@ -65,20 +66,21 @@ class MergingTile implements Tile {
 
     private final List<Tile> tiles;
 
-    MergingTile( final List<Tile> tiles ) {
+    private final TileFetcher fetcher;
+
+    MergingTile( final List<Tile> tiles, final TileFetcher fetcher ) {
         this.tiles = tiles;
+        this.fetcher = fetcher;
     }
 
     @Override
     public BufferedImage getAsImage()
                             throws TileIOException {
-        Iterator<Tile> itr = tiles.iterator();
-        Tile firstTile = itr.next();
-        BufferedImage img = firstTile.getAsImage();
+        Iterator<BufferedImage> itr = fetcher.fetchImages( tiles ).iterator();
+        BufferedImage img = itr.next();
         Graphics g = img.getGraphics();
         while ( itr.hasNext() ) {
-            Tile nextTile = itr.next();
-            BufferedImage nextImage = nextTile.getAsImage();
+            BufferedImage nextImage = itr.next();
             if ( nextImage.getColorModel().hasAlpha() ) {
                 g.drawImage( nextImage, 0, 0, null );
             } else {
@@ -32,6 +32,7 @@ import java.util.List;
 
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileFetcher;
 import org.deegree.tile.TileMatrix;
 
 /**
@@ -48,8 +49,11 @@ class MergingTileDataLevel implements TileDataLevel {
 
     private final List<TileDataLevel> mergeLevels = new ArrayList<TileDataLevel>();
 
-    MergingTileDataLevel( TileMatrix tileMatrix ) {
+    private final TileFetcher fetcher;
+
+    MergingTileDataLevel( TileMatrix tileMatrix, TileFetcher fetcher ) {
         this.tileMatrix = tileMatrix;
+        this.fetcher = fetcher;
     }
 
     void addMergeLevel( TileDataLevel mergeLevel ) {
@@ -80,6 +84,6 @@ class MergingTileDataLevel implements TileDataLevel {
         if ( tiles.size() == 1 ) {
             return tiles.get( 0 );
         }
-        return new MergingTile( tiles );
+        return new MergingTile( tiles, fetcher );
     }
 }
@@ -42,6 +42,7 @@ import org.deegree.tile.DefaultTileDataSet;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileFetcher;
 import org.deegree.tile.TileMatrixSet;
 import org.deegree.tile.persistence.TileStore;
 import org.deegree.tile.persistence.TileStoreTransaction;
@@ -71,9 +72,12 @@ class MergingTileStore implements TileStore {
 
     private final Map<String, TileDataSet> datasetIdToDataset = new TreeMap<String, TileDataSet>();
 
+    private final TileFetcher fetcher;
+
     MergingTileStore( ResourceMetadata<TileStore> metadata, TileMatrixSet tileMatrixSet, List<TileStore> tileStores ) {
         this.metadata = metadata;
         this.tileMatrixSet = tileMatrixSet;
+        this.fetcher = TileFetcher.acquire();
         for ( TileStore tileStore : tileStores ) {
             for ( String datasetId : tileStore.getTileDataSetIds() ) {
                 Map<String, MergingTileDataLevel> levelIdToLevel = datasetIdToLevelIdToLevel.get( datasetId );
@@ -93,7 +97,7 @@ class MergingTileStore implements TileStore {
             String levelId = level.getMetadata().getIdentifier();
             MergingTileDataLevel mergingLevel = levelIdToLevel.get( levelId );
             if ( mergingLevel == null ) {
-                mergingLevel = new MergingTileDataLevel( level.getMetadata() );
+                mergingLevel = new MergingTileDataLevel( level.getMetadata(), fetcher );
                 levelIdToLevel.put( levelId, mergingLevel );
             }
             mergingLevel.addMergeLevel( level );
@@ -125,7 +129,7 @@ class MergingTileStore implements TileStore {
 
     @Override
     public void destroy() {
-
+        TileFetcher.release( fetcher );
     }
 
     @Override
@@ -0,0 +1,176 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.remotewms;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.protocol.wms.client.WMSClient;
+import org.deegree.protocol.wms.ops.GetMap;
+
+/**
+ * A block of adjacent tiles (plus an optional gutter) that is requested from the remote WMS with a single
+ * {@link GetMap} request and sliced into the individual tiles afterwards.
+ * 
+ * @since 3.4
+ */
+class MetaTile {
+
+    private final String key;
+
+    private final GetMap gm;
+
+    private final long minX, minY;
+
+    private final int columns, rows;
+
+    private final int tilePixelsX, tilePixelsY;
+
+    private final int gutter;
+
+    private final String outputFormat;
+
+    /**
+     * @param key
+     *            identifies the meta tile (including request parameters), never <code>null</code>
+     * @param gm
+     *            request for the whole block including the gutter, never <code>null</code>
+     * @param minX
+     *            column index of the upper left tile
+     * @param minY
+     *            row index of the upper left tile
+     * @param columns
+     *            number of tile columns in the block
+     * @param rows
+     *            number of tile rows in the block
+     * @param tilePixelsX
+     *            width of a single tile in pixels
+     * @param tilePixelsY
+     *            height of a single tile in pixels
+     * @param gutter
+     *            number of pixels requested around the block that are cut off
+     * @param outputFormat
+     *            ImageIO format name to encode the single tiles with, never <code>null</code>
+     */
+    MetaTile( String key, GetMap gm, long minX, long minY, int columns, int rows, int tilePixelsX, int tilePixelsY,
+              int gutter, String outputFormat ) {
+        this.key = key;
+        this.gm = gm;
+        this.minX = minX;
+        this.minY = minY;
+        this.columns = columns;
+        this.rows = rows;
+        this.tilePixelsX = tilePixelsX;
+        this.tilePixelsY = tilePixelsY;
+        this.gutter = gutter;
+        this.outputFormat = outputFormat;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    long getMinX() {
+        return minX;
+    }
+
+    long getMinY() {
+        return minY;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the index of the given tile in the result of {@link #fetch(WMSClient)}, or -1 if the tile is not part
+     *         of this meta tile
+     */
+    int indexOf( long x, long y ) {
+        if ( x < minX || y < minY || x >= minX + columns || y >= minY + rows ) {
+            return -1;
+        }
+        return (int) ( ( y - minY ) * columns + ( x - minX ) );
+    }
+
+    /**
+     * Requests the block and slices it into the encoded single tiles.
+     * 
+     * @param client
+     *            client to perform the request with, never <code>null</code>
+     * @return the encoded tiles in row major order, never <code>null</code>
+     * @throws IOException
+     * @throws OWSException
+     */
+    byte[][] fetch( WMSClient client )
+                            throws IOException, OWSException {
+        InputStream in = client.getMap( gm );
+        if ( in == null ) {
+            throw new IOException( "A meta tile could not be fetched from remote WMS for an unknown reason." );
+        }
+        BufferedImage img;
+        try {
+            img = ImageIO.read( in );
+        } finally {
+            IOUtils.closeQuietly( in );
+        }
+        if ( img == null ) {
+            throw new IOException( "The remote WMS response for meta tile " + key + " could not be decoded." );
+        }
+        int expectedWidth = columns * tilePixelsX + 2 * gutter;
+        int expectedHeight = rows * tilePixelsY + 2 * gutter;
+        if ( img.getWidth() != expectedWidth || img.getHeight() != expectedHeight ) {
+            throw new IOException( "The remote WMS returned a meta tile of " + img.getWidth() + "x" + img.getHeight()
+                                   + " pixels, expected " + expectedWidth + "x" + expectedHeight + "." );
+        }
+        byte[][] tiles = new byte[columns * rows][];
+        for ( int row = 0; row < rows; ++row ) {
+            for ( int col = 0; col < columns; ++col ) {
+                BufferedImage tile = img.getSubimage( gutter + col * tilePixelsX, gutter + row * tilePixelsY,
+                                                      tilePixelsX, tilePixelsY );
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                if ( !ImageIO.write( tile, outputFormat, out ) ) {
+                    throw new IOException( "No image writer available for format " + outputFormat + "." );
+                }
+                tiles[row * columns + col] = out.toByteArray();
+            }
+        }
+        return tiles;
+    }
+
+}
@@ -0,0 +1,277 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.remotewms;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.protocol.wms.client.WMSClient;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataListener;
+import org.deegree.tile.TileIOException;
+import org.slf4j.Logger;
+
+/**
+ * Fetches {@link MetaTile}s for a single data level, making sure that concurrent requests for tiles of the same meta
+ * tile result in a single remote request only. The sibling tiles of each fetched meta tile are handed to the registered
+ * {@link TileDataListener}s.
+ * <p>
+ * If no listeners are registered (i.e. the tile store is not wrapped by a caching tile store), fetched meta tiles are
+ * retained for a short time, until all of their tiles have been requested, or until they are evicted by newer meta
+ * tiles. This way, the sibling tiles of a meta tile don't require fetching the whole meta tile again.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class MetaTiler {
+
+    private static final Logger LOG = getLogger( MetaTiler.class );
+
+    // maximum number of fetched meta tiles retained if no listeners are registered
+    static final int MAX_RETAINED = 32;
+
+    // maximum time fetched meta tiles are retained (in milliseconds)
+    static final long RETAIN_MILLIS = 60000;
+
+    private final int columns, rows, gutter;
+
+    private final ConcurrentMap<String, FutureTask<byte[][]>> fetches = new ConcurrentHashMap<String, FutureTask<byte[][]>>();
+
+    private final List<TileDataListener> listeners = new CopyOnWriteArrayList<TileDataListener>();
+
+    // guarded by itself
+    private final Map<String, RetainedMetaTile> retained = new LinkedHashMap<String, RetainedMetaTile>() {
+
+        private static final long serialVersionUID = -3504373811391869473L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, RetainedMetaTile> eldest ) {
+            return size() > MAX_RETAINED;
+        }
+    };
+
+    /**
+     * @param columns
+     *            number of tile columns per meta tile, must be positive
+     * @param rows
+     *            number of tile rows per meta tile, must be positive
+     * @param gutter
+     *            number of additional pixels to request around each meta tile, must not be negative
+     */
+    MetaTiler( int columns, int rows, int gutter ) {
+        this.columns = columns;
+        this.rows = rows;
+        this.gutter = gutter;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getGutter() {
+        return gutter;
+    }
+
+    void addListener( TileDataListener listener ) {
+        listeners.add( listener );
+    }
+
+    void removeListener( TileDataListener listener ) {
+        listeners.remove( listener );
+    }
+
+    /**
+     * Returns the encoded data of a single tile, fetching the meta tile if it has not been retained and no fetch for it
+     * is in progress.
+     * 
+     * @param level
+     *            the level the meta tile belongs to, passed to the listeners, never <code>null</code>
+     * @param client
+     *            client to use for fetching, never <code>null</code>
+     * @param metaTile
+     *            the meta tile containing the tile, never <code>null</code>
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @return the encoded tile, never <code>null</code>
+     * @throws IOException
+     * @throws OWSException
+     */
+    byte[] getTileData( TileDataLevel level, WMSClient client, MetaTile metaTile, long x, long y )
+                            throws IOException, OWSException {
+        String key = metaTile.getKey();
+        int index = metaTile.indexOf( x, y );
+        byte[] data = takeRetained( key, index );
+        if ( data != null ) {
+            return data;
+        }
+        FutureTask<byte[][]> fetch = fetches.get( key );
+        if ( fetch == null ) {
+            FutureTask<byte[][]> newFetch = new FutureTask<byte[][]>( new Fetch( level, client, metaTile ) );
+            fetch = fetches.putIfAbsent( key, newFetch );
+            if ( fetch == null ) {
+                fetch = newFetch;
+                try {
+                    newFetch.run();
+                } finally {
+                    fetches.remove( key, newFetch );
+                }
+            }
+        }
+        byte[][] tiles = await( fetch );
+        takeRetained( key, index );
+        return tiles[index];
+    }
+
+    private void retain( String key, byte[][] tiles ) {
+        synchronized ( retained ) {
+            retained.put( key, new RetainedMetaTile( tiles, System.currentTimeMillis() + RETAIN_MILLIS ) );
+        }
+    }
+
+    /**
+     * Returns a tile of a retained meta tile and marks it as taken. The meta tile is dropped when all of its tiles have
+     * been taken or it has expired.
+     */
+    private byte[] takeRetained( String key, int index ) {
+        synchronized ( retained ) {
+            RetainedMetaTile metaTile = retained.get( key );
+            if ( metaTile == null ) {
+                return null;
+            }
+            if ( metaTile.expires < System.currentTimeMillis() ) {
+                retained.remove( key );
+                return null;
+            }
+            metaTile.taken.set( index );
+            if ( metaTile.taken.cardinality() == metaTile.tiles.length ) {
+                retained.remove( key );
+            }
+            return metaTile.tiles[index];
+        }
+    }
+
+    int getNumberOfRetainedMetaTiles() {
+        synchronized ( retained ) {
+            return retained.size();
+        }
+    }
+
+    private static byte[][] await( FutureTask<byte[][]> fetch )
+                            throws IOException, OWSException {
+        try {
+            return fetch.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new TileIOException( "Interrupted while waiting for meta tile.", e );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof OWSException ) {
+                throw (OWSException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            throw new TileIOException( cause.getMessage(), cause );
+        }
+    }
+
+    private class Fetch implements Callable<byte[][]> {
+
+        private final TileDataLevel level;
+
+        private final WMSClient client;
+
+        private final MetaTile metaTile;
+
+        Fetch( TileDataLevel level, WMSClient client, MetaTile metaTile ) {
+            this.level = level;
+            this.client = client;
+            this.metaTile = metaTile;
+        }
+
+        @Override
+        public byte[][] call()
+                                throws IOException, OWSException {
+            byte[][] tiles = metaTile.fetch( client );
+            if ( listeners.isEmpty() ) {
+                // retained before the fetch completes, so all threads waiting for it can mark their tile as taken
+                retain( metaTile.getKey(), tiles );
+            }
+            for ( TileDataListener listener : listeners ) {
+                for ( int i = 0; i < tiles.length; ++i ) {
+                    long x = metaTile.getMinX() + i % metaTile.getColumns();
+                    long y = metaTile.getMinY() + i / metaTile.getColumns();
+                    try {
+                        listener.tileProduced( level, x, y, tiles[i] );
+                    } catch ( Exception e ) {
+                        LOG.warn( "Tile data listener failed: {}", e.getLocalizedMessage() );
+                        LOG.trace( "Stack trace:", e );
+                    }
+                }
+            }
+            return tiles;
+        }
+    }
+
+    private static class RetainedMetaTile {
+
+        private final byte[][] tiles;
+
+        private final long expires;
+
+        private final BitSet taken;
+
+        RetainedMetaTile( byte[][] tiles, long expires ) {
+            this.tiles = tiles;
+            this.expires = expires;
+            this.taken = new BitSet( tiles.length );
+        }
+    }
+
+}
@@ -66,6 +66,7 @@ import org.deegree.protocol.wms.client.WMSClient;
 import org.deegree.protocol.wms.ops.GetFeatureInfo;
 import org.deegree.protocol.wms.ops.GetMap;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileIOException;
 
 /**
@@ -88,6 +89,14 @@ class RemoteWMSTile implements Tile {
 
     private Map<String, String> hardGetFeatureInfo;
 
+    private final TileDataLevel level;
+
+    private final MetaTiler metaTiler;
+
+    private final MetaTile metaTile;
+
+    private final long x, y;
+
     /**
      * Creates a new {@link RemoteWMSTile} instance.
      * 
@@ -101,14 +110,31 @@ class RemoteWMSTile implements Tile {
      *            default parameters for remote GFI requests
      * @param hardGetFeatureInfo
      *            replace parameters for remote GFI requests
+     * @param level
+     *            the level this tile belongs to, never <code>null</code>
+     * @param metaTiler
+     *            if not null, the tile image is obtained from the meta tile instead of requesting it directly
+     * @param metaTile
+     *            the meta tile containing this tile, must not be <code>null</code> if metaTiler is not
+     *            <code>null</code>
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
      */
     RemoteWMSTile( WMSClient client, GetMap gm, String outputFormat, Map<String, String> defaultGetFeatureInfo,
-                   Map<String, String> hardGetFeatureInfo ) {
+                   Map<String, String> hardGetFeatureInfo, TileDataLevel level, MetaTiler metaTiler,
+                   MetaTile metaTile, long x, long y ) {
         this.client = client;
         this.gm = gm;
         this.outputFormat = outputFormat;
         this.defaultGetFeatureInfo = defaultGetFeatureInfo;
         this.hardGetFeatureInfo = hardGetFeatureInfo;
+        this.level = level;
+        this.metaTiler = metaTiler;
+        this.metaTile = metaTile;
+        this.x = x;
+        this.y = y;
     }
 
     @Override
@@ -128,6 +154,10 @@ class RemoteWMSTile implements Tile {
     public InputStream getAsStream()
                             throws TileIOException {
         try {
+            if ( metaTiler != null ) {
+                return new ByteArrayInputStream( metaTiler.getTileData( level, client, metaTile, x, y ) );
+            }
+
             InputStream map = client.getMap( gm );
 
             if ( map == null ) {
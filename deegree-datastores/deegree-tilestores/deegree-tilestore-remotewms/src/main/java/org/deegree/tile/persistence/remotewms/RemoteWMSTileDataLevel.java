@@ -35,9 +35,12 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.remotewms;
 
+import static java.lang.Math.min;
+
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.deegree.commons.utils.RequestUtils;
 import org.deegree.cs.coordinatesystems.ICRS;
@@ -47,8 +50,9 @@ import org.deegree.geometry.GeometryFactory;
 import org.deegree.protocol.wms.Utils;
 import org.deegree.protocol.wms.client.WMSClient;
 import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.tile.ObservableTileDataLevel;
 import org.deegree.tile.Tile;
-import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataListener;
 import org.deegree.tile.TileMatrix;
 
 /**
@@ -59,7 +63,7 @@ import org.deegree.tile.TileMatrix;
  * 
  * @version $Revision$, $Date$
  */
-class RemoteWMSTileDataLevel implements TileDataLevel {
+class RemoteWMSTileDataLevel implements ObservableTileDataLevel {
 
     private static final GeometryFactory fac = new GeometryFactory();
 
@@ -87,6 +91,8 @@ class RemoteWMSTileDataLevel implements TileDataLevel {
 
     private Map<String, String> hardGetFeatureInfo;
 
+    private final MetaTiler metaTiler;
+
     /**
      * Creates a new {@link RemoteWMSTileDataLevel} instance.
      * 
@@ -108,11 +114,14 @@ class RemoteWMSTileDataLevel implements TileDataLevel {
      * @param hardGetMap
      * @param defaultGetFeatureInfo
      * @param defaultGetMap
+     * @param metaTiler
+     *            if not null, tiles will be requested in blocks as configured by the meta tiler
      */
     RemoteWMSTileDataLevel( TileMatrix tileMd, String format, List<String> layers, List<String> styles,
                             WMSClient client, String recodedOutputFormat, String crs,
                             Map<String, String> defaultGetMap, Map<String, String> defaultGetFeatureInfo,
-                            Map<String, String> hardGetMap, Map<String, String> hardGetFeatureInfo ) {
+                            Map<String, String> hardGetMap, Map<String, String> hardGetFeatureInfo,
+                            MetaTiler metaTiler ) {
         this.metadata = tileMd;
         this.format = format;
         this.layers = layers;
@@ -125,6 +134,7 @@ class RemoteWMSTileDataLevel implements TileDataLevel {
         this.tileSizeX = tileMd.getTilePixelsX();
         this.tileSizeY = tileMd.getTilePixelsY();
         this.client = client;
+        this.metaTiler = metaTiler;
         if ( crs != null ) {
             this.crs = CRSManager.getCRSRef( crs );
         }
@@ -155,6 +165,51 @@ class RemoteWMSTileDataLevel implements TileDataLevel {
                                         defaultGetMap, hardGetMap );
         GetMap gm = new GetMap( layers, styles, (int) tileSizeX, (int) tileSizeY, envelope, crs, format, true,
                                 overriddenParameters );
-        return new RemoteWMSTile( client, gm, recodedOutputFormat, defaultGetFeatureInfo, hardGetFeatureInfo );
+        MetaTile metaTile = null;
+        if ( metaTiler != null ) {
+            metaTile = createMetaTile( x, y, crs, overriddenParameters );
+        }
+        return new RemoteWMSTile( client, gm, recodedOutputFormat, defaultGetFeatureInfo, hardGetFeatureInfo, this,
+                                  metaTiler, metaTile, x, y );
+    }
+
+    private MetaTile createMetaTile( long x, long y, ICRS crs, Map<String, String> overriddenParameters ) {
+        long minX = x - x % metaTiler.getColumns();
+        long minY = y - y % metaTiler.getRows();
+        int columns = (int) min( metaTiler.getColumns(), metadata.getNumTilesX() - minX );
+        int rows = (int) min( metaTiler.getRows(), metadata.getNumTilesY() - minY );
+        int gutter = metaTiler.getGutter();
+
+        double width = metadata.getTileWidth();
+        double height = metadata.getTileHeight();
+        double gutterX = gutter * width / tileSizeX;
+        double gutterY = gutter * height / tileSizeY;
+        Envelope env = metadata.getSpatialMetadata().getEnvelope();
+        double minx = width * minX + env.getMin().get0() - gutterX;
+        double maxy = env.getMax().get1() - height * minY + gutterY;
+        double maxx = minx + width * columns + 2 * gutterX;
+        double miny = maxy - height * rows - 2 * gutterY;
+        Envelope envelope = fac.createEnvelope( minx, miny, maxx, maxy, env.getCoordinateSystem() );
+
+        int pixelsX = (int) tileSizeX * columns + 2 * gutter;
+        int pixelsY = (int) tileSizeY * rows + 2 * gutter;
+        GetMap gm = new GetMap( layers, styles, pixelsX, pixelsY, envelope, crs, format, true, overriddenParameters );
+        String key = minX + "_" + minY + "_" + new TreeMap<String, String>( overriddenParameters );
+        return new MetaTile( key, gm, minX, minY, columns, rows, (int) tileSizeX, (int) tileSizeY, gutter,
+                             recodedOutputFormat );
+    }
+
+    @Override
+    public void addTileDataListener( TileDataListener listener ) {
+        if ( metaTiler != null ) {
+            metaTiler.addListener( listener );
+        }
+    }
+
+    @Override
+    public void removeTileDataListener( TileDataListener listener ) {
+        if ( metaTiler != null ) {
+            metaTiler.removeListener( listener );
+        }
     }
 }
@@ -61,6 +61,7 @@ import org.deegree.tile.TileMatrixSet;
 import org.deegree.tile.persistence.remotewms.jaxb.ParameterScopeType;
 import org.deegree.tile.persistence.remotewms.jaxb.ParameterUseType;
 import org.deegree.tile.persistence.remotewms.jaxb.RemoteWMSTileStoreJAXB;
+import org.deegree.tile.persistence.remotewms.jaxb.RemoteWMSTileStoreJAXB.TileDataSet.MetaTiling;
 import org.deegree.tile.persistence.remotewms.jaxb.RemoteWMSTileStoreJAXB.TileDataSet.RequestParams;
 import org.deegree.tile.persistence.remotewms.jaxb.RemoteWMSTileStoreJAXB.TileDataSet.RequestParams.Parameter;
 import org.deegree.tile.tilematrixset.TileMatrixSetProvider;
@@ -100,13 +101,13 @@ class TileDataSetBuilder {
             }
 
             RequestParams params = cfg.getRequestParams();
-            map.put( id, buildTileDataSet( params, tms, wms.getClient(), cfg.getOutputFormat() ) );
+            map.put( id, buildTileDataSet( params, tms, wms.getClient(), cfg.getOutputFormat(), cfg.getMetaTiling() ) );
         }
         return map;
     }
 
     private DefaultTileDataSet buildTileDataSet( RequestParams requestParams, TileMatrixSet tms, WMSClient client,
-                                                 String outputFormat )
+                                                 String outputFormat, MetaTiling metaTiling )
                             throws ResourceInitException {
         List<String> layers = splitNullSafe( requestParams.getLayers() );
 
@@ -126,18 +127,38 @@ class TileDataSetBuilder {
         extractParameters( requestParams.getParameter(), defaultGetMap, defaultGetFeatureInfo, hardGetMap,
                            hardGetFeatureInfo );
 
+        String mimeType;
         if ( outputFormat.startsWith( "image/" ) ) {
+            mimeType = outputFormat;
             outputFormat = outputFormat.substring( 6 );
+        } else if ( outputFormat.indexOf( '/' ) == -1 ) {
+            mimeType = "image/" + outputFormat;
+        } else {
+            // non image formats (such as vector tiles) are passed through as returned by the WMS
+            if ( !outputFormat.equals( format ) ) {
+                throw new ResourceInitException( "The output format " + outputFormat
+                                                 + " is not an image format and must match the requested format." );
+            }
+            if ( metaTiling != null ) {
+                throw new ResourceInitException( "Meta tiling is only supported for image formats." );
+            }
+            mimeType = outputFormat;
+            outputFormat = null;
         }
 
         List<TileDataLevel> dataLevels = new ArrayList<TileDataLevel>();
         for ( TileMatrix tm : tms.getTileMatrices() ) {
+            MetaTiler metaTiler = null;
+            if ( metaTiling != null ) {
+                metaTiler = new MetaTiler( metaTiling.getColumns().intValue(), metaTiling.getRows().intValue(),
+                                           metaTiling.getGutter().intValue() );
+            }
             TileDataLevel m = new RemoteWMSTileDataLevel( tm, format, layers, styles, client, outputFormat, crs,
                                                           defaultGetMap, defaultGetFeatureInfo, hardGetMap,
-                                                          hardGetFeatureInfo );
+                                                          hardGetFeatureInfo, metaTiler );
             dataLevels.add( 0, m );
         }
-        return new DefaultTileDataSet( dataLevels, tms, "image/" + outputFormat );
+        return new DefaultTileDataSet( dataLevels, tms, mimeType );
     }
 
     private static List<String> splitNullSafe( String csv ) {
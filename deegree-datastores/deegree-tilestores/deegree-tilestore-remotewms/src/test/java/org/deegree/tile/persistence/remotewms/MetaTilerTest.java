@@ -0,0 +1,171 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.remotewms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.protocol.wms.client.WMSClient;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataListener;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link MetaTiler} and {@link MetaTile}.
+ * 
+ * @since 3.4
+ */
+public class MetaTilerTest {
+
+    private static final Color[] COLORS = { Color.RED, Color.GREEN, Color.BLUE, Color.YELLOW };
+
+    private static byte[] createMetaTileImage( int gutter )
+                            throws IOException {
+        BufferedImage img = new BufferedImage( 20 + 2 * gutter, 20 + 2 * gutter, BufferedImage.TYPE_INT_RGB );
+        Graphics2D g = img.createGraphics();
+        g.setColor( Color.BLACK );
+        g.fillRect( 0, 0, img.getWidth(), img.getHeight() );
+        for ( int i = 0; i < 4; ++i ) {
+            g.setColor( COLORS[i] );
+            g.fillRect( gutter + ( i % 2 ) * 10, gutter + ( i / 2 ) * 10, 10, 10 );
+        }
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write( img, "png", out );
+        return out.toByteArray();
+    }
+
+    private static WMSClient mockClient( byte[] image )
+                            throws Exception {
+        WMSClient client = mock( WMSClient.class );
+        when( client.getMap( any( GetMap.class ) ) ).thenReturn( new ByteArrayInputStream( image ) );
+        return client;
+    }
+
+    @Test
+    public void testIndexOf() {
+        MetaTile metaTile = new MetaTile( "key", null, 4, 8, 4, 2, 256, 256, 0, "png" );
+        assertEquals( 0, metaTile.indexOf( 4, 8 ) );
+        assertEquals( 3, metaTile.indexOf( 7, 8 ) );
+        assertEquals( 5, metaTile.indexOf( 5, 9 ) );
+        assertEquals( -1, metaTile.indexOf( 8, 8 ) );
+        assertEquals( -1, metaTile.indexOf( 4, 10 ) );
+        assertEquals( -1, metaTile.indexOf( 3, 8 ) );
+    }
+
+    @Test
+    public void testSlicingCutsOffGutter()
+                            throws Exception {
+        WMSClient client = mockClient( createMetaTileImage( 5 ) );
+        MetaTile metaTile = new MetaTile( "key", null, 0, 0, 2, 2, 10, 10, 5, "png" );
+        byte[][] tiles = metaTile.fetch( client );
+        assertEquals( 4, tiles.length );
+        for ( int i = 0; i < 4; ++i ) {
+            BufferedImage tile = ImageIO.read( new ByteArrayInputStream( tiles[i] ) );
+            assertEquals( 10, tile.getWidth() );
+            assertEquals( 10, tile.getHeight() );
+            assertEquals( COLORS[i].getRGB(), tile.getRGB( 0, 0 ) );
+            assertEquals( COLORS[i].getRGB(), tile.getRGB( 9, 9 ) );
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnexpectedSize()
+                            throws Exception {
+        WMSClient client = mockClient( createMetaTileImage( 5 ) );
+        new MetaTile( "key", null, 0, 0, 2, 2, 10, 10, 0, "png" ).fetch( client );
+    }
+
+    @Test
+    public void testListenersReceiveAllTiles()
+                            throws Exception {
+        WMSClient client = mockClient( createMetaTileImage( 0 ) );
+        MetaTiler metaTiler = new MetaTiler( 2, 2, 0 );
+        final List<long[]> produced = new ArrayList<long[]>();
+        metaTiler.addListener( new TileDataListener() {
+            @Override
+            public void tileProduced( TileDataLevel level, long x, long y, byte[] data ) {
+                produced.add( new long[] { x, y } );
+            }
+        } );
+        MetaTile metaTile = new MetaTile( "key", null, 2, 4, 2, 2, 10, 10, 0, "png" );
+        byte[] data = metaTiler.getTileData( null, client, metaTile, 3, 5 );
+        BufferedImage tile = ImageIO.read( new ByteArrayInputStream( data ) );
+        assertEquals( COLORS[3].getRGB(), tile.getRGB( 5, 5 ) );
+        verify( client, times( 1 ) ).getMap( any( GetMap.class ) );
+        assertEquals( 4, produced.size() );
+        assertArrayEquals( new long[] { 2, 4 }, produced.get( 0 ) );
+        assertArrayEquals( new long[] { 3, 4 }, produced.get( 1 ) );
+        assertArrayEquals( new long[] { 2, 5 }, produced.get( 2 ) );
+        assertArrayEquals( new long[] { 3, 5 }, produced.get( 3 ) );
+    }
+
+    @Test
+    public void testMetaTileIsRetainedWithoutListeners()
+                            throws Exception {
+        WMSClient client = mockClient( createMetaTileImage( 0 ) );
+        MetaTiler metaTiler = new MetaTiler( 2, 2, 0 );
+        MetaTile metaTile = new MetaTile( "key", null, 2, 4, 2, 2, 10, 10, 0, "png" );
+        for ( int i = 0; i < 4; ++i ) {
+            byte[] data = metaTiler.getTileData( null, client, metaTile, 2 + i % 2, 4 + i / 2 );
+            BufferedImage tile = ImageIO.read( new ByteArrayInputStream( data ) );
+            assertEquals( COLORS[i].getRGB(), tile.getRGB( 5, 5 ) );
+            assertEquals( i < 3 ? 1 : 0, metaTiler.getNumberOfRetainedMetaTiles() );
+        }
+        verify( client, times( 1 ) ).getMap( any( GetMap.class ) );
+    }
+
+    @Test
+    public void testMetaTileIsNotRetainedWithListeners()
+                            throws Exception {
+        WMSClient client = mockClient( createMetaTileImage( 0 ) );
+        MetaTiler metaTiler = new MetaTiler( 2, 2, 0 );
+        metaTiler.addListener( mock( TileDataListener.class ) );
+        MetaTile metaTile = new MetaTile( "key", null, 2, 4, 2, 2, 10, 10, 0, "png" );
+        metaTiler.getTileData( null, client, metaTile, 2, 4 );
+        assertEquals( 0, metaTiler.getNumberOfRetainedMetaTiles() );
+    }
+
+}
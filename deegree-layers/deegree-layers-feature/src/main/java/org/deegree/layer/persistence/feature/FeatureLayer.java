@@ -64,6 +64,7 @@ import org.deegree.geometry.Envelope;
 import org.deegree.layer.AbstractLayer;
 import org.deegree.layer.LayerQuery;
 import org.deegree.layer.metadata.LayerMetadata;
+import org.deegree.rendering.r2d.mvt.MvtEncoder;
 import org.deegree.style.StyleRef;
 import org.deegree.style.se.unevaluated.Style;
 import org.deegree.style.utils.Styles;
@@ -137,8 +138,11 @@ public class FeatureLayer extends AbstractLayer {
 
         filter = Filters.repair( filter, AppSchemas.collectProperyNames( featureStore.getSchema(), ftName ) );
 
+        // vector tiles contain all properties, not just the ones used by the style
+        boolean vectorTile = query.getParameters() != null
+                             && MvtEncoder.isMvtFormat( query.getParameters().get( "FORMAT" ) );
         QueryBuilder builder = new QueryBuilder( featureStore, filter, ftName, bbox, query, geomProp, sortBy,
-                                                 getMetadata().getName() );
+                                                 getMetadata().getName(), vectorTile ? null : style );
         List<Query> queries = builder.buildMapQueries();
 
         if ( queries.isEmpty() ) {
@@ -185,4 +189,11 @@ public class FeatureLayer extends AbstractLayer {
         return new FeatureLayerData( queries, featureStore, query.getFeatureCount(), style, featureType );
     }
 
+    /**
+     * @return the feature store the features of this layer are fetched from, never <code>null</code>
+     */
+    public FeatureStore getFeatureStore() {
+        return featureStore;
+    }
+
 }
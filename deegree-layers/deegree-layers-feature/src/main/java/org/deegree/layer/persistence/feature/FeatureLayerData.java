@@ -38,6 +38,7 @@ package org.deegree.layer.persistence.feature;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -57,6 +58,7 @@ import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.layer.LayerData;
 import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.mvt.MvtEncoder;
 import org.deegree.style.se.unevaluated.Style;
 import org.slf4j.Logger;
 
@@ -119,13 +121,57 @@ public class FeatureLayerData implements LayerData {
         }
     }
 
-    private static FeatureCollection clearDuplicates( FeatureInputStream rs ) {
+    /**
+     * Adds the features to a vector tile instead of rendering them. The style is not applied, but the maximum number
+     * of features is respected.
+     * 
+     * @param encoder
+     *            the vector tile to add the features to, must not be <code>null</code>
+     * @param layer
+     *            the name of the layer in the vector tile, must not be <code>null</code>
+     * @throws InterruptedException
+     */
+    public void encode( MvtEncoder encoder, String layer )
+                            throws InterruptedException {
+        FeatureInputStream features = null;
+        try {
+            features = featureStore.query( queries.toArray( new Query[queries.size()] ) );
+            int num = 0;
+            for ( Feature f : features ) {
+                if ( Thread.interrupted() ) {
+                    throw new InterruptedException();
+                }
+                if ( encoder.addFeature( layer, f ) && maxFeatures > 0 && ++num >= maxFeatures ) {
+                    LOG.debug( "Reached max features of {} for layer '{}', stopping.", maxFeatures, layer );
+                    break;
+                }
+            }
+        } catch ( InterruptedException e ) {
+            throw e;
+        } catch ( Throwable e ) {
+            LOG.warn( "Data could not be fetched from the feature store. The error was '{}'.", e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+        } finally {
+            if ( features != null ) {
+                features.close();
+            }
+        }
+    }
+
+    /**
+     * Collects the features with distinct ids, stops fetching once the maximum number of features is reached.
+     */
+    private static FeatureCollection clearDuplicates( FeatureInputStream rs, int maxFeatures ) {
         FeatureCollection col = null;
         try {
             col = new GenericFeatureCollection();
+            Set<String> ids = new HashSet<String>();
             for ( Feature f : rs ) {
-                if ( !col.contains( f ) ) {
+                if ( f.getId() == null || ids.add( f.getId() ) ) {
                     col.add( f );
+                    if ( maxFeatures > 0 && col.size() >= maxFeatures ) {
+                        break;
+                    }
                 }
             }
         } finally {
@@ -138,7 +184,7 @@ public class FeatureLayerData implements LayerData {
     public FeatureCollection info() {
         FeatureCollection col = null;
         try {
-            col = clearDuplicates( featureStore.query( queries.toArray( new Query[queries.size()] ) ) );
+            col = clearDuplicates( featureStore.query( queries.toArray( new Query[queries.size()] ) ), maxFeatures );
         } catch ( Throwable e ) {
             LOG.warn( "Data could not be fetched from the feature store. The error was '{}'.", e.getLocalizedMessage() );
             LOG.trace( "Stack trace:", e );
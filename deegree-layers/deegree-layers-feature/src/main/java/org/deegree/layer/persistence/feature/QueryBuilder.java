@@ -48,21 +48,29 @@ import static org.deegree.filter.Filters.addBBoxConstraint;
 import static org.deegree.layer.persistence.feature.FilterBuilder.buildFilter;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
+import org.deegree.commons.tom.gml.property.PropertyType;
 import org.deegree.commons.utils.CollectionUtils.Mapper;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
 import org.deegree.filter.Filter;
 import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.projection.ProjectionClause;
+import org.deegree.filter.projection.PropertyName;
 import org.deegree.filter.sort.SortProperty;
 import org.deegree.geometry.Envelope;
 import org.deegree.layer.LayerQuery;
 import org.deegree.protocol.wfs.getfeature.TypeName;
+import org.deegree.style.se.unevaluated.Style;
 
 /**
  * Builds feature store queries for feature layers.
@@ -90,8 +98,20 @@ class QueryBuilder {
 
     private String layerName;
 
+    private Style style;
+
     QueryBuilder( FeatureStore featureStore, OperatorFilter filter, QName ftName, Envelope bbox, LayerQuery query,
                   ValueReference geomProp, SortProperty[] sortBy, String layerName ) {
+        this( featureStore, filter, ftName, bbox, query, geomProp, sortBy, layerName, null );
+    }
+
+    /**
+     * @param style
+     *            the style used to render the map query results, if not <code>null</code>, map queries will only
+     *            request the properties needed by the style
+     */
+    QueryBuilder( FeatureStore featureStore, OperatorFilter filter, QName ftName, Envelope bbox, LayerQuery query,
+                  ValueReference geomProp, SortProperty[] sortBy, String layerName, Style style ) {
         this.featureStore = featureStore;
         this.filter = filter;
         this.ftName = ftName;
@@ -100,6 +120,7 @@ class QueryBuilder {
         this.geomProp = geomProp;
         this.sortBy = sortBy;
         this.layerName = layerName;
+        this.style = style;
     }
 
     List<Query> buildMapQueries() {
@@ -114,12 +135,14 @@ class QueryBuilder {
                                      public Query apply( FeatureType u ) {
                                          Filter fil = addBBoxConstraint( bbox, filter2, geomProp, true );
                                          return createQuery( u.getName(), fil, round( query.getScale() ), maxFeatures,
-                                                             query.getResolution(), sortBy );
+                                                             query.getResolution(), sortBy, buildProjections( u ) );
                                      }
                                  } ) );
         } else {
+            FeatureType ft = featureStore == null ? null : featureStore.getSchema().getFeatureType( ftName );
             Query fquery = createQuery( ftName, addBBoxConstraint( bbox, filter, geomProp, true ),
-                                        round( query.getScale() ), maxFeatures, query.getResolution(), sortBy );
+                                        round( query.getScale() ), maxFeatures, query.getResolution(), sortBy,
+                                        buildProjections( ft ) );
             queries.add( fquery );
         }
 
@@ -156,10 +179,47 @@ class QueryBuilder {
         return queries;
     }
 
+    /**
+     * Builds projections to the properties read by the style, so the feature store does not need to fetch the
+     * remaining properties.
+     * 
+     * @return the projections, or <code>null</code>, if all properties are needed
+     */
+    private List<ProjectionClause> buildProjections( FeatureType ft ) {
+        if ( style == null || ft == null ) {
+            return null;
+        }
+        Set<ValueReference> refs = style.getReferencedProperties();
+        if ( refs == null ) {
+            return null;
+        }
+        Set<ValueReference> props = new LinkedHashSet<ValueReference>( refs );
+        if ( style.usesDefaultGeometries() ) {
+            for ( PropertyType pt : ft.getPropertyDeclarations() ) {
+                if ( pt instanceof GeometryPropertyType ) {
+                    props.add( new ValueReference( pt.getName() ) );
+                }
+            }
+        }
+        if ( props.isEmpty() ) {
+            return null;
+        }
+        List<ProjectionClause> projections = new ArrayList<ProjectionClause>( props.size() );
+        for ( ValueReference prop : props ) {
+            projections.add( new PropertyName( prop, null, null ) );
+        }
+        return Collections.unmodifiableList( projections );
+    }
+
     static Query createQuery( QName ftName, Filter filter, int scale, int maxFeatures, double resolution,
                               SortProperty[] sort ) {
+        return createQuery( ftName, filter, scale, maxFeatures, resolution, sort, null );
+    }
+
+    static Query createQuery( QName ftName, Filter filter, int scale, int maxFeatures, double resolution,
+                              SortProperty[] sort, List<ProjectionClause> projections ) {
         TypeName[] typeNames = new TypeName[] { new TypeName( ftName, null ) };
-        return new Query( typeNames, filter, sort, scale, maxFeatures, resolution );
+        return new Query( typeNames, filter, sort, scale, maxFeatures, resolution, projections );
     }
 
 }
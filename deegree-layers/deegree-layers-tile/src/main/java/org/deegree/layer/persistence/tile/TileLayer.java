@@ -58,6 +58,7 @@ import org.deegree.layer.metadata.LayerMetadata;
 import org.deegree.style.StyleRef;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileFetcher;
 import org.slf4j.Logger;
 
 /**
@@ -76,8 +77,13 @@ public class TileLayer extends AbstractLayer {
     // maps crs to tile matrix set ids
     private final Map<ICRS, String> coordinateSystems = new LinkedHashMap<ICRS, String>();
 
+    private int cacheControlMaxAge = -1;
+
+    private final TileFetcher fetcher;
+
     public TileLayer( LayerMetadata md, List<TileDataSet> datasets ) {
         super( md );
+        this.fetcher = TileFetcher.acquire();
         for ( TileDataSet tds : datasets ) {
             coordinateSystems.put( tds.getTileMatrixSet().getSpatialMetadata().getCoordinateSystems().get( 0 ),
                                    tds.getTileMatrixSet().getIdentifier() );
@@ -101,7 +107,7 @@ public class TileLayer extends AbstractLayer {
         TileDataSet data = tileDataSets.get( tds );
 
         Iterator<Tile> tiles = data.getTiles( env, query.getResolution() );
-        return new TileLayerData( tiles );
+        return new TileLayerData( tiles, fetcher );
     }
 
     @Override
@@ -124,8 +130,29 @@ public class TileLayer extends AbstractLayer {
         return tileDataSets.values();
     }
 
+    /**
+     * @param seconds
+     *            number of seconds tiles of this layer may be cached by clients without revalidation, -1 if not
+     *            configured
+     */
+    public void setCacheControlMaxAge( int seconds ) {
+        this.cacheControlMaxAge = seconds;
+    }
+
+    /**
+     * @return number of seconds tiles of this layer may be cached by clients without revalidation, -1 if not configured
+     */
+    public int getCacheControlMaxAge() {
+        return cacheControlMaxAge;
+    }
+
     @Override
     public boolean isStyleApplicable( StyleRef style ) {
         return true;
     }
+
+    @Override
+    public void destroy() {
+        TileFetcher.release( fetcher );
+    }
 }
@@ -132,7 +132,11 @@ class TileLayerBuilder {
             md.setScaleDenominators( p );
         }
         md.setMetadataId( cfg.getMetadataSetId() );
-        return new TileLayer( md, datasets );
+        TileLayer layer = new TileLayer( md, datasets );
+        if ( cfg.getCacheControlMaxAge() != null ) {
+            layer.setCacheControlMaxAge( cfg.getCacheControlMaxAge().intValue() );
+        }
+        return layer;
     }
 
 }
@@ -47,6 +47,8 @@ import org.deegree.layer.LayerData;
 import org.deegree.rendering.r2d.TileRenderer;
 import org.deegree.rendering.r2d.context.RenderContext;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileFetch;
+import org.deegree.tile.TileFetcher;
 
 /**
  * <code>TileLayerData</code>
@@ -61,15 +63,24 @@ public class TileLayerData implements LayerData {
 
     private final Iterator<Tile> tiles;
 
-    public TileLayerData( Iterator<Tile> tiles ) {
+    private final TileFetcher fetcher;
+
+    public TileLayerData( Iterator<Tile> tiles, TileFetcher fetcher ) {
         this.tiles = tiles;
+        this.fetcher = fetcher;
     }
 
     @Override
     public void render( RenderContext context ) {
         TileRenderer renderer = context.getTileRenderer();
-        while ( tiles.hasNext() ) {
-            renderer.render( tiles.next() );
+        // images are fetched concurrently, but rendered in this thread as they arrive
+        TileFetch fetch = fetcher.fetch( tiles );
+        try {
+            while ( fetch.hasNext() ) {
+                renderer.render( fetch.next() );
+            }
+        } finally {
+            fetch.cancel();
         }
     }
 
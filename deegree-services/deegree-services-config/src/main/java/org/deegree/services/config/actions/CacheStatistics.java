@@ -0,0 +1,92 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.services.config.actions;
+
+import static org.deegree.services.config.actions.Utils.getWorkspaceAndPath;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.commons.config.DeegreeWorkspace;
+import org.deegree.commons.utils.Pair;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreProvider;
+import org.deegree.tile.persistence.cache.CachingTileStore;
+import org.deegree.tile.persistence.cache.TileCacheStatistics;
+import org.deegree.tile.persistence.cache.TwoTierTileCache;
+
+/**
+ * Shows the cache statistics of a caching tile store.
+ * 
+ * @since 3.4
+ */
+public class CacheStatistics {
+
+    public static void cacheStatistics( String path, HttpServletResponse resp )
+                            throws IOException {
+        Pair<DeegreeWorkspace, String> p = getWorkspaceAndPath( path );
+
+        resp.setContentType( "text/plain" );
+
+        String id = path.split( "/" )[0];
+        TileStore ts = p.first.getNewWorkspace().getResource( TileStoreProvider.class, id );
+        if ( ts == null ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "No such tile store.\n", resp.getOutputStream() );
+            return;
+        }
+        if ( !( ts instanceof CachingTileStore ) ) {
+            resp.setStatus( 403 );
+            IOUtils.write( "The tile store is no caching tile store.\n", resp.getOutputStream() );
+            return;
+        }
+
+        CachingTileStore store = (CachingTileStore) ts;
+        StringBuilder sb = new StringBuilder();
+        sb.append( "cached tiles: " ).append( store.getCache().size() );
+        if ( store.getCache() instanceof TwoTierTileCache ) {
+            TwoTierTileCache cache = (TwoTierTileCache) store.getCache();
+            sb.append( ", heap: " ).append( cache.getHeapSize() / 1024 ).append( " KB" );
+            sb.append( ", disk: " ).append( cache.getDiskSize() / 1024 ).append( " KB" );
+        }
+        sb.append( "\n" );
+        List<String> ids = new ArrayList<String>( store.getTileDataSetIds() );
+        Collections.sort( ids );
+        for ( String tds : ids ) {
+            TileCacheStatistics stats = store.getStatistics( tds );
+            sb.append( tds ).append( " - " ).append( stats ).append( "\n" );
+        }
+        IOUtils.write( sb.toString(), resp.getOutputStream() );
+    }
+
+}
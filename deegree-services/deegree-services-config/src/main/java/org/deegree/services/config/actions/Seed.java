@@ -0,0 +1,220 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+
+package org.deegree.services.config.actions;
+
+import static org.deegree.services.config.actions.Utils.getWorkspaceAndPath;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.commons.config.DeegreeWorkspace;
+import org.deegree.commons.utils.ArrayUtils;
+import org.deegree.commons.utils.Pair;
+import org.deegree.commons.utils.kvp.KVPUtils;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreProvider;
+import org.deegree.tile.persistence.TileStoreTransaction;
+import org.deegree.tile.persistence.cache.CachingTileStore;
+import org.deegree.tile.persistence.seed.TileSeeder;
+import org.slf4j.Logger;
+
+/**
+ * Starts, cancels and reports tile seeding runs, which run in the background.
+ * <p>
+ * Progress is checkpointed in the <code>seed</code> directory of the workspace, so cancelled or interrupted runs
+ * continue where they stopped when started again with the same parameters.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class Seed {
+
+    private static final Logger LOG = getLogger( Seed.class );
+
+    private static final Map<String, Pair<TileSeeder, Thread>> JOBS = new LinkedHashMap<String, Pair<TileSeeder, Thread>>();
+
+    public static void seed( String path, String qstring, HttpServletResponse resp )
+                            throws IOException {
+        Pair<DeegreeWorkspace, String> p = getWorkspaceAndPath( path );
+
+        resp.setContentType( "text/plain" );
+
+        String[] ids = path.split( "/" );
+        if ( ids.length < 2 ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "Tile store and tile data set must be specified.\n", resp.getOutputStream() );
+            return;
+        }
+        String id = ids[0];
+        String tdsid = ids[1];
+        Map<String, String> params = qstring == null ? new LinkedHashMap<String, String>()
+                                                    : KVPUtils.getNormalizedKVPMap( qstring, "UTF-8" );
+
+        TileStore ts = p.first.getNewWorkspace().getResource( TileStoreProvider.class, id );
+        if ( ts == null || ts.getTileDataSet( tdsid ) == null ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "No such tile store or tile data set.\n", resp.getOutputStream() );
+            return;
+        }
+
+        TileStore sourceStore;
+        if ( params.get( "SOURCE" ) != null ) {
+            sourceStore = p.first.getNewWorkspace().getResource( TileStoreProvider.class, params.get( "SOURCE" ) );
+        } else if ( ts instanceof CachingTileStore ) {
+            sourceStore = ( (CachingTileStore) ts ).getCachedTileStore();
+        } else {
+            resp.setStatus( 403 );
+            IOUtils.write( "The tile store is no caching tile store, the source parameter is required.\n",
+                           resp.getOutputStream() );
+            return;
+        }
+        TileDataSet source = sourceStore == null ? null : sourceStore.getTileDataSet( tdsid );
+        if ( source == null ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "No such source tile store or tile data set.\n", resp.getOutputStream() );
+            return;
+        }
+
+        Envelope bbox = null;
+        int minLevel = 0;
+        int maxLevel = Integer.MAX_VALUE;
+        int workers = Runtime.getRuntime().availableProcessors();
+        try {
+            if ( params.get( "BBOX" ) != null ) {
+                double[] ds = ArrayUtils.splitAsDoubles( params.get( "BBOX" ), "," );
+                if ( ds.length != 4 ) {
+                    throw new NumberFormatException();
+                }
+                bbox = new GeometryFactory().createEnvelope( ds[0], ds[1], ds[2], ds[3],
+                                                             source.getTileMatrixSet().getSpatialMetadata().getCoordinateSystems().get( 0 ) );
+            }
+            if ( params.get( "LEVELS" ) != null ) {
+                String[] levels = params.get( "LEVELS" ).split( "-" );
+                minLevel = Integer.parseInt( levels[0] );
+                maxLevel = Integer.parseInt( levels[levels.length - 1] );
+            }
+            if ( params.get( "WORKERS" ) != null ) {
+                workers = Integer.parseInt( params.get( "WORKERS" ) );
+            }
+        } catch ( NumberFormatException e ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "The value of the bbox, levels or workers parameter was invalid.\n", resp.getOutputStream() );
+            return;
+        }
+        if ( workers < 1 ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "The value of the workers parameter was invalid.\n", resp.getOutputStream() );
+            return;
+        }
+
+        String key = id + "/" + tdsid;
+        synchronized ( JOBS ) {
+            Pair<TileSeeder, Thread> job = JOBS.get( key );
+            if ( job != null && job.second.isAlive() ) {
+                resp.setStatus( 403 );
+                IOUtils.write( "Seeding of " + key + " is already running.\n", resp.getOutputStream() );
+                return;
+            }
+
+            TileStoreTransaction ta;
+            try {
+                ta = ts.acquireTransaction( tdsid );
+            } catch ( UnsupportedOperationException e ) {
+                resp.setStatus( 403 );
+                IOUtils.write( "The tile store does not support transactions.\n", resp.getOutputStream() );
+                return;
+            }
+
+            File checkpoint = new File( p.first.getLocation(), "seed" + File.separator + id + "_" + tdsid
+                                                               + ".properties" );
+            if ( !checkpoint.getParentFile().exists() && !checkpoint.getParentFile().mkdirs() ) {
+                throw new IOException( "Could not create directory " + checkpoint.getParentFile() + "." );
+            }
+            final TileSeeder seeder = new TileSeeder( source, ta, bbox, minLevel, maxLevel, workers, checkpoint );
+            Thread thread = new Thread( "seed-" + key ) {
+                @Override
+                public void run() {
+                    try {
+                        seeder.run();
+                    } catch ( IOException e ) {
+                        LOG.error( "Seeding failed: {}", e.getLocalizedMessage() );
+                        LOG.trace( "Stack trace:", e );
+                    }
+                }
+            };
+            thread.setDaemon( true );
+            JOBS.put( key, new Pair<TileSeeder, Thread>( seeder, thread ) );
+            thread.start();
+        }
+        IOUtils.write( "Started seeding of " + key + ", see /config/seed/status for the progress.\n",
+                       resp.getOutputStream() );
+    }
+
+    public static void cancelSeed( String path, HttpServletResponse resp )
+                            throws IOException {
+        resp.setContentType( "text/plain" );
+        Pair<TileSeeder, Thread> job;
+        synchronized ( JOBS ) {
+            job = JOBS.get( path );
+        }
+        if ( job == null || !job.second.isAlive() ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "No such seeding run in progress.\n", resp.getOutputStream() );
+            return;
+        }
+        job.first.cancel();
+        IOUtils.write( "Cancelled seeding of " + path + ".\n", resp.getOutputStream() );
+    }
+
+    public static void seedStatus( HttpServletResponse resp )
+                            throws IOException {
+        resp.setContentType( "text/plain" );
+        StringBuilder sb = new StringBuilder();
+        synchronized ( JOBS ) {
+            for ( Entry<String, Pair<TileSeeder, Thread>> e : JOBS.entrySet() ) {
+                sb.append( e.getKey() ).append( " - " ).append( e.getValue().first.getProgress() ).append( "\n" );
+            }
+        }
+        if ( sb.length() == 0 ) {
+            sb.append( "No seeding runs.\n" );
+        }
+        IOUtils.write( sb.toString(), resp.getOutputStream() );
+    }
+
+}
@@ -37,6 +37,7 @@ package org.deegree.services.config.servlet;
 
 import static org.deegree.services.config.actions.Crs.checkCrs;
 import static org.deegree.services.config.actions.Crs.getCodes;
+import static org.deegree.services.config.actions.CacheStatistics.cacheStatistics;
 import static org.deegree.services.config.actions.Crs.listCrs;
 import static org.deegree.services.config.actions.Delete.delete;
 import static org.deegree.services.config.actions.Download.download;
@@ -44,6 +45,9 @@ import static org.deegree.services.config.actions.Invalidate.invalidate;
 import static org.deegree.services.config.actions.List.list;
 import static org.deegree.services.config.actions.ListWorkspaces.listWorkspaces;
 import static org.deegree.services.config.actions.Restart.restart;
+import static org.deegree.services.config.actions.Seed.cancelSeed;
+import static org.deegree.services.config.actions.Seed.seed;
+import static org.deegree.services.config.actions.Seed.seedStatus;
 import static org.deegree.services.config.actions.Upload.upload;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -91,6 +95,11 @@ public class ConfigServlet extends HttpServlet {
             data.append( "GET /config/list[/path]                                      - list currently running workspace or directory in workspace\n" );
             data.append( "GET /config/list/wsname[/path]                               - list workspace with name <wsname> or directory in workspace\n" );
             data.append( "GET /config/invalidate/datasources/tile/id/matrixset[?bbox=] - invalidate part or all of a tile store cache's tile matrix set\n" );
+            data.append( "GET /config/cachestatistics/datasources/tile/id              - show the hit/miss/eviction/load statistics of a tile store cache\n" );
+            data.append( "GET /config/seed/datasources/tile/id/tiledataset[?bbox=&levels=&workers=&source=]\n" );
+            data.append( "                                                             - seed (or resume seeding) a tile store's tile data set in the background\n" );
+            data.append( "GET /config/seed/status                                      - show the progress of seeding runs\n" );
+            data.append( "GET /config/seed/cancel/datasources/tile/id/tiledataset      - cancel a seeding run, it can be resumed later\n" );
             data.append( "GET /config/crs/list                                         - list available CRS definitions\n" );
             data.append( "POST /config/crs/getcodes with wkt=<wkt>                     - retrieves a list of CRS codes corresponding to the WKT (POSTed KVP)\n" );
             data.append( "GET /config/crs/<code>                                       - checks if a CRS definition is available, returns true/false\n" );
@@ -139,6 +148,18 @@ public class ConfigServlet extends HttpServlet {
             invalidate( path.substring( 29 ), req.getQueryString(), resp );
         }
 
+        if ( path.toLowerCase().startsWith( "/cachestatistics/datasources/tile/" ) ) {
+            cacheStatistics( path.substring( 34 ), resp );
+        }
+
+        if ( path.toLowerCase().startsWith( "/seed/datasources/tile/" ) ) {
+            seed( path.substring( 23 ), req.getQueryString(), resp );
+        } else if ( path.toLowerCase().startsWith( "/seed/cancel/datasources/tile/" ) ) {
+            cancelSeed( path.substring( 30 ), resp );
+        } else if ( path.toLowerCase().startsWith( "/seed/status" ) ) {
+            seedStatus( resp );
+        }
+
         if ( path.toLowerCase().startsWith( "/delete" ) ) {
             delete( path.substring( 7 ), resp );
         }
@@ -254,6 +254,11 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         if ( request.getPresentationParams().getStartIndex() != null ) {
             startIndex = request.getPresentationParams().getStartIndex().intValue();
         }
+        boolean paged = request.getPresentationParams().getStartIndex() != null
+                        || request.getPresentationParams().getCount() != null;
+        if ( paged && !isGetFeatureById && pushDownPaging( analyzer, lock, startIndex, returnMaxFeatures ) ) {
+            startIndex = 0;
+        }
 
         GMLStreamWriter gmlStream = createGMLStreamWriter( gmlVersion, xmlStream );
         gmlStream.setProjections( analyzer.getProjections() );
@@ -394,6 +399,30 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         xmlStream.flush();
     }
 
+    /**
+     * Lets the feature store skip the features before the start index and limit the number of features, so they don't
+     * have to be fetched and built just to be discarded. This is only possible if the request results in a single
+     * store query and features don't have to be checked against a lock before they are counted.
+     * 
+     * @return <code>true</code>, if the start index has been passed to the store query
+     */
+    private boolean pushDownPaging( QueryAnalyzer analyzer, Lock lock, int startIndex, int maxFeatures ) {
+        Map<FeatureStore, List<Query>> queries = analyzer.getQueries();
+        if ( lock != null || queries.size() != 1 ) {
+            return false;
+        }
+        List<Query> storeQueries = queries.values().iterator().next();
+        if ( storeQueries.size() != 1 ) {
+            return false;
+        }
+        Query query = storeQueries.get( 0 );
+        query.setOffset( startIndex );
+        if ( maxFeatures > 0 ) {
+            query.setCount( maxFeatures );
+        }
+        return true;
+    }
+
     private void prebindNamespaces( final XMLStreamWriter xmlStream, final NamespaceBindings prebindNamespaces )
                             throws XMLStreamException {
         if ( prebindNamespaces == null ) {
@@ -0,0 +1,428 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChangeListener;
+import org.deegree.feature.persistence.ObservableFeatureStore;
+import org.deegree.geometry.Envelope;
+import org.deegree.layer.Layer;
+import org.deegree.layer.LayerRef;
+import org.deegree.layer.persistence.feature.FeatureLayer;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.style.StyleRef;
+import org.deegree.theme.Theme;
+import org.deegree.theme.Themes;
+import org.slf4j.Logger;
+
+/**
+ * Keeps encoded GetMap responses in memory.
+ * <p>
+ * Requests are normalized into a key made up of the layers, styles, size, format, dimensions, all remaining (vendor
+ * specific) parameters and the bounding box. The corners of the bounding box are snapped to a grid whose spacing is
+ * the largest power of two below the tolerance (a fraction of a pixel), so requests for nearly the same extent (e.g.
+ * caused by rounding in clients) share their response. Requests with FILTER or SLD parameters are not cached.
+ * </p>
+ * <p>
+ * The total size of the cached responses is bounded, the least recently used responses are evicted first. The
+ * responses of a layer are dropped as soon as the feature store of a feature layer reports changes. Every change also
+ * increments the generation of the layer, so responses that have been rendered before the change (but are put into
+ * the cache afterwards) are not cached.
+ * </p>
+ * 
+ * @since 3.4
+ */
+public class MapResponseCache {
+
+    private static final Logger LOG = getLogger( MapResponseCache.class );
+
+    // parameters that are part of the key in normalized form, or do not influence the response
+    private static final Set<String> NORMALIZED_PARAMETERS = new HashSet<String>( Arrays.asList( "SERVICE", "REQUEST",
+                                                                                                 "LAYERS", "STYLES",
+                                                                                                 "BBOX", "CRS", "SRS",
+                                                                                                 "WIDTH", "HEIGHT",
+                                                                                                 "FORMAT",
+                                                                                                 "TRANSPARENT",
+                                                                                                 "BGCOLOR", "TIME",
+                                                                                                 "ELEVATION" ) );
+
+    private static final Set<String> UNCACHEABLE_PARAMETERS = new HashSet<String>( Arrays.asList( "FILTER", "SLD",
+                                                                                                  "SLD_BODY" ) );
+
+    private final long maxBytes;
+
+    private final double tolerance;
+
+    private final LinkedHashMap<String, CachedMap> entries = new LinkedHashMap<String, CachedMap>( 16, 0.75f, true );
+
+    private final List<LayerInvalidator> invalidators = new ArrayList<LayerInvalidator>();
+
+    // layers that have been invalidated, mapped to the number of invalidations
+    private final Map<String, Long> generations = new HashMap<String, Long>();
+
+    private long bytes;
+
+    private long hits, misses;
+
+    /**
+     * @param maxBytes
+     *            maximum size of all cached responses (in bytes)
+     * @param tolerance
+     *            bounding boxes differing by less than this fraction of a pixel may share their response, no snapping
+     *            if zero or less
+     */
+    public MapResponseCache( long maxBytes, double tolerance ) {
+        this.maxBytes = maxBytes;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Drops the responses of layers as soon as their feature stores report changes. Only feature layers with an
+     * observable feature store are considered.
+     * 
+     * @param themes
+     *            the requestable layer names mapped to their themes, must not be <code>null</code>
+     */
+    public void observe( Map<String, Theme> themes ) {
+        Map<ObservableFeatureStore, Set<String>> names = new HashMap<ObservableFeatureStore, Set<String>>();
+        for ( Map.Entry<String, Theme> e : themes.entrySet() ) {
+            for ( Layer l : Themes.getAllLayers( e.getValue() ) ) {
+                if ( !( l instanceof FeatureLayer ) ) {
+                    continue;
+                }
+                FeatureStore fs = ( (FeatureLayer) l ).getFeatureStore();
+                if ( fs instanceof ObservableFeatureStore ) {
+                    Set<String> set = names.get( fs );
+                    if ( set == null ) {
+                        set = new HashSet<String>();
+                        names.put( (ObservableFeatureStore) fs, set );
+                    }
+                    set.add( e.getKey() );
+                }
+            }
+        }
+        for ( Map.Entry<ObservableFeatureStore, Set<String>> e : names.entrySet() ) {
+            invalidators.add( new LayerInvalidator( e.getKey(), e.getValue() ) );
+        }
+    }
+
+    /**
+     * Stops listening to feature store changes and drops all responses.
+     */
+    public synchronized void destroy() {
+        for ( LayerInvalidator inv : invalidators ) {
+            inv.store.removeChangeListener( inv );
+        }
+        invalidators.clear();
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @param gm
+     *            the request, must not be <code>null</code>
+     * @return the normalized key of the request, or <code>null</code>, if the response must not be cached
+     */
+    public Key getKey( GetMap gm ) {
+        Map<String, String> params = gm.getParameterMap();
+        for ( String name : params.keySet() ) {
+            if ( UNCACHEABLE_PARAMETERS.contains( name.toUpperCase() ) ) {
+                return null;
+            }
+        }
+        Envelope bbox = gm.getBoundingBox();
+        if ( gm.getFilters() != null || bbox == null || gm.getCoordinateSystem() == null || gm.getWidth() <= 0
+             || gm.getHeight() <= 0 ) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for ( LayerRef l : gm.getLayers() ) {
+            sb.append( l.getName() ).append( ',' );
+        }
+        sb.append( '|' );
+        for ( StyleRef s : gm.getStyles() ) {
+            if ( s != null && s.getName() != null ) {
+                sb.append( s.getName() );
+            }
+            sb.append( ',' );
+        }
+        sb.append( '|' ).append( gm.getWidth() ).append( 'x' ).append( gm.getHeight() );
+        sb.append( '|' ).append( gm.getFormat().trim().toLowerCase() );
+        sb.append( '|' ).append( gm.getTransparent() );
+        sb.append( '|' ).append( Integer.toHexString( gm.getBgColor().getRGB() ) );
+        sb.append( '|' ).append( gm.getCoordinateSystem().getAlias() );
+        appendBoundingBox( sb.append( '|' ), bbox, gm.getWidth(), gm.getHeight() );
+        sb.append( '|' ).append( new TreeMap<String, List<?>>( gm.getDimensions() ) );
+
+        Map<String, String> others = new TreeMap<String, String>();
+        for ( Map.Entry<String, String> e : params.entrySet() ) {
+            String name = e.getKey().toUpperCase();
+            if ( !NORMALIZED_PARAMETERS.contains( name ) && !name.startsWith( "DIM_" ) ) {
+                others.put( name, e.getValue() == null ? "" : e.getValue().trim() );
+            }
+        }
+        sb.append( '|' ).append( others );
+
+        List<String> layers = new ArrayList<String>();
+        for ( LayerRef l : gm.getLayers() ) {
+            layers.add( l.getName() );
+        }
+        return createKey( sb.toString(), layers );
+    }
+
+    /**
+     * @param id
+     *            the normalized request, must not be <code>null</code>
+     * @param layers
+     *            the requested layer names, must not be <code>null</code>
+     * @return a key that captures the current generation of the layers, never <code>null</code>
+     */
+    synchronized Key createKey( String id, Collection<String> layers ) {
+        Map<String, Long> layerGenerations = new HashMap<String, Long>();
+        for ( String layer : layers ) {
+            layerGenerations.put( layer, getGeneration( layer ) );
+        }
+        return new Key( id, layerGenerations );
+    }
+
+    private long getGeneration( String layer ) {
+        Long generation = generations.get( layer );
+        return generation == null ? 0 : generation;
+    }
+
+    private void appendBoundingBox( StringBuilder sb, Envelope bbox, int width, int height ) {
+        double[] min = bbox.getMin().getAsArray();
+        double[] max = bbox.getMax().getAsArray();
+        double res = Math.max( bbox.getSpan0() / width, bbox.getSpan1() / height );
+        if ( tolerance <= 0 || res <= 0 || Double.isNaN( res ) || Double.isInfinite( res ) ) {
+            sb.append( min[0] ).append( ',' ).append( min[1] ).append( ',' ).append( max[0] ).append( ',' );
+            sb.append( max[1] );
+            return;
+        }
+        // a power of two, so the grid does not depend on the exact resolution of the request
+        int exp = Math.getExponent( tolerance * res );
+        double step = Math.scalb( 1.0, exp );
+        sb.append( exp ).append( ':' );
+        sb.append( Math.round( min[0] / step ) ).append( ',' ).append( Math.round( min[1] / step ) ).append( ',' );
+        sb.append( Math.round( max[0] / step ) ).append( ',' ).append( Math.round( max[1] / step ) );
+    }
+
+    /**
+     * @param key
+     *            the key of the request, must not be <code>null</code>
+     * @return the cached response, or <code>null</code>, if there is none
+     */
+    public synchronized CachedMap get( Key key ) {
+        CachedMap map = entries.get( key.id );
+        if ( map == null ) {
+            ++misses;
+        } else {
+            ++hits;
+        }
+        return map;
+    }
+
+    /**
+     * Caches a response. Responses larger than the maximum size are ignored, as well as responses of layers that have
+     * been invalidated since the key was created (the response may be stale).
+     * 
+     * @param key
+     *            the key of the request (created before rendering), must not be <code>null</code>
+     * @param data
+     *            the encoded response, must not be <code>null</code>
+     * @param headers
+     *            the warning headers of the response, must not be <code>null</code>
+     */
+    public synchronized void put( Key key, byte[] data, List<String> headers ) {
+        if ( data.length > maxBytes ) {
+            return;
+        }
+        for ( Map.Entry<String, Long> e : key.generations.entrySet() ) {
+            if ( getGeneration( e.getKey() ) != e.getValue() ) {
+                LOG.debug( "Not caching map response, layer '{}' has changed while rendering.", e.getKey() );
+                return;
+            }
+        }
+        CachedMap old = entries.put( key.id, new CachedMap( data, headers, key.generations.keySet() ) );
+        if ( old != null ) {
+            bytes -= old.data.length;
+        }
+        bytes += data.length;
+        Iterator<CachedMap> it = entries.values().iterator();
+        while ( bytes > maxBytes && it.hasNext() ) {
+            bytes -= it.next().data.length;
+            it.remove();
+        }
+    }
+
+    /**
+     * Drops all responses containing one of the given layers.
+     * 
+     * @param layers
+     *            the requestable layer names, must not be <code>null</code>
+     * @return the number of dropped responses
+     */
+    public synchronized int invalidate( Collection<String> layers ) {
+        for ( String layer : layers ) {
+            generations.put( layer, getGeneration( layer ) + 1 );
+        }
+        int num = 0;
+        Iterator<CachedMap> it = entries.values().iterator();
+        while ( it.hasNext() ) {
+            CachedMap map = it.next();
+            if ( !Collections.disjoint( map.layers, layers ) ) {
+                bytes -= map.data.length;
+                it.remove();
+                ++num;
+            }
+        }
+        return num;
+    }
+
+    /**
+     * @return the size of all cached responses (in bytes)
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of lookups that found a cached response
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that did not find a cached response
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * The normalized form of a request, together with the generations of its layers at the time the key was created.
+     */
+    public static class Key {
+
+        private final String id;
+
+        private final Map<String, Long> generations;
+
+        Key( String id, Map<String, Long> generations ) {
+            this.id = id;
+            this.generations = generations;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            return o instanceof Key && ( (Key) o ).id.equals( id );
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+
+    }
+
+    /**
+     * An encoded GetMap response.
+     */
+    public static class CachedMap {
+
+        private final byte[] data;
+
+        private final List<String> headers;
+
+        private final Set<String> layers;
+
+        CachedMap( byte[] data, List<String> headers, Set<String> layers ) {
+            this.data = data;
+            this.headers = new ArrayList<String>( headers );
+            this.layers = layers;
+        }
+
+        /**
+         * @return the encoded image, must not be modified
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * @return the warning headers of the response, must not be modified
+         */
+        public List<String> getHeaders() {
+            return headers;
+        }
+
+    }
+
+    private class LayerInvalidator implements FeatureStoreChangeListener {
+
+        private final ObservableFeatureStore store;
+
+        private final Set<String> layers;
+
+        LayerInvalidator( ObservableFeatureStore store, Set<String> layers ) {
+            this.store = store;
+            this.layers = layers;
+            store.addChangeListener( this );
+        }
+
+        @Override
+        public void featuresChanged( FeatureStore fs, List<Envelope> envelopes ) {
+            int num = invalidate( layers );
+            LOG.debug( "Dropped {} cached map responses after feature store changes.", num );
+        }
+
+    }
+
+}
@@ -49,17 +49,25 @@ import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.deegree.commons.annotations.LoggingNotes;
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.commons.utils.Pair;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
-import org.deegree.feature.Features;
 import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.filter.OperatorFilter;
@@ -67,12 +75,16 @@ import org.deegree.layer.Layer;
 import org.deegree.layer.LayerData;
 import org.deegree.layer.LayerQuery;
 import org.deegree.layer.LayerRef;
+import org.deegree.layer.persistence.feature.FeatureLayer;
+import org.deegree.layer.persistence.feature.FeatureLayerData;
 import org.deegree.protocol.wms.filter.ScaleFunction;
 import org.deegree.protocol.wms.ops.GetFeatureInfoSchema;
 import org.deegree.protocol.wms.ops.GetLegendGraphic;
+import org.deegree.rendering.r2d.context.DefaultRenderContext;
 import org.deegree.rendering.r2d.context.MapOptions;
 import org.deegree.rendering.r2d.context.MapOptionsMaps;
 import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.mvt.MvtEncoder;
 import org.deegree.services.jaxb.wms.ServiceConfigurationType;
 import org.deegree.style.StyleRef;
 import org.deegree.style.se.unevaluated.Style;
@@ -118,6 +130,12 @@ public class MapService {
 
     private final GetLegendHandler getLegendHandler;
 
+    // null if layers are rendered sequentially
+    private ExecutorService renderExecutor;
+
+    // null if responses are not cached
+    private MapResponseCache responseCache;
+
     /**
      * @param conf
      * @param adapter
@@ -152,6 +170,50 @@ public class MapService {
             }
         }
         getLegendHandler = new GetLegendHandler( this );
+
+        if ( conf != null && conf.getParallelRendering() != null ) {
+            int threads = conf.getParallelRendering().getThreads().intValue();
+            LOG.debug( "Rendering layers concurrently using {} threads.", threads );
+            renderExecutor = Executors.newFixedThreadPool( threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread t = new Thread( r, "wms-render-" + count.incrementAndGet() );
+                    t.setDaemon( true );
+                    return t;
+                }
+            } );
+        }
+
+        if ( conf != null && conf.getResponseCache() != null ) {
+            long maxBytes = conf.getResponseCache().getMaxBytes().longValue();
+            double tolerance = conf.getResponseCache().getTolerance();
+            LOG.debug( "Caching up to {} bytes of GetMap responses.", maxBytes );
+            responseCache = new MapResponseCache( maxBytes, tolerance );
+            if ( themeMap != null ) {
+                responseCache.observe( themeMap );
+            }
+        }
+    }
+
+    /**
+     * Stops the threads used to render layers concurrently, and drops the cached responses.
+     */
+    public void destroy() {
+        if ( renderExecutor != null ) {
+            renderExecutor.shutdownNow();
+        }
+        if ( responseCache != null ) {
+            responseCache.destroy();
+        }
+    }
+
+    /**
+     * @return the cache for GetMap responses, or <code>null</code>, if responses are not cached
+     */
+    public MapResponseCache getResponseCache() {
+        return responseCache;
     }
 
     /**
@@ -191,7 +253,6 @@ public class MapService {
                             throws OWSException {
         Iterator<StyleRef> styleItr = gm.getStyles().iterator();
         MapOptionsMaps options = gm.getRenderingOptions();
-        List<MapOptions> mapOptions = new ArrayList<MapOptions>();
         double scale = gm.getScale();
 
         List<LayerQuery> queries = new ArrayList<LayerQuery>();
@@ -204,7 +265,7 @@ public class MapService {
             StyleRef sr = styleItr.next();
             OperatorFilter f = filterItr == null ? null : filterItr.next();
 
-            LayerQuery query = buildQuery( sr, lr, options, mapOptions, f, gm );
+            LayerQuery query = buildQuery( sr, lr, options, f, gm );
             queries.add( query );
         }
 
@@ -212,25 +273,144 @@ public class MapService {
 
         ScaleFunction.getCurrentScaleValue().set( scale );
 
-        List<LayerData> layerDataList = checkStyleValidAndBuildLayerDataList( gm, headers, scale, queryIter );
-        Iterator<MapOptions> optIter = mapOptions.iterator();
-        for ( LayerData d : layerDataList ) {
-            ctx.applyOptions( optIter.next() );
-            try {
-                d.render( ctx );
-            } catch ( InterruptedException e ) {
-                String msg = "Request time-out.";
-                throw new OWSException( msg, NO_APPLICABLE_CODE );
+        List<MapOptions> mapOptions = new ArrayList<MapOptions>();
+        List<LayerData> layerDataList = checkStyleValidAndBuildLayerDataList( gm, headers, scale, queryIter,
+                                                                              mapOptions );
+        try {
+            if ( renderExecutor != null && layerDataList.size() > 1 && ctx instanceof DefaultRenderContext ) {
+                renderConcurrently( layerDataList, mapOptions, (DefaultRenderContext) ctx, scale );
+            } else {
+                Iterator<MapOptions> optIter = mapOptions.iterator();
+                for ( LayerData d : layerDataList ) {
+                    ctx.applyOptions( optIter.next() );
+                    try {
+                        d.render( ctx );
+                    } catch ( InterruptedException e ) {
+                        String msg = "Request time-out.";
+                        throw new OWSException( msg, NO_APPLICABLE_CODE );
+                    }
+                }
             }
+            ctx.optimizeAndDrawLabels();
+        } finally {
+            ScaleFunction.getCurrentScaleValue().remove();
         }
-        ctx.optimizeAndDrawLabels();
+    }
 
-        ScaleFunction.getCurrentScaleValue().remove();
+    /**
+     * Adds the features of the requested feature layers to a vector tile, other layers are skipped.
+     * 
+     * @param gm
+     *            the request, must not be <code>null</code>
+     * @param headers
+     *            may not be null. Extra HTTP headers will be added, as required by the WMS spec.
+     * @param encoder
+     *            the vector tile covering the requested bounding box, must not be <code>null</code>
+     * @throws OWSException
+     */
+    public void getVectorTile( org.deegree.protocol.wms.ops.GetMap gm, List<String> headers, MvtEncoder encoder )
+                            throws OWSException {
+        Iterator<StyleRef> styleItr = gm.getStyles().iterator();
+        List<OperatorFilter> filters = gm.getFilters();
+        Iterator<OperatorFilter> filterItr = filters == null ? null : filters.iterator();
+        double scale = gm.getScale();
+        ScaleFunction.getCurrentScaleValue().set( scale );
+        try {
+            for ( LayerRef lr : gm.getLayers() ) {
+                StyleRef sr = styleItr.next();
+                OperatorFilter f = filterItr == null ? null : filterItr.next();
+                LayerQuery query = buildQuery( sr, lr, gm.getRenderingOptions(), f, gm );
+                List<Layer> layers = getAllLayers( themeMap.get( lr.getName() ) );
+                assertStyleApplicableForAtLeastOneLayer( layers, query.getStyle(), lr.getName() );
+                for ( Layer layer : layers ) {
+                    if ( layer.getMetadata().getScaleDenominators().first > scale
+                         || layer.getMetadata().getScaleDenominators().second < scale
+                         || !layer.isStyleApplicable( query.getStyle() ) ) {
+                        continue;
+                    }
+                    if ( !( layer instanceof FeatureLayer ) ) {
+                        LOG.debug( "Skipping layer {}, only feature layers can be encoded as vector tiles.",
+                                   layer.getMetadata().getName() );
+                        continue;
+                    }
+                    LayerData data = layer.mapQuery( query, headers );
+                    if ( data == null ) {
+                        continue;
+                    }
+                    try {
+                        ( (FeatureLayerData) data ).encode( encoder, layer.getMetadata().getName() );
+                    } catch ( InterruptedException e ) {
+                        throw new OWSException( "Request time-out.", NO_APPLICABLE_CODE );
+                    }
+                }
+            }
+        } finally {
+            ScaleFunction.getCurrentScaleValue().remove();
+        }
+    }
+
+    /**
+     * Queries and renders the layers concurrently, each into its own image. The images are painted in layer order,
+     * and the labels of all layers are placed together afterwards.
+     */
+    private void renderConcurrently( List<LayerData> layerDataList, List<MapOptions> mapOptions,
+                                     final DefaultRenderContext ctx, final double scale )
+                            throws OWSException {
+        List<Future<DefaultRenderContext>> results = new ArrayList<Future<DefaultRenderContext>>();
+        Iterator<MapOptions> optIter = mapOptions.iterator();
+        try {
+            for ( final LayerData d : layerDataList ) {
+                final MapOptions opts = optIter.next();
+                results.add( renderExecutor.submit( new Callable<DefaultRenderContext>() {
+                    @Override
+                    public DefaultRenderContext call()
+                                            throws Exception {
+                        // the image is only created once the layer is processed, to bound the memory used
+                        DefaultRenderContext layerCtx = ctx.createLayerContext();
+                        layerCtx.applyOptions( opts );
+                        ScaleFunction.getCurrentScaleValue().set( scale );
+                        try {
+                            d.render( layerCtx );
+                        } finally {
+                            ScaleFunction.getCurrentScaleValue().remove();
+                        }
+                        return layerCtx;
+                    }
+                } ) );
+            }
+            for ( Future<DefaultRenderContext> result : results ) {
+                ctx.paintLayer( result.get() );
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new OWSException( "Request time-out.", NO_APPLICABLE_CODE );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof InterruptedException ) {
+                throw new OWSException( "Request time-out.", NO_APPLICABLE_CODE );
+            }
+            if ( cause instanceof OWSException ) {
+                throw (OWSException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new OWSException( cause.getMessage(), NO_APPLICABLE_CODE );
+        } finally {
+            // stop the remaining layers if one failed
+            for ( Future<DefaultRenderContext> result : results ) {
+                result.cancel( true );
+            }
+        }
     }
 
     private List<LayerData> checkStyleValidAndBuildLayerDataList( org.deegree.protocol.wms.ops.GetMap gm,
                                                                   List<String> headers, double scale,
-                                                                  ListIterator<LayerQuery> queryIter )
+                                                                  ListIterator<LayerQuery> queryIter,
+                                                                  List<MapOptions> mapOptions )
                             throws OWSException {
         List<LayerData> layerDataList = new ArrayList<LayerData>();
         for ( LayerRef lr : gm.getLayers() ) {
@@ -244,6 +424,7 @@ public class MapService {
                 }
                 if ( layer.isStyleApplicable( query.getStyle() ) ) {
                     layerDataList.add( layer.mapQuery( query, headers ) );
+                    mapOptions.add( gm.getRenderingOptions().get( layer.getMetadata().getName() ) );
                 }
             }
         }
@@ -261,13 +442,12 @@ public class MapService {
                                 "StyleNotDefined", "styles" );
     }
 
-    private LayerQuery buildQuery( StyleRef style, LayerRef lr, MapOptionsMaps options, List<MapOptions> mapOptions,
-                                   OperatorFilter f, org.deegree.protocol.wms.ops.GetMap gm ) {
+    private LayerQuery buildQuery( StyleRef style, LayerRef lr, MapOptionsMaps options, OperatorFilter f,
+                                   org.deegree.protocol.wms.ops.GetMap gm ) {
 
         for ( org.deegree.layer.Layer l : Themes.getAllLayers( themeMap.get( lr.getName() ) ) ) {
             insertMissingOptions( l.getMetadata().getName(), options, l.getMetadata().getMapOptions(),
                                   defaultLayerOptions );
-            mapOptions.add( options.get( l.getMetadata().getName() ) );
         }
 
         LayerQuery query = new LayerQuery( gm.getBoundingBox(), gm.getWidth(), gm.getHeight(), style, f,
@@ -296,24 +476,83 @@ public class MapService {
             }
         }
 
-        List<Feature> feats = new ArrayList<Feature>( gfi.getFeatureCount() );
-        for ( LayerData d : list ) {
-            FeatureCollection col = d.info();
-            if ( col != null ) {
-                feats.addAll( col );
+        int max = gfi.getFeatureCount();
+        List<Feature> feats = new ArrayList<Feature>( max );
+        Set<String> ids = new HashSet<String>();
+        if ( renderExecutor != null && list.size() > 1 ) {
+            collectConcurrently( list, feats, ids, max );
+        } else {
+            for ( LayerData d : list ) {
+                if ( addFeatures( d.info(), feats, ids, max ) ) {
+                    break;
+                }
             }
         }
 
-        feats = Features.clearDuplicates( feats );
-
-        if ( feats.size() > gfi.getFeatureCount() ) {
-            feats = feats.subList( 0, gfi.getFeatureCount() );
-        }
         GenericFeatureCollection col = new GenericFeatureCollection();
         col.addAll( feats );
         return col;
     }
 
+    /**
+     * Fetches the features of all layers concurrently, and collects them in layer order. Remaining fetches are
+     * cancelled once enough features have been collected.
+     */
+    private void collectConcurrently( List<LayerData> list, List<Feature> feats, Set<String> ids, int max )
+                            throws OWSException {
+        List<Future<FeatureCollection>> results = new ArrayList<Future<FeatureCollection>>();
+        try {
+            for ( final LayerData d : list ) {
+                results.add( renderExecutor.submit( new Callable<FeatureCollection>() {
+                    @Override
+                    public FeatureCollection call() {
+                        return d.info();
+                    }
+                } ) );
+            }
+            for ( Future<FeatureCollection> result : results ) {
+                if ( addFeatures( result.get(), feats, ids, max ) ) {
+                    break;
+                }
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new OWSException( "Request time-out.", NO_APPLICABLE_CODE );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new OWSException( cause.getMessage(), NO_APPLICABLE_CODE );
+        } finally {
+            for ( Future<FeatureCollection> result : results ) {
+                result.cancel( true );
+            }
+        }
+    }
+
+    /**
+     * Adds the features with ids not seen before (features without id are always added).
+     * 
+     * @return true, if the maximum number of features has been reached
+     */
+    private static boolean addFeatures( FeatureCollection col, List<Feature> feats, Set<String> ids, int max ) {
+        if ( col != null ) {
+            for ( Feature f : col ) {
+                if ( feats.size() >= max ) {
+                    break;
+                }
+                if ( f.getId() == null || ids.add( f.getId() ) ) {
+                    feats.add( f );
+                }
+            }
+        }
+        return feats.size() >= max;
+    }
+
     private List<LayerQuery> prepareGetFeatures( org.deegree.protocol.wms.ops.GetFeatureInfo gfi ) {
         List<LayerQuery> queries = new ArrayList<LayerQuery>();
 
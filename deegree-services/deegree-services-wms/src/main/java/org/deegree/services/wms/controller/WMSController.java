@@ -51,6 +51,7 @@ import static org.deegree.services.metadata.MetadataUtils.convertFromJAXB;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -101,6 +102,8 @@ import org.deegree.protocol.wms.ops.GetLegendGraphic;
 import org.deegree.rendering.r2d.context.DefaultRenderContext;
 import org.deegree.rendering.r2d.context.RenderContext;
 import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.deegree.rendering.r2d.mvt.MvtEncoder;
+import org.deegree.rendering.r2d.png.PngEncoder;
 import org.deegree.services.OWS;
 import org.deegree.services.OWSProvider;
 import org.deegree.services.OwsManager;
@@ -121,6 +124,8 @@ import org.deegree.services.jaxb.wms.FeatureInfoFormatsType.GetFeatureInfoFormat
 import org.deegree.services.jaxb.wms.ServiceConfigurationType;
 import org.deegree.services.metadata.OWSMetadataProvider;
 import org.deegree.services.metadata.provider.OWSMetadataProviderProvider;
+import org.deegree.services.wms.MapResponseCache;
+import org.deegree.services.wms.MapResponseCache.CachedMap;
 import org.deegree.services.wms.MapService;
 import org.deegree.services.wms.controller.plugins.ImageSerializer;
 import org.deegree.services.wms.utils.GetMapLimitChecker;
@@ -537,14 +542,45 @@ public class WMSController extends AbstractOWS {
 
         checkGetMap( version, gm2 );
 
-        RenderingInfo info = new RenderingInfo( gm2.getFormat(), gm2.getWidth(), gm2.getHeight(), gm2.getTransparent(),
-                                                gm2.getBgColor(), gm2.getBoundingBox(), gm2.getPixelSize(), map );
-        RenderContext ctx = new DefaultRenderContext( info );
-        ctx.setOutput( response.getOutputStream() );
+        MapResponseCache cache = service.getResponseCache();
+        MapResponseCache.Key key = cache == null ? null : cache.getKey( gm2 );
+        if ( key != null ) {
+            CachedMap cached = cache.get( key );
+            if ( cached != null ) {
+                response.setContentType( gm2.getFormat() );
+                response.getOutputStream().write( cached.getData() );
+                addHeaders( response, new LinkedList<String>( cached.getHeaders() ) );
+                return;
+            }
+        }
+
+        ByteArrayOutputStream buffer = key == null ? null : new ByteArrayOutputStream();
+        OutputStream out = buffer == null ? response.getOutputStream() : buffer;
         LinkedList<String> headers = new LinkedList<String>();
-        service.getMap( gm2, headers, ctx );
-        response.setContentType( gm2.getFormat() );
-        ctx.close();
+        boolean written;
+        if ( MvtEncoder.isMvtFormat( gm2.getFormat() ) ) {
+            MvtEncoder encoder = new MvtEncoder( gm2.getBoundingBox() );
+            service.getVectorTile( gm2, headers, encoder );
+            response.setContentType( gm2.getFormat() );
+            encoder.write( out );
+            written = true;
+        } else {
+            RenderingInfo info = new RenderingInfo( gm2.getFormat(), gm2.getWidth(), gm2.getHeight(),
+                                                    gm2.getTransparent(), gm2.getBgColor(), gm2.getBoundingBox(),
+                                                    gm2.getPixelSize(), map );
+            RenderContext ctx = new DefaultRenderContext( info );
+            ctx.setOutput( out );
+            service.getMap( gm2, headers, ctx );
+            response.setContentType( gm2.getFormat() );
+            written = ctx.close();
+        }
+        if ( buffer != null ) {
+            byte[] data = buffer.toByteArray();
+            if ( written ) {
+                cache.put( key, data, headers );
+            }
+            response.getOutputStream().write( data );
+        }
         addHeaders( response, headers );
     }
 
@@ -581,7 +617,7 @@ public class WMSController extends AbstractOWS {
 
     private void checkGetMap( Version version, org.deegree.protocol.wms.ops.GetMap gm )
                             throws OWSException {
-        if ( !supportedImageFormats.contains( gm.getFormat() ) ) {
+        if ( !getSupportedMapFormats().contains( gm.getFormat() ) ) {
             throw new OWSException( get( "WMS.UNSUPPORTED_IMAGE_FORMAT", gm.getFormat() ), OWSException.INVALID_FORMAT );
         }
         for ( LayerRef lr : gm.getLayers() ) {
@@ -665,13 +701,16 @@ public class WMSController extends AbstractOWS {
             return;
         }
 
+        PngEncoder encoder = PngEncoder.forFormat( format );
+        if ( encoder != null ) {
+            encoder.encode( img, response.getOutputStream() );
+            return;
+        }
+
         format = format.substring( format.indexOf( "/" ) + 1 );
         if ( format.equals( "x-ms-bmp" ) ) {
             format = "bmp";
         }
-        if ( format.equals( "png; subtype=8bit" ) || format.equals( "png; mode=8bit" ) ) {
-            format = "png";
-        }
         LOG.debug( "Sending in format " + format );
         if ( !write( img, format, response.getOutputStream() ) ) {
             throw new OWSException( get( "WMS.CANNOT_ENCODE_IMAGE", format ), OWSException.NO_APPLICABLE_CODE );
@@ -726,6 +765,16 @@ public class WMSController extends AbstractOWS {
         return metadataURLTemplate;
     }
 
+    /**
+     * @return the formats supported by GetMap, ie. the image formats followed by the vector tile format, never
+     *         <code>null</code>
+     */
+    public List<String> getSupportedMapFormats() {
+        List<String> formats = new ArrayList<String>( supportedImageFormats );
+        formats.add( MvtEncoder.FORMAT );
+        return formats;
+    }
+
     public FeatureInfoManager getFeatureInfoManager() {
         return featureInfoManager;
     }
@@ -788,7 +837,9 @@ public class WMSController extends AbstractOWS {
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( service != null ) {
+            service.destroy();
+        }
     }
 
 }
@@ -126,7 +126,7 @@ class WmsCapabilities111MetadataWriter {
         writer.writeEndElement();
 
         writer.writeStartElement( "GetMap" );
-        writeImageFormats( writer );
+        writeImageFormats( writer, controller.getSupportedMapFormats() );
         writeDCP( writer, true, false );
         writer.writeEndElement();
 
@@ -136,16 +136,16 @@ class WmsCapabilities111MetadataWriter {
         writer.writeEndElement();
 
         writer.writeStartElement( "GetLegendGraphic" );
-        writeImageFormats( writer );
+        writeImageFormats( writer, controller.supportedImageFormats );
         writeDCP( writer, true, false );
         writer.writeEndElement();
 
         writer.writeEndElement();
     }
 
-    void writeImageFormats( XMLStreamWriter writer )
+    void writeImageFormats( XMLStreamWriter writer, List<String> formats )
                             throws XMLStreamException {
-        for ( String f : controller.supportedImageFormats ) {
+        for ( String f : formats ) {
             writeElement( writer, "Format", f );
         }
     }
@@ -126,7 +126,7 @@ class WmsCapabilities130MetadataWriter {
         writer.writeEndElement();
 
         writer.writeStartElement( WMSNS, "GetMap" );
-        writeImageFormats( writer );
+        writeImageFormats( writer, controller.getSupportedMapFormats() );
         writeDCP( writer, true, false );
         writer.writeEndElement();
 
@@ -136,16 +136,16 @@ class WmsCapabilities130MetadataWriter {
         writer.writeEndElement();
 
         writer.writeStartElement( SLDNS, "GetLegendGraphic" );
-        writeImageFormats( writer );
+        writeImageFormats( writer, controller.supportedImageFormats );
         writeDCP( writer, true, false );
         writer.writeEndElement();
 
         writer.writeEndElement();
     }
 
-    private void writeImageFormats( XMLStreamWriter writer )
+    private void writeImageFormats( XMLStreamWriter writer, List<String> formats )
                             throws XMLStreamException {
-        for ( String f : controller.supportedImageFormats ) {
+        for ( String f : formats ) {
             writeElement( writer, "Format", f );
         }
     }
@@ -0,0 +1,152 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static java.util.Collections.singletonList;
+import static org.deegree.protocol.wms.WMSConstants.VERSION_130;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MapResponseCache}.
+ * 
+ * @since 3.4
+ */
+public class MapResponseCacheTest {
+
+    private final MapResponseCache cache = new MapResponseCache( 100, 0.5 );
+
+    private static GetMap getMap( String bbox, String... extra )
+                            throws OWSException {
+        Map<String, String> map = new HashMap<String, String>();
+        map.put( "SERVICE", "WMS" );
+        map.put( "REQUEST", "GetMap" );
+        map.put( "VERSION", "1.3.0" );
+        map.put( "LAYERS", "roads,rivers" );
+        map.put( "STYLES", "" );
+        map.put( "CRS", "EPSG:25832" );
+        map.put( "BBOX", bbox );
+        map.put( "WIDTH", "100" );
+        map.put( "HEIGHT", "100" );
+        map.put( "FORMAT", "image/png" );
+        for ( int i = 0; i < extra.length; i += 2 ) {
+            map.put( extra[i], extra[i + 1] );
+        }
+        return new GetMap( map, VERSION_130, null );
+    }
+
+    private MapResponseCache.Key key( String id, String layer ) {
+        return cache.createKey( id, singletonList( layer ) );
+    }
+
+    @Test
+    public void testKeyIgnoresSubPixelDifferences()
+                            throws OWSException {
+        MapResponseCache.Key key = cache.getKey( getMap( "1000,2000,1100,2100" ) );
+        assertNotNull( key );
+        assertEquals( key, cache.getKey( getMap( "1000.1,2000.1,1100.1,2100.1" ) ) );
+        assertFalse( key.equals( cache.getKey( getMap( "1001,2000,1101,2100" ) ) ) );
+    }
+
+    @Test
+    public void testKeyNormalizesParameters()
+                            throws OWSException {
+        MapResponseCache.Key key = cache.getKey( getMap( "1000,2000,1100,2100" ) );
+        assertEquals( key, cache.getKey( getMap( "1000,2000,1100,2100", "STYLES", ",", "FORMAT", "IMAGE/PNG" ) ) );
+        assertFalse( key.equals( cache.getKey( getMap( "1000,2000,1100,2100", "ANTIALIAS", "NONE" ) ) ) );
+        assertFalse( key.equals( cache.getKey( getMap( "1000,2000,1100,2100", "LAYERS", "rivers,roads" ) ) ) );
+    }
+
+    @Test
+    public void testFilterIsNotCached()
+                            throws OWSException {
+        assertNull( cache.getKey( getMap( "1000,2000,1100,2100", "FILTER", "(<Filter/>)" ) ) );
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        cache.put( key( "a", "roads" ), new byte[40], Collections.<String> emptyList() );
+        cache.put( key( "b", "roads" ), new byte[40], Collections.<String> emptyList() );
+        assertNotNull( cache.get( key( "a", "roads" ) ) );
+        cache.put( key( "c", "roads" ), new byte[40], Collections.<String> emptyList() );
+        assertNotNull( cache.get( key( "a", "roads" ) ) );
+        assertNull( cache.get( key( "b", "roads" ) ) );
+        assertNotNull( cache.get( key( "c", "roads" ) ) );
+        assertEquals( 80, cache.getBytes() );
+        assertEquals( 3, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+    }
+
+    @Test
+    public void testIgnoresTooLargeResponses() {
+        cache.put( key( "a", "roads" ), new byte[101], Collections.<String> emptyList() );
+        assertNull( cache.get( key( "a", "roads" ) ) );
+        assertEquals( 0, cache.getBytes() );
+    }
+
+    @Test
+    public void testInvalidatesLayers() {
+        byte[] data = new byte[] { 1, 2, 3 };
+        cache.put( key( "a", "roads" ), data, singletonList( "warning" ) );
+        cache.put( key( "b", "rivers" ), data, Collections.<String> emptyList() );
+        assertEquals( 1, cache.invalidate( singletonList( "roads" ) ) );
+        assertNull( cache.get( key( "a", "roads" ) ) );
+        assertArrayEquals( data, cache.get( key( "b", "rivers" ) ).getData() );
+        assertEquals( 3, cache.getBytes() );
+    }
+
+    @Test
+    public void testDropsResponsesRenderedBeforeInvalidation() {
+        MapResponseCache.Key stale = key( "a", "roads" );
+        cache.invalidate( singletonList( "roads" ) );
+        cache.put( stale, new byte[] { 1 }, Collections.<String> emptyList() );
+        assertNull( cache.get( stale ) );
+        assertEquals( 0, cache.getBytes() );
+
+        MapResponseCache.Key other = key( "b", "rivers" );
+        cache.invalidate( singletonList( "roads" ) );
+        cache.put( other, new byte[] { 1 }, Collections.<String> emptyList() );
+        assertNotNull( cache.get( other ) );
+
+        MapResponseCache.Key fresh = key( "a", "roads" );
+        cache.put( fresh, new byte[] { 1 }, Collections.<String> emptyList() );
+        assertNotNull( cache.get( fresh ) );
+    }
+
+}
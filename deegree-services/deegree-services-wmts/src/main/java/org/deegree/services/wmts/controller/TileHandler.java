@@ -41,8 +41,11 @@
 
 package org.deegree.services.wmts.controller;
 
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
 import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.apache.commons.io.IOUtils.copy;
+import static org.apache.commons.io.IOUtils.toByteArray;
 import static org.deegree.commons.ows.exception.OWSException.INVALID_PARAMETER_VALUE;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
 
@@ -52,6 +55,7 @@ import java.util.List;
 import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.layer.Layer;
@@ -63,9 +67,16 @@ import org.deegree.theme.Themes;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileDataSet;
+import org.deegree.tile.VersionedTile;
 
 /**
  * Responsible for handling GetTile requests.
+ * <p>
+ * Responses carry an <code>ETag</code> (and <code>Last-Modified</code>, if known) header, conditional requests
+ * (<code>If-None-Match</code>, <code>If-Modified-Since</code>) are answered with <code>304 Not Modified</code>. For
+ * {@link VersionedTile}s, the validators are obtained from the tile store without reading the tile data, for all other
+ * tiles the <code>ETag</code> is a hash of the tile data.
+ * </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: mschneider $
@@ -88,13 +99,13 @@ class TileHandler {
         }
     }
 
-    void getTile( Map<String, String> map, HttpResponseBuffer response )
+    void getTile( Map<String, String> map, HttpServletRequest request, HttpResponseBuffer response )
                             throws OWSException, ServletException {
         GetTile op = new GetTile( map );
-        getTile( op, response );
+        getTile( op, request, response );
     }
 
-    private void getTile( final GetTile op, final HttpResponseBuffer response )
+    private void getTile( final GetTile op, final HttpServletRequest request, final HttpResponseBuffer response )
                             throws OWSException, ServletException {
         final TileLayer layer = layers.get( op.getLayer() );
         if ( layer == null ) {
@@ -127,12 +138,33 @@ class TileHandler {
 
         InputStream in = null;
         try {
-            in = t.getAsStream();
-            if ( in == null ) {
-                throw new OWSException( "Tile yielded no data.", NO_APPLICABLE_CODE );
+            if ( t instanceof VersionedTile ) {
+                VersionedTile vt = (VersionedTile) t;
+                String version = vt.getVersion();
+                String etag = version == null ? null : "\"" + version + "\"";
+                long lastModified = vt.getLastModified();
+                setCacheHeaders( layer, etag, lastModified, response );
+                if ( isNotModified( request, etag, lastModified ) ) {
+                    response.setStatus( SC_NOT_MODIFIED );
+                    return;
+                }
+                in = getStream( t );
+                response.setContentType( format );
+                copy( in, response.getOutputStream() );
+            } else {
+                in = getStream( t );
+                byte[] data = toByteArray( in );
+                String etag = "\"" + md5Hex( data ) + "\"";
+                setCacheHeaders( layer, etag, -1, response );
+                if ( isNotModified( request, etag, -1 ) ) {
+                    response.setStatus( SC_NOT_MODIFIED );
+                    return;
+                }
+                response.setContentType( format );
+                response.getOutputStream().write( data );
             }
-            response.setContentType( format );
-            copy( in, response.getOutputStream() );
+        } catch ( OWSException e ) {
+            throw e;
         } catch ( Throwable e ) {
             throw new OWSException( e.getMessage(), e, NO_APPLICABLE_CODE );
         } finally {
@@ -140,4 +172,61 @@ class TileHandler {
         }
     }
 
+    private InputStream getStream( Tile t )
+                            throws OWSException {
+        InputStream in = t.getAsStream();
+        if ( in == null ) {
+            throw new OWSException( "Tile yielded no data.", NO_APPLICABLE_CODE );
+        }
+        return in;
+    }
+
+    private void setCacheHeaders( TileLayer layer, String etag, long lastModified, HttpResponseBuffer response ) {
+        if ( etag != null ) {
+            response.setHeader( "ETag", etag );
+        }
+        if ( lastModified >= 0 ) {
+            response.setDateHeader( "Last-Modified", lastModified );
+        }
+        int maxAge = layer.getCacheControlMaxAge();
+        if ( maxAge >= 0 ) {
+            response.setHeader( "Cache-Control", "max-age=" + maxAge );
+        } else if ( etag != null || lastModified >= 0 ) {
+            // replaces the default 'no-cache, no-store', clients need to store tiles in order to revalidate them
+            response.setHeader( "Cache-Control", "no-cache" );
+        }
+    }
+
+    static boolean isNotModified( HttpServletRequest request, String etag, long lastModified ) {
+        String ifNoneMatch = request.getHeader( "If-None-Match" );
+        if ( ifNoneMatch != null ) {
+            // If-Modified-Since must be ignored if If-None-Match is present (RFC 7232, section 3.3)
+            return etag != null && matches( ifNoneMatch, etag );
+        }
+        if ( lastModified < 0 ) {
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader( "If-Modified-Since" );
+        } catch ( IllegalArgumentException e ) {
+            return false;
+        }
+        // HTTP dates have a resolution of seconds
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private static boolean matches( String ifNoneMatch, String etag ) {
+        for ( String candidate : ifNoneMatch.split( "," ) ) {
+            candidate = candidate.trim();
+            if ( candidate.startsWith( "W/" ) ) {
+                candidate = candidate.substring( 2 );
+            }
+            if ( candidate.equals( "*" ) || candidate.equals( etag ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
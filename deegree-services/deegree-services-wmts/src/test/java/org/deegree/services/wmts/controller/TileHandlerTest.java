@@ -0,0 +1,237 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.services.wmts.controller;
+
+import static java.util.Collections.singletonList;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.deegree.layer.Layer;
+import org.deegree.layer.metadata.LayerMetadata;
+import org.deegree.layer.persistence.tile.TileLayer;
+import org.deegree.services.controller.utils.HttpResponseBuffer;
+import org.deegree.theme.Theme;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.VersionedTile;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the conditional request handling of {@link TileHandler}.
+ * 
+ * @since 3.4
+ */
+public class TileHandlerTest {
+
+    private static final byte[] DATA = new byte[] { 1, 2, 3 };
+
+    private static final long LAST_MODIFIED = 1370000000000L;
+
+    private HttpServletRequest request;
+
+    private HttpResponseBuffer response;
+
+    private ByteArrayOutputStream out;
+
+    private TileLayer layer;
+
+    private TileDataLevel level;
+
+    @Before
+    public void setup()
+                            throws IOException {
+        request = mock( HttpServletRequest.class );
+        when( request.getDateHeader( anyString() ) ).thenReturn( -1L );
+        out = new ByteArrayOutputStream();
+        response = mock( HttpResponseBuffer.class );
+        when( response.getOutputStream() ).thenReturn( new ServletOutputStream() {
+            @Override
+            public void write( int b ) {
+                out.write( b );
+            }
+        } );
+
+        level = mock( TileDataLevel.class );
+        TileDataSet tds = mock( TileDataSet.class );
+        when( tds.getNativeImageFormat() ).thenReturn( "image/png" );
+        when( tds.getTileDataLevel( "0" ) ).thenReturn( level );
+        layer = mock( TileLayer.class );
+        when( layer.getMetadata() ).thenReturn( new LayerMetadata( "tiles", null, null ) );
+        when( layer.getTileDataSet( "grid" ) ).thenReturn( tds );
+        when( layer.getCacheControlMaxAge() ).thenReturn( -1 );
+    }
+
+    @Test
+    public void testMatchingEtagIsNotModified() {
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"a\", \"b\"" );
+        assertTrue( TileHandler.isNotModified( request, "\"b\"", -1 ) );
+    }
+
+    @Test
+    public void testWeakEtagIsNotModified() {
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "W/\"b\"" );
+        assertTrue( TileHandler.isNotModified( request, "\"b\"", -1 ) );
+    }
+
+    @Test
+    public void testWildcardIsNotModified() {
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "*" );
+        assertTrue( TileHandler.isNotModified( request, "\"b\"", -1 ) );
+    }
+
+    @Test
+    public void testDifferentEtagIsModified() {
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"a\"" );
+        assertFalse( TileHandler.isNotModified( request, "\"b\"", -1 ) );
+    }
+
+    @Test
+    public void testIfNoneMatchTakesPrecedence() {
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"a\"" );
+        when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( LAST_MODIFIED );
+        assertFalse( TileHandler.isNotModified( request, "\"b\"", LAST_MODIFIED ) );
+    }
+
+    @Test
+    public void testIfModifiedSince() {
+        when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( LAST_MODIFIED );
+        assertTrue( TileHandler.isNotModified( request, "\"b\"", LAST_MODIFIED + 999 ) );
+        assertFalse( TileHandler.isNotModified( request, "\"b\"", LAST_MODIFIED + 1000 ) );
+        assertFalse( TileHandler.isNotModified( request, "\"b\"", -1 ) );
+    }
+
+    @Test
+    public void testInvalidIfModifiedSinceIsModified() {
+        when( request.getDateHeader( "If-Modified-Since" ) ).thenThrow( new IllegalArgumentException() );
+        assertFalse( TileHandler.isNotModified( request, "\"b\"", LAST_MODIFIED ) );
+    }
+
+    @Test
+    public void testVersionedTileIsSentWithValidators()
+                            throws Exception {
+        VersionedTile tile = mockVersionedTile();
+        getTile();
+        verify( response ).setHeader( "ETag", "\"v1\"" );
+        verify( response ).setDateHeader( "Last-Modified", LAST_MODIFIED );
+        verify( response ).setHeader( "Cache-Control", "no-cache" );
+        verify( response ).setContentType( "image/png" );
+        verify( tile ).getAsStream();
+        assertArrayEquals( DATA, out.toByteArray() );
+    }
+
+    @Test
+    public void testVersionedTileIsNotModified()
+                            throws Exception {
+        VersionedTile tile = mockVersionedTile();
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"v1\"" );
+        getTile();
+        verify( response ).setStatus( SC_NOT_MODIFIED );
+        verify( response ).setHeader( "ETag", "\"v1\"" );
+        verify( tile, never() ).getAsStream();
+        assertArrayEquals( new byte[0], out.toByteArray() );
+    }
+
+    @Test
+    public void testCacheControlMaxAge()
+                            throws Exception {
+        mockVersionedTile();
+        when( layer.getCacheControlMaxAge() ).thenReturn( 3600 );
+        getTile();
+        verify( response ).setHeader( "Cache-Control", "max-age=3600" );
+        verify( response, never() ).setHeader( "Cache-Control", "no-cache" );
+    }
+
+    @Test
+    public void testUnversionedTileIsHashed()
+                            throws Exception {
+        Tile tile = mock( Tile.class );
+        when( tile.getAsStream() ).thenReturn( new ByteArrayInputStream( DATA ) );
+        when( level.getTile( 1, 2 ) ).thenReturn( tile );
+        getTile();
+        verify( response ).setHeader( "ETag", "\"5289df737df57326fcdd22597afb1fac\"" );
+        verify( response, never() ).setDateHeader( anyString(), anyLong() );
+        assertArrayEquals( DATA, out.toByteArray() );
+    }
+
+    @Test
+    public void testUnversionedTileIsNotModified()
+                            throws Exception {
+        Tile tile = mock( Tile.class );
+        when( tile.getAsStream() ).thenReturn( new ByteArrayInputStream( DATA ) );
+        when( level.getTile( 1, 2 ) ).thenReturn( tile );
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"5289df737df57326fcdd22597afb1fac\"" );
+        getTile();
+        verify( response ).setStatus( SC_NOT_MODIFIED );
+        assertArrayEquals( new byte[0], out.toByteArray() );
+    }
+
+    private VersionedTile mockVersionedTile() {
+        VersionedTile tile = mock( VersionedTile.class );
+        when( tile.getVersion() ).thenReturn( "v1" );
+        when( tile.getLastModified() ).thenReturn( LAST_MODIFIED );
+        when( tile.getAsStream() ).thenReturn( new ByteArrayInputStream( DATA ) );
+        when( level.getTile( 1, 2 ) ).thenReturn( tile );
+        return tile;
+    }
+
+    private void getTile()
+                            throws Exception {
+        Theme theme = mock( Theme.class );
+        when( theme.getLayers() ).thenReturn( singletonList( (Layer) layer ) );
+        when( theme.getThemes() ).thenReturn( Collections.<Theme> emptyList() );
+        Map<String, String> map = new HashMap<String, String>();
+        map.put( "LAYER", "tiles" );
+        map.put( "FORMAT", "image/png" );
+        map.put( "TILEMATRIXSET", "grid" );
+        map.put( "TILEMATRIX", "0" );
+        map.put( "TILECOL", "1" );
+        map.put( "TILEROW", "2" );
+        new TileHandler( singletonList( theme ) ).getTile( map, request, response );
+    }
+
+}
@@ -0,0 +1,232 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.tools.tile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.deegree.commons.annotations.Tool;
+import org.deegree.commons.tools.CommandUtils;
+import org.deegree.commons.utils.ArrayUtils;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreProvider;
+import org.deegree.tile.persistence.cache.CachingTileStore;
+import org.deegree.tile.persistence.seed.SeedProgress;
+import org.deegree.tile.persistence.seed.TileSeeder;
+import org.deegree.tools.i18n.Messages;
+import org.deegree.workspace.Workspace;
+import org.deegree.workspace.standard.DefaultWorkspace;
+
+/**
+ * Seeds a tile store (e.g. a caching tile store) with the tiles of another tile store.
+ * <p>
+ * Progress is written to a checkpoint file, running the tool again with the same parameters resumes an interrupted
+ * run.
+ * </p>
+ * 
+ * @since 3.4
+ */
+@Tool("Seeds a tile store with tiles, in parallel and resumable")
+public class TileStoreSeeder {
+
+    // command line parameters
+    private static final String OPT_WORKSPACE = "workspace";
+
+    private static final String OPT_TILE_STORE = "tilestore";
+
+    private static final String OPT_TILE_DATA_SET = "dataset";
+
+    private static final String OPT_SOURCE = "source";
+
+    private static final String OPT_BBOX = "bbox";
+
+    private static final String OPT_LEVELS = "levels";
+
+    private static final String OPT_WORKERS = "workers";
+
+    private static final String OPT_CHECKPOINT = "checkpoint";
+
+    /**
+     * @param args
+     * @throws IOException
+     */
+    public static void main( String[] args )
+                            throws IOException {
+        // for the moment, using the CLI API there is no way to respond to a help argument; see
+        // https://issues.apache.org/jira/browse/CLI-179
+        if ( args.length == 0 || ( args.length > 0 && ( args[0].contains( "help" ) || args[0].contains( "?" ) ) ) ) {
+            printHelp( initOptions() );
+        }
+
+        try {
+            CommandLine cmdline = new PosixParser().parse( initOptions(), args );
+
+            String storeId = cmdline.getOptionValue( OPT_TILE_STORE );
+            String dataSetId = cmdline.getOptionValue( OPT_TILE_DATA_SET );
+
+            Workspace ws = new DefaultWorkspace( new File( cmdline.getOptionValue( OPT_WORKSPACE ) ) );
+            ws.initAll();
+
+            TileStore store = ws.getResource( TileStoreProvider.class, storeId );
+            if ( store == null || store.getTileDataSet( dataSetId ) == null ) {
+                System.out.println( "No tile store '" + storeId + "' with tile data set '" + dataSetId + "'." );
+                System.exit( 1 );
+            }
+            TileStore sourceStore;
+            if ( cmdline.hasOption( OPT_SOURCE ) ) {
+                sourceStore = ws.getResource( TileStoreProvider.class, cmdline.getOptionValue( OPT_SOURCE ) );
+            } else if ( store instanceof CachingTileStore ) {
+                sourceStore = ( (CachingTileStore) store ).getCachedTileStore();
+            } else {
+                System.out.println( "The tile store is no caching tile store, option '-" + OPT_SOURCE
+                                    + "' is required." );
+                System.exit( 1 );
+                return;
+            }
+            TileDataSet source = sourceStore == null ? null : sourceStore.getTileDataSet( dataSetId );
+            if ( source == null ) {
+                System.out.println( "No source tile store with tile data set '" + dataSetId + "'." );
+                System.exit( 1 );
+            }
+
+            Envelope bbox = null;
+            if ( cmdline.hasOption( OPT_BBOX ) ) {
+                double[] ds = ArrayUtils.splitAsDoubles( cmdline.getOptionValue( OPT_BBOX ), "," );
+                if ( ds.length != 4 ) {
+                    System.out.println( "The bbox must be given as minx,miny,maxx,maxy." );
+                    System.exit( 1 );
+                }
+                bbox = new GeometryFactory().createEnvelope( ds[0], ds[1], ds[2], ds[3],
+                                                             source.getTileMatrixSet().getSpatialMetadata().getCoordinateSystems().get( 0 ) );
+            }
+            int minLevel = 0;
+            int maxLevel = Integer.MAX_VALUE;
+            if ( cmdline.hasOption( OPT_LEVELS ) ) {
+                String[] levels = cmdline.getOptionValue( OPT_LEVELS ).split( "-" );
+                minLevel = Integer.parseInt( levels[0] );
+                maxLevel = Integer.parseInt( levels[levels.length - 1] );
+            }
+            int workers = Runtime.getRuntime().availableProcessors();
+            if ( cmdline.hasOption( OPT_WORKERS ) ) {
+                workers = Integer.parseInt( cmdline.getOptionValue( OPT_WORKERS ) );
+            }
+            File checkpoint = new File( cmdline.getOptionValue( OPT_CHECKPOINT, storeId + "_" + dataSetId
+                                                                                + ".properties" ) );
+
+            final TileSeeder seeder = new TileSeeder( source, store.acquireTransaction( dataSetId ), bbox, minLevel,
+                                                      maxLevel, workers, checkpoint );
+            seed( seeder );
+        } catch ( ParseException exp ) {
+            System.err.println( Messages.getMessage( "TOOL_COMMANDLINE_ERROR", exp.getMessage() ) );
+        }
+    }
+
+    private static void seed( final TileSeeder seeder )
+                            throws IOException {
+        final CountDownLatch done = new CountDownLatch( 1 );
+        // on Ctrl-C, let the tiles in progress finish and write the checkpoint
+        Runtime.getRuntime().addShutdownHook( new Thread() {
+            @Override
+            public void run() {
+                seeder.cancel();
+                try {
+                    done.await( 60, TimeUnit.SECONDS );
+                } catch ( InterruptedException e ) {
+                    // exit anyway
+                }
+            }
+        } );
+        Timer timer = new Timer( true );
+        timer.schedule( new TimerTask() {
+            @Override
+            public void run() {
+                System.out.println( "- " + seeder.getProgress() );
+            }
+        }, 10000, 10000 );
+        try {
+            SeedProgress progress = seeder.run();
+            System.out.println( "- " + progress );
+        } finally {
+            timer.cancel();
+            done.countDown();
+        }
+    }
+
+    private static Options initOptions() {
+
+        Options opts = new Options();
+
+        Option opt = new Option( OPT_WORKSPACE, true, "workspace directory" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_TILE_STORE, true, "id of the tile store to seed" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_TILE_DATA_SET, true, "id of the tile data set to seed" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_SOURCE, true, "id of the tile store to take the tiles from (default: the store cached by the seeded caching tile store)" );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_BBOX, true, "area to seed as minx,miny,maxx,maxy in the crs of the tile matrix set (default: complete levels)" );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_LEVELS, true, "range of level indices to seed, e.g. 0-10 (default: all levels)" );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_WORKERS, true, "number of tiles to seed in parallel (default: number of processors)" );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_CHECKPOINT, true, "checkpoint file used to resume the seeding (default: <tilestore>_<dataset>.properties)" );
+        opts.addOption( opt );
+
+        CommandUtils.addDefaultOptions( opts );
+
+        return opts;
+    }
+
+    private static void printHelp( Options options ) {
+        CommandUtils.printHelp( options, TileStoreSeeder.class.getSimpleName(), null, null );
+    }
+
+}